@@ -0,0 +1,71 @@
+package com.radishframework.grpc.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.radishframework.grpc.client.ManagedChannelFactory;
+
+import io.grpc.ManagedChannel;
+
+/**
+ * Lookup of the shared channel of a service by many threads at once, e.g. by every request
+ * handler creating its stub. The channels are created once and kept, only their lookup and
+ * release are measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Threads(8)
+@State(Scope.Benchmark)
+public class ManagedChannelFactoryBenchmark {
+
+    @Param({"1", "16"})
+    public int services;
+
+    private ManagedChannelFactory factory;
+    private String[] serviceNames;
+    private ManagedChannel[] held;
+
+    @Setup
+    public void setUp() {
+        factory = new ManagedChannelFactory("benchmark");
+        serviceNames = new String[services];
+        held = new ManagedChannel[services];
+        for (int i = 0; i < services; i++) {
+            serviceNames[i] = "/default/service-" + i + "/8080";
+            // never released during the run, the channels are not shut down between the lookups
+            held[i] = factory.create(serviceNames[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (int i = 0; i < services; i++) {
+            factory.releaseChannel(serviceNames[i], held[i]);
+        }
+    }
+
+    @Benchmark
+    public ManagedChannel create() {
+        final String serviceName = serviceNames[ThreadLocalRandom.current().nextInt(serviceNames.length)];
+        final ManagedChannel channel = factory.create(serviceName);
+        factory.releaseChannel(serviceName, channel);
+        return channel;
+    }
+}
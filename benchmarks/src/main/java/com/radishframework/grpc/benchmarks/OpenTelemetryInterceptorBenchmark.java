@@ -0,0 +1,244 @@
+package com.radishframework.grpc.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.radishframework.grpc.client.OpenTelemetryClientInterceptor;
+import com.radishframework.grpc.common.OpenTelemetryHolder;
+import com.radishframework.grpc.examples.hello.GreeterRequest;
+import com.radishframework.grpc.examples.hello.GreeterResponse;
+import com.radishframework.grpc.examples.hello.HelloGrpc;
+import com.radishframework.grpc.server.OpenTelemetryServerInterceptor;
+
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptors;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.stub.ServerCalls;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+
+/**
+ * Overhead of the tracing interceptors on a unary call, without transport: the calls are driven
+ * straight through the interceptors down to a no-op call
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class OpenTelemetryInterceptorBenchmark {
+    private static final GreeterRequest REQUEST = GreeterRequest.newBuilder().setName("radish").build();
+    private static final GreeterResponse RESPONSE = GreeterResponse.newBuilder().setResult("Hello radish").build();
+
+    /**
+     * Sampling of the spans, none are exported
+     */
+    @Param({"off", "on"})
+    public String sampling;
+
+    private ServerCallHandler<GreeterRequest, GreeterResponse> handler;
+    private ServerCallHandler<GreeterRequest, GreeterResponse> tracedHandler;
+    private Channel channel;
+    private Channel tracedChannel;
+
+    @Setup
+    public void setUp() {
+        // every fork initializes its own
+        OpenTelemetryHolder.initialize(SpanProcessor.composite(),
+                "on".equals(sampling) ? Sampler.alwaysOn() : Sampler.alwaysOff());
+
+        final ServerServiceDefinition service = ServerServiceDefinition.builder(HelloGrpc.SERVICE_NAME)
+                .addMethod(HelloGrpc.getGreeterMethod(), ServerCalls.asyncUnaryCall((request, responseObserver) -> {
+                    responseObserver.onNext(RESPONSE);
+                    responseObserver.onCompleted();
+                }))
+                .build();
+        handler = handlerOf(service);
+        tracedHandler = handlerOf(ServerInterceptors.intercept(service,
+                new OpenTelemetryServerInterceptor("benchmark")));
+
+        channel = new NoopChannel();
+        tracedChannel = ClientInterceptors.intercept(channel, new OpenTelemetryClientInterceptor());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServerCallHandler<GreeterRequest, GreeterResponse> handlerOf(ServerServiceDefinition service) {
+        final ServerMethodDefinition<?, ?> method = service.getMethod(HelloGrpc.getGreeterMethod().getFullMethodName());
+        return (ServerCallHandler<GreeterRequest, GreeterResponse>) method.getServerCallHandler();
+    }
+
+    @Benchmark
+    public void serverCall(Blackhole blackhole) {
+        serve(handler, blackhole);
+    }
+
+    @Benchmark
+    public void serverCallTraced(Blackhole blackhole) {
+        serve(tracedHandler, blackhole);
+    }
+
+    private static void serve(ServerCallHandler<GreeterRequest, GreeterResponse> handler, Blackhole blackhole) {
+        final ServerCall.Listener<GreeterRequest> listener = handler.startCall(new NoopServerCall(blackhole),
+                new Metadata());
+        listener.onReady();
+        listener.onMessage(REQUEST);
+        listener.onHalfClose();
+        listener.onComplete();
+    }
+
+    @Benchmark
+    public void clientCall(ParentSpan parentSpan, Blackhole blackhole) {
+        call(channel, blackhole);
+    }
+
+    @Benchmark
+    public void clientCallTraced(ParentSpan parentSpan, Blackhole blackhole) {
+        call(tracedChannel, blackhole);
+    }
+
+    private static void call(Channel channel, Blackhole blackhole) {
+        final ClientCall<GreeterRequest, GreeterResponse> call =
+                channel.newCall(HelloGrpc.getGreeterMethod(), CallOptions.DEFAULT);
+        call.start(new ClientCall.Listener<>() {
+            @Override
+            public void onMessage(GreeterResponse message) {
+                blackhole.consume(message);
+            }
+        }, new Metadata());
+        call.request(1);
+        call.sendMessage(REQUEST);
+        call.halfClose();
+    }
+
+    /**
+     * Span of the incoming call on whose behalf the client calls are made, current on the
+     * benchmark thread
+     */
+    @State(Scope.Thread)
+    public static class ParentSpan {
+        private Span span;
+        // io.opentelemetry.context.Scope, the jmh one is imported
+        private io.opentelemetry.context.Scope scope;
+
+        @Setup
+        public void setUp() {
+            span = OpenTelemetryHolder.getOpenTelemetry().getTracer("benchmark").spanBuilder("parent").startSpan();
+            scope = span.makeCurrent();
+        }
+
+        @TearDown
+        public void tearDown() {
+            scope.close();
+            span.end();
+        }
+    }
+
+    private static final class NoopServerCall extends ServerCall<GreeterRequest, GreeterResponse> {
+        private final Blackhole blackhole;
+
+        NoopServerCall(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void request(int numMessages) {
+        }
+
+        @Override
+        public void sendHeaders(Metadata headers) {
+        }
+
+        @Override
+        public void sendMessage(GreeterResponse message) {
+            blackhole.consume(message);
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            blackhole.consume(status);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            return Attributes.EMPTY;
+        }
+
+        @Override
+        public MethodDescriptor<GreeterRequest, GreeterResponse> getMethodDescriptor() {
+            return HelloGrpc.getGreeterMethod();
+        }
+    }
+
+    /**
+     * Answers every call with the response, on the calling thread
+     */
+    private static final class NoopChannel extends Channel {
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> methodDescriptor,
+                                                             CallOptions callOptions) {
+            return new ClientCall<>() {
+                private Listener<RespT> listener;
+
+                @Override
+                public void start(Listener<RespT> responseListener, Metadata headers) {
+                    listener = responseListener;
+                }
+
+                @Override
+                public void request(int numMessages) {
+                }
+
+                @Override
+                public void cancel(String message, Throwable cause) {
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public void halfClose() {
+                    listener.onHeaders(new Metadata());
+                    listener.onMessage((RespT) RESPONSE);
+                    listener.onClose(Status.OK, new Metadata());
+                }
+
+                @Override
+                public void sendMessage(ReqT message) {
+                }
+            };
+        }
+
+        @Override
+        public String authority() {
+            return "benchmark";
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.radishframework.grpc.benchmarks;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.radishframework.grpc.client.MetricsClientInterceptor;
+import com.radishframework.grpc.client.OpenTelemetryClientInterceptor;
+import com.radishframework.grpc.common.OpenTelemetryHolder;
+import com.radishframework.grpc.examples.hello.GreeterRequest;
+import com.radishframework.grpc.examples.hello.GreeterResponse;
+import com.radishframework.grpc.examples.hello.HelloGrpc;
+import com.radishframework.grpc.server.MetricsServerInterceptor;
+import com.radishframework.grpc.server.OpenTelemetryServerInterceptor;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+
+/**
+ * Unary and streaming round trips of the hello service, in process or over netty on the loopback
+ * interface, with or without the interceptors radish adds to every server and channel. Run with
+ * -t to load the server with concurrent callers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class TransportBenchmark {
+    private static final GreeterRequest REQUEST = GreeterRequest.newBuilder().setName("radish").build();
+
+    @Param({"inprocess", "netty"})
+    public String transport;
+
+    /**
+     * none, or the tracing and metrics interceptors, sampling off
+     */
+    @Param({"none", "radish"})
+    public String interceptors;
+
+    private Server server;
+    private ManagedChannel channel;
+    private HelloGrpc.HelloBlockingStub blockingStub;
+    private HelloGrpc.HelloStub asyncStub;
+
+    @Setup
+    public void setUp() throws IOException {
+        final boolean intercepted = "radish".equals(interceptors);
+        if (intercepted) {
+            OpenTelemetryHolder.initialize(SpanProcessor.composite(), Sampler.alwaysOff());
+        }
+        ServerServiceDefinition service = new HelloService().bindService();
+        if (intercepted) {
+            service = ServerInterceptors.intercept(service,
+                    new OpenTelemetryServerInterceptor("benchmark"), new MetricsServerInterceptor());
+        }
+
+        if ("inprocess".equals(transport)) {
+            final String name = InProcessServerBuilder.generateName();
+            server = InProcessServerBuilder.forName(name).directExecutor().addService(service).build().start();
+            final InProcessChannelBuilder channelBuilder = InProcessChannelBuilder.forName(name).directExecutor();
+            if (intercepted) {
+                channelBuilder.intercept(new OpenTelemetryClientInterceptor(), new MetricsClientInterceptor());
+            }
+            channel = channelBuilder.build();
+        } else {
+            server = NettyServerBuilder.forAddress(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                    .directExecutor()
+                    .addService(service)
+                    .build()
+                    .start();
+            final NettyChannelBuilder channelBuilder = NettyChannelBuilder
+                    .forAddress(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()))
+                    .usePlaintext();
+            if (intercepted) {
+                channelBuilder.intercept(new OpenTelemetryClientInterceptor(), new MetricsClientInterceptor());
+            }
+            channel = channelBuilder.build();
+        }
+        blockingStub = HelloGrpc.newBlockingStub(channel);
+        asyncStub = HelloGrpc.newStub(channel);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public GreeterResponse unary() {
+        return blockingStub.greeter(REQUEST);
+    }
+
+    /**
+     * One request and its response on a stream kept open by the benchmark thread
+     */
+    @Benchmark
+    public GreeterResponse streaming(Stream stream) throws InterruptedException {
+        stream.requests.onNext(REQUEST);
+        final Object response = stream.responses.take();
+        if (response instanceof Throwable) {
+            throw new IllegalStateException("Stream failed", (Throwable) response);
+        }
+        return (GreeterResponse) response;
+    }
+
+    @State(Scope.Thread)
+    public static class Stream {
+        private final BlockingQueue<Object> responses = new LinkedBlockingQueue<>();
+        private StreamObserver<GreeterRequest> requests;
+
+        @Setup
+        public void setUp(TransportBenchmark benchmark) {
+            requests = benchmark.asyncStub.greeterStream(new StreamObserver<>() {
+                @Override
+                public void onNext(GreeterResponse response) {
+                    responses.add(response);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    responses.add(t);
+                }
+
+                @Override
+                public void onCompleted() {
+                }
+            });
+        }
+
+        @TearDown
+        public void tearDown() {
+            requests.onCompleted();
+        }
+    }
+
+    private static final class HelloService extends HelloGrpc.HelloImplBase {
+        @Override
+        public void greeter(GreeterRequest request, StreamObserver<GreeterResponse> responseObserver) {
+            responseObserver.onNext(GreeterResponse.newBuilder().setResult("Hello " + request.getName()).build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public StreamObserver<GreeterRequest> greeterStream(StreamObserver<GreeterResponse> responseObserver) {
+            return new StreamObserver<>() {
+                @Override
+                public void onNext(GreeterRequest request) {
+                    responseObserver.onNext(GreeterResponse.newBuilder()
+                            .setResult("Hello " + request.getName())
+                            .build());
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    responseObserver.onError(t);
+                }
+
+                @Override
+                public void onCompleted() {
+                    responseObserver.onCompleted();
+                }
+            };
+        }
+    }
+}
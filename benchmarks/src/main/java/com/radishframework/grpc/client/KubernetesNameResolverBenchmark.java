@@ -0,0 +1,100 @@
+package com.radishframework.grpc.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.grpc.Attributes;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+
+/**
+ * Cost of an endpoints change for the resolver of a service: every update replaces one pod of the
+ * service, the addresses are rebuilt and compared to the previous ones before they are published.
+ * <p>
+ * In the package of the resolver to call its update directly. The resolver is started against an
+ * unreachable api server, the watch retries in the background and its errors are ignored.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class KubernetesNameResolverBenchmark {
+    private static final int PORT = 8080;
+
+    @Param({"10", "1000", "10000"})
+    public int endpoints;
+
+    private final SynchronizationContext syncContext = new SynchronizationContext(
+            (thread, e) -> {
+                throw new AssertionError(e);
+            });
+    private KubernetesNameResolver resolver;
+    private List<KubernetesEndpoint> even;
+    private List<KubernetesEndpoint> odd;
+    private boolean flip;
+    private List<EquivalentAddressGroup> published;
+
+    @Setup
+    public void setUp() {
+        even = endpoints(endpoints, "10.0.0.1");
+        odd = endpoints(endpoints, "10.0.0.2");
+
+        final KubernetesEndpointsHub endpointsHub = new KubernetesEndpointsHub(
+                new KubernetesClient("http://127.0.0.1:1"), false);
+        resolver = new KubernetesNameResolver("default", "hello", PORT, endpointsHub, null, "zone-a", syncContext);
+        resolver.start(new NameResolver.Listener() {
+            @Override
+            public void onAddresses(List<EquivalentAddressGroup> servers, Attributes attributes) {
+                published = servers;
+            }
+
+            @Override
+            public void onError(Status error) {
+            }
+        });
+    }
+
+    /**
+     * @param lastIp the ip of the last pod, the one replaced between the updates
+     */
+    private static List<KubernetesEndpoint> endpoints(int count, String lastIp) {
+        final List<KubernetesEndpoint> endpoints = new ArrayList<>(count);
+        for (int i = 0; i < count - 1; i++) {
+            endpoints.add(new KubernetesEndpoint("10.1." + (i >> 8) + "." + (i & 0xff), List.of(PORT),
+                    "zone-" + (char) ('a' + i % 3), "node-" + i % 50, true, true, false));
+        }
+        endpoints.add(new KubernetesEndpoint(lastIp, List.of(PORT), "zone-a", "node-0", true, true, false));
+        return endpoints;
+    }
+
+    @TearDown
+    public void tearDown() {
+        resolver.shutdown();
+    }
+
+    @Benchmark
+    public List<EquivalentAddressGroup> update() {
+        final List<KubernetesEndpoint> next = flip ? odd : even;
+        flip = !flip;
+        syncContext.execute(() -> resolver.update(next));
+        return published;
+    }
+}
@@ -0,0 +1,400 @@
+package com.radishframework.grpc.client;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.radishframework.grpc.common.CompressionPolicy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Settings of the channel of one service, unset values fall back to the defaults of the factory
+ * and then to the grpc defaults.
+ */
+public final class ChannelOptions {
+    public static final ChannelOptions DEFAULT = newBuilder().build();
+
+    @Nullable
+    private final String loadBalancingPolicy;
+    @Nullable
+    private final Duration keepAliveTime;
+    @Nullable
+    private final Duration keepAliveTimeout;
+    @Nullable
+    private final Boolean keepAliveWithoutCalls;
+    @Nullable
+    private final Duration idleTimeout;
+    @Nullable
+    private final Integer flowControlWindow;
+    @Nullable
+    private final Integer maxInboundMessageSize;
+    @Nullable
+    private final Integer poolSize;
+    @Nullable
+    private final Map<String, MethodPolicy> methodPolicies;
+    @Nullable
+    private final Double retryBudgetMaxTokens;
+    @Nullable
+    private final Double retryBudgetTokenRatio;
+    @Nullable
+    private final Duration deadlineMargin;
+    @Nullable
+    private final OutlierDetection outlierDetection;
+    @Nullable
+    private final ConsistentHash consistentHash;
+    @Nullable
+    private final String healthCheckServiceName;
+    @Nullable
+    private final Map<String, Duration> cacheTtls;
+    @Nullable
+    private final Long cacheMaxBytes;
+    @Nullable
+    private final Integer zeroCopyThreshold;
+    @Nullable
+    private final Map<String, CompressionPolicy> compressionPolicies;
+
+    private ChannelOptions(Builder builder) {
+        this.loadBalancingPolicy = builder.loadBalancingPolicy;
+        this.keepAliveTime = builder.keepAliveTime;
+        this.keepAliveTimeout = builder.keepAliveTimeout;
+        this.keepAliveWithoutCalls = builder.keepAliveWithoutCalls;
+        this.idleTimeout = builder.idleTimeout;
+        this.flowControlWindow = builder.flowControlWindow;
+        this.maxInboundMessageSize = builder.maxInboundMessageSize;
+        this.poolSize = builder.poolSize;
+        this.methodPolicies = builder.methodPolicies == null ? null : Map.copyOf(builder.methodPolicies);
+        this.retryBudgetMaxTokens = builder.retryBudgetMaxTokens;
+        this.retryBudgetTokenRatio = builder.retryBudgetTokenRatio;
+        this.deadlineMargin = builder.deadlineMargin;
+        this.outlierDetection = builder.outlierDetection;
+        this.consistentHash = builder.consistentHash;
+        this.healthCheckServiceName = builder.healthCheckServiceName;
+        this.cacheTtls = builder.cacheTtls == null ? null : Map.copyOf(builder.cacheTtls);
+        this.cacheMaxBytes = builder.cacheMaxBytes;
+        this.zeroCopyThreshold = builder.zeroCopyThreshold;
+        this.compressionPolicies = builder.compressionPolicies == null ? null : Map.copyOf(builder.compressionPolicies);
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Nullable
+    public String getLoadBalancingPolicy() {
+        return loadBalancingPolicy;
+    }
+
+    @Nullable
+    public Duration getKeepAliveTime() {
+        return keepAliveTime;
+    }
+
+    @Nullable
+    public Duration getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    @Nullable
+    public Boolean getKeepAliveWithoutCalls() {
+        return keepAliveWithoutCalls;
+    }
+
+    @Nullable
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Initial HTTP/2 flow control window of every stream in bytes
+     */
+    @Nullable
+    public Integer getFlowControlWindow() {
+        return flowControlWindow;
+    }
+
+    @Nullable
+    public Integer getMaxInboundMessageSize() {
+        return maxInboundMessageSize;
+    }
+
+    /**
+     * Number of channels, and so of connections to every backend, calls are spread over them
+     */
+    public int getPoolSize() {
+        return poolSize == null ? 1 : poolSize;
+    }
+
+    /**
+     * Policies keyed by "package.Service/Method", "package.Service" or "*" for all the methods, the
+     * most specific one applies
+     */
+    public Map<String, MethodPolicy> getMethodPolicies() {
+        return methodPolicies == null ? Map.of() : methodPolicies;
+    }
+
+    /**
+     * Retry budget of the channel: every failed attempt takes a token, every successful one gives
+     * back {@link #getRetryBudgetTokenRatio()}, and the calls are neither retried nor hedged while
+     * less than half of the tokens are left. Null for no budget
+     */
+    @Nullable
+    public Double getRetryBudgetMaxTokens() {
+        return retryBudgetMaxTokens;
+    }
+
+    public double getRetryBudgetTokenRatio() {
+        return retryBudgetTokenRatio == null ? 0.1d : retryBudgetTokenRatio;
+    }
+
+    /**
+     * Time taken off the deadline of the incoming call before it is given to the outgoing calls,
+     * left to the caller to handle their failure
+     */
+    public Duration getDeadlineMargin() {
+        return deadlineMargin == null ? Duration.ZERO : deadlineMargin;
+    }
+
+    /**
+     * Ejection of the failing or slow backends, wrapping the load balancing policy
+     */
+    public OutlierDetection getOutlierDetection() {
+        return outlierDetection == null ? OutlierDetection.OFF : outlierDetection;
+    }
+
+    /**
+     * Hash key and load bound of the {@link ConsistentHashLoadBalancerProvider#POLICY_NAME} policy
+     */
+    public ConsistentHash getConsistentHash() {
+        return consistentHash == null ? ConsistentHash.DEFAULT : consistentHash;
+    }
+
+    /**
+     * Service whose health, as set in the HealthStatusManager of the backends, is watched by the
+     * load balancer: the backends not serving it are not picked. "" for the whole server, null for
+     * no health checking
+     */
+    @Nullable
+    public String getHealthCheckServiceName() {
+        return healthCheckServiceName;
+    }
+
+    /**
+     * Time to live of the cached responses, keyed by "package.Service/Method" or "package.Service",
+     * the unary calls of the other methods are not cached, see {@link ResponseCacheInterceptor}
+     */
+    public Map<String, Duration> getCacheTtls() {
+        return cacheTtls == null ? Map.of() : cacheTtls;
+    }
+
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes == null ? 32L * 1024 * 1024 : cacheMaxBytes;
+    }
+
+    /**
+     * Size from which the received messages are parsed without copying their bytes fields, see
+     * {@link com.radishframework.grpc.common.ZeroCopyMarshaller}, null keeps the marshallers of the
+     * generated stubs
+     */
+    @Nullable
+    public Integer getZeroCopyThreshold() {
+        return zeroCopyThreshold;
+    }
+
+    /**
+     * Compression of the requests, keyed by "package.Service/Method", "package.Service" or "*",
+     * see {@link CompressionClientInterceptor}
+     */
+    public Map<String, CompressionPolicy> getCompressionPolicies() {
+        return compressionPolicies == null ? Map.of() : compressionPolicies;
+    }
+
+    /**
+     * @return these options with the unset values taken from {@code defaults}, the method policies,
+     * cache ttls and compression policies are merged
+     */
+    public ChannelOptions withDefaults(ChannelOptions defaults) {
+        final Builder builder = new Builder();
+        builder.loadBalancingPolicy = loadBalancingPolicy != null ? loadBalancingPolicy : defaults.loadBalancingPolicy;
+        builder.keepAliveTime = keepAliveTime != null ? keepAliveTime : defaults.keepAliveTime;
+        builder.keepAliveTimeout = keepAliveTimeout != null ? keepAliveTimeout : defaults.keepAliveTimeout;
+        builder.keepAliveWithoutCalls = keepAliveWithoutCalls != null
+                ? keepAliveWithoutCalls : defaults.keepAliveWithoutCalls;
+        builder.idleTimeout = idleTimeout != null ? idleTimeout : defaults.idleTimeout;
+        builder.flowControlWindow = flowControlWindow != null ? flowControlWindow : defaults.flowControlWindow;
+        builder.maxInboundMessageSize = maxInboundMessageSize != null
+                ? maxInboundMessageSize : defaults.maxInboundMessageSize;
+        builder.poolSize = poolSize != null ? poolSize : defaults.poolSize;
+        if (methodPolicies != null && defaults.methodPolicies != null) {
+            builder.methodPolicies = new LinkedHashMap<>(defaults.methodPolicies);
+            builder.methodPolicies.putAll(methodPolicies);
+        } else {
+            builder.methodPolicies = methodPolicies != null ? methodPolicies : defaults.methodPolicies;
+        }
+        builder.retryBudgetMaxTokens = retryBudgetMaxTokens != null
+                ? retryBudgetMaxTokens : defaults.retryBudgetMaxTokens;
+        builder.retryBudgetTokenRatio = retryBudgetTokenRatio != null
+                ? retryBudgetTokenRatio : defaults.retryBudgetTokenRatio;
+        builder.deadlineMargin = deadlineMargin != null ? deadlineMargin : defaults.deadlineMargin;
+        builder.outlierDetection = outlierDetection != null ? outlierDetection : defaults.outlierDetection;
+        builder.consistentHash = consistentHash != null ? consistentHash : defaults.consistentHash;
+        builder.healthCheckServiceName = healthCheckServiceName != null
+                ? healthCheckServiceName : defaults.healthCheckServiceName;
+        if (cacheTtls != null && defaults.cacheTtls != null) {
+            builder.cacheTtls = new LinkedHashMap<>(defaults.cacheTtls);
+            builder.cacheTtls.putAll(cacheTtls);
+        } else {
+            builder.cacheTtls = cacheTtls != null ? cacheTtls : defaults.cacheTtls;
+        }
+        builder.cacheMaxBytes = cacheMaxBytes != null ? cacheMaxBytes : defaults.cacheMaxBytes;
+        builder.zeroCopyThreshold = zeroCopyThreshold != null ? zeroCopyThreshold : defaults.zeroCopyThreshold;
+        if (compressionPolicies != null && defaults.compressionPolicies != null) {
+            builder.compressionPolicies = new LinkedHashMap<>(defaults.compressionPolicies);
+            builder.compressionPolicies.putAll(compressionPolicies);
+        } else {
+            builder.compressionPolicies = compressionPolicies != null ? compressionPolicies : defaults.compressionPolicies;
+        }
+        return builder.build();
+    }
+
+    public static final class Builder {
+        private String loadBalancingPolicy;
+        private Duration keepAliveTime;
+        private Duration keepAliveTimeout;
+        private Boolean keepAliveWithoutCalls;
+        private Duration idleTimeout;
+        private Integer flowControlWindow;
+        private Integer maxInboundMessageSize;
+        private Integer poolSize;
+        private Map<String, MethodPolicy> methodPolicies;
+        private Double retryBudgetMaxTokens;
+        private Double retryBudgetTokenRatio;
+        private Duration deadlineMargin;
+        private OutlierDetection outlierDetection;
+        private ConsistentHash consistentHash;
+        private String healthCheckServiceName;
+        private Map<String, Duration> cacheTtls;
+        private Long cacheMaxBytes;
+        private Integer zeroCopyThreshold;
+        private Map<String, CompressionPolicy> compressionPolicies;
+
+        private Builder() {
+        }
+
+        public Builder setLoadBalancingPolicy(@Nullable String loadBalancingPolicy) {
+            this.loadBalancingPolicy = loadBalancingPolicy;
+            return this;
+        }
+
+        public Builder setKeepAliveTime(@Nullable Duration keepAliveTime) {
+            this.keepAliveTime = keepAliveTime;
+            return this;
+        }
+
+        public Builder setKeepAliveTimeout(@Nullable Duration keepAliveTimeout) {
+            this.keepAliveTimeout = keepAliveTimeout;
+            return this;
+        }
+
+        public Builder setKeepAliveWithoutCalls(@Nullable Boolean keepAliveWithoutCalls) {
+            this.keepAliveWithoutCalls = keepAliveWithoutCalls;
+            return this;
+        }
+
+        public Builder setIdleTimeout(@Nullable Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        public Builder setFlowControlWindow(@Nullable Integer flowControlWindow) {
+            checkArgument(flowControlWindow == null || flowControlWindow > 0, "flowControlWindow must be positive");
+            this.flowControlWindow = flowControlWindow;
+            return this;
+        }
+
+        public Builder setMaxInboundMessageSize(@Nullable Integer maxInboundMessageSize) {
+            checkArgument(maxInboundMessageSize == null || maxInboundMessageSize > 0,
+                    "maxInboundMessageSize must be positive");
+            this.maxInboundMessageSize = maxInboundMessageSize;
+            return this;
+        }
+
+        public Builder setPoolSize(@Nullable Integer poolSize) {
+            checkArgument(poolSize == null || poolSize > 0, "poolSize must be positive");
+            this.poolSize = poolSize;
+            return this;
+        }
+
+        public Builder setMethodPolicies(@Nullable Map<String, MethodPolicy> methodPolicies) {
+            this.methodPolicies = methodPolicies == null ? null : new LinkedHashMap<>(methodPolicies);
+            return this;
+        }
+
+        public Builder setRetryBudgetMaxTokens(@Nullable Double retryBudgetMaxTokens) {
+            checkArgument(retryBudgetMaxTokens == null || retryBudgetMaxTokens > 0 && retryBudgetMaxTokens <= 1000,
+                    "retryBudgetMaxTokens must be in (0, 1000]");
+            this.retryBudgetMaxTokens = retryBudgetMaxTokens;
+            return this;
+        }
+
+        public Builder setRetryBudgetTokenRatio(@Nullable Double retryBudgetTokenRatio) {
+            checkArgument(retryBudgetTokenRatio == null || retryBudgetTokenRatio > 0,
+                    "retryBudgetTokenRatio must be positive");
+            this.retryBudgetTokenRatio = retryBudgetTokenRatio;
+            return this;
+        }
+
+        public Builder setDeadlineMargin(@Nullable Duration deadlineMargin) {
+            checkArgument(deadlineMargin == null || !deadlineMargin.isNegative(),
+                    "deadlineMargin must not be negative");
+            this.deadlineMargin = deadlineMargin;
+            return this;
+        }
+
+        public Builder setOutlierDetection(@Nullable OutlierDetection outlierDetection) {
+            this.outlierDetection = outlierDetection;
+            return this;
+        }
+
+        public Builder setConsistentHash(@Nullable ConsistentHash consistentHash) {
+            this.consistentHash = consistentHash;
+            return this;
+        }
+
+        public Builder setHealthCheckServiceName(@Nullable String healthCheckServiceName) {
+            this.healthCheckServiceName = healthCheckServiceName;
+            return this;
+        }
+
+        public Builder setCacheTtls(@Nullable Map<String, Duration> cacheTtls) {
+            checkArgument(cacheTtls == null
+                            || cacheTtls.values().stream().noneMatch(ttl -> ttl.isNegative() || ttl.isZero()),
+                    "cache ttls must be positive");
+            this.cacheTtls = cacheTtls == null ? null : new LinkedHashMap<>(cacheTtls);
+            return this;
+        }
+
+        public Builder setCacheMaxBytes(@Nullable Long cacheMaxBytes) {
+            checkArgument(cacheMaxBytes == null || cacheMaxBytes > 0, "cacheMaxBytes must be positive");
+            this.cacheMaxBytes = cacheMaxBytes;
+            return this;
+        }
+
+        public Builder setZeroCopyThreshold(@Nullable Integer zeroCopyThreshold) {
+            checkArgument(zeroCopyThreshold == null || zeroCopyThreshold >= 0, "zeroCopyThreshold must not be negative");
+            this.zeroCopyThreshold = zeroCopyThreshold;
+            return this;
+        }
+
+        public Builder setCompressionPolicies(@Nullable Map<String, CompressionPolicy> compressionPolicies) {
+            this.compressionPolicies = compressionPolicies == null ? null : new LinkedHashMap<>(compressionPolicies);
+            return this;
+        }
+
+        public ChannelOptions build() {
+            return new ChannelOptions(this);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.radishframework.grpc.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.grpc.InternalChannelz;
+import io.grpc.InternalChannelz.ChannelStats;
+import io.grpc.InternalInstrumented;
+import io.grpc.InternalWithLogId;
+
+/**
+ * Describes the channels of a target from channelz: state, call counts and the subchannels with
+ * their addresses and states
+ */
+final class ChannelStatusWriter {
+    private static final long STATS_TIMEOUT_MILLIS = 1000;
+
+    private ChannelStatusWriter() {
+    }
+
+    static void write(StringBuilder out, String target) {
+        final InternalChannelz channelz = InternalChannelz.instance();
+        for (ChannelStats stats : rootChannels(channelz, target)) {
+            out.append("  channel ").append(stats.state)
+                    .append(" calls started=").append(stats.callsStarted)
+                    .append(" succeeded=").append(stats.callsSucceeded)
+                    .append(" failed=").append(stats.callsFailed)
+                    .append('\n');
+            for (InternalWithLogId subchannelId : stats.subchannels) {
+                final InternalInstrumented<ChannelStats> subchannel =
+                        channelz.getSubchannel(InternalChannelz.id(subchannelId));
+                final ChannelStats subchannelStats = subchannel == null ? null : statsOf(subchannel);
+                if (subchannelStats != null) {
+                    out.append("    subchannel ").append(subchannelStats.target)
+                            .append(' ').append(subchannelStats.state)
+                            .append(" calls started=").append(subchannelStats.callsStarted)
+                            .append(" failed=").append(subchannelStats.callsFailed)
+                            .append('\n');
+                }
+            }
+        }
+    }
+
+    private static List<ChannelStats> rootChannels(InternalChannelz channelz, String target) {
+        final List<ChannelStats> channels = new ArrayList<>();
+        long fromId = 0;
+        while (true) {
+            final InternalChannelz.RootChannelList list = channelz.getRootChannels(fromId, 100);
+            for (InternalInstrumented<ChannelStats> channel : list.channels) {
+                fromId = InternalChannelz.id(channel) + 1;
+                final ChannelStats stats = statsOf(channel);
+                if (stats != null && target.equals(stats.target)) {
+                    channels.add(stats);
+                }
+            }
+            if (list.end || list.channels.isEmpty()) {
+                return channels;
+            }
+        }
+    }
+
+    private static ChannelStats statsOf(InternalInstrumented<ChannelStats> channel) {
+        try {
+            return channel.getStats().get(STATS_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.radishframework.grpc.client;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import com.radishframework.grpc.common.CompressionPolicy;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * Compresses the requests of the methods with a {@link CompressionPolicy}, the requests under the
+ * size threshold of the policy are sent uncompressed. The calls made with a compressor keep it.
+ * <p>
+ * The codec of a policy is only used once the servers advertised it in the grpc-accept-encoding
+ * header of their responses: the requests are compressed with gzip, which every grpc server
+ * accepts, until then, and sent uncompressed to servers accepting neither. The codec is chosen
+ * before the backend of the call is picked, the last encodings advertised by a backend of the
+ * channel apply to all of them.
+ */
+public class CompressionClientInterceptor implements ClientInterceptor {
+    private static final Metadata.Key<String> ACCEPT_ENCODING_KEY =
+            Metadata.Key.of("grpc-accept-encoding", Metadata.ASCII_STRING_MARSHALLER);
+    private static final String GZIP = "gzip";
+
+    private final Map<String, CompressionPolicy> policies;
+    private final ConcurrentHashMap<String, CompressionPolicy> policyByMethod = new ConcurrentHashMap<>();
+    // the last grpc-accept-encoding header of the servers, and its encodings, null until a response
+    @Nullable
+    private volatile AcceptedEncodings acceptedEncodings;
+
+    /**
+     * @param policies keyed by "package.Service/Method", "package.Service" or "*"
+     */
+    public CompressionClientInterceptor(Map<String, CompressionPolicy> policies) {
+        this.policies = Map.copyOf(policies);
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+            MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        if (callOptions.getCompressor() != null) {
+            return next.newCall(method, callOptions);
+        }
+        final CompressionPolicy policy = policyByMethod.computeIfAbsent(method.getFullMethodName(), name -> {
+            final CompressionPolicy found = CompressionPolicy.lookup(policies, method);
+            return found == null ? CompressionPolicy.NONE : found;
+        });
+        if (!policy.isEnabled()) {
+            return next.newCall(method, callOptions);
+        }
+        final String codec = codec(policy.getCodec());
+        final ClientCall<ReqT, RespT> call =
+                next.newCall(method, codec == null ? callOptions : callOptions.withCompression(codec));
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(call) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(
+                        responseListener) {
+                    @Override
+                    public void onHeaders(Metadata headers) {
+                        update(headers);
+                        super.onHeaders(headers);
+                    }
+
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        // the headers of a trailers only response, e.g. a rejected encoding
+                        update(trailers);
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+
+            @Override
+            public void sendMessage(ReqT message) {
+                if (codec != null && policy.getMinMessageSize() > 0) {
+                    setMessageCompression(policy.shouldCompress(message));
+                }
+                super.sendMessage(message);
+            }
+        };
+    }
+
+    /**
+     * @return the codec of the policy if the servers accept it, else gzip if they accept it, null
+     * to send the requests uncompressed
+     */
+    @Nullable
+    private String codec(String policyCodec) {
+        final AcceptedEncodings accepted = acceptedEncodings;
+        if (accepted == null) {
+            return GZIP;
+        }
+        if (accepted.encodings.contains(policyCodec)) {
+            return policyCodec;
+        }
+        return accepted.encodings.contains(GZIP) ? GZIP : null;
+    }
+
+    private void update(Metadata headers) {
+        final String header = headers.get(ACCEPT_ENCODING_KEY);
+        if (header == null) {
+            return;
+        }
+        final AcceptedEncodings accepted = acceptedEncodings;
+        if (accepted == null || !accepted.header.equals(header)) {
+            acceptedEncodings = new AcceptedEncodings(header);
+        }
+    }
+
+    private static final class AcceptedEncodings {
+        private final String header;
+        private final Set<String> encodings;
+
+        AcceptedEncodings(String header) {
+            this.header = header;
+            this.encodings = ImmutableSet.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(header));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.radishframework.grpc.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.grpc.CallOptions;
+import io.grpc.internal.JsonUtil;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Where the {@link ConsistentHashLoadBalancerProvider} takes the hash key of a call from, and how
+ * much more load than the average a backend takes before its keys spill over to the next backends
+ * of the ring.
+ * <p>
+ * The key of a call is, in this order, its {@link #KEY} call option, the field of its first
+ * request message set by {@link #getKeyFields()}, or its {@link #getHashHeader()} header. The
+ * calls without key go to a random backend.
+ */
+public final class ConsistentHash {
+    public static final ConsistentHash DEFAULT = newBuilder().build();
+
+    /**
+     * Hash key of a call, e.g. {@code stub.withOption(ConsistentHash.KEY, userId)}
+     */
+    public static final CallOptions.Key<String> KEY = CallOptions.Key.create("radish-hash-key");
+
+    private final String hashHeader;
+    private final Map<String, String> keyFields;
+    private final double loadFactor;
+    private final int pointsPerBackend;
+
+    private ConsistentHash(Builder builder) {
+        this.hashHeader = builder.hashHeader;
+        this.keyFields = Map.copyOf(builder.keyFields);
+        this.loadFactor = builder.loadFactor;
+        this.pointsPerBackend = builder.pointsPerBackend;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Metadata header holding the hash key
+     */
+    public String getHashHeader() {
+        return hashHeader;
+    }
+
+    /**
+     * Request field holding the hash key, keyed by "package.Service/Method" or "package.Service",
+     * the field is looked up by name in the protobuf request
+     */
+    public Map<String, String> getKeyFields() {
+        return keyFields;
+    }
+
+    /**
+     * Times the average outstanding calls a backend takes before the next backends of the ring
+     * get its keys, 0 to never spill over
+     */
+    public double getLoadFactor() {
+        return loadFactor;
+    }
+
+    /**
+     * Points of every backend on the ring, more points spread the keys more evenly
+     */
+    public int getPointsPerBackend() {
+        return pointsPerBackend;
+    }
+
+    /**
+     * @return the load balancing config of the consistent hash policy, without the key fields
+     * read by the channel interceptor
+     */
+    Map<String, Object> toConfig() {
+        final Map<String, Object> config = new LinkedHashMap<>();
+        config.put("hashHeader", hashHeader);
+        config.put("loadFactor", loadFactor);
+        config.put("pointsPerBackend", (double) pointsPerBackend);
+        return config;
+    }
+
+    /**
+     * @param config load balancing config, the missing values are the defaults
+     */
+    static ConsistentHash fromConfig(Map<String, ?> config) {
+        final Builder builder = newBuilder();
+        final String hashHeader = JsonUtil.getString(config, "hashHeader");
+        if (hashHeader != null) {
+            builder.setHashHeader(hashHeader);
+        }
+        final Double loadFactor = JsonUtil.getNumber(config, "loadFactor");
+        if (loadFactor != null) {
+            builder.setLoadFactor(loadFactor);
+        }
+        final Integer pointsPerBackend = JsonUtil.getNumberAsInteger(config, "pointsPerBackend");
+        if (pointsPerBackend != null) {
+            builder.setPointsPerBackend(pointsPerBackend);
+        }
+        return builder.build();
+    }
+
+    public static final class Builder {
+        private String hashHeader = "radish-hash-key";
+        private Map<String, String> keyFields = Map.of();
+        private double loadFactor = 1.25;
+        private int pointsPerBackend = 100;
+
+        private Builder() {
+        }
+
+        public Builder setHashHeader(String hashHeader) {
+            checkArgument(!hashHeader.isEmpty() && !hashHeader.startsWith(":") && !hashHeader.endsWith("-bin"),
+                    "hashHeader must be an ascii header");
+            this.hashHeader = hashHeader;
+            return this;
+        }
+
+        public Builder setKeyFields(Map<String, String> keyFields) {
+            this.keyFields = new LinkedHashMap<>(keyFields);
+            return this;
+        }
+
+        public Builder setLoadFactor(double loadFactor) {
+            checkArgument(loadFactor == 0 || loadFactor >= 1, "loadFactor must be 0 or at least 1");
+            this.loadFactor = loadFactor;
+            return this;
+        }
+
+        public Builder setPointsPerBackend(int pointsPerBackend) {
+            checkArgument(pointsPerBackend > 0 && pointsPerBackend <= 10_000,
+                    "pointsPerBackend must be in [1, 10000]");
+            this.pointsPerBackend = pointsPerBackend;
+            return this;
+        }
+
+        public ConsistentHash build() {
+            return new ConsistentHash(this);
+        }
+    }
+}
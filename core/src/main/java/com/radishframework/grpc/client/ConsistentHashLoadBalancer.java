@@ -0,0 +1,347 @@
+package com.radishframework.grpc.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import io.grpc.Attributes;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+/**
+ * Picks the backend of the hash key of a call on a ring of backends, consistent hashing with
+ * bounded loads: every backend owns {@link ConsistentHash#getPointsPerBackend()} points of the
+ * ring, hashed from its address, and a key goes to the owner of the first point after its hash.
+ * <p>
+ * The points of a backend only depend on its address: a backend added by the
+ * {@link KubernetesNameResolver} takes about 1/N of the keys from the others, a removed one hands
+ * its keys over to the next points, the other keys stay where they are. The backends not ready
+ * keep their points and are skipped. A backend with more outstanding calls than the load factor
+ * times the average is skipped too, its keys spill over to the next backends of the ring until it
+ * catches up. Backends reported as terminating are only picked if no other backend is ready.
+ */
+final class ConsistentHashLoadBalancer extends LoadBalancer {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final Helper helper;
+    // backends by their addresses without attributes, attributes change with the pod conditions
+    private final Map<EquivalentAddressGroup, Backend> backends = new HashMap<>();
+    // outstanding calls of all the backends, for the bound of the load
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private ConsistentHash config = ConsistentHash.DEFAULT;
+    private Metadata.Key<String> hashHeader =
+            Metadata.Key.of(config.getHashHeader(), Metadata.ASCII_STRING_MARSHALLER);
+    private Ring ring = new Ring(List.of(), config.getPointsPerBackend());
+    private ConnectivityState currentState;
+
+    ConsistentHashLoadBalancer(Helper helper) {
+        this.helper = helper;
+    }
+
+    @Override
+    public void handleResolvedAddresses(ResolvedAddresses resolvedAddresses) {
+        final ConsistentHash newConfig = resolvedAddresses.getLoadBalancingPolicyConfig() instanceof ConsistentHash
+                ? (ConsistentHash) resolvedAddresses.getLoadBalancingPolicyConfig()
+                : ConsistentHash.DEFAULT;
+        boolean ringChanged = newConfig.getPointsPerBackend() != config.getPointsPerBackend();
+        if (!newConfig.getHashHeader().equals(config.getHashHeader())) {
+            hashHeader = Metadata.Key.of(newConfig.getHashHeader(), Metadata.ASCII_STRING_MARSHALLER);
+        }
+        config = newConfig;
+
+        final Set<EquivalentAddressGroup> current = new HashSet<>();
+        for (EquivalentAddressGroup server : resolvedAddresses.getAddresses()) {
+            final EquivalentAddressGroup key = new EquivalentAddressGroup(server.getAddresses());
+            current.add(key);
+            final Backend existing = backends.get(key);
+            if (existing != null) {
+                if (!existing.server.equals(server)) {
+                    existing.update(server);
+                    existing.subchannel.updateAddresses(List.of(server));
+                }
+                continue;
+            }
+
+            final Subchannel subchannel = helper.createSubchannel(CreateSubchannelArgs.newBuilder()
+                    .setAddresses(server)
+                    .setAttributes(Attributes.EMPTY)
+                    .build());
+            final Backend backend = new Backend(key, subchannel, outstanding);
+            backend.update(server);
+            backends.put(key, backend);
+            ringChanged = true;
+            subchannel.start(stateInfo -> processSubchannelState(backend, stateInfo));
+            subchannel.requestConnection();
+        }
+
+        ringChanged |= backends.entrySet().removeIf(entry -> {
+            if (!current.contains(entry.getKey())) {
+                entry.getValue().removed = true;
+                entry.getValue().subchannel.shutdown();
+                return true;
+            }
+            return false;
+        });
+        if (ringChanged) {
+            ring = new Ring(backends.values(), config.getPointsPerBackend());
+        }
+        updateBalancingState();
+    }
+
+    @Override
+    public void handleNameResolutionError(Status error) {
+        if (currentState != ConnectivityState.READY) {
+            updateBalancingState(ConnectivityState.TRANSIENT_FAILURE, new FixedResultPicker(error));
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        for (Backend backend : backends.values()) {
+            backend.removed = true;
+            backend.subchannel.shutdown();
+        }
+        backends.clear();
+    }
+
+    private void processSubchannelState(Backend backend, ConnectivityStateInfo stateInfo) {
+        if (backend.removed) {
+            return;
+        }
+        if (stateInfo.getState() == ConnectivityState.TRANSIENT_FAILURE
+                || stateInfo.getState() == ConnectivityState.IDLE) {
+            helper.refreshNameResolution();
+        }
+        if (stateInfo.getState() == ConnectivityState.IDLE) {
+            backend.subchannel.requestConnection();
+        }
+        backend.stateInfo = stateInfo;
+        updateBalancingState();
+    }
+
+    private void updateBalancingState() {
+        final List<Backend> ready = new ArrayList<>(backends.size());
+        final List<Backend> readyTerminating = new ArrayList<>();
+        boolean connecting = false;
+        Status failure = null;
+        for (Backend backend : backends.values()) {
+            switch (backend.stateInfo.getState()) {
+                case READY:
+                    (backend.terminating ? readyTerminating : ready).add(backend);
+                    break;
+                case CONNECTING:
+                case IDLE:
+                    connecting = true;
+                    break;
+                case TRANSIENT_FAILURE:
+                    failure = backend.stateInfo.getStatus();
+                    break;
+                default:
+            }
+        }
+
+        if (ready.isEmpty()) {
+            ready.addAll(readyTerminating);
+        }
+        if (!ready.isEmpty()) {
+            updateBalancingState(ConnectivityState.READY,
+                    new Picker(ring, ready, hashHeader, config.getLoadFactor(), outstanding));
+        } else if (connecting || failure == null) {
+            updateBalancingState(ConnectivityState.CONNECTING, new FixedResultPicker(null));
+        } else {
+            updateBalancingState(ConnectivityState.TRANSIENT_FAILURE, new FixedResultPicker(failure));
+        }
+    }
+
+    private void updateBalancingState(ConnectivityState state, SubchannelPicker picker) {
+        currentState = state;
+        helper.updateBalancingState(state, picker);
+    }
+
+    static long hash(String key) {
+        return HASH.hashString(key, StandardCharsets.UTF_8).asLong();
+    }
+
+    private static final class Backend {
+        private final String address;
+        private final Subchannel subchannel;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final ClientStreamTracer.Factory tracerFactory;
+
+        // only accessed from the channel's synchronization context
+        private ConnectivityStateInfo stateInfo = ConnectivityStateInfo.forNonError(ConnectivityState.IDLE);
+        private EquivalentAddressGroup server;
+        private boolean terminating;
+        private boolean removed;
+
+        Backend(EquivalentAddressGroup key, Subchannel subchannel, AtomicInteger totalOutstanding) {
+            this.address = key.getAddresses().toString();
+            this.subchannel = subchannel;
+            this.tracerFactory = new ClientStreamTracer.Factory() {
+                @Override
+                public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+                    return new RequestTracer(outstanding, totalOutstanding);
+                }
+            };
+        }
+
+        void update(EquivalentAddressGroup server) {
+            this.server = server;
+            this.terminating = Boolean.TRUE.equals(server.getAttributes().get(KubernetesAttributes.TERMINATING));
+        }
+    }
+
+    /**
+     * Counts the request as outstanding on its backend and on the balancer until it is closed
+     */
+    private static final class RequestTracer extends ClientStreamTracer {
+        private final AtomicInteger outstanding;
+        private final AtomicInteger totalOutstanding;
+
+        RequestTracer(AtomicInteger outstanding, AtomicInteger totalOutstanding) {
+            this.outstanding = outstanding;
+            this.totalOutstanding = totalOutstanding;
+            outstanding.incrementAndGet();
+            totalOutstanding.incrementAndGet();
+        }
+
+        @Override
+        public void streamClosed(Status status) {
+            outstanding.decrementAndGet();
+            totalOutstanding.decrementAndGet();
+        }
+    }
+
+    /**
+     * The points of all the backends sorted by hash, the ready ones or not
+     */
+    private static final class Ring {
+        private final long[] hashes;
+        private final Backend[] owners;
+
+        Ring(Iterable<Backend> backends, int pointsPerBackend) {
+            final List<Backend> members = new ArrayList<>();
+            backends.forEach(members::add);
+            final int size = members.size() * pointsPerBackend;
+            // the points are numbered backend by backend, the numbers are sorted by hash
+            final long[] pointHashes = new long[size];
+            final Integer[] order = new Integer[size];
+            for (int b = 0; b < members.size(); b++) {
+                final String address = members.get(b).address;
+                for (int i = 0; i < pointsPerBackend; i++) {
+                    final int point = b * pointsPerBackend + i;
+                    pointHashes[point] = hash(address + '#' + i);
+                    order[point] = point;
+                }
+            }
+            Arrays.sort(order, (a, c) -> Long.compare(pointHashes[a], pointHashes[c]));
+            this.hashes = new long[size];
+            this.owners = new Backend[size];
+            for (int i = 0; i < size; i++) {
+                hashes[i] = pointHashes[order[i]];
+                owners[i] = members.get(order[i] / pointsPerBackend);
+            }
+        }
+
+        /**
+         * @return the index of the first point at or after {@code hash}, wrapping around
+         */
+        int indexOf(long hash) {
+            int index = Arrays.binarySearch(hashes, hash);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return index == hashes.length ? 0 : index;
+        }
+    }
+
+    private static final class Picker extends SubchannelPicker {
+        private final Ring ring;
+        private final Backend[] ready;
+        private final Set<Backend> readySet;
+        private final Metadata.Key<String> hashHeader;
+        private final double loadFactor;
+        private final AtomicInteger outstanding;
+
+        Picker(Ring ring, List<Backend> ready, Metadata.Key<String> hashHeader, double loadFactor,
+               AtomicInteger outstanding) {
+            this.ring = ring;
+            this.ready = ready.toArray(new Backend[0]);
+            this.readySet = new HashSet<>(ready);
+            this.hashHeader = hashHeader;
+            this.loadFactor = loadFactor;
+            this.outstanding = outstanding;
+        }
+
+        @Override
+        public PickResult pickSubchannel(PickSubchannelArgs args) {
+            String key = args.getCallOptions().getOption(ConsistentHash.KEY);
+            if (key == null) {
+                key = args.getHeaders().get(hashHeader);
+            }
+            final Backend picked;
+            if (ready.length == 1) {
+                picked = ready[0];
+            } else if (key == null) {
+                picked = ready[ThreadLocalRandom.current().nextInt(ready.length)];
+            } else {
+                picked = pick(hash(key));
+            }
+            return PickResult.withSubchannel(picked.subchannel, picked.tracerFactory);
+        }
+
+        private Backend pick(long hash) {
+            final int limit = loadFactor == 0 ? Integer.MAX_VALUE
+                    : (int) Math.ceil(loadFactor * (outstanding.get() + 1) / ready.length);
+            final int start = ring.indexOf(hash);
+            Backend first = null;
+            for (int i = 0; i < ring.owners.length; i++) {
+                final Backend owner = ring.owners[(start + i) % ring.owners.length];
+                if (!readySet.contains(owner)) {
+                    continue;
+                }
+                if (owner.outstanding.get() < limit) {
+                    return owner;
+                }
+                if (first == null) {
+                    first = owner;
+                }
+            }
+            // all over the limit by the time they were looked at, or ready and not on the ring yet
+            return first != null ? first : ready[ThreadLocalRandom.current().nextInt(ready.length)];
+        }
+    }
+
+    private static final class FixedResultPicker extends SubchannelPicker {
+        private final PickResult result;
+
+        /**
+         * @param error null while connecting, the pick is buffered until a backend is ready
+         */
+        FixedResultPicker(Status error) {
+            this.result = error == null ? PickResult.withNoResult() : PickResult.withError(error);
+        }
+
+        @Override
+        public PickResult pickSubchannel(PickSubchannelArgs args) {
+            return result;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.radishframework.grpc.client;
+
+import java.util.Map;
+
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancerProvider;
+import io.grpc.NameResolver;
+import io.grpc.Status;
+import io.grpc.services.HealthCheckingLoadBalancerUtil;
+
+/**
+ * Sends the calls with the same hash key to the same backend, see {@link ConsistentHash}, e.g.
+ * for the services caching by key. Configured by the load balancing config of the service config:
+ * {"radish_consistent_hash": {"hashHeader": "x-user-id", "loadFactor": 1.25}}
+ */
+public final class ConsistentHashLoadBalancerProvider extends LoadBalancerProvider {
+    public static final String POLICY_NAME = "radish_consistent_hash";
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public int getPriority() {
+        return 5;
+    }
+
+    @Override
+    public String getPolicyName() {
+        return POLICY_NAME;
+    }
+
+    @Override
+    public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
+        // checks the health of the backends when the service config asks for it
+        return HealthCheckingLoadBalancerUtil.newHealthCheckingLoadBalancer(new LoadBalancer.Factory() {
+            @Override
+            public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
+                return new ConsistentHashLoadBalancer(helper);
+            }
+        }, helper);
+    }
+
+    @Override
+    public NameResolver.ConfigOrError parseLoadBalancingPolicyConfig(Map<String, ?> rawConfig) {
+        try {
+            return NameResolver.ConfigOrError.fromConfig(ConsistentHash.fromConfig(rawConfig));
+        } catch (RuntimeException e) {
+            return NameResolver.ConfigOrError.fromError(
+                    Status.INTERNAL.withCause(e).withDescription("Invalid " + POLICY_NAME + " config"));
+        }
+    }
+}
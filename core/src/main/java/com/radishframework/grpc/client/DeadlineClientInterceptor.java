@@ -0,0 +1,39 @@
+package com.radishframework.grpc.client;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.MethodDescriptor;
+
+/**
+ * Gives the deadline of the incoming call, the one of the current {@link Context}, to the outgoing
+ * calls, less a margin left to the caller to handle their failure. The calls made with an earlier
+ * deadline keep it.
+ */
+public class DeadlineClientInterceptor implements ClientInterceptor {
+    private final long marginNanos;
+
+    public DeadlineClientInterceptor(Duration margin) {
+        this.marginNanos = margin.toNanos();
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+            MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        final Deadline incoming = Context.current().getDeadline();
+        if (incoming != null) {
+            final Deadline propagated = marginNanos == 0 ? incoming : incoming.offset(-marginNanos, TimeUnit.NANOSECONDS);
+            if (callOptions.getDeadline() == null || propagated.isBefore(callOptions.getDeadline())) {
+                // an expired deadline fails the call right away, without sending it
+                callOptions = callOptions.withDeadline(propagated);
+            }
+        }
+        return next.newCall(method, callOptions);
+    }
+}
@@ -0,0 +1,178 @@
+package com.radishframework.grpc.client;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.grpc.EquivalentAddressGroup;
+
+/**
+ * Keeps the last known addresses of every kubernetes target on disk, so a restarted process can
+ * route before the api server answers.
+ * <p>
+ * One file per {@code kubernetes:///{namespace}/{service}/{port}} target: a header (magic,
+ * version, address count) followed by the length prefixed ip of every address. Files are replaced
+ * atomically and read through a memory mapping.
+ * <p>
+ * The snapshots decide where the calls go: the directory is created readable by the user of the
+ * process only, and the files owned by another user or writable by others are ignored.
+ */
+public final class EndpointsSnapshotStore {
+    private static final Logger log = LoggerFactory.getLogger(EndpointsSnapshotStore.class);
+
+    private static final int MAGIC = 0x52444550; // "RDEP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final Set<PosixFilePermission> WRITABLE_BY_OTHERS =
+            Set.of(PosixFilePermission.GROUP_WRITE, PosixFilePermission.OTHERS_WRITE);
+
+    private final Path directory;
+    // writes are serialized and kept off the channel's synchronization context
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("radish-endpoints-snapshot").build());
+
+    public EndpointsSnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the addresses of the last snapshot, null if there is none or it is unreadable
+     */
+    @Nullable
+    public List<EquivalentAddressGroup> read(String namespace, String name, int port) {
+        final Path file = file(namespace, name, port);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (!isPrivate(file)) {
+                log.warn("Ignoring endpoints snapshot {}, not private to {}", file, System.getProperty("user.name"));
+                return null;
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.warn("Ignoring invalid endpoints snapshot {}", file);
+                return null;
+            }
+
+            final int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining()) {
+                log.warn("Ignoring invalid endpoints snapshot {}", file);
+                return null;
+            }
+            final List<EquivalentAddressGroup> servers = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final byte[] ip = new byte[buffer.get() & 0xff];
+                buffer.get(ip);
+                servers.add(new EquivalentAddressGroup(new InetSocketAddress(InetAddress.getByAddress(ip), port)));
+            }
+            return servers;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | BufferUnderflowException e) {
+            log.warn("Unable to read endpoints snapshot {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Replace the snapshot of the target asynchronously
+     */
+    public void write(String namespace, String name, int port, List<EquivalentAddressGroup> servers) {
+        final List<InetAddress> addresses = new ArrayList<>(servers.size());
+        for (EquivalentAddressGroup server : servers) {
+            for (SocketAddress address : server.getAddresses()) {
+                if (address instanceof InetSocketAddress && ((InetSocketAddress) address).getAddress() != null) {
+                    addresses.add(((InetSocketAddress) address).getAddress());
+                }
+            }
+        }
+
+        writeExecutor.execute(() -> {
+            final Path file = file(namespace, name, port);
+            Path tmp = null;
+            try {
+                final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + addresses.size() * 17);
+                buffer.putInt(MAGIC).putInt(VERSION).putInt(addresses.size());
+                for (InetAddress address : addresses) {
+                    final byte[] ip = address.getAddress();
+                    buffer.put((byte) ip.length).put(ip);
+                }
+                buffer.flip();
+
+                createDirectory();
+                tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                log.warn("Unable to write endpoints snapshot {}", file, e);
+                if (tmp != null) {
+                    try {
+                        Files.deleteIfExists(tmp);
+                    } catch (IOException ignored) {
+                        // best effort
+                    }
+                }
+            }
+        });
+    }
+
+    private void createDirectory() throws IOException {
+        if (Files.isDirectory(directory)) {
+            return;
+        }
+        if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createDirectories(directory,
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } else {
+            Files.createDirectories(directory);
+        }
+    }
+
+    /**
+     * @return whether the file is owned by the user of the process and only writable by it
+     */
+    private static boolean isPrivate(Path file) throws IOException {
+        final UserPrincipal user = file.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!Files.getOwner(file).equals(user)) {
+            return false;
+        }
+        if (!file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return true;
+        }
+        final Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(file);
+        return WRITABLE_BY_OTHERS.stream().noneMatch(permissions::contains);
+    }
+
+    private Path file(String namespace, String name, int port) {
+        // namespace and service names are dns labels, they can't contain a path separator
+        return directory.resolve(namespace + "." + name + "." + port + ".endpoints");
+    }
+}
@@ -0,0 +1,168 @@
+package com.radishframework.grpc.client;
+
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+
+/**
+ * Sets the {@link ConsistentHash#KEY} of the calls of the methods with a key field, from that
+ * field of their first request message. The calls are started once their first message is sent,
+ * as the backend is picked at the start. The calls made with a key keep it.
+ */
+public class HashKeyClientInterceptor implements ClientInterceptor {
+    private final Map<String, String> keyFields;
+
+    /**
+     * @param keyFields protobuf field names, keyed by "package.Service/Method" or "package.Service"
+     */
+    public HashKeyClientInterceptor(Map<String, String> keyFields) {
+        this.keyFields = Map.copyOf(keyFields);
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+            MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        if (callOptions.getOption(ConsistentHash.KEY) != null) {
+            return next.newCall(method, callOptions);
+        }
+        String field = keyFields.get(method.getFullMethodName());
+        if (field == null) {
+            field = keyFields.get(method.getServiceName());
+        }
+        if (field == null) {
+            return next.newCall(method, callOptions);
+        }
+        return new KeyedCall<>(method, callOptions, next, field);
+    }
+
+    @Nullable
+    static String keyOf(Object message, String field) {
+        if (!(message instanceof Message)) {
+            return null;
+        }
+        final Message request = (Message) message;
+        final Descriptors.FieldDescriptor descriptor = request.getDescriptorForType().findFieldByName(field);
+        if (descriptor == null || descriptor.isRepeated()) {
+            return null;
+        }
+        if ((descriptor.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE
+                || descriptor.getContainingOneof() != null) && !request.hasField(descriptor)) {
+            return null;
+        }
+        // an empty proto3 string is unset
+        final String key = String.valueOf(request.getField(descriptor));
+        return key.isEmpty() ? null : key;
+    }
+
+    /**
+     * Holds the start of the call until its first message, or until it is half closed or
+     * cancelled before
+     */
+    private static final class KeyedCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+        private final MethodDescriptor<ReqT, RespT> method;
+        private final CallOptions callOptions;
+        private final Channel next;
+        private final String field;
+
+        // guarded by this until the call is started, the delegate is final then
+        private Listener<RespT> listener;
+        private Metadata headers;
+        private int requested;
+        private Boolean messageCompression;
+        private volatile ClientCall<ReqT, RespT> delegate;
+
+        KeyedCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next, String field) {
+            this.method = method;
+            this.callOptions = callOptions;
+            this.next = next;
+            this.field = field;
+        }
+
+        @Override
+        public synchronized void start(Listener<RespT> listener, Metadata headers) {
+            this.listener = listener;
+            this.headers = headers;
+        }
+
+        @Override
+        public void request(int numMessages) {
+            synchronized (this) {
+                if (delegate == null) {
+                    requested += numMessages;
+                    return;
+                }
+            }
+            delegate.request(numMessages);
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+            startIfNeeded(message);
+            delegate.sendMessage(message);
+        }
+
+        @Override
+        public void halfClose() {
+            startIfNeeded(null);
+            delegate.halfClose();
+        }
+
+        @Override
+        public void cancel(@Nullable String message, @Nullable Throwable cause) {
+            startIfNeeded(null);
+            delegate.cancel(message, cause);
+        }
+
+        @Override
+        public boolean isReady() {
+            // the first message is sent right away
+            final ClientCall<ReqT, RespT> call = delegate;
+            return call == null || call.isReady();
+        }
+
+        @Override
+        public synchronized void setMessageCompression(boolean enabled) {
+            if (delegate == null) {
+                messageCompression = enabled;
+            } else {
+                delegate.setMessageCompression(enabled);
+            }
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            final ClientCall<ReqT, RespT> call = delegate;
+            return call == null ? Attributes.EMPTY : call.getAttributes();
+        }
+
+        private synchronized void startIfNeeded(@Nullable ReqT firstMessage) {
+            if (delegate != null) {
+                return;
+            }
+            final String key = firstMessage == null ? null : keyOf(firstMessage, field);
+            final ClientCall<ReqT, RespT> call = next.newCall(method,
+                    key == null ? callOptions : callOptions.withOption(ConsistentHash.KEY, key));
+            if (listener != null) {
+                call.start(listener, headers);
+                if (messageCompression != null) {
+                    call.setMessageCompression(messageCompression);
+                }
+                if (requested > 0) {
+                    call.request(requested);
+                }
+            }
+            delegate = call;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.radishframework.grpc.client;
+
+import io.grpc.Attributes;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+
+/**
+ * Attributes attached by the {@link KubernetesNameResolver}, load balancers use them to prefer
+ * backends of the local zone and to drain terminating pods.
+ */
+public final class KubernetesAttributes {
+
+    /**
+     * Topology zone of the backend, only known with endpoint slice discovery
+     */
+    @EquivalentAddressGroup.Attr
+    public static final Attributes.Key<String> ZONE = Attributes.Key.create("radish.kubernetes.zone");
+
+    @EquivalentAddressGroup.Attr
+    public static final Attributes.Key<String> NODE_NAME = Attributes.Key.create("radish.kubernetes.nodeName");
+
+    @EquivalentAddressGroup.Attr
+    public static final Attributes.Key<Boolean> READY = Attributes.Key.create("radish.kubernetes.ready");
+
+    /**
+     * The pod is shutting down but still serves, it should only get traffic if nothing else is left
+     */
+    @EquivalentAddressGroup.Attr
+    public static final Attributes.Key<Boolean> TERMINATING = Attributes.Key.create("radish.kubernetes.terminating");
+
+    /**
+     * Zone of the client itself, set on the resolution result if it is configured
+     */
+    @NameResolver.ResolutionResultAttr
+    public static final Attributes.Key<String> LOCAL_ZONE = Attributes.Key.create("radish.kubernetes.localZone");
+
+    private KubernetesAttributes() {
+    }
+}
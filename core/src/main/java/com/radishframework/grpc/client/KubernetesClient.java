@@ -1,202 +1,215 @@
 package com.radishframework.grpc.client;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.BodySubscribers;
 import java.time.Duration;
-import java.util.Collections;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import javax.annotation.Nullable;
 
 import com.google.common.base.Charsets;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Parser;
+import com.radishframework.grpc.client.proto.V1Discovery.EndpointSlice;
+import com.radishframework.grpc.client.proto.V1Discovery.EndpointSliceList;
 
-import io.kubernetes.client.proto.V1.EndpointSubset;
+import io.kubernetes.client.proto.Runtime.Unknown;
 import io.kubernetes.client.proto.V1.Endpoints;
 import io.kubernetes.client.proto.V1.EndpointsList;
-import io.kubernetes.client.proto.V1.Event;
 
 public class KubernetesClient {
 
+    public static final String EVENT_ADDED = "ADDED";
+    public static final String EVENT_MODIFIED = "MODIFIED";
+    public static final String EVENT_DELETED = "DELETED";
+    public static final String EVENT_BOOKMARK = "BOOKMARK";
+    public static final String EVENT_ERROR = "ERROR";
+
+    static final int HTTP_OK = 200;
+    static final int HTTP_GONE = 410;
+
+    private static final String PROTOBUF_MEDIA_TYPE = "application/vnd.kubernetes.protobuf";
+    // protobuf encoded kubernetes objects are wrapped in a runtime.Unknown prefixed by "k8s\0"
+    private static final ByteString PROTOBUF_MAGIC = ByteString.copyFrom(new byte[] { 0x6b, 0x38, 0x73, 0x00 });
+    private static final String CORE_V1_PATH = "/api/v1";
+    private static final String DISCOVERY_V1_PATH = "/apis/discovery.k8s.io/v1";
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(20);
+    // the api server closes the watch after this, it is resumed from the last seen resourceVersion
+    private static final int WATCH_TIMEOUT_SECONDS = 300;
+
+    // one client for the whole process, every list and watch request shares its connection pool
+    // and selector thread, the watches are multiplexed on one connection if the api server speaks HTTP/2
+    private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(REQUEST_TIMEOUT)
+            .build();
+
     private final String kubeApiUri;
 
     public KubernetesClient(String kubeApiUri) {
         this.kubeApiUri = kubeApiUri;
     }
 
-    public List<EndpointSubset> getEndpointSubsets(String namespace, String name)
-            throws IOException, InterruptedException {
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(this.kubeApiUri + "/api/v1/namespaces/" + namespace + "/endpoints?filedSelector="
-                        + URLEncoder.encode("name=" + name, Charsets.UTF_8)))
-                .header("Accept", "application/vnd.kubernetes.protobuf").version(HttpClient.Version.HTTP_1_1)
-                .timeout(Duration.ofSeconds(20)).GET().build();
-        HttpResponse<byte[]> response = client.send(request, BodyHandlers.ofByteArray());
-
-        List<EndpointSubset> subsets = Collections.emptyList();
-
-        if (response.statusCode() == 200) {
-            EndpointsList endpointsList = EndpointsList.parseFrom(response.body());
-            if (endpointsList.getItemsCount() > 0) {
-                Endpoints endpoints = endpointsList.getItems(0);
-                if (endpoints.getSubsetsCount() > 0) {
-                    subsets = endpoints.getSubsetsList();
-                }
-            }
-        }
+    public String getKubeApiUri() {
+        return kubeApiUri;
+    }
 
-        return subsets;
+    /**
+     * List the endpoints objects of the namespace, or only the one of the service if {@code name}
+     * is not null. The resourceVersion of the returned list can be used to start a watch.
+     */
+    public CompletableFuture<EndpointsList> listEndpoints(String namespace, @Nullable String name) {
+        return list(resourceUri(CORE_V1_PATH, "endpoints", namespace, name, null), EndpointsList.parser());
     }
 
-    public void watchEndpointSubsets(String namespace, String name) {
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(this.kubeApiUri + "/api/v1/namespaces/" + namespace
-                        + "/endpoints?watch=true&filedSelector=" + URLEncoder.encode("name=" + name, Charsets.UTF_8)))
-                .header("Accept", "application/vnd.kubernetes.protobuf").version(HttpClient.Version.HTTP_1_1).GET()
-                .timeout(Duration.ofSeconds(20)).build();
-        client.sendAsync(request, BodyHandlers.ofInputStream()).thenAccept(response -> {
-            ChunkedInputStream in = new ChunkedInputStream(response.body());
-            int size = in.readChunkSize();
-        });
+    /**
+     * Watch the endpoints objects of the namespace, or only the one of the service if {@code name}
+     * is not null, starting after {@code resourceVersion}.
+     */
+    public Watch watchEndpoints(String namespace, @Nullable String name, @Nullable String resourceVersion,
+            Watcher<Endpoints> watcher) {
+        return watch(resourceUri(CORE_V1_PATH, "endpoints", namespace, name, nonNullVersion(resourceVersion)),
+                Endpoints.parser(), watcher);
     }
 
-    private class ChunkedInputStream {
-        /** The inputstream that we're wrapping */
-        private InputStream in;
+    /**
+     * List the discovery.k8s.io endpoint slices of the namespace
+     */
+    public CompletableFuture<EndpointSliceList> listEndpointSlices(String namespace) {
+        return list(resourceUri(DISCOVERY_V1_PATH, "endpointslices", namespace, null, null), EndpointSliceList.parser());
+    }
 
-        /** The chunk size */
-        private int chunkSize;
+    /**
+     * Watch the discovery.k8s.io endpoint slices of the namespace starting after {@code resourceVersion}
+     */
+    public Watch watchEndpointSlices(String namespace, @Nullable String resourceVersion,
+            Watcher<EndpointSlice> watcher) {
+        return watch(resourceUri(DISCOVERY_V1_PATH, "endpointslices", namespace, null, nonNullVersion(resourceVersion)),
+                EndpointSlice.parser(), watcher);
+    }
 
-        /** The current position within the current chunk */
-        private int pos;
+    private <T> CompletableFuture<T> list(URI uri, Parser<T> parser) {
+        final HttpRequest request = newRequest(uri)
+                .timeout(REQUEST_TIMEOUT)
+                .build();
+        return HTTP_CLIENT.sendAsync(request, BodyHandlers.ofInputStream()).thenApply(response -> {
+            try (InputStream body = response.body()) {
+                if (response.statusCode() != HTTP_OK) {
+                    throw new IOException("Unable to list " + uri.getPath() + ", status code: " + response.statusCode());
+                }
+                return parser.parseFrom(unwrap(body));
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
 
-        /** True if we'are at the beginning of stream */
-        private boolean bof = true;
+    /**
+     * The watch stream is a sequence of length prefixed protobuf {@code WatchEvent}s, they are
+     * framed directly from the response body buffers and delivered to the {@code watcher}.
+     */
+    private <T> Watch watch(URI uri, Parser<T> parser, Watcher<T> watcher) {
+        final HttpRequest request = newRequest(uri).build();
+        final WatchEventSubscriber<T> subscriber = new WatchEventSubscriber<>(parser, watcher);
+        HTTP_CLIENT.sendAsync(request, responseInfo -> {
+            if (responseInfo.statusCode() == HTTP_OK) {
+                return BodySubscribers.fromSubscriber(subscriber);
+            }
+            subscriber.closeWithStatus(responseInfo.statusCode());
+            return BodySubscribers.discarding();
+        }).whenComplete((response, t) -> {
+            if (t != null) {
+                subscriber.close(t);
+            }
+        });
+        return subscriber;
+    }
 
-        /** True if we've reached the end of stream */
-        private boolean eof = false;
+    private static String nonNullVersion(@Nullable String resourceVersion) {
+        return resourceVersion == null ? "" : resourceVersion;
+    }
 
-        /** True if this stream is closed */
-        private boolean closed = false;
+    private HttpRequest.Builder newRequest(URI uri) {
+        return HttpRequest.newBuilder()
+                .uri(uri)
+                .header("Accept", PROTOBUF_MEDIA_TYPE)
+                .GET();
+    }
 
-        public ChunkedInputStream(InputStream in) {
-            this.in = in;
+    /**
+     * @param resourceVersion null for a list request, the version to watch from otherwise
+     */
+    private URI resourceUri(String apiPath, String resource, String namespace, @Nullable String name,
+            @Nullable String resourceVersion) {
+        final StringBuilder uri = new StringBuilder(kubeApiUri)
+                .append(apiPath).append("/namespaces/").append(namespace)
+                .append('/').append(resource);
+        char separator = '?';
+        if (name != null) {
+            uri.append(separator).append("fieldSelector=")
+                    .append(URLEncoder.encode("metadata.name=" + name, Charsets.UTF_8));
+            separator = '&';
+        }
+        if (resourceVersion != null) {
+            uri.append(separator).append("watch=true&allowWatchBookmarks=true&timeoutSeconds=")
+                    .append(WATCH_TIMEOUT_SECONDS);
+            if (!resourceVersion.isEmpty()) {
+                uri.append("&resourceVersion=").append(URLEncoder.encode(resourceVersion, Charsets.UTF_8));
+            }
         }
+        return URI.create(uri.toString());
+    }
 
-        public int readChunk(byte[] buffer, int size) {
-			return in.read(buffer, 0, size);
-		}
+    static ByteString unwrap(InputStream in) throws IOException {
+        final byte[] magic = in.readNBytes(PROTOBUF_MAGIC.size());
+        if (!PROTOBUF_MAGIC.equals(ByteString.copyFrom(magic))) {
+            throw new IOException("Not a protobuf encoded kubernetes object");
+        }
+        return Unknown.parseFrom(in).getRaw();
+    }
 
-		/**
-         * Read the CRLF terminator.
-         * 
-         * @throws IOException If an IO error occurs.
-         */
-        private void readCRLF() throws IOException {
-            int cr = in.read();
-            int lf = in.read();
-            if ((cr != '\r') || (lf != '\n')) {
-                throw new IOException("CRLF expected at end of chunk: " + cr + "/" + lf);
-            }
+    static ByteString unwrap(ByteString raw) throws IOException {
+        if (!raw.startsWith(PROTOBUF_MAGIC)) {
+            throw new IOException("Not a protobuf encoded kubernetes object");
         }
+        return Unknown.parseFrom(raw.substring(PROTOBUF_MAGIC.size())).getRaw();
+    }
 
+    /**
+     * Handle of a running watch
+     */
+    public interface Watch {
         /**
-         * Read the next chunk.
-         * 
-         * @throws IOException If an IO error occurs.
+         * Stop the watch, no more callbacks are delivered afterwards
          */
-        public int readChunkSize() throws IOException {
-            if (!bof) {
-                readCRLF();
-            }
-            chunkSize = getChunkSizeFromInputStream(in);
-            bof = false;
-            pos = 0;
-            if (chunkSize == 0) {
-                eof = true;
-                readCRLF();
-            }
+        void cancel();
+    }
 
-            return chunkSize;
-        }
+    /**
+     * Receives the events of a watch, callbacks are invoked serially from the http client threads.
+     * Exactly one of {@link #onGone()} and {@link #onClose(Throwable)} terminates the watch.
+     */
+    public interface Watcher<T> {
+        /**
+         * An ADDED, MODIFIED, DELETED or BOOKMARK event, a bookmark only carries the resourceVersion
+         */
+        void onEvent(String type, T object);
 
         /**
-         * Expects the stream to start with a chunksize in hex with optional comments
-         * after a semicolon. The line must end with a CRLF: "a3; some comment\r\n"
-         * Positions the stream at the start of the next line.
-         *
-         * @param in The new input stream.
-         * 
-         * @return the chunk size as integer
-         * 
-         * @throws IOException when the chunk size could not be parsed
+         * The requested resourceVersion is too old, the caller must list again before watching
          */
-        private int getChunkSizeFromInputStream(final InputStream in) throws IOException {
-    
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            // States: 0=normal, 1=\r was scanned, 2=inside quoted string, -1=end
-            int state = 0;
-            while (state != -1) {
-                int b = in.read();
-                if (b == -1) {
-                    throw new IOException("chunked stream ended unexpectedly");
-                }
-                switch (state) {
-                    case 0:
-                        switch (b) {
-                            case '\r':
-                                state = 1;
-                                break;
-                            case '\"':
-                                state = 2;
-                                /* fall through */
-                            default:
-                                baos.write(b);
-                        }
-                        break;
-    
-                    case 1:
-                        if (b == '\n') {
-                            state = -1;
-                        } else {
-                            // this was not CRLF
-                            throw new IOException(
-                                    "Protocol violation: Unexpected" + " single newline character in chunk size");
-                        }
-                        break;
-    
-                    case 2:
-                        switch (b) {
-                            case '\\':
-                                b = in.read();
-                                baos.write(b);
-                                break;
-                            case '\"':
-                                state = 0;
-                                /* fall through */
-                            default:
-                                baos.write(b);
-                        }
-                        break;
-                    default:
-                        throw new RuntimeException("assertion failed");
-                }
-            }
-    
-            String dataString = new String(baos.toByteArray(), Charsets.US_ASCII);
-            int result;
-            try {
-                result = Integer.parseInt(dataString.trim(), 16);
-            } catch (NumberFormatException e) {
-                throw new IOException("Bad chunk size: " + dataString);
-            }
-            return result;
-        }
+        void onGone();
+
+        /**
+         * The watch ended, {@code cause} is null if the api server closed it normally
+         */
+        void onClose(@Nullable Throwable cause);
     }
 }
@@ -0,0 +1,91 @@
+package com.radishframework.grpc.client;
+
+import java.util.List;
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+
+/**
+ * One address of a kubernetes service with its ports, topology and conditions, built from either
+ * an endpoints object or an endpoint slice.
+ */
+public final class KubernetesEndpoint {
+    private final String ip;
+    private final List<Integer> ports;
+    @Nullable
+    private final String zone;
+    @Nullable
+    private final String nodeName;
+    private final boolean ready;
+    private final boolean serving;
+    private final boolean terminating;
+
+    public KubernetesEndpoint(String ip, List<Integer> ports, @Nullable String zone, @Nullable String nodeName,
+            boolean ready, boolean serving, boolean terminating) {
+        this.ip = ip;
+        this.ports = ports;
+        this.zone = zone;
+        this.nodeName = nodeName;
+        this.ready = ready;
+        this.serving = serving;
+        this.terminating = terminating;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    public List<Integer> getPorts() {
+        return ports;
+    }
+
+    @Nullable
+    public String getZone() {
+        return zone;
+    }
+
+    @Nullable
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Whether the pod accepts traffic, unlike {@link #isReady()} this stays true while it terminates
+     */
+    public boolean isServing() {
+        return serving;
+    }
+
+    public boolean isTerminating() {
+        return terminating;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof KubernetesEndpoint)) {
+            return false;
+        }
+        final KubernetesEndpoint that = (KubernetesEndpoint) o;
+        return ready == that.ready && serving == that.serving && terminating == that.terminating
+                && ip.equals(that.ip) && ports.equals(that.ports)
+                && Objects.equals(zone, that.zone) && Objects.equals(nodeName, that.nodeName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ip, ports, zone, nodeName, ready, serving, terminating);
+    }
+
+    @Override
+    public String toString() {
+        return ip + ports + (zone == null ? "" : "@" + zone)
+                + (ready ? "" : " not-ready") + (terminating ? " terminating" : "");
+    }
+}
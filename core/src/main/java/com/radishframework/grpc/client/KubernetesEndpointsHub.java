@@ -0,0 +1,381 @@
+package com.radishframework.grpc.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.radishframework.grpc.client.KubernetesEndpointsSource.ListResult;
+import com.radishframework.grpc.client.KubernetesEndpointsSource.ServiceEndpoints;
+
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.SharedResourceHolder;
+
+/**
+ * Shares one endpoints watch per namespace between all the name resolvers of the process.
+ * <p>
+ * The endpoints (or endpoint slices) of a namespace are listed and then watched as long as at
+ * least one resolver subscribes to a service of the namespace, every change is fanned out to the
+ * subscribers of the changed service. A closed watch is resumed from the last seen
+ * resourceVersion, the namespace is only listed again when the api server no longer has that
+ * version.
+ */
+public final class KubernetesEndpointsHub {
+    private static final Logger log = LoggerFactory.getLogger(KubernetesEndpointsHub.class);
+
+    private static final long MAX_RETRY_DELAY_SECONDS = 30;
+
+    private final KubernetesClient kubernetesClient;
+    private final KubernetesEndpointsSource source;
+    private final SynchronizationContext syncContext = new SynchronizationContext(
+            (thread, e) -> log.error("Uncaught exception in kubernetes endpoints hub", e));
+    // only accessed from the syncContext
+    private final Map<String, NamespaceWatch> namespaces = new HashMap<>();
+
+    /**
+     * @param endpointSlices discover the endpoints from discovery.k8s.io endpoint slices instead of
+     *                       core/v1 endpoints objects
+     */
+    public KubernetesEndpointsHub(KubernetesClient kubernetesClient, boolean endpointSlices) {
+        this.kubernetesClient = kubernetesClient;
+        this.source = endpointSlices
+                ? new KubernetesEndpointsSource.EndpointSliceSource(kubernetesClient)
+                : new KubernetesEndpointsSource.EndpointsSource(kubernetesClient);
+    }
+
+    public KubernetesClient getKubernetesClient() {
+        return kubernetesClient;
+    }
+
+    /**
+     * Subscribe to the endpoints of a service, the current endpoints are delivered right away if the
+     * namespace is already watched.
+     */
+    public Subscription subscribe(String namespace, String name, EndpointsListener listener) {
+        final Subscription subscription = new Subscription(namespace, name, listener);
+        syncContext.execute(() -> namespaces.computeIfAbsent(namespace, NamespaceWatch::new).add(subscription));
+        return subscription;
+    }
+
+    /**
+     * Retry a failed list or watch of the namespace right away instead of waiting for the back-off
+     */
+    public void refresh(String namespace) {
+        syncContext.execute(() -> {
+            final NamespaceWatch namespaceWatch = namespaces.get(namespace);
+            if (namespaceWatch != null) {
+                namespaceWatch.refresh();
+            }
+        });
+    }
+
+    /**
+     * Receives the endpoints of a subscribed service, callbacks are invoked serially
+     */
+    public interface EndpointsListener {
+        /**
+         * The endpoints of the service changed, the list is empty if the service has none
+         */
+        void onEndpoints(List<KubernetesEndpoint> endpoints);
+
+        void onError(Status status);
+    }
+
+    public final class Subscription {
+        private final String namespace;
+        private final String name;
+        private final EndpointsListener listener;
+        private volatile boolean cancelled;
+
+        private Subscription(String namespace, String name, EndpointsListener listener) {
+            this.namespace = namespace;
+            this.name = name;
+            this.listener = listener;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            syncContext.execute(() -> {
+                final NamespaceWatch namespaceWatch = namespaces.get(namespace);
+                if (namespaceWatch != null && namespaceWatch.remove(this)) {
+                    namespaces.remove(namespace);
+                }
+            });
+        }
+
+        private void onEndpoints(List<KubernetesEndpoint> endpoints) {
+            if (!cancelled) {
+                listener.onEndpoints(endpoints);
+            }
+        }
+
+        private void onError(Status status) {
+            if (!cancelled) {
+                listener.onError(status);
+            }
+        }
+    }
+
+    private final class NamespaceWatch {
+        private final String namespace;
+        // objects by name, and the names of the objects of every service
+        private final Map<String, ServiceEndpoints> objects = new HashMap<>();
+        private final Map<String, Set<String>> serviceObjects = new HashMap<>();
+        private final Map<String, List<Subscription>> subscriptions = new HashMap<>();
+        private final ScheduledExecutorService timerService = SharedResourceHolder.get(GrpcUtil.TIMER_SERVICE);
+
+        private boolean synced;
+        private boolean stopped;
+        private String resourceVersion;
+        private KubernetesClient.Watch watch;
+        private KubernetesClient.Watcher<ServiceEndpoints> watcher;
+        private SynchronizationContext.ScheduledHandle retryHandle;
+        private Runnable retryTask;
+        private int retries;
+
+        NamespaceWatch(String namespace) {
+            this.namespace = namespace;
+            list();
+        }
+
+        void add(Subscription subscription) {
+            subscriptions.computeIfAbsent(subscription.name, name -> new ArrayList<>()).add(subscription);
+            if (synced) {
+                subscription.onEndpoints(endpointsOf(subscription.name));
+            }
+        }
+
+        /**
+         * @return true if it was the last subscription and the watch is stopped
+         */
+        boolean remove(Subscription subscription) {
+            final List<Subscription> serviceSubscriptions = subscriptions.get(subscription.name);
+            if (serviceSubscriptions != null && serviceSubscriptions.remove(subscription)
+                    && serviceSubscriptions.isEmpty()) {
+                subscriptions.remove(subscription.name);
+            }
+            if (!subscriptions.isEmpty()) {
+                return false;
+            }
+
+            stopped = true;
+            cancelWatch();
+            if (retryHandle != null) {
+                retryHandle.cancel();
+                retryHandle = null;
+                retryTask = null;
+            }
+            SharedResourceHolder.release(GrpcUtil.TIMER_SERVICE, timerService);
+            return true;
+        }
+
+        void refresh() {
+            if (retryHandle != null) {
+                final Runnable task = retryTask;
+                retryHandle.cancel();
+                retryHandle = null;
+                retryTask = null;
+                task.run();
+            }
+        }
+
+        private void list() {
+            source.list(namespace)
+                    .whenComplete((result, t) -> syncContext.execute(() -> onListed(result, t)));
+        }
+
+        private void onListed(@Nullable ListResult result, @Nullable Throwable t) {
+            if (stopped) {
+                return;
+            }
+            if (t != null) {
+                log.warn("Unable to list endpoints of namespace {}", namespace, t);
+                final Status status = Status.UNAVAILABLE
+                        .withDescription("Unable to list endpoints of namespace " + namespace)
+                        .withCause(t);
+                subscriptions.values().forEach(list -> list.forEach(s -> s.onError(status)));
+                scheduleRetry(this::list);
+                return;
+            }
+
+            retries = 0;
+            final Map<String, List<KubernetesEndpoint>> previous = new HashMap<>();
+            for (String name : subscriptions.keySet()) {
+                previous.put(name, endpointsOf(name));
+            }
+            objects.clear();
+            serviceObjects.clear();
+            for (ServiceEndpoints item : result.items) {
+                put(item);
+            }
+            resourceVersion = result.resourceVersion;
+
+            final boolean initial = !synced;
+            synced = true;
+            for (String name : subscriptions.keySet()) {
+                final List<KubernetesEndpoint> current = endpointsOf(name);
+                if (initial || !current.equals(previous.get(name))) {
+                    notifySubscriptions(name, current);
+                }
+            }
+            startWatch();
+        }
+
+        private void startWatch() {
+            final KubernetesClient.Watcher<ServiceEndpoints> newWatcher = new KubernetesClient.Watcher<>() {
+                @Override
+                public void onEvent(String type, ServiceEndpoints object) {
+                    syncContext.execute(() -> {
+                        if (watcher == this) {
+                            onWatchEvent(type, object);
+                        }
+                    });
+                }
+
+                @Override
+                public void onGone() {
+                    syncContext.execute(() -> {
+                        if (watcher == this) {
+                            watch = null;
+                            watcher = null;
+                            onWatchGone();
+                        }
+                    });
+                }
+
+                @Override
+                public void onClose(@Nullable Throwable cause) {
+                    syncContext.execute(() -> {
+                        if (watcher == this) {
+                            watch = null;
+                            watcher = null;
+                            onWatchClosed(cause);
+                        }
+                    });
+                }
+            };
+            watcher = newWatcher;
+            watch = source.watch(namespace, resourceVersion, newWatcher);
+        }
+
+        private void cancelWatch() {
+            if (watch != null) {
+                watch.cancel();
+                watch = null;
+                watcher = null;
+            }
+        }
+
+        private void onWatchEvent(String type, ServiceEndpoints object) {
+            retries = 0;
+            resourceVersion = object.resourceVersion;
+            final ServiceEndpoints previous;
+            switch (type) {
+                case KubernetesClient.EVENT_ADDED:
+                case KubernetesClient.EVENT_MODIFIED:
+                    previous = put(object);
+                    break;
+                case KubernetesClient.EVENT_DELETED:
+                    previous = remove(object.objectName);
+                    break;
+                default:
+                    // bookmarks only move the resourceVersion forward
+                    return;
+            }
+
+            if (previous != null && !previous.serviceName.equals(object.serviceName)) {
+                notifySubscriptions(previous.serviceName, endpointsOf(previous.serviceName));
+            }
+            notifySubscriptions(object.serviceName, endpointsOf(object.serviceName));
+        }
+
+        private void onWatchGone() {
+            log.info("Watch of endpoints of namespace {} expired at version {}, listing again",
+                    namespace, resourceVersion);
+            resourceVersion = null;
+            list();
+        }
+
+        private void onWatchClosed(@Nullable Throwable cause) {
+            if (cause == null) {
+                // closed by the api server after the watch timeout, resume right away
+                startWatch();
+                return;
+            }
+            log.warn("Watch of endpoints of namespace {} failed, resuming from version {}",
+                    namespace, resourceVersion, cause);
+            scheduleRetry(this::startWatch);
+        }
+
+        private void scheduleRetry(Runnable task) {
+            final long delay = Math.min(MAX_RETRY_DELAY_SECONDS, 1L << Math.min(retries, 5));
+            retries++;
+            retryTask = task;
+            retryHandle = syncContext.schedule(() -> {
+                retryHandle = null;
+                retryTask = null;
+                task.run();
+            }, delay, TimeUnit.SECONDS, timerService);
+        }
+
+        @Nullable
+        private ServiceEndpoints put(ServiceEndpoints object) {
+            final ServiceEndpoints previous = objects.put(object.objectName, object);
+            if (previous != null && !previous.serviceName.equals(object.serviceName)) {
+                unindex(previous);
+            }
+            serviceObjects.computeIfAbsent(object.serviceName, name -> new LinkedHashSet<>()).add(object.objectName);
+            return previous;
+        }
+
+        @Nullable
+        private ServiceEndpoints remove(String objectName) {
+            final ServiceEndpoints previous = objects.remove(objectName);
+            if (previous != null) {
+                unindex(previous);
+            }
+            return previous;
+        }
+
+        private void unindex(ServiceEndpoints object) {
+            final Set<String> names = serviceObjects.get(object.serviceName);
+            if (names != null && names.remove(object.objectName) && names.isEmpty()) {
+                serviceObjects.remove(object.serviceName);
+            }
+        }
+
+        private List<KubernetesEndpoint> endpointsOf(String serviceName) {
+            final Set<String> names = serviceObjects.get(serviceName);
+            if (names == null) {
+                return Collections.emptyList();
+            }
+            if (names.size() == 1) {
+                return objects.get(names.iterator().next()).endpoints;
+            }
+            final List<KubernetesEndpoint> endpoints = new ArrayList<>();
+            for (String name : names) {
+                endpoints.addAll(objects.get(name).endpoints);
+            }
+            return endpoints;
+        }
+
+        private void notifySubscriptions(String serviceName, List<KubernetesEndpoint> endpoints) {
+            final List<Subscription> serviceSubscriptions = subscriptions.get(serviceName);
+            if (serviceSubscriptions != null) {
+                serviceSubscriptions.forEach(s -> s.onEndpoints(endpoints));
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.radishframework.grpc.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+import com.radishframework.grpc.client.proto.V1Discovery.Endpoint;
+import com.radishframework.grpc.client.proto.V1Discovery.EndpointConditions;
+import com.radishframework.grpc.client.proto.V1Discovery.EndpointPort;
+import com.radishframework.grpc.client.proto.V1Discovery.EndpointSlice;
+import com.radishframework.grpc.client.proto.V1Discovery.EndpointSliceList;
+
+import io.kubernetes.client.proto.V1.EndpointAddress;
+import io.kubernetes.client.proto.V1.EndpointSubset;
+import io.kubernetes.client.proto.V1.Endpoints;
+import io.kubernetes.client.proto.V1.EndpointsList;
+
+/**
+ * Lists and watches the objects holding the endpoints of the services of a namespace, converted
+ * to {@link KubernetesEndpoint}s.
+ */
+interface KubernetesEndpointsSource {
+
+    /**
+     * Service name label set on endpoint slices
+     */
+    String SERVICE_NAME_LABEL = "kubernetes.io/service-name";
+
+    CompletableFuture<ListResult> list(String namespace);
+
+    KubernetesClient.Watch watch(String namespace, @Nullable String resourceVersion,
+            KubernetesClient.Watcher<ServiceEndpoints> watcher);
+
+    /**
+     * The endpoints of one object, a service has one endpoints object but may have many slices
+     */
+    final class ServiceEndpoints {
+        final String objectName;
+        final String serviceName;
+        final String resourceVersion;
+        final List<KubernetesEndpoint> endpoints;
+
+        ServiceEndpoints(String objectName, String serviceName, String resourceVersion,
+                List<KubernetesEndpoint> endpoints) {
+            this.objectName = objectName;
+            this.serviceName = serviceName;
+            this.resourceVersion = resourceVersion;
+            this.endpoints = endpoints;
+        }
+    }
+
+    final class ListResult {
+        final String resourceVersion;
+        final List<ServiceEndpoints> items;
+
+        ListResult(String resourceVersion, List<ServiceEndpoints> items) {
+            this.resourceVersion = resourceVersion;
+            this.items = items;
+        }
+    }
+
+    static <T> KubernetesClient.Watcher<T> mapping(KubernetesClient.Watcher<ServiceEndpoints> watcher,
+            Function<T, ServiceEndpoints> mapper) {
+        return new KubernetesClient.Watcher<T>() {
+            @Override
+            public void onEvent(String type, T object) {
+                watcher.onEvent(type, mapper.apply(object));
+            }
+
+            @Override
+            public void onGone() {
+                watcher.onGone();
+            }
+
+            @Override
+            public void onClose(@Nullable Throwable cause) {
+                watcher.onClose(cause);
+            }
+        };
+    }
+
+    /**
+     * Legacy core/v1 endpoints, they carry neither the zone nor the terminating condition
+     */
+    final class EndpointsSource implements KubernetesEndpointsSource {
+        private final KubernetesClient kubernetesClient;
+
+        EndpointsSource(KubernetesClient kubernetesClient) {
+            this.kubernetesClient = kubernetesClient;
+        }
+
+        @Override
+        public CompletableFuture<ListResult> list(String namespace) {
+            return kubernetesClient.listEndpoints(namespace, null).thenApply((EndpointsList list) ->
+                    new ListResult(list.getMetadata().getResourceVersion(), list.getItemsList().stream()
+                            .map(EndpointsSource::convert)
+                            .collect(Collectors.toList())));
+        }
+
+        @Override
+        public KubernetesClient.Watch watch(String namespace, @Nullable String resourceVersion,
+                KubernetesClient.Watcher<ServiceEndpoints> watcher) {
+            return kubernetesClient.watchEndpoints(namespace, null, resourceVersion,
+                    mapping(watcher, EndpointsSource::convert));
+        }
+
+        private static ServiceEndpoints convert(Endpoints object) {
+            final List<KubernetesEndpoint> endpoints = new ArrayList<>();
+            for (EndpointSubset subset : object.getSubsetsList()) {
+                final List<Integer> ports = subset.getPortsList().stream()
+                        .map(io.kubernetes.client.proto.V1.EndpointPort::getPort)
+                        .collect(Collectors.toUnmodifiableList());
+                for (EndpointAddress address : subset.getAddressesList()) {
+                    endpoints.add(new KubernetesEndpoint(address.getIp(), ports, null,
+                            address.hasNodeName() ? address.getNodeName() : null, true, true, false));
+                }
+                for (EndpointAddress address : subset.getNotReadyAddressesList()) {
+                    endpoints.add(new KubernetesEndpoint(address.getIp(), ports, null,
+                            address.hasNodeName() ? address.getNodeName() : null, false, false, false));
+                }
+            }
+            final String name = object.getMetadata().getName();
+            return new ServiceEndpoints(name, name, object.getMetadata().getResourceVersion(), endpoints);
+        }
+    }
+
+    /**
+     * discovery.k8s.io/v1 endpoint slices, they carry the zone and the terminating condition
+     */
+    final class EndpointSliceSource implements KubernetesEndpointsSource {
+        private static final String ADDRESS_TYPE_FQDN = "FQDN";
+
+        private final KubernetesClient kubernetesClient;
+
+        EndpointSliceSource(KubernetesClient kubernetesClient) {
+            this.kubernetesClient = kubernetesClient;
+        }
+
+        @Override
+        public CompletableFuture<ListResult> list(String namespace) {
+            return kubernetesClient.listEndpointSlices(namespace).thenApply((EndpointSliceList list) ->
+                    new ListResult(list.getMetadata().getResourceVersion(), list.getItemsList().stream()
+                            .map(EndpointSliceSource::convert)
+                            .collect(Collectors.toList())));
+        }
+
+        @Override
+        public KubernetesClient.Watch watch(String namespace, @Nullable String resourceVersion,
+                KubernetesClient.Watcher<ServiceEndpoints> watcher) {
+            return kubernetesClient.watchEndpointSlices(namespace, resourceVersion,
+                    mapping(watcher, EndpointSliceSource::convert));
+        }
+
+        private static ServiceEndpoints convert(EndpointSlice slice) {
+            final String serviceName = slice.getMetadata().getLabelsOrDefault(SERVICE_NAME_LABEL, "");
+            final List<KubernetesEndpoint> endpoints;
+            if (ADDRESS_TYPE_FQDN.equals(slice.getAddressType()) || slice.getEndpointsCount() == 0) {
+                endpoints = Collections.emptyList();
+            } else {
+                final List<Integer> ports = slice.getPortsList().stream()
+                        .filter(EndpointPort::hasPort)
+                        .map(EndpointPort::getPort)
+                        .collect(Collectors.toUnmodifiableList());
+                endpoints = new ArrayList<>(slice.getEndpointsCount());
+                for (Endpoint endpoint : slice.getEndpointsList()) {
+                    if (endpoint.getAddressesCount() == 0) {
+                        continue;
+                    }
+                    // unset conditions are unknown, kubernetes defines them as ready and serving
+                    final EndpointConditions conditions = endpoint.getConditions();
+                    final boolean ready = !conditions.hasReady() || conditions.getReady();
+                    final boolean serving = conditions.hasServing() ? conditions.getServing() : ready;
+                    endpoints.add(new KubernetesEndpoint(endpoint.getAddresses(0), ports,
+                            endpoint.hasZone() ? endpoint.getZone() : null,
+                            endpoint.hasNodeName() ? endpoint.getNodeName() : null,
+                            ready, serving, conditions.getTerminating()));
+                }
+            }
+            return new ServiceEndpoints(slice.getMetadata().getName(), serviceName,
+                    slice.getMetadata().getResourceVersion(), endpoints);
+        }
+    }
+}
@@ -2,68 +2,60 @@ package com.radishframework.grpc.client;
 
 import java.net.InetSocketAddress;
 import java.net.URI;
-import java.net.URLEncoder;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.net.http.HttpResponse.BodyHandlers;
-import java.net.http.HttpResponse.PushPromiseHandler;
-import java.nio.ByteBuffer;
-import java.nio.charset.Charset;
-import java.time.Duration;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
-import static java.util.concurrent.Flow.Subscriber;
-import static java.util.concurrent.Flow.Subscription;
-
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.util.concurrent.Flow.Subscription;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-import javax.annotation.concurrent.GuardedBy;
-
-import com.google.common.base.Charsets;
+import javax.annotation.Nullable;
 
 import io.grpc.Attributes;
 import io.grpc.EquivalentAddressGroup;
 import io.grpc.NameResolver;
-import io.grpc.internal.SharedResourceHolder;
-
-import io.kubernetes.client.proto.V1.EndpointsList;
-import io.kubernetes.client.proto.V1.Endpoints;
-import io.kubernetes.client.proto.Meta.WatchEvent;
-import io.kubernetes.client.proto.V1.EndpointAddress;
-import io.kubernetes.client.proto.V1.EndpointPort;
-import io.kubernetes.client.proto.V1.EndpointSubset;
-
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+
+/**
+ * Resolves the addresses of a kubernetes service from its endpoints object or endpoint slices.
+ * <p>
+ * Every address carries its zone, node and conditions as {@link KubernetesAttributes}. Ready
+ * pods are resolved, terminating pods which still serve only when no pod is ready, so that no
+ * balancer, round_robin included, gives them a share of the calls while other pods are ready.
+ * <p>
+ * The endpoints are delivered by the {@link KubernetesEndpointsHub}, which shares one watch per
+ * namespace between all the resolvers of the process. The last resolved addresses are kept in an
+ * {@link EndpointsSnapshotStore}, they are published as soon as the resolver starts and replaced
+ * once the live endpoints arrive.
+ */
 public class KubernetesNameResolver extends NameResolver {
 
     private final String namespace;
     private final String name;
     private final int port;
     private final URI kubeApiUri;
-	private final KubernetesClient kubernetesClient;
-    private final SharedResourceHolder.Resource<ScheduledExecutorService> timerServiceResource;
+    private final KubernetesEndpointsHub endpointsHub;
+    @Nullable
+    private final EndpointsSnapshotStore snapshotStore;
+    private final Attributes resolutionAttributes;
+    private final SynchronizationContext syncContext;
 
+    // the fields below are only accessed from the syncContext
     private Listener listener;
-
-    private volatile boolean refreshing = false;
-    private volatile boolean watching = false;
+    private KubernetesEndpointsHub.Subscription subscription;
+    private boolean shutdown;
+    private List<EquivalentAddressGroup> servers;
 
     public KubernetesNameResolver(final String namespace, final String name, final int port,
-            final SharedResourceHolder.Resource<ScheduledExecutorService> timerServiceResource,
-            final String kubeApiUri) {
+            final KubernetesEndpointsHub endpointsHub, @Nullable final EndpointsSnapshotStore snapshotStore,
+            @Nullable final String localZone, final SynchronizationContext syncContext) {
         this.namespace = namespace;
         this.name = name;
         this.port = port;
-        this.timerServiceResource = timerServiceResource;
-        this.kubeApiUri = URI.create(kubeApiUri);
-        this.kubernetesClient = new KubernetesClient(kubeApiUri);
+        this.endpointsHub = endpointsHub;
+        this.snapshotStore = snapshotStore;
+        this.resolutionAttributes = localZone == null
+                ? Attributes.EMPTY
+                : Attributes.newBuilder().set(KubernetesAttributes.LOCAL_ZONE, localZone).build();
+        this.kubeApiUri = URI.create(endpointsHub.getKubernetesClient().getKubeApiUri());
+        this.syncContext = syncContext;
     }
 
     @Override
@@ -74,104 +66,94 @@ public class KubernetesNameResolver extends NameResolver {
     @Override
     public void start(Listener listener) {
         this.listener = listener;
-        refresh();
+        if (snapshotStore != null) {
+            final List<EquivalentAddressGroup> snapshot = snapshotStore.read(namespace, name, port);
+            if (snapshot != null && !snapshot.isEmpty()) {
+                servers = snapshot;
+                listener.onAddresses(servers, resolutionAttributes);
+            }
+        }
+        this.subscription = endpointsHub.subscribe(namespace, name, new KubernetesEndpointsHub.EndpointsListener() {
+            @Override
+            public void onEndpoints(List<KubernetesEndpoint> endpoints) {
+                syncContext.execute(() -> {
+                    if (!shutdown) {
+                        update(endpoints);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(Status status) {
+                syncContext.execute(() -> {
+                    // keep routing to the last known addresses while the api server is unavailable
+                    if (!shutdown && (servers == null || servers.isEmpty())) {
+                        KubernetesNameResolver.this.listener.onError(status);
+                    }
+                });
+            }
+        });
     }
 
     @Override
     public void shutdown() {
+        syncContext.execute(() -> {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+            if (subscription != null) {
+                subscription.cancel();
+                subscription = null;
+            }
+        });
     }
 
+    /**
+     * The watch already delivers every change, only a failed list or watch is retried right away
+     */
     @Override
-    @GuardedBy("this")
     public void refresh() {
-        if (refreshing)
-            return;
-        try {
-            refreshing = true;
-
-            List<EndpointSubset> subsets = kubernetesClient.getEndpointSubsets(namespace, name);
-            if (subsets.isEmpty()) {
-                // not foud subsets, retrying 30 senconds later
-                final ScheduledExecutorService timerService = SharedResourceHolder.get(timerServiceResource);
-                timerService.schedule(this::refresh, 30, TimeUnit.SECONDS);
-                return;
-            }
-
-            update(subsets);
-            watch();
-        } finally {
-            refreshing = false;
-        }
+        endpointsHub.refresh(namespace);
     }
 
-    private void update(List<EndpointSubset> subsets) {
-        List<EquivalentAddressGroup> servers = subsets.stream().filter(
-                subset -> subset.getPortsList().stream().anyMatch(endpointPort -> port == endpointPort.getPort()))
-                .flatMap(
-                        subset -> subset.getAddressesList().stream()
-                                .map(endpointAddress -> new EquivalentAddressGroup(
-                                        new InetSocketAddress(endpointAddress.getIp(), port))))
+    // package-private for the benchmarks, only called from the syncContext
+    void update(List<KubernetesEndpoint> endpoints) {
+        final boolean anyReady = endpoints.stream()
+                .anyMatch(endpoint -> endpoint.getPorts().contains(port) && endpoint.isReady());
+        final List<EquivalentAddressGroup> newServers = endpoints.stream()
+                .filter(endpoint -> endpoint.getPorts().contains(port))
+                .filter(endpoint -> anyReady
+                        ? endpoint.isReady()
+                        : endpoint.isServing() && endpoint.isTerminating())
+                .map(this::toAddressGroup)
                 .collect(Collectors.toList());
-        listener.onAddresses(servers, Attributes.EMPTY);
-    }
-
-    @GuardedBy("this")
-    protected void watch() {
-        if (watching)
+        if (newServers.equals(servers)) {
             return;
-        watching = true;
-
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-            .uri(URI.create(this.kubeApiUrl 
-                        + this.namespace 
-                        + "/endpoints?watch=true&filedSelector=" 
-                        + URLEncoder.encode("name=" + this.name, Charsets.UTF_8)))
-            .header("Accept", "application/vnd.kubernetes.protobuf")
-            .version(HttpClient.Version.HTTP_1_1)
-            .GET()
-            .timeout(Duration.ofSeconds(20))
-            .build();
-        client.sendAsync(request, BodyHandlers.fromSubscriber(watchSubscriber));
-            .thenAccept(response -> {
-                InputStream in = response.body();
+        }
 
-            });
+        servers = newServers;
+        if (snapshotStore != null) {
+            snapshotStore.write(namespace, name, port, servers);
+        }
+        if (servers.isEmpty()) {
+            listener.onError(Status.UNAVAILABLE
+                    .withDescription("No endpoints of " + namespace + "/" + name + " on port " + port));
+        } else {
+            listener.onAddresses(servers, resolutionAttributes);
+        }
     }
 
-    private Subscriber<List<ByteBuffer>> watchSubscriber = new Subscriber<List<ByteBuffer>>() {
-
-		@Override
-		public void onSubscribe(Subscription subscription) {
-			// TODO Auto-generated method stub
-			
-		}
-
-		@Override
-		public void onNext(List<ByteBuffer> item) {
-
-                ByteArrayOutputStream out = new ByteArrayOutputStream();
-                while (char c = in.read()) {
-                    if (c != '\r' && c != '\n') {
-                        out.write(c);   
-                    }
-                }
-                byte[] bytesRead = out.toByteArray();
-                WatchEvent watchEvent = WatchEvent.parseFrom(bytesRead);
-		}
-
-		@Override
-		public void onError(Throwable throwable) {
-			// TODO Auto-generated method stub
-			
-		}
-
-		@Override
-		public void onComplete() {
-			// TODO Auto-generated method stub
-			
-		}
-
-    };
-
+    private EquivalentAddressGroup toAddressGroup(KubernetesEndpoint endpoint) {
+        final Attributes.Builder attributes = Attributes.newBuilder()
+                .set(KubernetesAttributes.READY, endpoint.isReady())
+                .set(KubernetesAttributes.TERMINATING, endpoint.isTerminating());
+        if (endpoint.getZone() != null) {
+            attributes.set(KubernetesAttributes.ZONE, endpoint.getZone());
+        }
+        if (endpoint.getNodeName() != null) {
+            attributes.set(KubernetesAttributes.NODE_NAME, endpoint.getNodeName());
+        }
+        return new EquivalentAddressGroup(new InetSocketAddress(endpoint.getIp(), port), attributes.build());
+    }
 }
@@ -8,12 +8,14 @@ import org.slf4j.Logger;
 
 import io.grpc.NameResolver;
 import io.grpc.NameResolverProvider;
-import io.grpc.internal.GrpcUtil;
 
 
 import javax.annotation.Nullable;
 import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -26,10 +28,57 @@ public class KubernetesNameResolverProvider extends NameResolverProvider {
 
     public static final String SCHEME = "kubernetes";
     public static final String URI_ERROR_MESSAGE = "Must be formatted like kubernetes:///{namespace}/{service}/{port}";
-    private final String kubeApiUri;
+    // the api server address used by the provider loaded from META-INF/services, defaults to a kubectl proxy sidecar
+    public static final String KUBE_API_URI_PROPERTY = "radish.kubernetes.api-uri";
+    public static final String DEFAULT_KUBE_API_URI = "http://127.0.0.1:8001";
+    // directory of the endpoints snapshots, private to the user of the process, unset or empty to disable them
+    public static final String SNAPSHOT_DIR_PROPERTY = "radish.kubernetes.snapshot-dir";
+    // "endpoints" (default) or "endpointslices", the latter adds the zone and terminating state of the backends
+    public static final String DISCOVERY_PROPERTY = "radish.kubernetes.discovery";
+    // zone of this process, handed to the balancers to prefer backends of the same zone
+    public static final String ZONE_PROPERTY = "radish.kubernetes.zone";
+
+    public enum Discovery {
+        ENDPOINTS, ENDPOINT_SLICES
+    }
+
+    // one hub per api server and discovery mode for the whole process, shared by every resolver
+    private static final ConcurrentHashMap<String, KubernetesEndpointsHub> endpointsHubs = new ConcurrentHashMap<>();
+
+    private static final ConcurrentHashMap<Path, EndpointsSnapshotStore> snapshotStores = new ConcurrentHashMap<>();
+
+    private final KubernetesEndpointsHub endpointsHub;
+    @Nullable
+    private final EndpointsSnapshotStore snapshotStore;
+    @Nullable
+    private final String localZone;
+
+    public KubernetesNameResolverProvider() {
+        this(System.getProperty(KUBE_API_URI_PROPERTY, DEFAULT_KUBE_API_URI),
+                System.getProperty(SNAPSHOT_DIR_PROPERTY),
+                "endpointslices".equalsIgnoreCase(System.getProperty(DISCOVERY_PROPERTY))
+                        ? Discovery.ENDPOINT_SLICES
+                        : Discovery.ENDPOINTS,
+                System.getProperty(ZONE_PROPERTY));
+    }
 
     public KubernetesNameResolverProvider(String kubeApiUri) {
-        this.kubeApiUri = kubeApiUri;
+        this(kubeApiUri, null, Discovery.ENDPOINTS, null);
+    }
+
+    /**
+     * @param snapshotDir directory of the endpoints snapshots, null or empty to disable them
+     * @param localZone   zone of this process, null if unknown
+     */
+    public KubernetesNameResolverProvider(String kubeApiUri, @Nullable String snapshotDir, Discovery discovery,
+            @Nullable String localZone) {
+        this.endpointsHub = endpointsHubs.computeIfAbsent(discovery + " " + kubeApiUri,
+                key -> new KubernetesEndpointsHub(new KubernetesClient(kubeApiUri),
+                        discovery == Discovery.ENDPOINT_SLICES));
+        this.localZone = localZone;
+        this.snapshotStore = snapshotDir == null || snapshotDir.isEmpty()
+                ? null
+                : snapshotStores.computeIfAbsent(Paths.get(snapshotDir), EndpointsSnapshotStore::new);
     }
 
     @Override
@@ -71,7 +120,8 @@ public class KubernetesNameResolverProvider extends NameResolverProvider {
             throw new IllegalArgumentException("Unable to parse port number", e);
         }
 
-        return new KubernetesNameResolver(namespace, serviceName, port, GrpcUtil.TIMER_SERVICE, this.kubeApiUri);
+        return new KubernetesNameResolver(namespace, serviceName, port, endpointsHub, snapshotStore, localZone,
+                args.getSynchronizationContext());
     }
 
     @Override
@@ -0,0 +1,38 @@
+package com.radishframework.grpc.client;
+
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancerProvider;
+import io.grpc.services.HealthCheckingLoadBalancerUtil;
+
+/**
+ * Power of two choices over the outstanding requests of the backends
+ */
+public final class LeastRequestLoadBalancerProvider extends LoadBalancerProvider {
+    public static final String POLICY_NAME = "radish_least_request";
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public int getPriority() {
+        return 5;
+    }
+
+    @Override
+    public String getPolicyName() {
+        return POLICY_NAME;
+    }
+
+    @Override
+    public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
+        // checks the health of the backends when the service config asks for it
+        return HealthCheckingLoadBalancerUtil.newHealthCheckingLoadBalancer(new LoadBalancer.Factory() {
+            @Override
+            public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
+                return new PowerOfTwoChoicesLoadBalancer(helper, false);
+            }
+        }, helper);
+    }
+}
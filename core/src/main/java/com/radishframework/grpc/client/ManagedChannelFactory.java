@@ -1,24 +1,107 @@
 package com.radishframework.grpc.client;
 
+import com.google.common.base.Splitter;
+import com.radishframework.grpc.common.Compression;
+import com.radishframework.grpc.common.NettyTransport;
 import io.grpc.ManagedChannel;
-import io.grpc.NameResolverProvider;
 import io.grpc.internal.SharedResourceHolder;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
 public class ManagedChannelFactory {
 
     private final String forAppName;
+    private final ChannelOptions defaultOptions;
+    private final Map<String, ChannelOptions> serviceOptions;
+    @Nullable
+    private final NettyTransport transport;
+    @Nullable
+    private final Compression compression;
     private final ConcurrentHashMap<String, ManagedChannelResource> serviceResources = new ConcurrentHashMap<>();
 
     public ManagedChannelFactory(String forAppName) {
+        this(forAppName, ManagedChannelResource.DEFAULT_LOAD_BALANCING_POLICY);
+    }
+
+    /**
+     * @param defaultLoadBalancingPolicy policy of the channels created without one, e.g. round_robin,
+     *                                   {@link LeastRequestLoadBalancerProvider#POLICY_NAME},
+     *                                   {@link PeakEwmaLoadBalancerProvider#POLICY_NAME} or
+     *                                   {@link ConsistentHashLoadBalancerProvider#POLICY_NAME}
+     */
+    public ManagedChannelFactory(String forAppName, String defaultLoadBalancingPolicy) {
+        this(forAppName, ChannelOptions.newBuilder().setLoadBalancingPolicy(defaultLoadBalancingPolicy).build(),
+                Collections.emptyMap());
+    }
+
+    /**
+     * @param serviceOptions options by service, keyed either by the full service name given to
+     *                       {@link #create(String)} ({namespace}/{service}/{port}) or by the bare
+     *                       kubernetes service name
+     */
+    public ManagedChannelFactory(String forAppName, ChannelOptions defaultOptions,
+                                 Map<String, ChannelOptions> serviceOptions) {
+        this(forAppName, defaultOptions, serviceOptions, null);
+    }
+
+    /**
+     * @param transport event loops shared by all the channels, null for the grpc defaults
+     */
+    public ManagedChannelFactory(String forAppName, ChannelOptions defaultOptions,
+                                 Map<String, ChannelOptions> serviceOptions, @Nullable NettyTransport transport) {
+        this(forAppName, defaultOptions, serviceOptions, transport, null);
+    }
+
+    /**
+     * @param compression message encodings of the channels, null for the grpc defaults, needed by
+     *                    the compression policies of the options
+     */
+    public ManagedChannelFactory(String forAppName, ChannelOptions defaultOptions,
+                                 Map<String, ChannelOptions> serviceOptions, @Nullable NettyTransport transport,
+                                 @Nullable Compression compression) {
         this.forAppName = forAppName;
+        this.defaultOptions = defaultOptions.withDefaults(ChannelOptions.newBuilder()
+                .setLoadBalancingPolicy(ManagedChannelResource.DEFAULT_LOAD_BALANCING_POLICY)
+                .build());
+        this.serviceOptions = Map.copyOf(serviceOptions);
+        this.transport = transport;
+        this.compression = compression;
     }
 
     public ManagedChannel create(String serviceName) {
+        return create(serviceName, null);
+    }
+
+    /**
+     * The channel of a service is shared, all the callers must ask for the same load balancing policy
+     *
+     * @param loadBalancingPolicy null for the policy configured for the service
+     */
+    public ManagedChannel create(String serviceName, String loadBalancingPolicy) {
         final ManagedChannelResource channelResource =
-                serviceResources.computeIfAbsent(serviceName,
-                        (serviceName2) -> new ManagedChannelResource(forAppName, serviceName));
+                serviceResources.computeIfAbsent(serviceName, (serviceName2) -> {
+                    ChannelOptions options = optionsOf(serviceName);
+                    if (loadBalancingPolicy != null) {
+                        options = ChannelOptions.newBuilder()
+                                .setLoadBalancingPolicy(loadBalancingPolicy)
+                                .build()
+                                .withDefaults(options);
+                    }
+                    return new ManagedChannelResource(forAppName, serviceName, options, transport, compression);
+                });
+        checkArgument(loadBalancingPolicy == null
+                        || channelResource.getLoadBalancingPolicy().equals(loadBalancingPolicy),
+                "channel of %s is already created with load balancing policy %s",
+                serviceName, channelResource.getLoadBalancingPolicy());
         return SharedResourceHolder.get(channelResource);
     }
 
@@ -28,4 +111,46 @@ public class ManagedChannelFactory {
             SharedResourceHolder.release(channelResource, channel);
         }
     }
+
+    /**
+     * Describe the channels of every service: load balancing policy, pool size, state and
+     * subchannels
+     */
+    public void writeStatus(StringBuilder out) {
+        for (Map.Entry<String, ManagedChannelResource> entry : new TreeMap<>(serviceResources).entrySet()) {
+            final ManagedChannelResource resource = entry.getValue();
+            out.append(entry.getKey())
+                    .append(" policy=").append(resource.getLoadBalancingPolicy())
+                    .append(" pool=").append(resource.getPoolSize())
+                    .append('\n');
+            ChannelStatusWriter.write(out, ManagedChannelResource.KUBERNETES_URL_PREFIX + entry.getKey());
+        }
+    }
+
+    /**
+     * Writes the metrics of the response caches of the channels
+     */
+    public void writePrometheus(StringBuilder out) {
+        final List<ResponseCacheInterceptor> caches = new ArrayList<>();
+        for (ManagedChannelResource resource : serviceResources.values()) {
+            if (resource.getCacheInterceptor() != null) {
+                caches.add(resource.getCacheInterceptor());
+            }
+        }
+        if (!caches.isEmpty()) {
+            ResponseCacheInterceptor.writePrometheus(out, caches);
+        }
+    }
+
+    private ChannelOptions optionsOf(String serviceName) {
+        ChannelOptions options = serviceOptions.get(serviceName);
+        if (options == null) {
+            // {namespace}/{service}/{port}, possibly with a leading slash
+            final List<String> parts = Splitter.on('/').omitEmptyStrings().splitToList(serviceName);
+            if (parts.size() == 3) {
+                options = serviceOptions.get(parts.get(1));
+            }
+        }
+        return options == null ? defaultOptions : options.withDefaults(defaultOptions);
+    }
 }
@@ -0,0 +1,110 @@
+package com.radishframework.grpc.client;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+
+/**
+ * Spreads the calls of one target over several channels, so every backend is reached through as
+ * many HTTP/2 connections and a single connection doesn't become the bottleneck.
+ */
+final class ManagedChannelPool extends ManagedChannel {
+    private final ManagedChannel[] channels;
+    private final AtomicInteger next = new AtomicInteger();
+
+    ManagedChannelPool(List<ManagedChannel> channels) {
+        this.channels = channels.toArray(new ManagedChannel[0]);
+    }
+
+    @Override
+    public <RequestT, ResponseT> ClientCall<RequestT, ResponseT> newCall(
+            MethodDescriptor<RequestT, ResponseT> methodDescriptor, CallOptions callOptions) {
+        final int index = (next.getAndIncrement() & Integer.MAX_VALUE) % channels.length;
+        return channels[index].newCall(methodDescriptor, callOptions);
+    }
+
+    @Override
+    public String authority() {
+        return channels[0].authority();
+    }
+
+    @Override
+    public ManagedChannel shutdown() {
+        for (ManagedChannel channel : channels) {
+            channel.shutdown();
+        }
+        return this;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return channels[0].isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        for (ManagedChannel channel : channels) {
+            if (!channel.isTerminated()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public ManagedChannel shutdownNow() {
+        for (ManagedChannel channel : channels) {
+            channel.shutdownNow();
+        }
+        return this;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ManagedChannel channel : channels) {
+            if (!channel.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * READY if any channel is ready, otherwise the state of the first channel
+     */
+    @Override
+    public ConnectivityState getState(boolean requestConnection) {
+        ConnectivityState state = null;
+        for (ManagedChannel channel : channels) {
+            final ConnectivityState channelState = channel.getState(requestConnection);
+            if (channelState == ConnectivityState.READY) {
+                return channelState;
+            }
+            if (state == null) {
+                state = channelState;
+            }
+        }
+        return state;
+    }
+
+    @Override
+    public void resetConnectBackoff() {
+        for (ManagedChannel channel : channels) {
+            channel.resetConnectBackoff();
+        }
+    }
+
+    @Override
+    public void enterIdle() {
+        for (ManagedChannel channel : channels) {
+            channel.enterIdle();
+        }
+    }
+}
@@ -1,10 +1,21 @@
 package com.radishframework.grpc.client;
 
+import com.radishframework.grpc.common.Compression;
+import com.radishframework.grpc.common.NettyTransport;
+import io.grpc.ClientInterceptor;
 import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
-import io.grpc.NameResolverProvider;
-import io.grpc.NameResolverRegistry;
 import io.grpc.internal.SharedResourceHolder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 public final class ManagedChannelResource implements SharedResourceHolder.Resource<ManagedChannel> {
     public final static String DEFAULT_LOAD_BALANCING_POLICY = "round_robin"; // 默认负载均衡策略
@@ -12,25 +23,166 @@ public final class ManagedChannelResource implements SharedResourceHolder.Resour
 
     private final String serviceName;
     private final String appName;
+    private final ChannelOptions options;
+    @Nullable
+    private final NettyTransport transport;
+    @Nullable
+    private final Compression compression;
+    // shared by the channels of the pool, and by the channels created again after a release
+    @Nullable
+    private final ResponseCacheInterceptor cacheInterceptor;
 
-    ManagedChannelResource(String appName, String serviceName) {
+    ManagedChannelResource(String appName, String serviceName, ChannelOptions options,
+                           @Nullable NettyTransport transport, @Nullable Compression compression) {
         this.appName = appName;
         this.serviceName = serviceName;
+        this.options = options;
+        this.transport = transport;
+        this.compression = compression;
+        if (!options.getCompressionPolicies().isEmpty()) {
+            checkArgument(compression != null, "Compression policies of %s need the compression codecs", serviceName);
+            options.getCompressionPolicies().values().forEach(compression::checkPolicy);
+        }
+        this.cacheInterceptor = options.getCacheTtls().isEmpty() ? null
+                : new ResponseCacheInterceptor(serviceName, options.getCacheTtls(), options.getCacheMaxBytes());
+    }
+
+    String getLoadBalancingPolicy() {
+        return options.getLoadBalancingPolicy();
+    }
+
+    int getPoolSize() {
+        return options.getPoolSize();
+    }
+
+    @Nullable
+    ResponseCacheInterceptor getCacheInterceptor() {
+        return cacheInterceptor;
     }
 
     @Override
     public ManagedChannel create() {
-        final ManagedChannelBuilder<?> channelBuilder = ManagedChannelBuilder
+        if (options.getPoolSize() == 1) {
+            return newChannel();
+        }
+
+        final List<ManagedChannel> channels = new ArrayList<>(options.getPoolSize());
+        for (int i = 0; i < options.getPoolSize(); i++) {
+            channels.add(newChannel());
+        }
+        return new ManagedChannelPool(channels);
+    }
+
+    private ManagedChannel newChannel() {
+        final NettyChannelBuilder channelBuilder = NettyChannelBuilder
                 .forTarget(KUBERNETES_URL_PREFIX + serviceName)
                 .userAgent(appName)
-                .defaultLoadBalancingPolicy(DEFAULT_LOAD_BALANCING_POLICY)
+                .defaultLoadBalancingPolicy(options.getLoadBalancingPolicy())
                 .usePlaintext();
+        if (transport != null) {
+            transport.configure(channelBuilder);
+        }
+        if (compression != null) {
+            compression.configure(channelBuilder);
+        }
+        if (options.getKeepAliveTime() != null) {
+            channelBuilder.keepAliveTime(options.getKeepAliveTime().toNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (options.getKeepAliveTimeout() != null) {
+            channelBuilder.keepAliveTimeout(options.getKeepAliveTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (options.getKeepAliveWithoutCalls() != null) {
+            channelBuilder.keepAliveWithoutCalls(options.getKeepAliveWithoutCalls());
+        }
+        if (options.getIdleTimeout() != null) {
+            channelBuilder.idleTimeout(options.getIdleTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (options.getFlowControlWindow() != null) {
+            channelBuilder.flowControlWindow(options.getFlowControlWindow());
+        }
+        if (options.getMaxInboundMessageSize() != null) {
+            channelBuilder.maxInboundMessageSize(options.getMaxInboundMessageSize());
+        }
 
-            channelBuilder.intercept(new OpenTelemetryClientInterceptor());
+        final Map<String, Object> serviceConfig = serviceConfig(options);
+        if (serviceConfig != null) {
+            channelBuilder.defaultServiceConfig(serviceConfig).enableRetry();
+        }
+
+        // the last interceptor runs first: the deadline is propagated, then the cache hits skip the others
+        final List<ClientInterceptor> interceptors = new ArrayList<>(7);
+        if (options.getZeroCopyThreshold() != null) {
+            // next to the transport, the others see the messages whatever their marshallers
+            interceptors.add(new ZeroCopyClientInterceptor(options.getZeroCopyThreshold()));
+        }
+        if (!options.getCompressionPolicies().isEmpty()) {
+            interceptors.add(new CompressionClientInterceptor(options.getCompressionPolicies()));
+        }
+        interceptors.add(new OpenTelemetryClientInterceptor());
+        interceptors.add(new MetricsClientInterceptor());
+        if (cacheInterceptor != null) {
+            interceptors.add(cacheInterceptor);
+        }
+        interceptors.add(new DeadlineClientInterceptor(options.getDeadlineMargin()));
+        if (ConsistentHashLoadBalancerProvider.POLICY_NAME.equals(options.getLoadBalancingPolicy())
+                && !options.getConsistentHash().getKeyFields().isEmpty()) {
+            // first, the other interceptors see the call once it is started with its key
+            interceptors.add(new HashKeyClientInterceptor(options.getConsistentHash().getKeyFields()));
+        }
+        channelBuilder.intercept(interceptors);
 
         return channelBuilder.build();
     }
 
+    /**
+     * @return the service config of the method policies, retry budget, outlier detection,
+     * consistent hashing and health checking, null if none
+     */
+    @Nullable
+    static Map<String, Object> serviceConfig(ChannelOptions options) {
+        final boolean consistentHash =
+                ConsistentHashLoadBalancerProvider.POLICY_NAME.equals(options.getLoadBalancingPolicy());
+        if (options.getMethodPolicies().isEmpty() && options.getRetryBudgetMaxTokens() == null
+                && !options.getOutlierDetection().isEnabled() && options.getHealthCheckServiceName() == null
+                && !consistentHash) {
+            return null;
+        }
+        final List<Map<String, Object>> methodConfigs = new ArrayList<>();
+        options.getMethodPolicies().forEach((name, policy) -> {
+            final Map<String, String> methodName = new LinkedHashMap<>();
+            if (!"*".equals(name)) {
+                final int slash = name.indexOf('/');
+                methodName.put("service", slash < 0 ? name : name.substring(0, slash));
+                if (slash >= 0) {
+                    methodName.put("method", name.substring(slash + 1));
+                }
+            }
+            methodConfigs.add(policy.toMethodConfig(List.of(methodName)));
+        });
+
+        final Map<String, Object> serviceConfig = new LinkedHashMap<>();
+        serviceConfig.put("methodConfig", methodConfigs);
+        if (options.getRetryBudgetMaxTokens() != null) {
+            serviceConfig.put("retryThrottling", Map.of(
+                    "maxTokens", options.getRetryBudgetMaxTokens(),
+                    "tokenRatio", options.getRetryBudgetTokenRatio()));
+        }
+        // the default load balancing policy of the channel has no config
+        final Map<String, Object> policyConfig = consistentHash ? options.getConsistentHash().toConfig() : null;
+        if (options.getOutlierDetection().isEnabled()) {
+            // replaces the default load balancing policy of the channel, which becomes the child policy
+            serviceConfig.put("loadBalancingConfig", List.of(Map.of(OutlierDetectionLoadBalancerProvider.POLICY_NAME,
+                    options.getOutlierDetection().toConfig(options.getLoadBalancingPolicy(), policyConfig))));
+        } else if (policyConfig != null) {
+            serviceConfig.put("loadBalancingConfig",
+                    List.of(Map.of(options.getLoadBalancingPolicy(), policyConfig)));
+        }
+        if (options.getHealthCheckServiceName() != null) {
+            serviceConfig.put("healthCheckConfig", Map.of("serviceName", options.getHealthCheckServiceName()));
+        }
+        return serviceConfig;
+    }
+
     @Override
     public void close(ManagedChannel instance) {
         if (instance != null && !instance.isShutdown() && !instance.isTerminated()) {
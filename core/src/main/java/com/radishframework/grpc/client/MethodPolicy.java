@@ -0,0 +1,191 @@
+package com.radishframework.grpc.client;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import io.grpc.Status;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Default deadline and retry or hedging of the calls of a service or a method, turned into the
+ * method config of the channel service config
+ * <p>
+ * Hedging sends the next attempt after {@link #getHedgingDelay()} without waiting for the previous
+ * one to fail, it is only meant for idempotent methods.
+ */
+public final class MethodPolicy {
+    @Nullable
+    private final Duration timeout;
+    @Nullable
+    private final Integer maxAttempts;
+    @Nullable
+    private final Duration initialBackoff;
+    @Nullable
+    private final Duration maxBackoff;
+    @Nullable
+    private final Double backoffMultiplier;
+    @Nullable
+    private final Set<Status.Code> retryableStatusCodes;
+    @Nullable
+    private final Duration hedgingDelay;
+
+    private MethodPolicy(Builder builder) {
+        this.timeout = builder.timeout;
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoff = builder.initialBackoff;
+        this.maxBackoff = builder.maxBackoff;
+        this.backoffMultiplier = builder.backoffMultiplier;
+        this.retryableStatusCodes = builder.retryableStatusCodes;
+        this.hedgingDelay = builder.hedgingDelay;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Deadline of the calls made without one, null for none
+     */
+    @Nullable
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Attempts of a call including the first one, 1 for neither retries nor hedging
+     */
+    public int getMaxAttempts() {
+        return maxAttempts == null ? 1 : maxAttempts;
+    }
+
+    public Duration getInitialBackoff() {
+        return initialBackoff == null ? Duration.ofMillis(50) : initialBackoff;
+    }
+
+    public Duration getMaxBackoff() {
+        return maxBackoff == null ? Duration.ofSeconds(1) : maxBackoff;
+    }
+
+    public double getBackoffMultiplier() {
+        return backoffMultiplier == null ? 2d : backoffMultiplier;
+    }
+
+    /**
+     * Status codes retried, or which don't stop the hedged attempts
+     */
+    public Set<Status.Code> getRetryableStatusCodes() {
+        return retryableStatusCodes == null ? EnumSet.of(Status.Code.UNAVAILABLE) : retryableStatusCodes;
+    }
+
+    /**
+     * Delay between the hedged attempts, null to retry the failed attempts instead
+     */
+    @Nullable
+    public Duration getHedgingDelay() {
+        return hedgingDelay;
+    }
+
+    /**
+     * @param names the service config names of the methods, e.g. {"service": "package.Service"}
+     */
+    Map<String, Object> toMethodConfig(List<Map<String, String>> names) {
+        final Map<String, Object> methodConfig = new LinkedHashMap<>();
+        methodConfig.put("name", names);
+        if (timeout != null) {
+            methodConfig.put("timeout", toJsonDuration(timeout));
+        }
+        if (getMaxAttempts() > 1) {
+            final List<String> codes = new ArrayList<>();
+            getRetryableStatusCodes().forEach(code -> codes.add(code.name()));
+            final Map<String, Object> policy = new LinkedHashMap<>();
+            policy.put("maxAttempts", (double) getMaxAttempts());
+            if (hedgingDelay != null) {
+                policy.put("hedgingDelay", toJsonDuration(hedgingDelay));
+                policy.put("nonFatalStatusCodes", codes);
+                methodConfig.put("hedgingPolicy", policy);
+            } else {
+                policy.put("initialBackoff", toJsonDuration(getInitialBackoff()));
+                policy.put("maxBackoff", toJsonDuration(getMaxBackoff()));
+                policy.put("backoffMultiplier", getBackoffMultiplier());
+                policy.put("retryableStatusCodes", codes);
+                methodConfig.put("retryPolicy", policy);
+            }
+        }
+        return methodConfig;
+    }
+
+    private static String toJsonDuration(Duration duration) {
+        return duration.getSeconds() + "." + String.format("%09d", duration.getNano()) + "s";
+    }
+
+    public static final class Builder {
+        private Duration timeout;
+        private Integer maxAttempts;
+        private Duration initialBackoff;
+        private Duration maxBackoff;
+        private Double backoffMultiplier;
+        private Set<Status.Code> retryableStatusCodes;
+        private Duration hedgingDelay;
+
+        private Builder() {
+        }
+
+        public Builder setTimeout(@Nullable Duration timeout) {
+            checkArgument(timeout == null || !timeout.isNegative() && !timeout.isZero(), "timeout must be positive");
+            this.timeout = timeout;
+            return this;
+        }
+
+        public Builder setMaxAttempts(@Nullable Integer maxAttempts) {
+            checkArgument(maxAttempts == null || maxAttempts > 0, "maxAttempts must be positive");
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public Builder setInitialBackoff(@Nullable Duration initialBackoff) {
+            checkArgument(initialBackoff == null || !initialBackoff.isNegative() && !initialBackoff.isZero(),
+                    "initialBackoff must be positive");
+            this.initialBackoff = initialBackoff;
+            return this;
+        }
+
+        public Builder setMaxBackoff(@Nullable Duration maxBackoff) {
+            checkArgument(maxBackoff == null || !maxBackoff.isNegative() && !maxBackoff.isZero(),
+                    "maxBackoff must be positive");
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        public Builder setBackoffMultiplier(@Nullable Double backoffMultiplier) {
+            checkArgument(backoffMultiplier == null || backoffMultiplier > 0, "backoffMultiplier must be positive");
+            this.backoffMultiplier = backoffMultiplier;
+            return this;
+        }
+
+        public Builder setRetryableStatusCodes(@Nullable Set<Status.Code> retryableStatusCodes) {
+            checkArgument(retryableStatusCodes == null || !retryableStatusCodes.isEmpty()
+                            && !retryableStatusCodes.contains(Status.Code.OK),
+                    "retryableStatusCodes must be non empty and without OK");
+            this.retryableStatusCodes = retryableStatusCodes == null ? null : EnumSet.copyOf(retryableStatusCodes);
+            return this;
+        }
+
+        public Builder setHedgingDelay(@Nullable Duration hedgingDelay) {
+            checkArgument(hedgingDelay == null || !hedgingDelay.isNegative(), "hedgingDelay must not be negative");
+            this.hedgingDelay = hedgingDelay;
+            return this;
+        }
+
+        public MethodPolicy build() {
+            return new MethodPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.radishframework.grpc.client;
+
+import com.google.protobuf.MessageLite;
+import com.radishframework.grpc.common.RpcMetrics;
+import io.grpc.*;
+
+/**
+ * Records the latency, status code, message counts and sizes and in-flight count of the calls
+ * per method in {@link RpcMetrics}
+ */
+public class MetricsClientInterceptor implements ClientInterceptor {
+    private final RpcMetrics rpcMetrics;
+
+    public MetricsClientInterceptor() {
+        this(RpcMetrics.getDefault());
+    }
+
+    public MetricsClientInterceptor(RpcMetrics rpcMetrics) {
+        this.rpcMetrics = rpcMetrics;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+            MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions, Channel channel) {
+        final RpcMetrics.MethodMetrics metrics = rpcMetrics.client(methodDescriptor.getFullMethodName());
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(
+                channel.newCall(methodDescriptor, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                final long startNanos = System.nanoTime();
+                metrics.started();
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(
+                        responseListener) {
+                    @Override
+                    public void onMessage(RespT message) {
+                        metrics.response(sizeOf(message));
+                        super.onMessage(message);
+                    }
+
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        metrics.closed(status.getCode(), System.nanoTime() - startNanos);
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+
+            @Override
+            public void sendMessage(ReqT message) {
+                metrics.request(sizeOf(message));
+                super.sendMessage(message);
+            }
+        };
+    }
+
+    private static int sizeOf(Object message) {
+        return message instanceof MessageLite ? ((MessageLite) message).getSerializedSize() : -1;
+    }
+}
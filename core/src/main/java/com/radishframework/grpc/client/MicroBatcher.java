@@ -0,0 +1,316 @@
+package com.radishframework.grpc.client;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.SharedResourceHolder;
+import io.grpc.stub.ClientCalls;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Gathers the concurrent lookups of single items into calls of the batch method of a service,
+ * e.g. GetUser calls into GetUsers, and hands every caller its own response.
+ * <p>
+ * A batch is sent when it holds {@link Builder#setMaxBatchSize(int)} distinct requests, or
+ * {@link Builder#setMaxDelay(Duration)} after its first request. Identical requests of a batch are
+ * sent once. The deadline of every caller, the one of its {@link Context}, still applies to its own
+ * response. On the server, {@code BatchCalls} implements the batch method over the single item one.
+ *
+ * @param <ReqT>       single item request
+ * @param <RespT>      single item response
+ * @param <BatchReqT>  request of the batch method
+ * @param <BatchRespT> response of the batch method
+ */
+public final class MicroBatcher<ReqT, RespT, BatchReqT, BatchRespT> implements AutoCloseable {
+    private final Channel channel;
+    private final MethodDescriptor<BatchReqT, BatchRespT> batchMethod;
+    private final Function<List<ReqT>, BatchReqT> batchRequest;
+    private final BiFunction<List<ReqT>, BatchRespT, List<RespT>> splitResponse;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final CallOptions callOptions;
+    @Nullable
+    private final Duration timeout;
+    private final ScheduledExecutorService timerService = SharedResourceHolder.get(GrpcUtil.TIMER_SERVICE);
+
+    // guarded by this
+    private Batch pending;
+    private boolean closed;
+
+    private MicroBatcher(Builder<ReqT, RespT, BatchReqT, BatchRespT> builder) {
+        this.channel = builder.channel;
+        this.batchMethod = builder.batchMethod;
+        this.batchRequest = checkNotNull(builder.batchRequest, "batchRequest");
+        this.splitResponse = checkNotNull(builder.splitResponse, "splitResponse");
+        this.maxBatchSize = builder.maxBatchSize;
+        this.maxDelayNanos = builder.maxDelay.toNanos();
+        this.callOptions = builder.callOptions;
+        this.timeout = builder.timeout;
+    }
+
+    /**
+     * @param channel     e.g. created by {@link ManagedChannelFactory}
+     * @param batchMethod unary method taking a list of requests and answering a list of responses
+     */
+    public static <ReqT, RespT, BatchReqT, BatchRespT> Builder<ReqT, RespT, BatchReqT, BatchRespT> newBuilder(
+            Channel channel, MethodDescriptor<BatchReqT, BatchRespT> batchMethod) {
+        checkArgument(batchMethod.getType() == MethodDescriptor.MethodType.UNARY, "batchMethod must be unary");
+        return new Builder<>(channel, batchMethod);
+    }
+
+    /**
+     * @return the response of the request, failed with a {@link io.grpc.StatusRuntimeException} if
+     * the batch call failed
+     */
+    public ListenableFuture<RespT> call(ReqT request) {
+        final SettableFuture<RespT> response = SettableFuture.create();
+        final Deadline deadline = Context.current().getDeadline();
+        if (deadline != null) {
+            if (deadline.isExpired()) {
+                response.setException(Status.DEADLINE_EXCEEDED.withDescription("Deadline exceeded before batching")
+                        .asRuntimeException());
+                return response;
+            }
+            // the caller gives up on its own deadline, the batch goes on for the others
+            final ScheduledFuture<?> expiration = deadline.runOnExpiration(() -> response.setException(
+                    Status.DEADLINE_EXCEEDED.withDescription("Deadline exceeded waiting for the batch")
+                            .asRuntimeException()), timerService);
+            response.addListener(() -> expiration.cancel(false), MoreExecutors.directExecutor());
+        }
+
+        Batch full = null;
+        synchronized (this) {
+            checkState(!closed, "MicroBatcher is closed");
+            if (pending == null) {
+                final Batch batch = new Batch();
+                batch.flushTimer = timerService.schedule(() -> flush(batch), maxDelayNanos, TimeUnit.NANOSECONDS);
+                pending = batch;
+            }
+            pending.add(request, response, deadline);
+            if (pending.requests.size() >= maxBatchSize) {
+                full = pending;
+                pending = null;
+                full.flushTimer.cancel(false);
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        return response;
+    }
+
+    /**
+     * Sends the pending batch, the calls made afterwards fail
+     */
+    @Override
+    public void close() {
+        final Batch last;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            last = pending;
+            pending = null;
+        }
+        if (last != null) {
+            last.flushTimer.cancel(false);
+            send(last);
+        }
+        SharedResourceHolder.release(GrpcUtil.TIMER_SERVICE, timerService);
+    }
+
+    private void flush(Batch batch) {
+        synchronized (this) {
+            if (pending != batch) {
+                return;
+            }
+            pending = null;
+        }
+        send(batch);
+    }
+
+    private void send(Batch batch) {
+        // the callers which gave up before the batch left are not asked for
+        batch.requests.values().removeIf(responses -> {
+            responses.removeIf(SettableFuture::isDone);
+            return responses.isEmpty();
+        });
+        if (batch.requests.isEmpty()) {
+            return;
+        }
+
+        final List<ReqT> requests = new ArrayList<>(batch.requests.keySet());
+        CallOptions options = callOptions;
+        // the batch lasts as long as its most patient caller
+        Deadline deadline = batch.unbounded ? null : batch.latestDeadline;
+        if (timeout != null) {
+            final Deadline timeoutDeadline = Deadline.after(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            deadline = deadline == null ? timeoutDeadline : deadline.minimum(timeoutDeadline);
+        }
+        if (deadline != null) {
+            options = options.withDeadline(deadline);
+        }
+
+        final ListenableFuture<BatchRespT> batchResponse;
+        // out of the first caller context, its cancellation doesn't fail the others
+        final Context previous = Context.ROOT.attach();
+        try {
+            batchResponse = ClientCalls.futureUnaryCall(channel.newCall(batchMethod, options),
+                    batchRequest.apply(requests));
+        } catch (RuntimeException e) {
+            fail(batch, e);
+            return;
+        } finally {
+            Context.ROOT.detach(previous);
+        }
+        Futures.addCallback(batchResponse, new FutureCallback<BatchRespT>() {
+            @Override
+            public void onSuccess(BatchRespT result) {
+                final List<RespT> responses;
+                try {
+                    responses = splitResponse.apply(requests, result);
+                } catch (RuntimeException e) {
+                    fail(batch, e);
+                    return;
+                }
+                if (responses.size() != requests.size()) {
+                    fail(batch, Status.INTERNAL.withDescription("Batch of " + requests.size()
+                            + " requests answered with " + responses.size() + " responses").asRuntimeException());
+                    return;
+                }
+                for (int i = 0; i < requests.size(); i++) {
+                    for (SettableFuture<RespT> response : batch.requests.get(requests.get(i))) {
+                        response.set(responses.get(i));
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                fail(batch, t);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void fail(Batch batch, Throwable t) {
+        for (List<SettableFuture<RespT>> responses : batch.requests.values()) {
+            for (SettableFuture<RespT> response : responses) {
+                response.setException(t);
+            }
+        }
+    }
+
+    private final class Batch {
+        // the callers of every distinct request, in the order of the requests
+        private final Map<ReqT, List<SettableFuture<RespT>>> requests = new LinkedHashMap<>();
+        private ScheduledFuture<?> flushTimer;
+        private Deadline latestDeadline;
+        // a caller without deadline waits as long as it takes
+        private boolean unbounded;
+
+        void add(ReqT request, SettableFuture<RespT> response, @Nullable Deadline deadline) {
+            requests.computeIfAbsent(request, r -> new ArrayList<>(1)).add(response);
+            if (deadline == null) {
+                unbounded = true;
+            } else if (latestDeadline == null || latestDeadline.isBefore(deadline)) {
+                latestDeadline = deadline;
+            }
+        }
+    }
+
+    public static final class Builder<ReqT, RespT, BatchReqT, BatchRespT> {
+        private final Channel channel;
+        private final MethodDescriptor<BatchReqT, BatchRespT> batchMethod;
+        private Function<List<ReqT>, BatchReqT> batchRequest;
+        private BiFunction<List<ReqT>, BatchRespT, List<RespT>> splitResponse;
+        private int maxBatchSize = 100;
+        private Duration maxDelay = Duration.ofMillis(2);
+        private CallOptions callOptions = CallOptions.DEFAULT;
+        private Duration timeout;
+
+        private Builder(Channel channel, MethodDescriptor<BatchReqT, BatchRespT> batchMethod) {
+            this.channel = checkNotNull(channel, "channel");
+            this.batchMethod = batchMethod;
+        }
+
+        /**
+         * @param batchRequest builds the batch request of the distinct requests
+         */
+        public Builder<ReqT, RespT, BatchReqT, BatchRespT> setBatchRequest(
+                Function<List<ReqT>, BatchReqT> batchRequest) {
+            this.batchRequest = batchRequest;
+            return this;
+        }
+
+        /**
+         * @param splitResponse the responses of the batch response, in the order of the requests
+         */
+        public Builder<ReqT, RespT, BatchReqT, BatchRespT> setSplitResponse(
+                BiFunction<List<ReqT>, BatchRespT, List<RespT>> splitResponse) {
+            this.splitResponse = splitResponse;
+            return this;
+        }
+
+        public Builder<ReqT, RespT, BatchReqT, BatchRespT> setMaxBatchSize(int maxBatchSize) {
+            checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Time the first request of a batch waits for the others
+         */
+        public Builder<ReqT, RespT, BatchReqT, BatchRespT> setMaxDelay(Duration maxDelay) {
+            checkArgument(!maxDelay.isNegative(), "maxDelay must not be negative");
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * Options of the batch calls, e.g. the compression
+         */
+        public Builder<ReqT, RespT, BatchReqT, BatchRespT> setCallOptions(CallOptions callOptions) {
+            this.callOptions = checkNotNull(callOptions, "callOptions");
+            return this;
+        }
+
+        /**
+         * Deadline of the batch calls, on top of the deadlines of the callers
+         */
+        public Builder<ReqT, RespT, BatchReqT, BatchRespT> setTimeout(@Nullable Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public MicroBatcher<ReqT, RespT, BatchReqT, BatchRespT> build() {
+            return new MicroBatcher<>(this);
+        }
+    }
+}
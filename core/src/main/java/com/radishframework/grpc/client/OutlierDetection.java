@@ -0,0 +1,269 @@
+package com.radishframework.grpc.client;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import io.grpc.internal.JsonUtil;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * When the {@link OutlierDetectionLoadBalancerProvider} ejects a backend for a while: after
+ * consecutive failures right away, or at the end of an interval when its success rate or its
+ * latency stands out from the other backends.
+ * <p>
+ * A backend ejected again stays out twice as long as the previous time, up to the max ejection time.
+ */
+public final class OutlierDetection {
+    public static final OutlierDetection DEFAULT = newBuilder().build();
+    /**
+     * No outlier detection, e.g. for a service while it is enabled for the others
+     */
+    public static final OutlierDetection OFF = newBuilder().setEnabled(false).build();
+
+    private final boolean enabled;
+    private final Duration interval;
+    private final Duration baseEjectionTime;
+    private final Duration maxEjectionTime;
+    private final int maxEjectionPercent;
+    private final int consecutiveFailures;
+    private final double successRateStdevFactor;
+    private final double latencyFactor;
+    private final int minimumHosts;
+    private final int requestVolume;
+
+    private OutlierDetection(Builder builder) {
+        this.enabled = builder.enabled;
+        this.interval = builder.interval;
+        this.baseEjectionTime = builder.baseEjectionTime;
+        this.maxEjectionTime = builder.maxEjectionTime;
+        this.maxEjectionPercent = builder.maxEjectionPercent;
+        this.consecutiveFailures = builder.consecutiveFailures;
+        this.successRateStdevFactor = builder.successRateStdevFactor;
+        this.latencyFactor = builder.latencyFactor;
+        this.minimumHosts = builder.minimumHosts;
+        this.requestVolume = builder.requestVolume;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Period of the success rate and latency statistics, and of the end of the ejections
+     */
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public Duration getBaseEjectionTime() {
+        return baseEjectionTime;
+    }
+
+    public Duration getMaxEjectionTime() {
+        return maxEjectionTime;
+    }
+
+    /**
+     * Share of the backends ejected at most, with 10% nothing is ejected below 10 backends
+     */
+    public int getMaxEjectionPercent() {
+        return maxEjectionPercent;
+    }
+
+    /**
+     * Failed calls in a row ejecting a backend, 0 to never eject on failures in a row
+     */
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * Backends whose success rate is below the mean less this factor times the standard deviation
+     * are ejected, 0 to never eject on the success rate
+     */
+    public double getSuccessRateStdevFactor() {
+        return successRateStdevFactor;
+    }
+
+    /**
+     * Backends whose mean latency is over this factor times the median latency are ejected, 0 to
+     * never eject on the latency
+     */
+    public double getLatencyFactor() {
+        return latencyFactor;
+    }
+
+    /**
+     * Backends with enough calls needed to compare their success rate or latency
+     */
+    public int getMinimumHosts() {
+        return minimumHosts;
+    }
+
+    /**
+     * Calls in an interval needed for the success rate or latency of a backend to count
+     */
+    public int getRequestVolume() {
+        return requestVolume;
+    }
+
+    /**
+     * @param childConfig load balancing config of the child policy, null if it has none
+     * @return the load balancing config of the outlier detection policy
+     */
+    Map<String, Object> toConfig(String childPolicy, @Nullable Map<String, Object> childConfig) {
+        final Map<String, Object> config = new LinkedHashMap<>();
+        config.put("childPolicy", childPolicy);
+        if (childConfig != null) {
+            config.put("childConfig", childConfig);
+        }
+        config.put("interval", toJsonDuration(interval));
+        config.put("baseEjectionTime", toJsonDuration(baseEjectionTime));
+        config.put("maxEjectionTime", toJsonDuration(maxEjectionTime));
+        config.put("maxEjectionPercent", (double) maxEjectionPercent);
+        config.put("consecutiveFailures", (double) consecutiveFailures);
+        config.put("successRateStdevFactor", successRateStdevFactor);
+        config.put("latencyFactor", latencyFactor);
+        config.put("minimumHosts", (double) minimumHosts);
+        config.put("requestVolume", (double) requestVolume);
+        return config;
+    }
+
+    /**
+     * @param config load balancing config, the missing values are the defaults
+     */
+    static OutlierDetection fromConfig(Map<String, ?> config) {
+        final Builder builder = newBuilder();
+        final Long interval = JsonUtil.getStringAsDuration(config, "interval");
+        if (interval != null) {
+            builder.setInterval(Duration.ofNanos(interval));
+        }
+        final Long baseEjectionTime = JsonUtil.getStringAsDuration(config, "baseEjectionTime");
+        if (baseEjectionTime != null) {
+            builder.setBaseEjectionTime(Duration.ofNanos(baseEjectionTime));
+        }
+        final Long maxEjectionTime = JsonUtil.getStringAsDuration(config, "maxEjectionTime");
+        if (maxEjectionTime != null) {
+            builder.setMaxEjectionTime(Duration.ofNanos(maxEjectionTime));
+        }
+        final Integer maxEjectionPercent = JsonUtil.getNumberAsInteger(config, "maxEjectionPercent");
+        if (maxEjectionPercent != null) {
+            builder.setMaxEjectionPercent(maxEjectionPercent);
+        }
+        final Integer consecutiveFailures = JsonUtil.getNumberAsInteger(config, "consecutiveFailures");
+        if (consecutiveFailures != null) {
+            builder.setConsecutiveFailures(consecutiveFailures);
+        }
+        final Double successRateStdevFactor = JsonUtil.getNumber(config, "successRateStdevFactor");
+        if (successRateStdevFactor != null) {
+            builder.setSuccessRateStdevFactor(successRateStdevFactor);
+        }
+        final Double latencyFactor = JsonUtil.getNumber(config, "latencyFactor");
+        if (latencyFactor != null) {
+            builder.setLatencyFactor(latencyFactor);
+        }
+        final Integer minimumHosts = JsonUtil.getNumberAsInteger(config, "minimumHosts");
+        if (minimumHosts != null) {
+            builder.setMinimumHosts(minimumHosts);
+        }
+        final Integer requestVolume = JsonUtil.getNumberAsInteger(config, "requestVolume");
+        if (requestVolume != null) {
+            builder.setRequestVolume(requestVolume);
+        }
+        return builder.build();
+    }
+
+    private static String toJsonDuration(Duration duration) {
+        return duration.getSeconds() + "." + String.format("%09d", duration.getNano()) + "s";
+    }
+
+    public static final class Builder {
+        private boolean enabled = true;
+        private Duration interval = Duration.ofSeconds(10);
+        private Duration baseEjectionTime = Duration.ofSeconds(30);
+        private Duration maxEjectionTime = Duration.ofMinutes(5);
+        private int maxEjectionPercent = 10;
+        private int consecutiveFailures = 5;
+        private double successRateStdevFactor = 1.9;
+        private double latencyFactor = 3;
+        private int minimumHosts = 5;
+        private int requestVolume = 100;
+
+        private Builder() {
+        }
+
+        public Builder setEnabled(boolean enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+
+        public Builder setInterval(Duration interval) {
+            checkArgument(!interval.isNegative() && !interval.isZero(), "interval must be positive");
+            this.interval = interval;
+            return this;
+        }
+
+        public Builder setBaseEjectionTime(Duration baseEjectionTime) {
+            checkArgument(!baseEjectionTime.isNegative() && !baseEjectionTime.isZero(),
+                    "baseEjectionTime must be positive");
+            this.baseEjectionTime = baseEjectionTime;
+            return this;
+        }
+
+        public Builder setMaxEjectionTime(Duration maxEjectionTime) {
+            checkArgument(!maxEjectionTime.isNegative() && !maxEjectionTime.isZero(),
+                    "maxEjectionTime must be positive");
+            this.maxEjectionTime = maxEjectionTime;
+            return this;
+        }
+
+        public Builder setMaxEjectionPercent(int maxEjectionPercent) {
+            checkArgument(maxEjectionPercent >= 0 && maxEjectionPercent <= 100,
+                    "maxEjectionPercent must be in [0, 100]");
+            this.maxEjectionPercent = maxEjectionPercent;
+            return this;
+        }
+
+        public Builder setConsecutiveFailures(int consecutiveFailures) {
+            checkArgument(consecutiveFailures >= 0, "consecutiveFailures must not be negative");
+            this.consecutiveFailures = consecutiveFailures;
+            return this;
+        }
+
+        public Builder setSuccessRateStdevFactor(double successRateStdevFactor) {
+            checkArgument(successRateStdevFactor >= 0, "successRateStdevFactor must not be negative");
+            this.successRateStdevFactor = successRateStdevFactor;
+            return this;
+        }
+
+        public Builder setLatencyFactor(double latencyFactor) {
+            checkArgument(latencyFactor == 0 || latencyFactor > 1, "latencyFactor must be 0 or over 1");
+            this.latencyFactor = latencyFactor;
+            return this;
+        }
+
+        public Builder setMinimumHosts(int minimumHosts) {
+            checkArgument(minimumHosts > 0, "minimumHosts must be positive");
+            this.minimumHosts = minimumHosts;
+            return this;
+        }
+
+        public Builder setRequestVolume(int requestVolume) {
+            checkArgument(requestVolume > 0, "requestVolume must be positive");
+            this.requestVolume = requestVolume;
+            return this;
+        }
+
+        public OutlierDetection build() {
+            return new OutlierDetection(this);
+        }
+    }
+}
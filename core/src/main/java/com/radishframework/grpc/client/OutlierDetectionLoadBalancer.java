@@ -0,0 +1,530 @@
+package com.radishframework.grpc.client;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.grpc.Attributes;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancerRegistry;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+import io.grpc.util.ForwardingClientStreamTracer;
+import io.grpc.util.ForwardingLoadBalancerHelper;
+import io.grpc.util.ForwardingSubchannel;
+
+/**
+ * Wraps the load balancer of the channel and ejects the outlier backends for a while.
+ * <p>
+ * The subchannels of an ejected backend are reported to the child load balancer as in transient
+ * failure, so it stops picking them, and their actual state is reported back when the ejection
+ * ends. The calls of every picked subchannel are traced to count the failures and latency of its
+ * backend.
+ */
+final class OutlierDetectionLoadBalancer extends LoadBalancer {
+    private static final Logger log = LoggerFactory.getLogger(OutlierDetectionLoadBalancer.class);
+
+    private static final Status EJECTED = Status.UNAVAILABLE.withDescription("Ejected by outlier detection");
+    // codes telling that a backend is failing, rather than the caller or the application
+    private static final Set<Status.Code> FAILURES = EnumSet.of(Status.Code.UNAVAILABLE, Status.Code.INTERNAL,
+            Status.Code.UNKNOWN, Status.Code.DATA_LOSS, Status.Code.DEADLINE_EXCEEDED,
+            Status.Code.RESOURCE_EXHAUSTED);
+    private static final Attributes.Key<Backend> BACKEND_KEY = Attributes.Key.create("radish-outlier-backend");
+    private static final ClientStreamTracer NOOP_TRACER = new ClientStreamTracer() {
+    };
+
+    private final Helper helper;
+    private final SynchronizationContext syncContext;
+    // backends by their addresses without attributes, attributes change with the pod conditions
+    private final Map<EquivalentAddressGroup, Backend> backends = new HashMap<>();
+
+    // read by the tracers of the calls
+    private volatile OutlierDetection detection;
+
+    // only accessed from the channel's synchronization context
+    private String childPolicy;
+    private LoadBalancer child;
+    private SynchronizationContext.ScheduledHandle detectionTimer;
+
+    OutlierDetectionLoadBalancer(Helper helper) {
+        this.helper = helper;
+        this.syncContext = helper.getSynchronizationContext();
+    }
+
+    @Override
+    public void handleResolvedAddresses(ResolvedAddresses resolvedAddresses) {
+        final Config config = (Config) resolvedAddresses.getLoadBalancingPolicyConfig();
+        if (child == null || !config.childPolicy.equals(childPolicy)) {
+            if (child != null) {
+                child.shutdown();
+            }
+            childPolicy = config.childPolicy;
+            child = LoadBalancerRegistry.getDefaultRegistry().getProvider(childPolicy)
+                    .newLoadBalancer(new ChildHelper());
+        }
+        final boolean intervalChanged = detection == null
+                || !detection.getInterval().equals(config.detection.getInterval());
+        detection = config.detection;
+
+        final Set<EquivalentAddressGroup> current = new HashSet<>();
+        for (EquivalentAddressGroup server : resolvedAddresses.getAddresses()) {
+            final EquivalentAddressGroup key = new EquivalentAddressGroup(server.getAddresses());
+            current.add(key);
+            backends.computeIfAbsent(key, Backend::new);
+        }
+        backends.keySet().retainAll(current);
+
+        if (intervalChanged) {
+            if (detectionTimer != null) {
+                detectionTimer.cancel();
+            }
+            scheduleDetection();
+        }
+        child.handleResolvedAddresses(resolvedAddresses.toBuilder()
+                .setLoadBalancingPolicyConfig(config.childConfig)
+                .build());
+    }
+
+    @Override
+    public void handleNameResolutionError(Status error) {
+        if (child != null) {
+            child.handleNameResolutionError(error);
+        } else {
+            helper.updateBalancingState(ConnectivityState.TRANSIENT_FAILURE,
+                    new ErrorPicker(error));
+        }
+    }
+
+    @Override
+    public boolean canHandleEmptyAddressListFromNameResolution() {
+        return child != null && child.canHandleEmptyAddressListFromNameResolution();
+    }
+
+    @Override
+    public void requestConnection() {
+        if (child != null) {
+            child.requestConnection();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if (detectionTimer != null) {
+            detectionTimer.cancel();
+        }
+        if (child != null) {
+            child.shutdown();
+        }
+        backends.clear();
+    }
+
+    private void scheduleDetection() {
+        detectionTimer = syncContext.schedule(() -> {
+            detectOutliers();
+            scheduleDetection();
+        }, detection.getInterval().toNanos(), TimeUnit.NANOSECONDS, helper.getScheduledExecutorService());
+    }
+
+    private void detectOutliers() {
+        final long now = System.nanoTime();
+        final Map<Backend, Window> windows = new HashMap<>();
+        for (Backend backend : backends.values()) {
+            windows.put(backend, backend.swapWindow());
+            if (backend.ejected && now - backend.ejectedUntilNanos >= 0) {
+                backend.uneject();
+            } else if (!backend.ejected && backend.ejections > 0) {
+                // a backend behaving for an interval gets back a shorter ejection time
+                backend.ejections--;
+            }
+        }
+
+        if (detection.getSuccessRateStdevFactor() > 0) {
+            final List<Backend> candidates = new ArrayList<>();
+            windows.forEach((backend, window) -> {
+                if (!backend.ejected && window.calls() >= detection.getRequestVolume()) {
+                    candidates.add(backend);
+                }
+            });
+            if (candidates.size() >= detection.getMinimumHosts()) {
+                double sum = 0;
+                for (Backend backend : candidates) {
+                    sum += windows.get(backend).successRate();
+                }
+                final double mean = sum / candidates.size();
+                double variance = 0;
+                for (Backend backend : candidates) {
+                    final double deviation = windows.get(backend).successRate() - mean;
+                    variance += deviation * deviation;
+                }
+                final double threshold = mean
+                        - detection.getSuccessRateStdevFactor() * Math.sqrt(variance / candidates.size());
+                for (Backend backend : candidates) {
+                    if (windows.get(backend).successRate() < threshold) {
+                        eject(backend, now, "success rate " + windows.get(backend).successRate());
+                    }
+                }
+            }
+        }
+
+        if (detection.getLatencyFactor() > 0) {
+            final List<Backend> candidates = new ArrayList<>();
+            windows.forEach((backend, window) -> {
+                if (!backend.ejected && window.calls() >= detection.getRequestVolume()) {
+                    candidates.add(backend);
+                }
+            });
+            if (candidates.size() >= detection.getMinimumHosts()) {
+                candidates.sort((a, b) -> Double.compare(windows.get(a).meanLatencyNanos(),
+                        windows.get(b).meanLatencyNanos()));
+                final double median = windows.get(candidates.get(candidates.size() / 2)).meanLatencyNanos();
+                for (Backend backend : candidates) {
+                    final double latency = windows.get(backend).meanLatencyNanos();
+                    if (latency > detection.getLatencyFactor() * median) {
+                        eject(backend, now, "mean latency " + (long) (latency / 1000) + "us");
+                    }
+                }
+            }
+        }
+    }
+
+    private void eject(Backend backend, long now, String reason) {
+        if (backend.ejected || !backends.containsKey(backend.key)) {
+            return;
+        }
+        int ejected = 0;
+        for (Backend other : backends.values()) {
+            if (other.ejected) {
+                ejected++;
+            }
+        }
+        // never more than the percentage, even for a single backend
+        if ((ejected + 1) * 100L > (long) backends.size() * detection.getMaxEjectionPercent()) {
+            return;
+        }
+
+        backend.ejections++;
+        final long ejectionNanos = ejectionNanos(backend.ejections, detection.getBaseEjectionTime().toNanos(),
+                detection.getMaxEjectionTime().toNanos());
+        log.info("Ejecting {} for {}ms, {}", backend.key.getAddresses(), ejectionNanos / 1_000_000, reason);
+        backend.eject(now + ejectionNanos);
+    }
+
+    /**
+     * @return the base time doubled for every ejection after the first, up to the max time
+     */
+    static long ejectionNanos(int ejections, long baseNanos, long maxNanos) {
+        final long max = Math.max(baseNanos, maxNanos);
+        final int shift = ejections - 1;
+        // saturates before the shift overflows
+        return shift >= Long.numberOfLeadingZeros(baseNanos) - 1 ? max : Math.min(max, baseNanos << shift);
+    }
+
+    static final class Config {
+        final String childPolicy;
+        @Nullable
+        final Object childConfig;
+        final OutlierDetection detection;
+
+        Config(String childPolicy, @Nullable Object childConfig, OutlierDetection detection) {
+            this.childPolicy = childPolicy;
+            this.childConfig = childConfig;
+            this.detection = detection;
+        }
+    }
+
+    private final class ChildHelper extends ForwardingLoadBalancerHelper {
+        @Override
+        protected Helper delegate() {
+            return helper;
+        }
+
+        @Override
+        public Subchannel createSubchannel(CreateSubchannelArgs args) {
+            final OutlierSubchannel subchannel = new OutlierSubchannel(helper.createSubchannel(args));
+            subchannel.setAddresses(args.getAddresses());
+            return subchannel;
+        }
+
+        @Override
+        public void updateBalancingState(ConnectivityState newState, SubchannelPicker newPicker) {
+            helper.updateBalancingState(newState, new TracingPicker(newPicker));
+        }
+    }
+
+    /**
+     * The calls and ejection state of the subchannels of one backend
+     */
+    private final class Backend {
+        private final EquivalentAddressGroup key;
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        // an ejection for consecutive failures is queued on the synchronization context
+        private final AtomicBoolean ejectionPending = new AtomicBoolean();
+        private final Set<OutlierSubchannel> subchannels = new HashSet<>();
+        private volatile Window window = new Window();
+
+        // only accessed from the channel's synchronization context
+        private boolean ejected;
+        private long ejectedUntilNanos;
+        private int ejections;
+
+        Backend(EquivalentAddressGroup key) {
+            this.key = key;
+        }
+
+        Window swapWindow() {
+            final Window previous = window;
+            window = new Window();
+            return previous;
+        }
+
+        void record(Status status, long latencyNanos) {
+            if (status.getCode() == Status.Code.CANCELLED) {
+                // the caller gave up, nothing to say about the backend
+                return;
+            }
+            final Window current = window;
+            current.latencyNanos.add(latencyNanos);
+            if (FAILURES.contains(status.getCode())) {
+                current.failures.increment();
+                final int threshold = detection.getConsecutiveFailures();
+                // tried again on the next failure when the max ejection percent declines it
+                if (threshold > 0 && consecutiveFailures.incrementAndGet() >= threshold
+                        && ejectionPending.compareAndSet(false, true)) {
+                    syncContext.execute(() -> {
+                        ejectionPending.set(false);
+                        OutlierDetectionLoadBalancer.this.eject(this, System.nanoTime(),
+                                consecutiveFailures.get() + " consecutive failures");
+                    });
+                }
+            } else {
+                current.successes.increment();
+                consecutiveFailures.set(0);
+            }
+        }
+
+        void eject(long untilNanos) {
+            ejected = true;
+            ejectedUntilNanos = untilNanos;
+            for (OutlierSubchannel subchannel : subchannels) {
+                subchannel.eject();
+            }
+        }
+
+        void uneject() {
+            ejected = false;
+            consecutiveFailures.set(0);
+            for (OutlierSubchannel subchannel : subchannels) {
+                subchannel.uneject();
+            }
+        }
+    }
+
+    private static final class Window {
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder latencyNanos = new LongAdder();
+
+        long calls() {
+            return successes.sum() + failures.sum();
+        }
+
+        double successRate() {
+            final long calls = calls();
+            return calls == 0 ? 1d : successes.sum() / (double) calls;
+        }
+
+        double meanLatencyNanos() {
+            final long calls = calls();
+            return calls == 0 ? 0d : latencyNanos.sum() / (double) calls;
+        }
+    }
+
+    private final class OutlierSubchannel extends ForwardingSubchannel {
+        private final Subchannel delegate;
+
+        // only accessed from the channel's synchronization context, unless noted
+        private Backend backend;
+        // read by the pickers
+        private volatile Attributes attributes;
+        private SubchannelStateListener listener;
+        private ConnectivityStateInfo lastState;
+
+        OutlierSubchannel(Subchannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        protected Subchannel delegate() {
+            return delegate;
+        }
+
+        @Override
+        public void start(SubchannelStateListener listener) {
+            this.listener = listener;
+            delegate.start(stateInfo -> {
+                lastState = stateInfo;
+                if (backend == null || !backend.ejected) {
+                    listener.onSubchannelState(stateInfo);
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            if (backend != null) {
+                backend.subchannels.remove(this);
+            }
+            super.shutdown();
+        }
+
+        @Override
+        public void updateAddresses(List<EquivalentAddressGroup> addresses) {
+            final boolean wasEjected = backend != null && backend.ejected;
+            setAddresses(addresses);
+            final boolean ejected = backend != null && backend.ejected;
+            if (ejected && !wasEjected) {
+                eject();
+            } else if (!ejected && wasEjected) {
+                uneject();
+            }
+            super.updateAddresses(addresses);
+        }
+
+        /**
+         * Carries the backend to the picker, through the subchannels wrapping this one
+         */
+        @Override
+        public Attributes getAttributes() {
+            return attributes;
+        }
+
+        void setAddresses(List<EquivalentAddressGroup> addresses) {
+            if (backend != null) {
+                backend.subchannels.remove(this);
+            }
+            // the subchannels over several backends, e.g. of pick_first, are not tracked
+            backend = addresses.size() == 1
+                    ? backends.computeIfAbsent(new EquivalentAddressGroup(addresses.get(0).getAddresses()), Backend::new)
+                    : null;
+            final Attributes.Builder builder = delegate.getAttributes().toBuilder();
+            if (backend != null) {
+                backend.subchannels.add(this);
+                builder.set(BACKEND_KEY, backend);
+            }
+            attributes = builder.build();
+        }
+
+        void eject() {
+            if (listener != null) {
+                listener.onSubchannelState(ConnectivityStateInfo.forTransientFailure(EJECTED));
+            }
+        }
+
+        void uneject() {
+            if (listener != null && lastState != null) {
+                listener.onSubchannelState(lastState);
+            }
+        }
+    }
+
+    private static final class TracingPicker extends SubchannelPicker {
+        private final SubchannelPicker delegate;
+
+        TracingPicker(SubchannelPicker delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public PickResult pickSubchannel(PickSubchannelArgs args) {
+            final PickResult result = delegate.pickSubchannel(args);
+            final Subchannel subchannel = result.getSubchannel();
+            if (subchannel == null) {
+                return result;
+            }
+            final Backend backend = subchannel.getAttributes().get(BACKEND_KEY);
+            if (backend == null) {
+                return result;
+            }
+            final ClientStreamTracer.Factory childFactory = result.getStreamTracerFactory();
+            return PickResult.withSubchannel(subchannel, new ClientStreamTracer.Factory() {
+                @Override
+                public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+                    return new OutlierTracer(backend, childFactory == null
+                            ? NOOP_TRACER : childFactory.newClientStreamTracer(info, headers));
+                }
+            });
+        }
+    }
+
+    /**
+     * Records the status of the call and its latency to the response headers (or to the close if
+     * they never come)
+     */
+    private static final class OutlierTracer extends ForwardingClientStreamTracer {
+        private final Backend backend;
+        private final ClientStreamTracer delegate;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean sampled = new AtomicBoolean();
+        private volatile long latencyNanos;
+
+        OutlierTracer(Backend backend, ClientStreamTracer delegate) {
+            this.backend = backend;
+            this.delegate = delegate;
+        }
+
+        @Override
+        protected ClientStreamTracer delegate() {
+            return delegate;
+        }
+
+        @Override
+        public void inboundHeaders() {
+            sample();
+            super.inboundHeaders();
+        }
+
+        @Override
+        public void streamClosed(Status status) {
+            sample();
+            backend.record(status, latencyNanos);
+            super.streamClosed(status);
+        }
+
+        private void sample() {
+            if (sampled.compareAndSet(false, true)) {
+                latencyNanos = System.nanoTime() - startNanos;
+            }
+        }
+    }
+
+    private static final class ErrorPicker extends SubchannelPicker {
+        private final PickResult result;
+
+        ErrorPicker(Status error) {
+            this.result = PickResult.withError(error);
+        }
+
+        @Override
+        public PickResult pickSubchannel(PickSubchannelArgs args) {
+            return result;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.radishframework.grpc.client;
+
+import java.util.Map;
+
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancerProvider;
+import io.grpc.LoadBalancerRegistry;
+import io.grpc.NameResolver;
+import io.grpc.Status;
+import io.grpc.internal.JsonUtil;
+
+/**
+ * Ejects the failing or slow backends from the child policy for a while, see
+ * {@link OutlierDetection}. Configured by the load balancing config of the service config:
+ * {"radish_outlier_detection": {"childPolicy": "round_robin", ...}}, with the config of the child
+ * policy in "childConfig" if it has one.
+ */
+public final class OutlierDetectionLoadBalancerProvider extends LoadBalancerProvider {
+    public static final String POLICY_NAME = "radish_outlier_detection";
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public int getPriority() {
+        return 5;
+    }
+
+    @Override
+    public String getPolicyName() {
+        return POLICY_NAME;
+    }
+
+    @Override
+    public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
+        return new OutlierDetectionLoadBalancer(helper);
+    }
+
+    @Override
+    public NameResolver.ConfigOrError parseLoadBalancingPolicyConfig(Map<String, ?> rawConfig) {
+        try {
+            final String childPolicy = JsonUtil.getString(rawConfig, "childPolicy");
+            if (childPolicy == null) {
+                return NameResolver.ConfigOrError.fromError(
+                        Status.INTERNAL.withDescription("No childPolicy in " + POLICY_NAME + " config"));
+            }
+            final LoadBalancerProvider childProvider = LoadBalancerRegistry.getDefaultRegistry()
+                    .getProvider(childPolicy);
+            if (childProvider == null) {
+                return NameResolver.ConfigOrError.fromError(
+                        Status.INTERNAL.withDescription("Unknown childPolicy " + childPolicy));
+            }
+            Object childConfig = null;
+            final Map<String, ?> rawChildConfig = JsonUtil.getObject(rawConfig, "childConfig");
+            if (rawChildConfig != null) {
+                final NameResolver.ConfigOrError parsed = childProvider.parseLoadBalancingPolicyConfig(rawChildConfig);
+                if (parsed.getError() != null) {
+                    return parsed;
+                }
+                childConfig = parsed.getConfig();
+            }
+            return NameResolver.ConfigOrError.fromConfig(new OutlierDetectionLoadBalancer.Config(childPolicy,
+                    childConfig, OutlierDetection.fromConfig(rawConfig)));
+        } catch (RuntimeException e) {
+            return NameResolver.ConfigOrError.fromError(
+                    Status.INTERNAL.withCause(e).withDescription("Invalid " + POLICY_NAME + " config"));
+        }
+    }
+}
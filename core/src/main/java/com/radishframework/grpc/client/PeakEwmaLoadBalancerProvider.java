@@ -0,0 +1,39 @@
+package com.radishframework.grpc.client;
+
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancerProvider;
+import io.grpc.services.HealthCheckingLoadBalancerUtil;
+
+/**
+ * Power of two choices over the peak EWMA latency of the backends weighted by their outstanding
+ * requests, backends stalled by GC or a noisy node are avoided as soon as they answer slowly.
+ */
+public final class PeakEwmaLoadBalancerProvider extends LoadBalancerProvider {
+    public static final String POLICY_NAME = "radish_peak_ewma";
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public int getPriority() {
+        return 5;
+    }
+
+    @Override
+    public String getPolicyName() {
+        return POLICY_NAME;
+    }
+
+    @Override
+    public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
+        // checks the health of the backends when the service config asks for it
+        return HealthCheckingLoadBalancerUtil.newHealthCheckingLoadBalancer(new LoadBalancer.Factory() {
+            @Override
+            public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
+                return new PowerOfTwoChoicesLoadBalancer(helper, true);
+            }
+        }, helper);
+    }
+}
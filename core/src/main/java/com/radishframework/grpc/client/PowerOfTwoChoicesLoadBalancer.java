@@ -0,0 +1,326 @@
+package com.radishframework.grpc.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import io.grpc.Attributes;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+/**
+ * Picks the cheaper of two randomly chosen ready backends.
+ * <p>
+ * The cost of a backend is either its number of outstanding requests (least request) or its peak
+ * EWMA latency multiplied by the outstanding requests plus one (peak EWMA). Backends reported as
+ * terminating by the {@link KubernetesNameResolver} are only picked if no other backend is ready.
+ * <p>
+ * When the resolver knows the {@link KubernetesAttributes#LOCAL_ZONE}, the calls prefer the ready
+ * backends of that zone as long as it holds at least its even share of the ready backends, e.g. a
+ * third of them over three zones; a zone below that, during a rollout or after losing nodes, shares
+ * the calls with the other zones. A preferred zone still spills over call by call: the picked local
+ * backend is compared with a random remote one, and the remote one takes the call when the local
+ * load is more than {@link #SPILLOVER_FACTOR} times the remote load.
+ */
+final class PowerOfTwoChoicesLoadBalancer extends LoadBalancer {
+
+    // peak EWMA parameters, a backend without samples is assumed to answer in DEFAULT_RTT
+    private static final double DECAY_NANOS = 10_000_000_000d;
+    private static final double DEFAULT_RTT_NANOS = 30_000_000d;
+    // times the load of a remote backend a local one takes before the calls leave the zone
+    private static final double SPILLOVER_FACTOR = 2;
+
+    private final Helper helper;
+    private final boolean peakEwma;
+    // backends by their addresses without attributes, attributes change with the pod conditions
+    private final Map<EquivalentAddressGroup, Backend> backends = new HashMap<>();
+
+    private ConnectivityState currentState;
+    @Nullable
+    private String localZone;
+
+    PowerOfTwoChoicesLoadBalancer(Helper helper, boolean peakEwma) {
+        this.helper = helper;
+        this.peakEwma = peakEwma;
+    }
+
+    @Override
+    public void handleResolvedAddresses(ResolvedAddresses resolvedAddresses) {
+        localZone = resolvedAddresses.getAttributes().get(KubernetesAttributes.LOCAL_ZONE);
+        final Set<EquivalentAddressGroup> current = new HashSet<>();
+        for (EquivalentAddressGroup server : resolvedAddresses.getAddresses()) {
+            final EquivalentAddressGroup key = new EquivalentAddressGroup(server.getAddresses());
+            current.add(key);
+            final Backend existing = backends.get(key);
+            if (existing != null) {
+                if (!existing.server.equals(server)) {
+                    existing.update(server);
+                    existing.subchannel.updateAddresses(List.of(server));
+                }
+                continue;
+            }
+
+            final Subchannel subchannel = helper.createSubchannel(CreateSubchannelArgs.newBuilder()
+                    .setAddresses(server)
+                    .setAttributes(Attributes.EMPTY)
+                    .build());
+            final Backend backend = new Backend(subchannel);
+            backend.update(server);
+            backends.put(key, backend);
+            subchannel.start(stateInfo -> processSubchannelState(backend, stateInfo));
+            subchannel.requestConnection();
+        }
+
+        backends.entrySet().removeIf(entry -> {
+            if (!current.contains(entry.getKey())) {
+                entry.getValue().removed = true;
+                entry.getValue().subchannel.shutdown();
+                return true;
+            }
+            return false;
+        });
+        updateBalancingState();
+    }
+
+    @Override
+    public void handleNameResolutionError(Status error) {
+        if (currentState != ConnectivityState.READY) {
+            updateBalancingState(ConnectivityState.TRANSIENT_FAILURE, new FixedResultPicker(error));
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        for (Backend backend : backends.values()) {
+            backend.removed = true;
+            backend.subchannel.shutdown();
+        }
+        backends.clear();
+    }
+
+    private void processSubchannelState(Backend backend, ConnectivityStateInfo stateInfo) {
+        if (backend.removed) {
+            return;
+        }
+        if (stateInfo.getState() == ConnectivityState.TRANSIENT_FAILURE
+                || stateInfo.getState() == ConnectivityState.IDLE) {
+            helper.refreshNameResolution();
+        }
+        if (stateInfo.getState() == ConnectivityState.IDLE) {
+            backend.subchannel.requestConnection();
+        }
+        backend.stateInfo = stateInfo;
+        updateBalancingState();
+    }
+
+    private void updateBalancingState() {
+        final List<Backend> ready = new ArrayList<>(backends.size());
+        final List<Backend> readyTerminating = new ArrayList<>();
+        final List<Backend> readyLocal = new ArrayList<>();
+        final Set<String> zones = new HashSet<>();
+        boolean connecting = false;
+        Status failure = null;
+        for (Backend backend : backends.values()) {
+            switch (backend.stateInfo.getState()) {
+                case READY:
+                    if (backend.terminating) {
+                        readyTerminating.add(backend);
+                    } else {
+                        ready.add(backend);
+                        zones.add(backend.zone);
+                        if (localZone != null && localZone.equals(backend.zone)) {
+                            readyLocal.add(backend);
+                        }
+                    }
+                    break;
+                case CONNECTING:
+                case IDLE:
+                    connecting = true;
+                    break;
+                case TRANSIENT_FAILURE:
+                    failure = backend.stateInfo.getStatus();
+                    break;
+                default:
+            }
+        }
+
+        if (!readyLocal.isEmpty() && readyLocal.size() * zones.size() >= ready.size()) {
+            final List<Backend> readyRemote = new ArrayList<>(ready);
+            readyRemote.removeAll(readyLocal);
+            updateBalancingState(ConnectivityState.READY, new Picker(readyLocal, readyRemote, peakEwma));
+            return;
+        }
+        if (ready.isEmpty()) {
+            ready.addAll(readyTerminating);
+        }
+        if (!ready.isEmpty()) {
+            updateBalancingState(ConnectivityState.READY, new Picker(ready, List.of(), peakEwma));
+        } else if (connecting || failure == null) {
+            updateBalancingState(ConnectivityState.CONNECTING, new FixedResultPicker(null));
+        } else {
+            updateBalancingState(ConnectivityState.TRANSIENT_FAILURE, new FixedResultPicker(failure));
+        }
+    }
+
+    private void updateBalancingState(ConnectivityState state, SubchannelPicker picker) {
+        currentState = state;
+        helper.updateBalancingState(state, picker);
+    }
+
+    private static final class Backend {
+        private final Subchannel subchannel;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final ClientStreamTracer.Factory tracerFactory;
+
+        // only accessed from the channel's synchronization context
+        private ConnectivityStateInfo stateInfo = ConnectivityStateInfo.forNonError(ConnectivityState.IDLE);
+        private EquivalentAddressGroup server;
+        private boolean terminating;
+        @Nullable
+        private String zone;
+        private boolean removed;
+
+        // peak EWMA state, updated under the backend lock and read without it
+        private volatile double ewmaNanos = DEFAULT_RTT_NANOS;
+        private long stampNanos = System.nanoTime();
+
+        Backend(Subchannel subchannel) {
+            this.subchannel = subchannel;
+            this.tracerFactory = new ClientStreamTracer.Factory() {
+                @Override
+                public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+                    return new RequestTracer(Backend.this);
+                }
+            };
+        }
+
+        void update(EquivalentAddressGroup server) {
+            this.server = server;
+            this.terminating = Boolean.TRUE.equals(server.getAttributes().get(KubernetesAttributes.TERMINATING));
+            this.zone = server.getAttributes().get(KubernetesAttributes.ZONE);
+        }
+
+        synchronized void observe(long rttNanos) {
+            final long now = System.nanoTime();
+            final double elapsed = Math.max(now - stampNanos, 0);
+            stampNanos = now;
+            final double ewma = ewmaNanos;
+            if (rttNanos > ewma) {
+                // peak sensitive: a slow response takes over the average right away
+                ewmaNanos = rttNanos;
+            } else {
+                final double w = Math.exp(-elapsed / DECAY_NANOS);
+                ewmaNanos = ewma * w + rttNanos * (1 - w);
+            }
+        }
+
+        double cost(boolean peakEwma) {
+            final int pending = outstanding.get();
+            return peakEwma ? ewmaNanos * (pending + 1) : pending;
+        }
+    }
+
+    /**
+     * Counts the request as outstanding until it is closed, and samples the latency to the response
+     * headers (or to the close if they never come).
+     */
+    private static final class RequestTracer extends ClientStreamTracer {
+        private final Backend backend;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean sampled = new AtomicBoolean();
+
+        RequestTracer(Backend backend) {
+            this.backend = backend;
+            backend.outstanding.incrementAndGet();
+        }
+
+        @Override
+        public void inboundHeaders() {
+            sample();
+        }
+
+        @Override
+        public void streamClosed(Status status) {
+            sample();
+            backend.outstanding.decrementAndGet();
+        }
+
+        private void sample() {
+            if (sampled.compareAndSet(false, true)) {
+                backend.observe(System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    private static final class Picker extends SubchannelPicker {
+        private final Backend[] backends;
+        // the ready backends of the other zones when the local zone is preferred, empty otherwise
+        private final Backend[] spillover;
+        private final boolean peakEwma;
+
+        Picker(List<Backend> backends, List<Backend> spillover, boolean peakEwma) {
+            this.backends = backends.toArray(new Backend[0]);
+            this.spillover = spillover.toArray(new Backend[0]);
+            this.peakEwma = peakEwma;
+        }
+
+        @Override
+        public PickResult pickSubchannel(PickSubchannelArgs args) {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            Backend picked;
+            if (backends.length == 1) {
+                picked = backends[0];
+            } else {
+                final int first = random.nextInt(backends.length);
+                int second = random.nextInt(backends.length - 1);
+                if (second >= first) {
+                    second++;
+                }
+                final Backend a = backends[first];
+                final Backend b = backends[second];
+                picked = a.cost(peakEwma) <= b.cost(peakEwma) ? a : b;
+            }
+            if (spillover.length > 0) {
+                final Backend remote = spillover[random.nextInt(spillover.length)];
+                if (load(picked) > SPILLOVER_FACTOR * load(remote)) {
+                    picked = remote;
+                }
+            }
+            return PickResult.withSubchannel(picked.subchannel, picked.tracerFactory);
+        }
+
+        private double load(Backend backend) {
+            // an idle backend counts as one request, the factor applies to idle backends too
+            return peakEwma ? backend.cost(true) : backend.cost(false) + 1;
+        }
+    }
+
+    private static final class FixedResultPicker extends SubchannelPicker {
+        private final PickResult result;
+
+        /**
+         * @param error null while connecting, the pick is buffered until a backend is ready
+         */
+        FixedResultPicker(Status error) {
+            this.result = error == null ? PickResult.withNoResult() : PickResult.withError(error);
+        }
+
+        @Override
+        public PickResult pickSubchannel(PickSubchannelArgs args) {
+            return result;
+        }
+    }
+}
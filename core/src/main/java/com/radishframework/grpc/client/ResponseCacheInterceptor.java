@@ -0,0 +1,428 @@
+package com.radishframework.grpc.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.MessageLite;
+import com.radishframework.grpc.common.TinyLfuCache;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.SharedResourceHolder;
+
+/**
+ * Caches the responses of the unary calls of the configured methods, keyed by the method and the
+ * serialized request, and sends a single call for the identical calls made while it is in flight.
+ * <p>
+ * Only meant for idempotent lookups whose response doesn't depend on the caller: the request
+ * metadata is not part of the key. Only the protobuf responses are cached, they are immutable.
+ * <p>
+ * The shared call is sent without deadline, the callers joining it later may wait longer than the
+ * first one. The deadline of every caller, the one of its call options or of its {@link Context},
+ * still applies to its own response, and the shared call is cancelled once all its callers are
+ * gone. The callbacks of a caller run on the executor of its call options, or on the grpc shared
+ * executor, never on the thread of another caller.
+ */
+public class ResponseCacheInterceptor implements ClientInterceptor {
+    // accounted for every entry on top of the request and response sizes
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final long NOT_CACHED = -1;
+
+    private final String name;
+    private final Map<String, Duration> ttls;
+    private final TinyLfuCache<CacheKey, MessageLite> cache;
+    private final ConcurrentHashMap<CacheKey, Flight> flights = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> ttlNanosByMethod = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Stats> stats = new ConcurrentHashMap<>();
+    // held as long as the interceptor, which lives as long as the channels of its service
+    private final Executor defaultExecutor = SharedResourceHolder.get(GrpcUtil.SHARED_CHANNEL_EXECUTOR);
+    private final ScheduledExecutorService timerService = SharedResourceHolder.get(GrpcUtil.TIMER_SERVICE);
+
+    /**
+     * @param name   of the cache in the metrics, e.g. the service of the channel
+     * @param ttls   time to live keyed by "package.Service/Method" or "package.Service", the methods
+     *               left out are not cached
+     * @param maxBytes size of the cached requests and responses
+     */
+    public ResponseCacheInterceptor(String name, Map<String, Duration> ttls, long maxBytes) {
+        this.name = name;
+        this.ttls = Map.copyOf(ttls);
+        this.cache = new TinyLfuCache<>(maxBytes, (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes / 1024)));
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+            MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        if (method.getType() != MethodDescriptor.MethodType.UNARY) {
+            return next.newCall(method, callOptions);
+        }
+        final long ttlNanos = ttlNanosByMethod.computeIfAbsent(method.getFullMethodName(), fullMethodName -> {
+            Duration ttl = ttls.get(fullMethodName);
+            if (ttl == null) {
+                ttl = ttls.get(method.getServiceName());
+            }
+            return ttl == null ? NOT_CACHED : ttl.toNanos();
+        });
+        if (ttlNanos == NOT_CACHED) {
+            return next.newCall(method, callOptions);
+        }
+        return new CachingCall<>(method, callOptions, next, ttlNanos,
+                stats.computeIfAbsent(method.getFullMethodName(), fullMethodName -> new Stats()));
+    }
+
+    /**
+     * Writes the requests by result, the evictions, entries and size of the caches
+     */
+    public static void writePrometheus(StringBuilder out, Collection<ResponseCacheInterceptor> caches) {
+        final Map<String, ResponseCacheInterceptor> sorted = new TreeMap<>();
+        caches.forEach(cache -> sorted.put(cache.name, cache));
+
+        out.append("# HELP radish_client_cache_requests_total Cacheable calls by result\n");
+        out.append("# TYPE radish_client_cache_requests_total counter\n");
+        for (ResponseCacheInterceptor cache : sorted.values()) {
+            new TreeMap<>(cache.stats).forEach((method, stats) -> {
+                sample(out, "radish_client_cache_requests_total", "method", method, "hit", stats.hits.sum());
+                sample(out, "radish_client_cache_requests_total", "method", method, "miss", stats.misses.sum());
+                sample(out, "radish_client_cache_requests_total", "method", method, "coalesced",
+                        stats.coalesced.sum());
+            });
+        }
+        out.append("# HELP radish_client_cache_evictions_total Entries evicted to bound the cache size\n");
+        out.append("# TYPE radish_client_cache_evictions_total counter\n");
+        sorted.forEach((name, cache) ->
+                sample(out, "radish_client_cache_evictions_total", "cache", name, null, cache.cache.evictionCount()));
+        out.append("# HELP radish_client_cache_entries Cached responses\n");
+        out.append("# TYPE radish_client_cache_entries gauge\n");
+        sorted.forEach((name, cache) ->
+                sample(out, "radish_client_cache_entries", "cache", name, null, cache.cache.size()));
+        out.append("# HELP radish_client_cache_bytes Size of the cached requests and responses\n");
+        out.append("# TYPE radish_client_cache_bytes gauge\n");
+        sorted.forEach((name, cache) ->
+                sample(out, "radish_client_cache_bytes", "cache", name, null, cache.cache.weightedSize()));
+    }
+
+    private static void sample(StringBuilder out, String metric, String label, String value,
+                               @Nullable String result, long sample) {
+        out.append(metric).append('{').append(label).append("=\"").append(value).append('"');
+        if (result != null) {
+            out.append(",result=\"").append(result).append('"');
+        }
+        out.append("} ").append(sample).append('\n');
+    }
+
+    private static <ReqT> ByteString serialize(MethodDescriptor<ReqT, ?> method, ReqT request) {
+        if (request instanceof MessageLite) {
+            return ((MessageLite) request).toByteString();
+        }
+        try (InputStream in = method.streamRequest(request)) {
+            return ByteString.readFrom(in);
+        } catch (IOException e) {
+            throw Status.INTERNAL.withCause(e).withDescription("Unable to serialize the request").asRuntimeException();
+        }
+    }
+
+    @Nullable
+    private static Deadline effectiveDeadline(CallOptions callOptions) {
+        final Deadline callDeadline = callOptions.getDeadline();
+        final Deadline contextDeadline = Context.current().getDeadline();
+        if (callDeadline == null) {
+            return contextDeadline;
+        }
+        return contextDeadline == null ? callDeadline : callDeadline.minimum(contextDeadline);
+    }
+
+    private static final class Stats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+    }
+
+    private static final class CacheKey {
+        private final String method;
+        private final ByteString request;
+
+        CacheKey(String method, ByteString request) {
+            this.method = method;
+            this.request = request;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) o;
+            return method.equals(other.method) && request.equals(other.request);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * method.hashCode() + request.hashCode();
+        }
+    }
+
+    /**
+     * Call answered from the cache, by the call in flight for the same key, or by a new call
+     */
+    private final class CachingCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+        private final MethodDescriptor<ReqT, RespT> method;
+        private final CallOptions callOptions;
+        private final Channel next;
+        private final long ttlNanos;
+        private final Stats stats;
+        private final Executor executor;
+
+        private Listener<RespT> listener;
+        private Metadata headers;
+        private ReqT request;
+        // set once the call is answered, or cancelled
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile Flight flight;
+        @Nullable
+        private volatile ScheduledFuture<?> expiration;
+
+        CachingCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next, long ttlNanos,
+                    Stats stats) {
+            this.method = method;
+            this.callOptions = callOptions;
+            this.next = next;
+            this.ttlNanos = ttlNanos;
+            this.stats = stats;
+            this.executor = callOptions.getExecutor() != null ? callOptions.getExecutor() : defaultExecutor;
+        }
+
+        @Override
+        public void start(Listener<RespT> listener, Metadata headers) {
+            this.listener = listener;
+            this.headers = headers;
+        }
+
+        @Override
+        public void request(int numMessages) {
+            // a unary call gets its single response anyway
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+            this.request = message;
+        }
+
+        @Override
+        public void halfClose() {
+            final CacheKey key = new CacheKey(method.getFullMethodName(), serialize(method, request));
+            final MessageLite cached = cache.get(key);
+            if (cached != null) {
+                stats.hits.increment();
+                @SuppressWarnings("unchecked") final RespT response = (RespT) cached;
+                answer(Status.OK, new Metadata(), response, new Metadata());
+                return;
+            }
+
+            final Deadline deadline = effectiveDeadline(callOptions);
+            if (deadline != null && deadline.isExpired()) {
+                answer(Status.DEADLINE_EXCEEDED.withDescription("Deadline exceeded before the call"),
+                        new Metadata(), null, new Metadata());
+                return;
+            }
+            while (true) {
+                final Flight newFlight = new Flight(key);
+                newFlight.waiters.add(this);
+                final Flight inFlight = flights.putIfAbsent(key, newFlight);
+                if (inFlight == null) {
+                    stats.misses.increment();
+                    flight = newFlight;
+                    expireAt(deadline);
+                    newFlight.start(method, callOptions.withDeadline(null), next, headers, request, ttlNanos);
+                    return;
+                }
+                if (inFlight.join(this)) {
+                    stats.coalesced.increment();
+                    flight = inFlight;
+                    expireAt(deadline);
+                    return;
+                }
+                // answered but not removed yet
+                flights.remove(key, inFlight);
+            }
+        }
+
+        private void expireAt(@Nullable Deadline deadline) {
+            if (deadline == null) {
+                return;
+            }
+            // the caller gives up on its own deadline, the shared call goes on for the others
+            expiration = deadline.runOnExpiration(() -> {
+                flight.leave(this);
+                answer(Status.DEADLINE_EXCEEDED.withDescription("Deadline exceeded waiting for the response"),
+                        new Metadata(), null, new Metadata());
+            }, timerService);
+            if (closed.get()) {
+                expiration.cancel(false);
+            }
+        }
+
+        @Override
+        public void cancel(@Nullable String message, @Nullable Throwable cause) {
+            if (closed.get()) {
+                return;
+            }
+            if (flight != null) {
+                flight.leave(this);
+            }
+            answer(Status.CANCELLED.withDescription(message).withCause(cause), new Metadata(), null, new Metadata());
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        void answer(Status status, Metadata responseHeaders, @Nullable RespT response, Metadata trailers) {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            final ScheduledFuture<?> toCancel = expiration;
+            if (toCancel != null) {
+                toCancel.cancel(false);
+            }
+            executor.execute(() -> {
+                if (status.isOk()) {
+                    listener.onHeaders(responseHeaders);
+                    if (response != null) {
+                        listener.onMessage(response);
+                    }
+                }
+                listener.onClose(status, trailers);
+            });
+        }
+    }
+
+    /**
+     * The call sent for the callers of the same key
+     */
+    private final class Flight {
+        private final CacheKey key;
+        // guarded by this
+        private final List<CachingCall<?, ?>> waiters = new ArrayList<>(1);
+        private boolean done;
+        private ClientCall<?, ?> call;
+
+        Flight(CacheKey key) {
+            this.key = key;
+        }
+
+        /**
+         * @return false if the call is already answered, or cancelled
+         */
+        synchronized boolean join(CachingCall<?, ?> waiter) {
+            if (done) {
+                return false;
+            }
+            waiters.add(waiter);
+            return true;
+        }
+
+        void leave(CachingCall<?, ?> waiter) {
+            final ClientCall<?, ?> toCancel;
+            synchronized (this) {
+                if (!waiters.remove(waiter) || !waiters.isEmpty() || done) {
+                    return;
+                }
+                // the callers coming next make a new call
+                done = true;
+                toCancel = call;
+            }
+            flights.remove(key, this);
+            if (toCancel != null) {
+                toCancel.cancel("All the callers are gone", null);
+            }
+        }
+
+        <ReqT, RespT> void start(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next,
+                                 Metadata headers, ReqT request, long ttlNanos) {
+            // out of the caller context, the cancellation of the first caller doesn't fail the others
+            final Context previous = Context.ROOT.attach();
+            final ClientCall<ReqT, RespT> call;
+            try {
+                call = next.newCall(method, callOptions);
+            } finally {
+                Context.ROOT.detach(previous);
+            }
+            call.start(new ClientCall.Listener<RespT>() {
+                private Metadata responseHeaders = new Metadata();
+                private RespT response;
+
+                @Override
+                public void onHeaders(Metadata headers) {
+                    responseHeaders = headers;
+                }
+
+                @Override
+                public void onMessage(RespT message) {
+                    response = message;
+                }
+
+                @Override
+                public void onClose(Status status, Metadata trailers) {
+                    if (status.isOk() && response instanceof MessageLite) {
+                        final MessageLite message = (MessageLite) response;
+                        cache.put(key, message, ENTRY_OVERHEAD + key.request.size() + message.getSerializedSize(),
+                                ttlNanos);
+                    }
+                    final List<CachingCall<?, ?>> answered;
+                    synchronized (Flight.this) {
+                        done = true;
+                        answered = new ArrayList<>(waiters);
+                    }
+                    flights.remove(key, Flight.this);
+                    for (CachingCall<?, ?> waiter : answered) {
+                        @SuppressWarnings("unchecked") final CachingCall<ReqT, RespT> caller =
+                                (CachingCall<ReqT, RespT>) waiter;
+                        final Metadata waiterHeaders = new Metadata();
+                        waiterHeaders.merge(responseHeaders);
+                        final Metadata waiterTrailers = new Metadata();
+                        waiterTrailers.merge(trailers);
+                        caller.answer(status, waiterHeaders, response, waiterTrailers);
+                    }
+                }
+            }, headers);
+            call.request(2);
+            call.sendMessage(request);
+            call.halfClose();
+            final boolean left;
+            synchronized (this) {
+                this.call = call;
+                left = done;
+            }
+            if (left) {
+                call.cancel("All the callers are gone", null);
+            }
+        }
+    }
+}
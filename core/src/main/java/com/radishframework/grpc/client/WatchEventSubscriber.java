@@ -0,0 +1,172 @@
+package com.radishframework.grpc.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Parser;
+
+import io.kubernetes.client.proto.Meta.Status;
+import io.kubernetes.client.proto.Meta.WatchEvent;
+
+/**
+ * Frames the kubernetes protobuf watch stream: every event is a 4 bytes big-endian length followed
+ * by a {@link WatchEvent}.
+ * <p>
+ * Frames which are contained in a single body buffer are parsed in place, only frames spanning
+ * buffers are assembled into a frame sized buffer.
+ */
+final class WatchEventSubscriber<T> implements Flow.Subscriber<List<ByteBuffer>>, KubernetesClient.Watch {
+
+    private static final int LENGTH_PREFIX_SIZE = 4;
+    private static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    private final Parser<T> parser;
+    private final KubernetesClient.Watcher<T> watcher;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final ByteBuffer lengthPrefix = ByteBuffer.allocate(LENGTH_PREFIX_SIZE);
+
+    private volatile Flow.Subscription subscription;
+    // the frame being assembled, null while reading the length prefix
+    private ByteBuffer frame;
+
+    WatchEventSubscriber(Parser<T> parser, KubernetesClient.Watcher<T> watcher) {
+        this.parser = parser;
+        this.watcher = watcher;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (closed.get()) {
+            subscription.cancel();
+        } else {
+            subscription.request(1);
+        }
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        try {
+            for (ByteBuffer buffer : items) {
+                while (buffer.hasRemaining() && !closed.get()) {
+                    read(buffer);
+                }
+            }
+        } catch (IOException e) {
+            close(e);
+        }
+
+        if (!closed.get()) {
+            subscription.request(1);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        close(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        close(null);
+    }
+
+    @Override
+    public void cancel() {
+        if (closed.compareAndSet(false, true)) {
+            final Flow.Subscription s = subscription;
+            if (s != null) {
+                s.cancel();
+            }
+        }
+    }
+
+    void close(@Nullable Throwable cause) {
+        if (closed.compareAndSet(false, true)) {
+            final Flow.Subscription s = subscription;
+            if (s != null && cause != null) {
+                s.cancel();
+            }
+            watcher.onClose(cause);
+        }
+    }
+
+    void closeWithStatus(int statusCode) {
+        if (statusCode == KubernetesClient.HTTP_GONE) {
+            if (closed.compareAndSet(false, true)) {
+                watcher.onGone();
+            }
+        } else {
+            close(new IOException("Unable to watch, status code: " + statusCode));
+        }
+    }
+
+    private void read(ByteBuffer buffer) throws IOException {
+        if (frame == null) {
+            if (lengthPrefix.position() == 0 && buffer.remaining() >= LENGTH_PREFIX_SIZE) {
+                final int length = checkFrameSize(buffer.getInt());
+                if (buffer.remaining() >= length) {
+                    // the whole frame is available, parse it without copying
+                    final ByteBuffer slice = buffer.slice();
+                    slice.limit(length);
+                    buffer.position(buffer.position() + length);
+                    dispatch(slice);
+                } else {
+                    frame = ByteBuffer.allocate(length);
+                }
+                return;
+            }
+
+            while (lengthPrefix.hasRemaining() && buffer.hasRemaining()) {
+                lengthPrefix.put(buffer.get());
+            }
+            if (lengthPrefix.hasRemaining()) {
+                return;
+            }
+            frame = ByteBuffer.allocate(checkFrameSize(lengthPrefix.getInt(0)));
+            lengthPrefix.clear();
+        }
+
+        final int n = Math.min(frame.remaining(), buffer.remaining());
+        final ByteBuffer chunk = buffer.slice();
+        chunk.limit(n);
+        frame.put(chunk);
+        buffer.position(buffer.position() + n);
+        if (!frame.hasRemaining()) {
+            final ByteBuffer complete = frame.flip();
+            frame = null;
+            dispatch(complete);
+        }
+    }
+
+    private static int checkFrameSize(int length) throws IOException {
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Invalid watch event frame size: " + length);
+        }
+        return length;
+    }
+
+    private void dispatch(ByteBuffer frame) throws IOException {
+        final WatchEvent event = WatchEvent.parseFrom(frame);
+        final ByteString raw = KubernetesClient.unwrap(event.getObject().getRaw());
+        if (KubernetesClient.EVENT_ERROR.equals(event.getType())) {
+            final Status status = Status.parseFrom(raw);
+            if (status.getCode() == KubernetesClient.HTTP_GONE) {
+                if (closed.compareAndSet(false, true)) {
+                    subscription.cancel();
+                    watcher.onGone();
+                }
+                return;
+            }
+            throw new IOException("Watch failed: " + status.getReason() + " " + status.getMessage());
+        }
+
+        watcher.onEvent(event.getType(), parser.parseFrom(raw));
+    }
+}
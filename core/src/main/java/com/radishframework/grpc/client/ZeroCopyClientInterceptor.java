@@ -0,0 +1,35 @@
+package com.radishframework.grpc.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.radishframework.grpc.common.ZeroCopyMarshaller;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.MethodDescriptor;
+
+/**
+ * Marshals the protobuf calls of the channel with {@link ZeroCopyMarshaller} instead of the
+ * marshallers of the generated stubs
+ */
+public class ZeroCopyClientInterceptor implements ClientInterceptor {
+    private final int aliasThreshold;
+    // the stubs reuse their method descriptors
+    private final ConcurrentHashMap<MethodDescriptor<?, ?>, MethodDescriptor<?, ?>> methods =
+            new ConcurrentHashMap<>();
+
+    public ZeroCopyClientInterceptor(int aliasThreshold) {
+        this.aliasThreshold = aliasThreshold;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+            MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        @SuppressWarnings("unchecked") final MethodDescriptor<ReqT, RespT> zeroCopyMethod =
+                (MethodDescriptor<ReqT, RespT>) methods.computeIfAbsent(method,
+                        m -> ZeroCopyMarshaller.wrap(method, aliasThreshold));
+        return next.newCall(zeroCopyMethod, callOptions);
+    }
+}
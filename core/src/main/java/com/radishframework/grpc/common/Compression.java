@@ -0,0 +1,108 @@
+package com.radishframework.grpc.common;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Message encodings of the grpc server and of the client channels: gzip, and zstd when zstd-jni is
+ * on the class path, optionally with dictionaries registered under encodings of their own.
+ * <p>
+ * Every encoding is advertised to the peers, which decompress what they accept. Which messages
+ * are compressed is decided by the {@link CompressionPolicy} of their method.
+ */
+public final class Compression {
+    private static final Logger log = LoggerFactory.getLogger(Compression.class);
+
+    public static final String ZSTD = "zstd";
+    public static final int DEFAULT_ZSTD_LEVEL = 3;
+
+    private final CompressorRegistry compressorRegistry = CompressorRegistry.newEmptyInstance();
+    private final DecompressorRegistry decompressorRegistry;
+    private final Set<String> encodings = new TreeSet<>();
+
+    public Compression() {
+        this(DEFAULT_ZSTD_LEVEL, Map.of());
+    }
+
+    /**
+     * @param zstdLevel        1 (fastest) to 22 (smallest)
+     * @param zstdDictionaries dictionaries by message encoding, e.g. trained with "zstd --train"
+     *                         on sample messages, the peers must register the same ones
+     */
+    public Compression(int zstdLevel, Map<String, byte[]> zstdDictionaries) {
+        checkArgument(zstdLevel >= 1 && zstdLevel <= 22, "zstdLevel must be between 1 and 22");
+        DecompressorRegistry decompressors = DecompressorRegistry.emptyInstance()
+                .with(Codec.Identity.NONE, false);
+        decompressors = register(decompressors, new Codec.Gzip());
+        if (isZstdAvailable()) {
+            decompressors = register(decompressors, new ZstdCodec(ZSTD, zstdLevel, null));
+            for (Map.Entry<String, byte[]> dictionary : zstdDictionaries.entrySet()) {
+                decompressors = register(decompressors,
+                        new ZstdCodec(dictionary.getKey(), zstdLevel, dictionary.getValue()));
+            }
+        } else if (!zstdDictionaries.isEmpty()) {
+            throw new IllegalArgumentException("zstd dictionaries need zstd-jni on the class path");
+        }
+        this.decompressorRegistry = decompressors;
+    }
+
+    private DecompressorRegistry register(DecompressorRegistry decompressors, Codec codec) {
+        compressorRegistry.register(codec);
+        encodings.add(codec.getMessageEncoding());
+        return decompressors.with(codec, true);
+    }
+
+    private static boolean isZstdAvailable() {
+        try {
+            Class.forName("com.github.luben.zstd.util.Native");
+            com.github.luben.zstd.util.Native.load();
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            log.warn("zstd-jni native library is unavailable, zstd is disabled", e);
+            return false;
+        }
+    }
+
+    /**
+     * @return the message encodings that can be compressed, identity left out
+     */
+    public Set<String> getEncodings() {
+        return Collections.unmodifiableSet(encodings);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the encoding of the policy is not registered
+     */
+    public CompressionPolicy checkPolicy(CompressionPolicy policy) {
+        checkArgument(!policy.isEnabled() || encodings.contains(policy.getCodec()),
+                "Unknown message encoding %s, expected identity or one of %s", policy.getCodec(), encodings);
+        return policy;
+    }
+
+    public NettyServerBuilder configure(NettyServerBuilder serverBuilder) {
+        return serverBuilder
+                .compressorRegistry(compressorRegistry)
+                .decompressorRegistry(decompressorRegistry);
+    }
+
+    public NettyChannelBuilder configure(NettyChannelBuilder channelBuilder) {
+        return channelBuilder
+                .compressorRegistry(compressorRegistry)
+                .decompressorRegistry(decompressorRegistry);
+    }
+}
@@ -0,0 +1,99 @@
+package com.radishframework.grpc.common;
+
+import java.util.Map;
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+
+import com.google.protobuf.MessageLite;
+
+import io.grpc.Codec;
+import io.grpc.MethodDescriptor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Message encoding of the messages sent by a method, the messages smaller than the threshold are
+ * sent uncompressed
+ */
+public final class CompressionPolicy {
+    public static final CompressionPolicy NONE = new CompressionPolicy(Codec.Identity.NONE.getMessageEncoding(), 0);
+
+    private final String codec;
+    private final int minMessageSize;
+
+    private CompressionPolicy(String codec, int minMessageSize) {
+        this.codec = codec;
+        this.minMessageSize = minMessageSize;
+    }
+
+    /**
+     * @param codec          a message encoding of {@link Compression}, e.g. gzip, zstd, or identity
+     *                       for no compression
+     * @param minMessageSize serialized size from which the messages are compressed
+     */
+    public static CompressionPolicy of(String codec, int minMessageSize) {
+        checkNotNull(codec, "codec");
+        checkArgument(minMessageSize >= 0, "minMessageSize must not be negative");
+        return new CompressionPolicy(codec, minMessageSize);
+    }
+
+    /**
+     * @return the policy of the method, keyed by "package.Service/Method", "package.Service" or
+     * "*", null if none
+     */
+    @Nullable
+    public static CompressionPolicy lookup(Map<String, CompressionPolicy> policies, MethodDescriptor<?, ?> method) {
+        CompressionPolicy policy = policies.get(method.getFullMethodName());
+        if (policy == null) {
+            policy = policies.get(method.getServiceName());
+        }
+        if (policy == null) {
+            policy = policies.get("*");
+        }
+        return policy;
+    }
+
+    public String getCodec() {
+        return codec;
+    }
+
+    public int getMinMessageSize() {
+        return minMessageSize;
+    }
+
+    public boolean isEnabled() {
+        return !Codec.Identity.NONE.getMessageEncoding().equals(codec);
+    }
+
+    /**
+     * @param message protobuf messages are measured, the others are always compressed
+     */
+    public boolean shouldCompress(Object message) {
+        return minMessageSize == 0 || !(message instanceof MessageLite)
+                || ((MessageLite) message).getSerializedSize() >= minMessageSize;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CompressionPolicy)) {
+            return false;
+        }
+        final CompressionPolicy that = (CompressionPolicy) o;
+        return minMessageSize == that.minMessageSize && codec.equals(that.codec);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(codec, minMessageSize);
+    }
+
+    @Override
+    public String toString() {
+        return codec + (minMessageSize > 0 ? " from " + minMessageSize + " bytes" : "");
+    }
+}
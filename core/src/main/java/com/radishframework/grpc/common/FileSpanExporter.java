@@ -0,0 +1,112 @@
+package com.radishframework.grpc.common;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+/**
+ * Appends the spans to a file, one json object per line
+ */
+public final class FileSpanExporter implements SpanExporter {
+    private static final Logger log = LoggerFactory.getLogger(FileSpanExporter.class);
+
+    private final Path file;
+    private final BufferedWriter writer;
+
+    public FileSpanExporter(Path file) {
+        this.file = file;
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open span file " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+        final StringBuilder line = new StringBuilder(256);
+        try {
+            for (SpanData span : spans) {
+                line.setLength(0);
+                line.append("{\"traceId\":\"").append(span.getTraceId())
+                        .append("\",\"spanId\":\"").append(span.getSpanId())
+                        .append("\",\"parentSpanId\":\"").append(span.getParentSpanId())
+                        .append("\",\"name\":");
+                appendString(line, span.getName());
+                line.append(",\"kind\":\"").append(span.getKind())
+                        .append("\",\"startEpochNanos\":").append(span.getStartEpochNanos())
+                        .append(",\"endEpochNanos\":").append(span.getEndEpochNanos())
+                        .append(",\"status\":\"").append(span.getStatus().getStatusCode())
+                        .append("\",\"attributes\":{");
+                final boolean[] first = {true};
+                span.getAttributes().forEach((key, value) -> {
+                    if (!first[0]) {
+                        line.append(',');
+                    }
+                    first[0] = false;
+                    appendString(line, key.getKey());
+                    line.append(':');
+                    appendString(line, String.valueOf(value));
+                });
+                line.append("}}\n");
+                writer.write(line.toString());
+            }
+            writer.flush();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            log.warn("Unable to write spans to {}", file, e);
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    @Override
+    public synchronized CompletableResultCode flush() {
+        try {
+            writer.flush();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    @Override
+    public synchronized CompletableResultCode shutdown() {
+        try {
+            writer.close();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    private static void appendString(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+}
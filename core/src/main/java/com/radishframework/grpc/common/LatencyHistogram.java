@@ -0,0 +1,110 @@
+package com.radishframework.grpc.common;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear latency histogram in microseconds, with about 6% precision from 1µs to 19 hours.
+ * <p>
+ * Every power of two is split in 16 linear sub-buckets like in HdrHistogram. The counts are
+ * striped by thread so concurrent recorders rarely hit the same cache line, recording is a
+ * couple of shifts and one atomic increment.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    // padding between the stripes, they don't share a cache line
+    private static final int STRIPE_LENGTH = BUCKETS + 16;
+    private static final int STRIPES = Math.min(16,
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1);
+
+    private final AtomicLongArray counts = new AtomicLongArray(STRIPES * STRIPE_LENGTH);
+    private final LongAdder sumMicros = new LongAdder();
+
+    public void recordNanos(long nanos) {
+        final long micros = Math.max(nanos / 1000, 0);
+        final int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        counts.getAndIncrement(stripe * STRIPE_LENGTH + bucketOf(micros));
+        sumMicros.add(micros);
+    }
+
+    public Snapshot snapshot() {
+        final long[] merged = new long[BUCKETS];
+        long count = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            final int offset = stripe * STRIPE_LENGTH;
+            for (int i = 0; i < BUCKETS; i++) {
+                final long bucketCount = counts.get(offset + i);
+                merged[i] += bucketCount;
+                count += bucketCount;
+            }
+        }
+        return new Snapshot(merged, count, sumMicros.sum());
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        final int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Middle of the bucket in microseconds
+     */
+    static double valueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final int subBucket = bucket & (SUB_BUCKETS - 1);
+        final long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (SUB_BUCKETS + subBucket) * width + width / 2d;
+    }
+
+    public static final class Snapshot {
+        private final long[] buckets;
+        private final long count;
+        private final long sumMicros;
+
+        private Snapshot(long[] buckets, long count, long sumMicros) {
+            this.buckets = buckets;
+            this.count = count;
+            this.sumMicros = sumMicros;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSumMicros() {
+            return sumMicros;
+        }
+
+        /**
+         * @param quantile in [0, 1]
+         * @return the latency in microseconds, 0 if nothing was recorded
+         */
+        public double getValueAtQuantile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return valueOf(i);
+                }
+            }
+            return valueOf(buckets.length - 1);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.radishframework.grpc.common;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.Channel;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.ServerChannel;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Event loop groups and channel types shared by the grpc server and all the client channels.
+ * <p>
+ * The native epoll transport is used when asked for and available, NIO otherwise. The server
+ * accepts connections on the boss group, every connection of the server and of the clients is
+ * served by the worker group.
+ */
+public final class NettyTransport {
+    private static final Logger log = LoggerFactory.getLogger(NettyTransport.class);
+
+    private final boolean epoll;
+    private final EventLoopGroup bossGroup;
+    private final EventLoopGroup workerGroup;
+
+    /**
+     * @param nativeTransport use epoll if available
+     * @param bossThreads     threads accepting the connections of the server
+     * @param workerThreads   threads serving the connections, 0 for twice the number of cores
+     */
+    public NettyTransport(boolean nativeTransport, int bossThreads, int workerThreads) {
+        checkArgument(bossThreads > 0, "bossThreads must be positive");
+        checkArgument(workerThreads >= 0, "workerThreads must not be negative");
+        this.epoll = nativeTransport && Epoll.isAvailable();
+        if (nativeTransport && !epoll) {
+            log.warn("Native epoll transport is unavailable, falling back to NIO", Epoll.unavailabilityCause());
+        }
+
+        final DefaultThreadFactory bossThreadFactory = new DefaultThreadFactory("radish-boss", true);
+        final DefaultThreadFactory workerThreadFactory = new DefaultThreadFactory("radish-worker", true);
+        if (epoll) {
+            this.bossGroup = new EpollEventLoopGroup(bossThreads, bossThreadFactory);
+            this.workerGroup = new EpollEventLoopGroup(workerThreads, workerThreadFactory);
+        } else {
+            this.bossGroup = new NioEventLoopGroup(bossThreads, bossThreadFactory);
+            this.workerGroup = new NioEventLoopGroup(workerThreads, workerThreadFactory);
+        }
+        log.info("Using {} transport", epoll ? "epoll" : "nio");
+    }
+
+    public boolean isEpoll() {
+        return epoll;
+    }
+
+    public Class<? extends ServerChannel> getServerChannelType() {
+        return epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    public Class<? extends Channel> getChannelType() {
+        return epoll ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    /**
+     * The groups are owned by this transport, the server doesn't shut them down
+     */
+    public NettyServerBuilder configure(NettyServerBuilder serverBuilder) {
+        return serverBuilder
+                .bossEventLoopGroup(bossGroup)
+                .workerEventLoopGroup(workerGroup)
+                .channelType(getServerChannelType());
+    }
+
+    /**
+     * The group is owned by this transport, the channel doesn't shut it down
+     */
+    public NettyChannelBuilder configure(NettyChannelBuilder channelBuilder) {
+        return channelBuilder
+                .eventLoopGroup(workerGroup)
+                .channelType(getChannelType());
+    }
+
+    /**
+     * Shut the event loops down, once the server and all the channels are terminated
+     */
+    public void shutdown() {
+        bossGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+        workerGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+    }
+}
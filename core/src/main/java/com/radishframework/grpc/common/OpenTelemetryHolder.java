@@ -5,31 +5,67 @@ import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
 import io.opentelemetry.context.propagation.ContextPropagators;
 import io.opentelemetry.exporter.logging.LoggingSpanExporter;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.trace.SpanProcessor;
 import io.opentelemetry.sdk.trace.TracerSdkProvider;
-import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.config.TraceConfig;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+
+import java.util.Collections;
 
 public class OpenTelemetryHolder {
     private static volatile OpenTelemetry openTelemetry = null;
+    private static TracerSdkProvider tracerProvider = null;
 
     public static OpenTelemetry getOpenTelemetry() {
         if (openTelemetry == null) {
             synchronized (OpenTelemetryHolder.class) {
                 if (openTelemetry == null) {
-                    // install the W3C Trace Context propagator
-                    // Get the tracer management instance
-                    TracerSdkProvider sdkTracerProvider = TracerSdkProvider.builder().build();
-                    // Set to process the the spans by the LogExporter
-                    LoggingSpanExporter exporter = new LoggingSpanExporter();
-                    sdkTracerProvider.addSpanProcessor(SimpleSpanProcessor.builder(exporter).build());
-
-                    openTelemetry = OpenTelemetrySdk.builder()
-                            .setTracerProvider(sdkTracerProvider)
-                            .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
-                            .build();
+                    // not initialized, log the spans from the background
+                    build(RingBufferSpanProcessor.newBuilder(new LoggingSpanExporter()).build(),
+                            new RadishSampler(SamplingPolicy.newBuilder().build(), Collections.emptyMap()));
                 }
             }
         }
 
         return openTelemetry;
     }
+
+    /**
+     * Export the spans through the given processor, must be called before the first tracer is
+     * created
+     *
+     * @param sampler usually a {@link RadishSampler}
+     * @throws IllegalStateException if already initialized
+     */
+    public static synchronized OpenTelemetry initialize(SpanProcessor spanProcessor, Sampler sampler) {
+        if (openTelemetry != null) {
+            throw new IllegalStateException("OpenTelemetry is already initialized");
+        }
+        build(spanProcessor, sampler);
+        return openTelemetry;
+    }
+
+    /**
+     * Export the pending spans and stop the span processor
+     */
+    public static synchronized void shutdown() {
+        if (tracerProvider != null) {
+            tracerProvider.shutdown();
+        }
+    }
+
+    private static void build(SpanProcessor spanProcessor, Sampler sampler) {
+        // Get the tracer management instance
+        tracerProvider = TracerSdkProvider.builder()
+                .setTraceConfig(TraceConfig.getDefault().toBuilder().setSampler(sampler).build())
+                .build();
+        // drops the spans recorded for tail sampling which are neither slow nor failed
+        tracerProvider.addSpanProcessor(new TailSamplingSpanProcessor(spanProcessor));
+
+        // install the W3C Trace Context propagator
+        openTelemetry = OpenTelemetrySdk.builder()
+                .setTracerProvider(tracerProvider)
+                .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                .build();
+    }
 }
@@ -0,0 +1,131 @@
+package com.radishframework.grpc.common;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+
+/**
+ * Samples the calls by service and method.
+ * <p>
+ * A call with a parent follows the decision of its parent. A root call is sampled with the ratio
+ * of its policy, within the rate limit of its policy. With tail sampling the root calls not
+ * sampled up front are recorded anyway, the {@link TailSamplingSpanProcessor} keeps the slow or
+ * failed ones. The policy of a call is the one of its method (package.Service/Method), else of
+ * its service, else the default one. Health checks and reflection are off unless configured.
+ */
+public final class RadishSampler implements Sampler {
+    public static final AttributeKey<String> RPC_SERVICE = AttributeKey.stringKey("rpc.service");
+    public static final AttributeKey<String> RPC_METHOD = AttributeKey.stringKey("rpc.method");
+    /**
+     * Set on the tail sampled spans, the spans slower than it are kept
+     */
+    static final AttributeKey<Long> SLOW_THRESHOLD_NANOS = AttributeKey.longKey("radish.sampling.slow_threshold_nanos");
+
+    private static final SamplingResult DROP = SamplingResult.create(SamplingResult.Decision.DROP);
+    private static final SamplingResult SAMPLE = SamplingResult.create(SamplingResult.Decision.RECORD_AND_SAMPLE);
+
+    private final Rule defaultRule;
+    private final Map<String, Rule> rules = new HashMap<>();
+    // rules of the methods and services without a policy of their own
+    private final Map<String, Rule> resolvedRules = new ConcurrentHashMap<>();
+
+    /**
+     * @param policies policies by full method name (package.Service/Method) or service name
+     */
+    public RadishSampler(SamplingPolicy defaultPolicy, Map<String, SamplingPolicy> policies) {
+        this.defaultRule = new Rule(defaultPolicy);
+        this.rules.put("grpc.health.v1.Health", new Rule(SamplingPolicy.OFF));
+        this.rules.put("grpc.reflection.v1alpha.ServerReflection", new Rule(SamplingPolicy.OFF));
+        policies.forEach((name, policy) -> rules.put(name, new Rule(policy.withDefaults(defaultPolicy))));
+    }
+
+    @Override
+    public SamplingResult shouldSample(Context parentContext, String traceId, String name, Span.Kind spanKind,
+                                       Attributes attributes, List<SpanData.Link> parentLinks) {
+        final SpanContext parent = Span.fromContext(parentContext).getSpanContext();
+        if (parent.isValid()) {
+            return parent.isSampled() ? SAMPLE : DROP;
+        }
+        return ruleOf(attributes.get(RPC_SERVICE), attributes.get(RPC_METHOD)).sample(traceId);
+    }
+
+    @Override
+    public String getDescription() {
+        return "RadishSampler";
+    }
+
+    private Rule ruleOf(String service, String method) {
+        if (service == null) {
+            return defaultRule;
+        }
+        final String key = method == null ? service : service + "/" + method;
+        final Rule rule = rules.get(key);
+        if (rule != null) {
+            return rule;
+        }
+        return resolvedRules.computeIfAbsent(key, k -> rules.getOrDefault(service, defaultRule));
+    }
+
+    private static final class Rule {
+        private final double ratio;
+        // the trace id ratio sampler compares the lower 8 bytes of the trace id with it
+        private final long idUpperBound;
+        private final long intervalNanos;
+        private final AtomicLong nextFreeNanos = new AtomicLong(System.nanoTime());
+        private final SamplingResult tailResult;
+
+        Rule(SamplingPolicy policy) {
+            this.ratio = policy.getRatio();
+            this.idUpperBound = ratio >= 1d ? Long.MAX_VALUE : (long) (ratio * Long.MAX_VALUE);
+            this.intervalNanos = policy.getRatePerSecond() > 0
+                    ? (long) (1_000_000_000d / policy.getRatePerSecond()) : 0;
+            this.tailResult = policy.isTail()
+                    ? SamplingResult.create(SamplingResult.Decision.RECORD_ONLY,
+                            Attributes.of(SLOW_THRESHOLD_NANOS, policy.getSlowThreshold().toNanos()))
+                    : DROP;
+        }
+
+        SamplingResult sample(String traceId) {
+            if (ratio > 0 && Math.abs(lowerLong(traceId)) < idUpperBound && acquire()) {
+                return SAMPLE;
+            }
+            return tailResult;
+        }
+
+        /**
+         * One permit every intervalNanos, at most one second of permits is saved up
+         */
+        private boolean acquire() {
+            if (intervalNanos == 0) {
+                return true;
+            }
+            final long now = System.nanoTime();
+            while (true) {
+                final long next = nextFreeNanos.get();
+                if (next - now > 0) {
+                    return false;
+                }
+                final long floor = now - 1_000_000_000L;
+                final long updated = Math.max(next, floor) + intervalNanos;
+                if (nextFreeNanos.compareAndSet(next, updated)) {
+                    return true;
+                }
+            }
+        }
+
+        private static long lowerLong(String traceId) {
+            return Long.parseUnsignedLong(traceId.substring(traceId.length() - 16), 16);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.radishframework.grpc.common;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Exports the ended spans in batches from a background thread.
+ * <p>
+ * Ended spans are put in a bounded lock-free ring buffer, the request thread never blocks nor
+ * waits for the exporter. Spans are dropped and counted when the buffer is full.
+ * <p>
+ * Every span handed over is exported, sampled or only recorded for tail sampling, the
+ * {@link OpenTelemetryHolder} puts a {@link TailSamplingSpanProcessor} in front of it.
+ */
+public final class RingBufferSpanProcessor implements SpanProcessor {
+    private static final Logger log = LoggerFactory.getLogger(RingBufferSpanProcessor.class);
+
+    private final SpanExporter exporter;
+    private final int maxExportBatchSize;
+    private final long scheduleDelayNanos;
+    private final long exportTimeoutNanos;
+
+    // multi producer, single consumer ring buffer, every slot has a sequence telling whether it is
+    // free for the producer of position p (sequence == p) or filled for the consumer (p + 1)
+    private final AtomicReferenceArray<ReadableSpan> slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    private final LongAdder droppedSpans = new LongAdder();
+    private final LongAdder exportedSpans = new LongAdder();
+    private final LongAdder failedSpans = new LongAdder();
+
+    private final Thread worker;
+    private final AtomicBoolean workerParked = new AtomicBoolean();
+    private final AtomicReference<CompletableResultCode> flushRequest = new AtomicReference<>();
+    private final AtomicReference<CompletableResultCode> shutdownResult = new AtomicReference<>();
+
+    private RingBufferSpanProcessor(Builder builder) {
+        this.exporter = builder.exporter;
+        this.maxExportBatchSize = builder.maxExportBatchSize;
+        this.scheduleDelayNanos = builder.scheduleDelay.toNanos();
+        this.exportTimeoutNanos = builder.exportTimeout.toNanos();
+
+        final int capacity = Integer.highestOneBit(builder.maxQueueSize - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+
+        this.worker = new Thread(this::work, "radish-span-exporter");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public static Builder newBuilder(SpanExporter exporter) {
+        return new Builder(exporter);
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        if (shutdownResult.get() != null) {
+            return;
+        }
+        if (!offer(span)) {
+            droppedSpans.increment();
+            return;
+        }
+        if (tail.get() - head >= maxExportBatchSize) {
+            wakeUpWorker();
+        }
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+        final CompletableResultCode result = new CompletableResultCode();
+        final CompletableResultCode pending = flushRequest.getAndSet(result);
+        if (pending != null) {
+            // the pending flush is served by this one
+            result.whenComplete(() -> complete(pending, result.isSuccess()));
+        }
+        wakeUpWorker();
+        return result;
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        final CompletableResultCode result = new CompletableResultCode();
+        if (!shutdownResult.compareAndSet(null, result)) {
+            return shutdownResult.get();
+        }
+        LockSupport.unpark(worker);
+        return result;
+    }
+
+    /**
+     * Spans dropped because the buffer was full
+     */
+    public long getDroppedSpans() {
+        return droppedSpans.sum();
+    }
+
+    public long getExportedSpans() {
+        return exportedSpans.sum();
+    }
+
+    /**
+     * Spans the exporter failed to export or didn't export within the export timeout
+     */
+    public long getFailedSpans() {
+        return failedSpans.sum();
+    }
+
+    /**
+     * Spans waiting in the buffer
+     */
+    public int getQueuedSpans() {
+        return (int) Math.max(tail.get() - head, 0);
+    }
+
+    private boolean offer(ReadableSpan span) {
+        while (true) {
+            final long position = tail.get();
+            final int index = (int) position & mask;
+            final long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, span);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                // the consumer is a whole lap behind
+                return false;
+            }
+        }
+    }
+
+    // consumer only
+    private ReadableSpan poll() {
+        final long position = head;
+        final int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        final ReadableSpan span = slots.get(index);
+        slots.set(index, null);
+        sequences.set(index, position + mask + 1);
+        head = position + 1;
+        return span;
+    }
+
+    private void wakeUpWorker() {
+        if (workerParked.compareAndSet(true, false)) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    private void work() {
+        final List<SpanData> batch = new ArrayList<>(maxExportBatchSize);
+        long nextExportNanos = System.nanoTime() + scheduleDelayNanos;
+        while (true) {
+            final boolean shuttingDown = shutdownResult.get() != null;
+            final CompletableResultCode flush = flushRequest.getAndSet(null);
+            final boolean drainAll = shuttingDown || flush != null;
+
+            ReadableSpan span;
+            while ((span = poll()) != null) {
+                batch.add(span.toSpanData());
+                if (batch.size() >= maxExportBatchSize) {
+                    export(batch);
+                    nextExportNanos = System.nanoTime() + scheduleDelayNanos;
+                    if (!drainAll) {
+                        break;
+                    }
+                }
+            }
+            if (!batch.isEmpty() && (drainAll || System.nanoTime() - nextExportNanos >= 0)) {
+                export(batch);
+            }
+            if (batch.isEmpty()) {
+                // the delay of the next batch starts with its first span
+                nextExportNanos = System.nanoTime() + scheduleDelayNanos;
+            }
+            if (flush != null) {
+                complete(flush, exporter.flush().join(exportTimeoutNanos, TimeUnit.NANOSECONDS).isSuccess());
+            }
+            if (shuttingDown) {
+                final CompletableResultCode result = shutdownResult.get();
+                complete(result, exporter.shutdown().join(exportTimeoutNanos, TimeUnit.NANOSECONDS).isSuccess());
+                return;
+            }
+
+            if (tail.get() - head < maxExportBatchSize) {
+                workerParked.set(true);
+                // re-check after announcing the park, a producer may have missed the flag
+                if (tail.get() - head < maxExportBatchSize && flushRequest.get() == null
+                        && shutdownResult.get() == null) {
+                    LockSupport.parkNanos(this, Math.max(nextExportNanos - System.nanoTime(), 0));
+                }
+                workerParked.set(false);
+            }
+        }
+    }
+
+    private void export(List<SpanData> batch) {
+        try {
+            final CompletableResultCode result = exporter.export(batch)
+                    .join(exportTimeoutNanos, TimeUnit.NANOSECONDS);
+            if (result.isSuccess()) {
+                exportedSpans.add(batch.size());
+            } else {
+                failedSpans.add(batch.size());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Unable to export {} spans", batch.size(), e);
+            failedSpans.add(batch.size());
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private static void complete(CompletableResultCode result, boolean success) {
+        if (success) {
+            result.succeed();
+        } else {
+            result.fail();
+        }
+    }
+
+    public static final class Builder {
+        private final SpanExporter exporter;
+        private int maxQueueSize = 2048;
+        private int maxExportBatchSize = 512;
+        private Duration scheduleDelay = Duration.ofSeconds(1);
+        private Duration exportTimeout = Duration.ofSeconds(30);
+
+        private Builder(SpanExporter exporter) {
+            this.exporter = exporter;
+        }
+
+        /**
+         * Rounded up to a power of two
+         */
+        public Builder setMaxQueueSize(int maxQueueSize) {
+            checkArgument(maxQueueSize > 1 && maxQueueSize <= 1 << 30, "maxQueueSize out of range");
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        public Builder setMaxExportBatchSize(int maxExportBatchSize) {
+            checkArgument(maxExportBatchSize > 0, "maxExportBatchSize must be positive");
+            this.maxExportBatchSize = maxExportBatchSize;
+            return this;
+        }
+
+        /**
+         * Longest time a span waits for a batch to fill up
+         */
+        public Builder setScheduleDelay(Duration scheduleDelay) {
+            this.scheduleDelay = scheduleDelay;
+            return this;
+        }
+
+        public Builder setExportTimeout(Duration exportTimeout) {
+            this.exportTimeout = exportTimeout;
+            return this;
+        }
+
+        public RingBufferSpanProcessor build() {
+            checkArgument(maxExportBatchSize <= maxQueueSize, "maxExportBatchSize must not exceed maxQueueSize");
+            return new RingBufferSpanProcessor(this);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.radishframework.grpc.common;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.grpc.Status;
+
+/**
+ * Per method metrics of the server and client calls, exposed in the Prometheus text format
+ */
+public final class RpcMetrics {
+    private static final RpcMetrics DEFAULT = new RpcMetrics();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final ConcurrentHashMap<String, MethodMetrics> serverMethods = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, MethodMetrics> clientMethods = new ConcurrentHashMap<>();
+
+    /**
+     * The metrics the interceptors record to by default
+     */
+    public static RpcMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    public MethodMetrics server(String fullMethodName) {
+        return serverMethods.computeIfAbsent(fullMethodName, name -> new MethodMetrics());
+    }
+
+    public MethodMetrics client(String fullMethodName) {
+        return clientMethods.computeIfAbsent(fullMethodName, name -> new MethodMetrics());
+    }
+
+    public void writePrometheus(StringBuilder out) {
+        write(out, "radish_server", serverMethods);
+        write(out, "radish_client", clientMethods);
+    }
+
+    private static void write(StringBuilder out, String prefix, Map<String, MethodMetrics> methods) {
+        final Map<String, MethodMetrics> sorted = new TreeMap<>(methods);
+
+        header(out, prefix + "_in_flight", "gauge", "Calls started and not closed yet");
+        sorted.forEach((method, metrics) -> sample(out, prefix + "_in_flight", method, null, metrics.inFlight.sum()));
+
+        header(out, prefix + "_latency_seconds", "summary", "Latency of the calls");
+        sorted.forEach((method, metrics) -> {
+            final LatencyHistogram.Snapshot snapshot = metrics.latency.snapshot();
+            for (double quantile : QUANTILES) {
+                sample(out, prefix + "_latency_seconds", method, "quantile=\"" + quantile + "\"",
+                        snapshot.getValueAtQuantile(quantile) / 1e6);
+            }
+            sample(out, prefix + "_latency_seconds_sum", method, null, snapshot.getSumMicros() / 1e6);
+            sample(out, prefix + "_latency_seconds_count", method, null, snapshot.getCount());
+        });
+
+        header(out, prefix + "_calls_total", "counter", "Closed calls by status code");
+        sorted.forEach((method, metrics) -> {
+            for (Status.Code code : Status.Code.values()) {
+                final long count = metrics.codes[code.value()].sum();
+                if (count > 0) {
+                    sample(out, prefix + "_calls_total", method, "code=\"" + code + "\"", count);
+                }
+            }
+        });
+
+        header(out, prefix + "_request_messages_total", "counter", "Request messages");
+        sorted.forEach((method, metrics) ->
+                sample(out, prefix + "_request_messages_total", method, null, metrics.requestMessages.sum()));
+        header(out, prefix + "_request_bytes_total", "counter", "Serialized size of the request messages");
+        sorted.forEach((method, metrics) ->
+                sample(out, prefix + "_request_bytes_total", method, null, metrics.requestBytes.sum()));
+        header(out, prefix + "_response_messages_total", "counter", "Response messages");
+        sorted.forEach((method, metrics) ->
+                sample(out, prefix + "_response_messages_total", method, null, metrics.responseMessages.sum()));
+        header(out, prefix + "_response_bytes_total", "counter", "Serialized size of the response messages");
+        sorted.forEach((method, metrics) ->
+                sample(out, prefix + "_response_bytes_total", method, null, metrics.responseBytes.sum()));
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String method, String label, double value) {
+        out.append(name).append("{method=\"").append(method).append('"');
+        if (label != null) {
+            out.append(',').append(label);
+        }
+        out.append("} ");
+        if (value == (long) value) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    public static final class MethodMetrics {
+        private final LongAdder inFlight = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder[] codes = new LongAdder[Status.Code.values().length];
+        private final LongAdder requestMessages = new LongAdder();
+        private final LongAdder requestBytes = new LongAdder();
+        private final LongAdder responseMessages = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+
+        private MethodMetrics() {
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = new LongAdder();
+            }
+        }
+
+        public void started() {
+            inFlight.increment();
+        }
+
+        public void closed(Status.Code code, long latencyNanos) {
+            inFlight.decrement();
+            codes[code.value()].increment();
+            latency.recordNanos(latencyNanos);
+        }
+
+        /**
+         * @param size serialized size, negative if unknown
+         */
+        public void request(int size) {
+            requestMessages.increment();
+            if (size > 0) {
+                requestBytes.add(size);
+            }
+        }
+
+        /**
+         * @param size serialized size, negative if unknown
+         */
+        public void response(int size) {
+            responseMessages.increment();
+            if (size > 0) {
+                responseBytes.add(size);
+            }
+        }
+    }
+}
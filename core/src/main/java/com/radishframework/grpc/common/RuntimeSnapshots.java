@@ -0,0 +1,117 @@
+package com.radishframework.grpc.common;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thread and allocation snapshots of the running JVM, taken on demand
+ */
+public final class RuntimeSnapshots {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    // allocated bytes by thread id at the previous allocation snapshot
+    private static final Map<Long, Long> previousAllocations = new HashMap<>();
+    private static long previousAllocationsNanos;
+
+    private RuntimeSnapshots() {
+    }
+
+    /**
+     * Stack traces of the live threads, the threads with the most CPU time first
+     *
+     * @param maxDepth frames written per thread
+     */
+    public static void writeThreads(StringBuilder out, int maxDepth) {
+        final ThreadInfo[] threads = THREADS.dumpAllThreads(false, false, maxDepth);
+        final Map<Long, Long> cpuNanos = new HashMap<>();
+        for (ThreadInfo thread : threads) {
+            cpuNanos.put(thread.getThreadId(), THREADS.isThreadCpuTimeSupported()
+                    ? THREADS.getThreadCpuTime(thread.getThreadId()) : -1);
+        }
+        Arrays.sort(threads, Comparator.comparingLong((ThreadInfo thread) -> cpuNanos.get(thread.getThreadId()))
+                .reversed());
+
+        out.append(threads.length).append(" threads\n\n");
+        for (ThreadInfo thread : threads) {
+            out.append('"').append(thread.getThreadName()).append("\" #").append(thread.getThreadId())
+                    .append(' ').append(thread.getThreadState());
+            final long cpu = cpuNanos.get(thread.getThreadId());
+            if (cpu >= 0) {
+                out.append(" cpu=").append(cpu / 1_000_000).append("ms");
+            }
+            if (thread.getLockName() != null) {
+                out.append(" on ").append(thread.getLockName());
+            }
+            if (thread.getLockOwnerName() != null) {
+                out.append(" owned by \"").append(thread.getLockOwnerName()).append('"');
+            }
+            out.append('\n');
+            for (StackTraceElement frame : thread.getStackTrace()) {
+                out.append("\tat ").append(frame).append('\n');
+            }
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Bytes allocated by every thread since the previous snapshot, and the usage of the memory pools
+     */
+    public static synchronized void writeAllocations(StringBuilder out) {
+        final long now = System.nanoTime();
+        if (THREADS instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemoryEnabled()) {
+            final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            final long[] ids = threads.getAllThreadIds();
+            final long[] allocated = threads.getThreadAllocatedBytes(ids);
+            final ThreadInfo[] infos = threads.getThreadInfo(ids);
+
+            final List<long[]> deltas = new ArrayList<>(ids.length);
+            final Map<Long, String> names = new HashMap<>();
+            final Map<Long, Long> current = new HashMap<>();
+            for (int i = 0; i < ids.length; i++) {
+                if (infos[i] == null || allocated[i] < 0) {
+                    continue;
+                }
+                names.put(ids[i], infos[i].getThreadName());
+                current.put(ids[i], allocated[i]);
+                deltas.add(new long[]{ids[i], allocated[i] - previousAllocations.getOrDefault(ids[i], 0L)});
+            }
+            deltas.sort(Comparator.comparingLong((long[] delta) -> delta[1]).reversed());
+
+            out.append("allocated by thread");
+            if (previousAllocationsNanos != 0) {
+                out.append(" in the last ").append((now - previousAllocationsNanos) / 1_000_000).append("ms");
+            }
+            out.append('\n');
+            long total = 0;
+            for (long[] delta : deltas) {
+                total += delta[1];
+                if (delta[1] > 0) {
+                    out.append(String.format("%,16d  \"%s\" #%d%n", delta[1], names.get(delta[0]), delta[0]));
+                }
+            }
+            out.append(String.format("%,16d  total%n%n", total));
+            previousAllocations.clear();
+            previousAllocations.putAll(current);
+            previousAllocationsNanos = now;
+        } else {
+            out.append("thread allocation accounting is not supported\n\n");
+        }
+
+        out.append("memory pools (used / committed / max)\n");
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            final MemoryUsage usage = pool.getUsage();
+            out.append(String.format("%,16d / %,16d / %,16d  %s%n",
+                    usage.getUsed(), usage.getCommitted(), usage.getMax(), pool.getName()));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.radishframework.grpc.common;
+
+import java.time.Duration;
+
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * How the calls of a service or a method are sampled, unset values fall back to the default
+ * policy of the {@link RadishSampler}
+ */
+public final class SamplingPolicy {
+    /**
+     * Never sample, not even the slow or failed calls
+     */
+    public static final SamplingPolicy OFF = newBuilder().setRatio(0d).setTail(false).build();
+
+    @Nullable
+    private final Double ratio;
+    @Nullable
+    private final Double ratePerSecond;
+    @Nullable
+    private final Boolean tail;
+    @Nullable
+    private final Duration slowThreshold;
+
+    private SamplingPolicy(Builder builder) {
+        this.ratio = builder.ratio;
+        this.ratePerSecond = builder.ratePerSecond;
+        this.tail = builder.tail;
+        this.slowThreshold = builder.slowThreshold;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Share of the root calls sampled up front
+     */
+    public double getRatio() {
+        return ratio == null ? 1d : ratio;
+    }
+
+    /**
+     * Root calls sampled up front per second at most, 0 for no limit
+     */
+    public double getRatePerSecond() {
+        return ratePerSecond == null ? 0d : ratePerSecond;
+    }
+
+    /**
+     * Record the root calls which aren't sampled up front, and keep them if slow or failed
+     */
+    public boolean isTail() {
+        return tail != null && tail;
+    }
+
+    public Duration getSlowThreshold() {
+        return slowThreshold == null ? Duration.ofMillis(500) : slowThreshold;
+    }
+
+    /**
+     * @return this policy with the unset values taken from {@code defaults}
+     */
+    public SamplingPolicy withDefaults(SamplingPolicy defaults) {
+        final Builder builder = new Builder();
+        builder.ratio = ratio != null ? ratio : defaults.ratio;
+        builder.ratePerSecond = ratePerSecond != null ? ratePerSecond : defaults.ratePerSecond;
+        builder.tail = tail != null ? tail : defaults.tail;
+        builder.slowThreshold = slowThreshold != null ? slowThreshold : defaults.slowThreshold;
+        return builder.build();
+    }
+
+    public static final class Builder {
+        private Double ratio;
+        private Double ratePerSecond;
+        private Boolean tail;
+        private Duration slowThreshold;
+
+        private Builder() {
+        }
+
+        public Builder setRatio(@Nullable Double ratio) {
+            checkArgument(ratio == null || (ratio >= 0 && ratio <= 1), "ratio must be in [0, 1]");
+            this.ratio = ratio;
+            return this;
+        }
+
+        public Builder setRatePerSecond(@Nullable Double ratePerSecond) {
+            checkArgument(ratePerSecond == null || ratePerSecond >= 0, "ratePerSecond must not be negative");
+            this.ratePerSecond = ratePerSecond;
+            return this;
+        }
+
+        public Builder setTail(@Nullable Boolean tail) {
+            this.tail = tail;
+            return this;
+        }
+
+        public Builder setSlowThreshold(@Nullable Duration slowThreshold) {
+            this.slowThreshold = slowThreshold;
+            return this;
+        }
+
+        public SamplingPolicy build() {
+            return new SamplingPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.radishframework.grpc.common;
+
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+
+/**
+ * Passes the sampled spans on, and the spans recorded for tail sampling by the
+ * {@link RadishSampler} only if they are slower than their threshold or failed
+ */
+public final class TailSamplingSpanProcessor implements SpanProcessor {
+    private final SpanProcessor delegate;
+
+    public TailSamplingSpanProcessor(SpanProcessor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+        if (delegate.isStartRequired()) {
+            delegate.onStart(parentContext, span);
+        }
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return delegate.isStartRequired();
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        if (span.getSpanContext().isSampled()) {
+            delegate.onEnd(span);
+            return;
+        }
+        final SpanData data = span.toSpanData();
+        final Long slowThresholdNanos = data.getAttributes().get(RadishSampler.SLOW_THRESHOLD_NANOS);
+        if (slowThresholdNanos == null) {
+            return;
+        }
+        if (span.getLatencyNanos() >= slowThresholdNanos || data.getStatus().getStatusCode() == StatusCode.ERROR) {
+            delegate.onEnd(span);
+        }
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return delegate.shutdown();
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+        return delegate.forceFlush();
+    }
+}
@@ -0,0 +1,379 @@
+package com.radishframework.grpc.common;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Weight bounded cache with expiring entries, evicted by W-TinyLFU.
+ * <p>
+ * The new entries go to a small LRU window, the entries leaving the window are only admitted to
+ * the main segmented LRU if they are accessed more often than the entries they would evict, as
+ * estimated by a count-min sketch of the recent accesses. A burst of one-off keys doesn't flush
+ * the hot keys out of the cache.
+ * <p>
+ * The reads are lock free, their reordering of the policy is skipped while another thread holds
+ * the policy lock.
+ */
+public final class TinyLfuCache<K, V> {
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final FrequencySketch sketch;
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final LongAdder evictions = new LongAdder();
+
+    // guarded by policyLock
+    private final AccessOrder<K, V> window = new AccessOrder<>();
+    private final AccessOrder<K, V> probation = new AccessOrder<>();
+    private final AccessOrder<K, V> protectedSegment = new AccessOrder<>();
+    private long windowWeight;
+    private long mainWeight;
+    private long protectedWeight;
+
+    /**
+     * @param expectedEntries entries expected when the cache is full, sizes the frequency sketch
+     */
+    public TinyLfuCache(long maximumWeight, int expectedEntries) {
+        checkArgument(maximumWeight > 0, "maximumWeight must be positive");
+        checkArgument(expectedEntries > 0, "expectedEntries must be positive");
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = Math.max(1, maximumWeight / 100);
+        this.protectedMaximum = (maximumWeight - windowMaximum) * 8 / 10;
+        this.sketch = new FrequencySketch(expectedEntries);
+    }
+
+    /**
+     * @return the live value of the key, null if absent or expired
+     */
+    @Nullable
+    public V get(K key) {
+        final Node<K, V> node = data.get(key);
+        if (node == null) {
+            recordMiss(key);
+            return null;
+        }
+        if (System.nanoTime() - node.expiresAtNanos >= 0) {
+            remove(node);
+            return null;
+        }
+        if (policyLock.tryLock()) {
+            try {
+                sketch.increment(key.hashCode());
+                if (node.segment >= 0) {
+                    onHit(node);
+                }
+            } finally {
+                policyLock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    /**
+     * @param weight e.g. the size of the value in bytes, the values heavier than the cache are
+     *               not cached
+     */
+    public void put(K key, V value, int weight, long ttlNanos) {
+        checkArgument(weight >= 0, "weight must not be negative");
+        if (weight > maximumWeight - windowMaximum) {
+            return;
+        }
+        final Node<K, V> node = new Node<>(key, value, weight, System.nanoTime() + ttlNanos);
+        policyLock.lock();
+        try {
+            final Node<K, V> previous = data.put(key, node);
+            if (previous != null) {
+                unlink(previous);
+            }
+            node.segment = WINDOW;
+            window.addLast(node);
+            windowWeight += weight;
+            evict();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    public void invalidate(K key) {
+        final Node<K, V> node = data.get(key);
+        if (node != null) {
+            remove(node);
+        }
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public long weightedSize() {
+        policyLock.lock();
+        try {
+            return windowWeight + mainWeight;
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    private void recordMiss(K key) {
+        if (policyLock.tryLock()) {
+            try {
+                sketch.increment(key.hashCode());
+            } finally {
+                policyLock.unlock();
+            }
+        }
+    }
+
+    private void remove(Node<K, V> node) {
+        policyLock.lock();
+        try {
+            if (data.remove(node.key, node)) {
+                unlink(node);
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void onHit(Node<K, V> node) {
+        switch (node.segment) {
+            case WINDOW:
+                window.moveToLast(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                node.segment = PROTECTED;
+                protectedSegment.addLast(node);
+                protectedWeight += node.weight;
+                // the protected entries accessed the least long ago go back on probation
+                while (protectedWeight > protectedMaximum) {
+                    final Node<K, V> demoted = protectedSegment.pollFirst();
+                    protectedWeight -= demoted.weight;
+                    demoted.segment = PROBATION;
+                    probation.addLast(demoted);
+                }
+                break;
+            case PROTECTED:
+                protectedSegment.moveToLast(node);
+                break;
+            default:
+        }
+    }
+
+    private void unlink(Node<K, V> node) {
+        switch (node.segment) {
+            case WINDOW:
+                window.remove(node);
+                windowWeight -= node.weight;
+                break;
+            case PROBATION:
+                probation.remove(node);
+                mainWeight -= node.weight;
+                break;
+            case PROTECTED:
+                protectedSegment.remove(node);
+                mainWeight -= node.weight;
+                protectedWeight -= node.weight;
+                break;
+            default:
+        }
+        node.segment = -1;
+    }
+
+    private void evict() {
+        final long mainMaximum = maximumWeight - windowMaximum;
+        while (windowWeight > windowMaximum) {
+            final Node<K, V> candidate = window.pollFirst();
+            windowWeight -= candidate.weight;
+            candidate.segment = -1;
+
+            // admitted if it is accessed more often than all the entries it evicts
+            boolean admit = true;
+            while (admit && mainWeight + candidate.weight > mainMaximum) {
+                final Node<K, V> victim = probation.peekFirst() != null
+                        ? probation.peekFirst() : protectedSegment.peekFirst();
+                if (sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())) {
+                    evict(victim);
+                } else {
+                    admit = false;
+                }
+            }
+            if (admit) {
+                candidate.segment = PROBATION;
+                probation.addLast(candidate);
+                mainWeight += candidate.weight;
+            } else {
+                data.remove(candidate.key, candidate);
+                evictions.increment();
+            }
+        }
+    }
+
+    private void evict(Node<K, V> node) {
+        data.remove(node.key, node);
+        unlink(node);
+        evictions.increment();
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private final V value;
+        private final int weight;
+        private final long expiresAtNanos;
+
+        // guarded by the policy lock
+        private int segment = -1;
+        private Node<K, V> previous;
+        private Node<K, V> next;
+
+        Node(K key, V value, int weight, long expiresAtNanos) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    /**
+     * Intrusive doubly linked list, from the least to the most recently accessed
+     */
+    private static final class AccessOrder<K, V> {
+        private Node<K, V> first;
+        private Node<K, V> last;
+
+        Node<K, V> peekFirst() {
+            return first;
+        }
+
+        Node<K, V> pollFirst() {
+            final Node<K, V> node = first;
+            remove(node);
+            return node;
+        }
+
+        void addLast(Node<K, V> node) {
+            node.previous = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.previous == null) {
+                first = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4 bit counters, 16 per long, halved every 10 times the expected entries
+     * increments so that the old popularity fades
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private static final long ONE_MASK = 0x1111111111111111L;
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            final int length = Integer.highestOneBit(Math.max(2, Math.min(expectedEntries, 1 << 24) - 1) << 1);
+            this.table = new long[length];
+            this.tableMask = length - 1;
+            this.sampleSize = 10 * Math.min(expectedEntries, 1 << 24);
+        }
+
+        int frequency(int hashCode) {
+            final int hash = spread(hashCode);
+            final int start = (hash & 3) << 2;
+            int frequency = 15;
+            for (int i = 0; i < 4; i++) {
+                final int index = indexOf(hash, i);
+                final int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void increment(int hashCode) {
+            final int hash = spread(hashCode);
+            final int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                added |= incrementAt(indexOf(hash, i), start + i);
+            }
+            if (added && ++additions == sampleSize) {
+                reset();
+            }
+        }
+
+        private boolean incrementAt(int index, int counter) {
+            final int offset = counter << 2;
+            final long mask = 0xfL << offset;
+            if ((table[index] & mask) != mask) {
+                table[index] += 1L << offset;
+                return true;
+            }
+            return false;
+        }
+
+        private void reset() {
+            int odd = 0;
+            for (int i = 0; i < table.length; i++) {
+                odd += Long.bitCount(table[i] & ONE_MASK);
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions = (additions - (odd >>> 2)) >>> 1;
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return ((int) h) & tableMask;
+        }
+
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.radishframework.grpc.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import com.google.protobuf.UnsafeByteOperations;
+
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+import io.grpc.Status;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Protobuf marshaller copying the large messages once, from the transport buffers to the message.
+ * <p>
+ * The messages of at least {@code aliasThreshold} bytes are read into an array of their own and
+ * parsed with aliasing, their bytes fields are views of that array instead of copies of it. The
+ * smaller messages are parsed from a buffer reused by the thread. The messages are serialized
+ * straight into the buffers of the transport.
+ */
+public final class ZeroCopyMarshaller<T extends MessageLite> implements MethodDescriptor.PrototypeMarshaller<T> {
+    public static final int DEFAULT_ALIAS_THRESHOLD = 64 * 1024;
+
+    private static final ThreadLocal<SoftReference<byte[]>> SCRATCH = new ThreadLocal<>();
+
+    private final T prototype;
+    private final Parser<T> parser;
+    private final int aliasThreshold;
+
+    @SuppressWarnings("unchecked")
+    public ZeroCopyMarshaller(T prototype, int aliasThreshold) {
+        checkArgument(aliasThreshold >= 0, "aliasThreshold must not be negative");
+        this.prototype = prototype;
+        this.parser = (Parser<T>) prototype.getParserForType();
+        this.aliasThreshold = aliasThreshold;
+    }
+
+    /**
+     * @return the methods of the service with their protobuf marshallers replaced, the other
+     * methods unchanged
+     */
+    public static ServerServiceDefinition wrap(ServerServiceDefinition serviceDefinition, int aliasThreshold) {
+        final ServiceDescriptor original = serviceDefinition.getServiceDescriptor();
+        final List<ServerMethodDefinition<?, ?>> methods = new ArrayList<>(serviceDefinition.getMethods().size());
+        // the schema descriptor is kept for the reflection service
+        final ServiceDescriptor.Builder descriptor = ServiceDescriptor.newBuilder(original.getName())
+                .setSchemaDescriptor(original.getSchemaDescriptor());
+        for (ServerMethodDefinition<?, ?> method : serviceDefinition.getMethods()) {
+            final ServerMethodDefinition<?, ?> wrapped = wrap(method, aliasThreshold);
+            methods.add(wrapped);
+            descriptor.addMethod(wrapped.getMethodDescriptor());
+        }
+        final ServerServiceDefinition.Builder builder = ServerServiceDefinition.builder(descriptor.build());
+        methods.forEach(builder::addMethod);
+        return builder.build();
+    }
+
+    private static <ReqT, RespT> ServerMethodDefinition<ReqT, RespT> wrap(ServerMethodDefinition<ReqT, RespT> method,
+                                                                         int aliasThreshold) {
+        final MethodDescriptor<ReqT, RespT> descriptor = wrap(method.getMethodDescriptor(), aliasThreshold);
+        return descriptor == method.getMethodDescriptor() ? method
+                : ServerMethodDefinition.create(descriptor, method.getServerCallHandler());
+    }
+
+    /**
+     * @return the method with its protobuf marshallers replaced, the method itself if it is not
+     * marshalled by protobuf
+     */
+    public static <ReqT, RespT> MethodDescriptor<ReqT, RespT> wrap(MethodDescriptor<ReqT, RespT> method,
+                                                                   int aliasThreshold) {
+        final MethodDescriptor.Marshaller<ReqT> requestMarshaller = wrap(method.getRequestMarshaller(), aliasThreshold);
+        final MethodDescriptor.Marshaller<RespT> responseMarshaller =
+                wrap(method.getResponseMarshaller(), aliasThreshold);
+        if (requestMarshaller == null || responseMarshaller == null) {
+            return method;
+        }
+        return method.toBuilder(requestMarshaller, responseMarshaller).build();
+    }
+
+    @Nullable
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> MethodDescriptor.Marshaller<T> wrap(MethodDescriptor.Marshaller<T> marshaller,
+                                                           int aliasThreshold) {
+        if (marshaller instanceof ZeroCopyMarshaller) {
+            return marshaller;
+        }
+        if (!(marshaller instanceof MethodDescriptor.PrototypeMarshaller)) {
+            return null;
+        }
+        final Object prototype = ((MethodDescriptor.PrototypeMarshaller<T>) marshaller).getMessagePrototype();
+        return prototype instanceof MessageLite
+                ? new ZeroCopyMarshaller((MessageLite) prototype, aliasThreshold) : null;
+    }
+
+    @Override
+    public T getMessagePrototype() {
+        return prototype;
+    }
+
+    @Override
+    public Class<T> getMessageClass() {
+        @SuppressWarnings("unchecked") final Class<T> messageClass = (Class<T>) prototype.getClass();
+        return messageClass;
+    }
+
+    @Override
+    public InputStream stream(T value) {
+        return new MessageInputStream(value);
+    }
+
+    @Override
+    public T parse(InputStream stream) {
+        try {
+            if (stream instanceof MessageInputStream && ((MessageInputStream) stream).message != null
+                    && ((MessageInputStream) stream).message.getParserForType() == parser) {
+                // in process transport, the message itself
+                @SuppressWarnings("unchecked") final T message = (T) ((MessageInputStream) stream).message;
+                return message;
+            }
+            if (!(stream instanceof KnownLength)) {
+                return parse(CodedInputStream.newInstance(stream));
+            }
+            final int size = stream.available();
+            if (size == 0) {
+                @SuppressWarnings("unchecked") final T empty = (T) prototype.getDefaultInstanceForType();
+                return empty;
+            }
+            if (size >= aliasThreshold) {
+                final byte[] buffer = new byte[size];
+                readFully(stream, buffer, size);
+                // the message owns the buffer, its bytes fields may point into it
+                final CodedInputStream input = UnsafeByteOperations.unsafeWrap(buffer).newCodedInput();
+                input.enableAliasing(true);
+                return parse(input);
+            }
+            final byte[] scratch = scratch(size);
+            readFully(stream, scratch, size);
+            return parse(CodedInputStream.newInstance(scratch, 0, size));
+        } catch (IOException e) {
+            throw Status.INTERNAL.withDescription("Invalid protobuf byte sequence").withCause(e).asRuntimeException();
+        }
+    }
+
+    private T parse(CodedInputStream input) throws InvalidProtocolBufferException {
+        // the maximum message size is enforced by the transport
+        input.setSizeLimit(Integer.MAX_VALUE);
+        final T message = parser.parseFrom(input, ExtensionRegistryLite.getEmptyRegistry());
+        input.checkLastTagWas(0);
+        return message;
+    }
+
+    private static byte[] scratch(int size) {
+        final SoftReference<byte[]> reference = SCRATCH.get();
+        byte[] scratch = reference == null ? null : reference.get();
+        if (scratch == null || scratch.length < size) {
+            scratch = new byte[Math.max(size, 4096)];
+            SCRATCH.set(new SoftReference<>(scratch));
+        }
+        return scratch;
+    }
+
+    private static void readFully(InputStream stream, byte[] buffer, int size) throws IOException {
+        int position = 0;
+        while (position < size) {
+            final int count = stream.read(buffer, position, size - position);
+            if (count < 0) {
+                throw new IOException("Stream ended after " + position + " of " + size + " bytes");
+            }
+            position += count;
+        }
+    }
+
+    /**
+     * Drained by the transport into its own buffers, serialized to an array only if read
+     */
+    private static final class MessageInputStream extends InputStream implements Drainable, KnownLength {
+        @Nullable
+        private MessageLite message;
+        @Nullable
+        private ByteArrayInputStream serialized;
+
+        MessageInputStream(MessageLite message) {
+            this.message = message;
+        }
+
+        @Override
+        public int drainTo(OutputStream target) throws IOException {
+            final int written;
+            if (message != null) {
+                written = message.getSerializedSize();
+                // the large bytes fields bypass the buffer, written straight to the target
+                final CodedOutputStream output = CodedOutputStream.newInstance(target,
+                        Math.max(1, Math.min(written, CodedOutputStream.DEFAULT_BUFFER_SIZE)));
+                message.writeTo(output);
+                output.flush();
+                message = null;
+            } else if (serialized != null) {
+                written = (int) serialized.transferTo(target);
+                serialized = null;
+            } else {
+                written = 0;
+            }
+            return written;
+        }
+
+        @Override
+        public int read() {
+            if (message != null) {
+                serialized = new ByteArrayInputStream(message.toByteArray());
+                message = null;
+            }
+            return serialized == null ? -1 : serialized.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (message != null) {
+                serialized = new ByteArrayInputStream(message.toByteArray());
+                message = null;
+            }
+            return serialized == null ? -1 : serialized.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            if (message != null) {
+                return message.getSerializedSize();
+            }
+            return serialized == null ? 0 : serialized.available();
+        }
+    }
+}
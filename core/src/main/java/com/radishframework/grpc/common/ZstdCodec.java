@@ -0,0 +1,60 @@
+package com.radishframework.grpc.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.annotation.Nullable;
+
+import com.github.luben.zstd.RecyclingBufferPool;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdInputStreamNoFinalizer;
+import com.github.luben.zstd.ZstdOutputStreamNoFinalizer;
+
+import io.grpc.Codec;
+
+/**
+ * Zstandard message encoding, optionally with a dictionary trained on the messages, which both
+ * peers register under the same encoding name
+ */
+final class ZstdCodec implements Codec {
+    private final String messageEncoding;
+    private final int level;
+    @Nullable
+    private final ZstdDictCompress compressDictionary;
+    @Nullable
+    private final ZstdDictDecompress decompressDictionary;
+
+    ZstdCodec(String messageEncoding, int level, @Nullable byte[] dictionary) {
+        this.messageEncoding = messageEncoding;
+        this.level = level;
+        // digested once, shared by all the streams
+        this.compressDictionary = dictionary == null ? null : new ZstdDictCompress(dictionary, level);
+        this.decompressDictionary = dictionary == null ? null : new ZstdDictDecompress(dictionary);
+    }
+
+    @Override
+    public String getMessageEncoding() {
+        return messageEncoding;
+    }
+
+    @Override
+    public OutputStream compress(OutputStream os) throws IOException {
+        final ZstdOutputStreamNoFinalizer stream = new ZstdOutputStreamNoFinalizer(os, RecyclingBufferPool.INSTANCE);
+        stream.setLevel(level);
+        if (compressDictionary != null) {
+            stream.setDict(compressDictionary);
+        }
+        return stream;
+    }
+
+    @Override
+    public InputStream decompress(InputStream is) throws IOException {
+        final ZstdInputStreamNoFinalizer stream = new ZstdInputStreamNoFinalizer(is, RecyclingBufferPool.INSTANCE);
+        if (decompressDictionary != null) {
+            stream.setDict(decompressDictionary);
+        }
+        return stream;
+    }
+}
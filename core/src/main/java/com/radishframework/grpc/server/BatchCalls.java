@@ -0,0 +1,98 @@
+package com.radishframework.grpc.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Implements the batch method of a service over its single item method, the server side of the
+ * client {@code MicroBatcher}:
+ * <pre>
+ * public void getUsers(GetUsersRequest request, StreamObserver&lt;GetUsersResponse&gt; responseObserver) {
+ *     BatchCalls.fanOut(request.getRequestsList(), this::getUser,
+ *             users -&gt; GetUsersResponse.newBuilder().addAllUsers(users).build(), responseObserver);
+ * }
+ * </pre>
+ */
+public final class BatchCalls {
+
+    private BatchCalls() {
+    }
+
+    /**
+     * Calls the single item method for every request, on the calling thread and so in the context
+     * of the batch call, and answers the batch once all the items are answered. The batch fails with
+     * the error of the first failed item.
+     *
+     * @param method        the single item method of the service, it may answer asynchronously
+     * @param batchResponse builds the batch response of the responses, in the order of the requests
+     */
+    public static <ReqT, RespT, BatchRespT> void fanOut(List<ReqT> requests,
+                                                        BiConsumer<ReqT, StreamObserver<RespT>> method,
+                                                        Function<List<RespT>, BatchRespT> batchResponse,
+                                                        StreamObserver<BatchRespT> responseObserver) {
+        if (requests.isEmpty()) {
+            responseObserver.onNext(batchResponse.apply(List.of()));
+            responseObserver.onCompleted();
+            return;
+        }
+
+        final Object[] responses = new Object[requests.size()];
+        final AtomicInteger remaining = new AtomicInteger(requests.size());
+        final AtomicBoolean failed = new AtomicBoolean();
+        for (int i = 0; i < requests.size(); i++) {
+            final int index = i;
+            final StreamObserver<RespT> itemObserver = new StreamObserver<>() {
+                private boolean answered;
+
+                @Override
+                public void onNext(RespT value) {
+                    responses[index] = value;
+                    answered = true;
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    if (failed.compareAndSet(false, true)) {
+                        responseObserver.onError(t);
+                    }
+                }
+
+                @Override
+                public void onCompleted() {
+                    if (!answered) {
+                        onError(Status.INTERNAL.withDescription("No response for item " + index).asRuntimeException());
+                    } else if (remaining.decrementAndGet() == 0 && !failed.get()) {
+                        @SuppressWarnings("unchecked") final List<RespT> items =
+                                (List<RespT>) (List<?>) new ArrayList<>(Arrays.asList(responses));
+                        final BatchRespT response;
+                        try {
+                            response = batchResponse.apply(items);
+                        } catch (RuntimeException e) {
+                            onError(Status.INTERNAL.withCause(e).withDescription("Unable to build the batch response")
+                                    .asRuntimeException());
+                            return;
+                        }
+                        responseObserver.onNext(response);
+                        responseObserver.onCompleted();
+                    }
+                }
+            };
+            try {
+                method.accept(requests.get(index), itemObserver);
+            } catch (RuntimeException e) {
+                itemObserver.onError(Status.fromThrowable(e).asRuntimeException());
+            }
+            if (failed.get()) {
+                return;
+            }
+        }
+    }
+}
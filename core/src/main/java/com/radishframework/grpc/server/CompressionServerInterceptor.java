@@ -0,0 +1,54 @@
+package com.radishframework.grpc.server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.radishframework.grpc.common.CompressionPolicy;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+/**
+ * Compresses the responses of the methods with a {@link CompressionPolicy}, when the client
+ * accepts its encoding. The responses under the size threshold of the policy are sent
+ * uncompressed.
+ */
+public class CompressionServerInterceptor implements ServerInterceptor {
+    private final Map<String, CompressionPolicy> policies;
+    private final ConcurrentHashMap<String, CompressionPolicy> policyByMethod = new ConcurrentHashMap<>();
+
+    /**
+     * @param policies keyed by "package.Service/Method", "package.Service" or "*"
+     */
+    public CompressionServerInterceptor(Map<String, CompressionPolicy> policies) {
+        this.policies = Map.copyOf(policies);
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        final CompressionPolicy policy = policyByMethod.computeIfAbsent(
+                call.getMethodDescriptor().getFullMethodName(), name -> {
+                    final CompressionPolicy found = CompressionPolicy.lookup(policies, call.getMethodDescriptor());
+                    return found == null ? CompressionPolicy.NONE : found;
+                });
+        if (!policy.isEnabled()) {
+            return next.startCall(call, headers);
+        }
+        // falls back to identity if the client doesn't accept the encoding
+        call.setCompression(policy.getCodec());
+        if (policy.getMinMessageSize() == 0) {
+            return next.startCall(call, headers);
+        }
+        return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+            @Override
+            public void sendMessage(RespT message) {
+                setMessageCompression(policy.shouldCompress(message));
+                super.sendMessage(message);
+            }
+        }, headers);
+    }
+}
@@ -0,0 +1,225 @@
+package com.radishframework.grpc.server;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Limits the concurrent calls of every service (or method) to a limit adapted to the observed
+ * latency, the calls over the limit are rejected right away with RESOURCE_EXHAUSTED.
+ * <p>
+ * The limit follows the gradient between the no load and the recent latency: it grows while the
+ * recent latency stays close to the no load one, and shrinks as soon as calls start queueing. Calls
+ * of a lower {@link Priority}, read from the {@link #PRIORITY_KEY} header, are only admitted
+ * below a share of the limit and are shed first.
+ * <p>
+ * A call cancelled once its deadline expired counts as an overload, like a call closed with
+ * DEADLINE_EXCEEDED: the clients give up on the calls before the service answers them.
+ */
+public class ConcurrencyLimitServerInterceptor implements ServerInterceptor {
+    public static final Metadata.Key<String> PRIORITY_KEY =
+            Metadata.Key.of("x-radish-priority", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final boolean perMethod;
+    private final ConcurrentHashMap<String, Limiter> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * @param perMethod one limit per method instead of per service
+     */
+    public ConcurrencyLimitServerInterceptor(int initialLimit, int minLimit, int maxLimit, boolean perMethod) {
+        checkArgument(minLimit > 0 && minLimit <= initialLimit && initialLimit <= maxLimit,
+                "limits must satisfy 0 < minLimit <= initialLimit <= maxLimit");
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.perMethod = perMethod;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+            ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        final String name = perMethod
+                ? call.getMethodDescriptor().getFullMethodName()
+                : call.getMethodDescriptor().getServiceName();
+        final Limiter limiter = limiters.computeIfAbsent(name, n -> new Limiter());
+        final Priority priority = Priority.of(headers.get(PRIORITY_KEY));
+        if (!limiter.tryAcquire(priority)) {
+            call.close(Status.RESOURCE_EXHAUSTED.withDescription("Concurrency limit of " + name + " reached"),
+                    new Metadata());
+            return new ServerCall.Listener<>() {
+            };
+        }
+
+        final long startNanos = System.nanoTime();
+        final Deadline deadline = Context.current().getDeadline();
+        final AtomicBoolean released = new AtomicBoolean();
+        final ServerCall<ReqT, RespT> limitedCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                if (released.compareAndSet(false, true)) {
+                    limiter.release(System.nanoTime() - startNanos, isOverload(status));
+                }
+                super.close(status, trailers);
+            }
+        };
+        final ServerCall.Listener<ReqT> listener;
+        try {
+            listener = next.startCall(limitedCall, headers);
+        } catch (RuntimeException | Error e) {
+            if (released.compareAndSet(false, true)) {
+                limiter.release(-1, false);
+            }
+            throw e;
+        }
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onCancel() {
+                try {
+                    super.onCancel();
+                } finally {
+                    // the call took at least that long, past its deadline it was queued for too long
+                    if (released.compareAndSet(false, true)) {
+                        limiter.release(System.nanoTime() - startNanos, deadline != null && deadline.isExpired());
+                    }
+                }
+            }
+        };
+    }
+
+    public void writePrometheus(StringBuilder out) {
+        final String label = perMethod ? "method" : "service";
+        final Map<String, Limiter> sorted = new TreeMap<>(limiters);
+        out.append("# HELP radish_server_concurrency_limit Adaptive concurrency limit\n");
+        out.append("# TYPE radish_server_concurrency_limit gauge\n");
+        sorted.forEach((name, limiter) -> out.append("radish_server_concurrency_limit{").append(label)
+                .append("=\"").append(name).append("\"} ").append(limiter.limit).append('\n'));
+        out.append("# HELP radish_server_concurrency_rejected_total Calls rejected by the concurrency limit\n");
+        out.append("# TYPE radish_server_concurrency_rejected_total counter\n");
+        sorted.forEach((name, limiter) -> out.append("radish_server_concurrency_rejected_total{").append(label)
+                .append("=\"").append(name).append("\"} ").append(limiter.rejected.sum()).append('\n'));
+    }
+
+    private static boolean isOverload(Status status) {
+        return status.getCode() == Status.Code.DEADLINE_EXCEEDED
+                || status.getCode() == Status.Code.RESOURCE_EXHAUSTED;
+    }
+
+    /**
+     * Share of the limit up to which the calls of a priority are admitted
+     */
+    public enum Priority {
+        CRITICAL(1d), NORMAL(0.9d), SHEDDABLE(0.5d);
+
+        private final double share;
+
+        Priority(double share) {
+            this.share = share;
+        }
+
+        static Priority of(String value) {
+            if (value != null) {
+                for (Priority priority : values()) {
+                    if (priority.name().equalsIgnoreCase(value)) {
+                        return priority;
+                    }
+                }
+            }
+            return NORMAL;
+        }
+    }
+
+    private final class Limiter {
+        // gradient parameters
+        private static final double SMOOTHING = 0.2;
+        private static final double SHORT_WINDOW = 10;
+        private static final int MIN_RTT_WINDOW = 1000;
+        private static final double RTT_TOLERANCE = 1.5;
+        private static final double OVERLOAD_BACKOFF = 0.9;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder rejected = new LongAdder();
+        private volatile int limit = initialLimit;
+
+        // guarded by this
+        private double estimatedLimit = initialLimit;
+        private double shortRttNanos;
+        private long minRttNanos = Long.MAX_VALUE;
+        private long nextMinRttNanos = Long.MAX_VALUE;
+        private int samples;
+
+        boolean tryAcquire(Priority priority) {
+            final int admitted = Math.max(1, (int) (limit * priority.share));
+            while (true) {
+                final int current = inFlight.get();
+                if (current >= admitted) {
+                    rejected.increment();
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * @param rttNanos negative if the call gives no latency sample
+         */
+        void release(long rttNanos, boolean overload) {
+            final int current = inFlight.getAndDecrement();
+            if (rttNanos >= 0) {
+                update(rttNanos, current, overload);
+            }
+        }
+
+        private synchronized void update(long rttNanos, int inFlight, boolean overload) {
+            // the no load latency is the minimum of a window, so that it follows the service when it slows down
+            nextMinRttNanos = Math.min(nextMinRttNanos, rttNanos);
+            if (++samples == MIN_RTT_WINDOW) {
+                minRttNanos = nextMinRttNanos;
+                nextMinRttNanos = Long.MAX_VALUE;
+                samples = 0;
+            }
+            if (minRttNanos == Long.MAX_VALUE) {
+                minRttNanos = rttNanos;
+                shortRttNanos = rttNanos;
+                return;
+            }
+            minRttNanos = Math.min(minRttNanos, rttNanos);
+            shortRttNanos += (rttNanos - shortRttNanos) / SHORT_WINDOW;
+
+            double newLimit;
+            if (overload) {
+                newLimit = estimatedLimit * OVERLOAD_BACKOFF;
+            } else if (inFlight < estimatedLimit / 2) {
+                // not enough calls to tell whether the limit could be higher
+                return;
+            } else {
+                final double gradient = Math.max(0.5,
+                        Math.min(1d, RTT_TOLERANCE * minRttNanos / Math.max(1d, shortRttNanos)));
+                // room for a queue of sqrt(limit) calls
+                newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+                newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+            }
+            estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+            limit = (int) estimatedLimit;
+        }
+    }
+}
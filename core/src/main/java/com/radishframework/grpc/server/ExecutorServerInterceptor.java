@@ -0,0 +1,135 @@
+package com.radishframework.grpc.server;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.grpc.Context;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.grpc.internal.SerializingExecutor;
+
+/**
+ * Runs the calls on an executor instead of the thread delivering them, the callbacks of a call
+ * stay serialized and run in the grpc context they were delivered in. A call failing in a callback,
+ * or rejected by an executor shut down, is closed and gives its permit back.
+ */
+final class ExecutorServerInterceptor implements ServerInterceptor {
+    private final Executor executor;
+    // admitted calls, null if unbounded
+    private final Semaphore permits;
+
+    /**
+     * @param maxCalls calls admitted at the same time, 0 for no limit
+     */
+    ExecutorServerInterceptor(Executor executor, int maxCalls) {
+        this.executor = executor;
+        this.permits = maxCalls > 0 ? new Semaphore(maxCalls) : null;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+            ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        if (permits != null && !permits.tryAcquire()) {
+            call.close(Status.RESOURCE_EXHAUSTED.withDescription("Too many calls queued"), new Metadata());
+            return new ServerCall.Listener<>() {
+            };
+        }
+        return new ExecutorListener<>(call, headers, next);
+    }
+
+    private final class ExecutorListener<ReqT, RespT> extends ServerCall.Listener<ReqT> {
+        private final SerializingExecutor serializingExecutor = new SerializingExecutor(executor);
+        private final ServerCall<ReqT, RespT> call;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+        // replaced by a no-op listener once the call is closed on a failure
+        private volatile ServerCall.Listener<ReqT> delegate;
+
+        ExecutorListener(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+            this.call = call;
+            execute(() -> delegate = next.startCall(call, headers));
+        }
+
+        @Override
+        public void onMessage(ReqT message) {
+            execute(() -> delegate.onMessage(message));
+        }
+
+        @Override
+        public void onHalfClose() {
+            execute(() -> delegate.onHalfClose());
+        }
+
+        @Override
+        public void onCancel() {
+            execute(() -> {
+                try {
+                    delegate.onCancel();
+                } finally {
+                    release();
+                }
+            });
+        }
+
+        @Override
+        public void onComplete() {
+            execute(() -> {
+                try {
+                    delegate.onComplete();
+                } finally {
+                    release();
+                }
+            });
+        }
+
+        @Override
+        public void onReady() {
+            execute(() -> delegate.onReady());
+        }
+
+        private void execute(Runnable task) {
+            final Context context = Context.current();
+            try {
+                serializingExecutor.execute(() -> {
+                    final Context previous = context.attach();
+                    try {
+                        task.run();
+                    } catch (RuntimeException | Error e) {
+                        // as the server does without executor: close the call, the executor logs the error
+                        fail(Status.fromThrowable(e));
+                        throw e;
+                    } finally {
+                        context.detach(previous);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                fail(Status.UNAVAILABLE.withDescription("The executor of the service is shut down").withCause(e));
+            }
+        }
+
+        private void fail(Status status) {
+            delegate = new ServerCall.Listener<>() {
+            };
+            // before the close, the client may send its next call as soon as it sees the status
+            release();
+            if (closed.compareAndSet(false, true)) {
+                try {
+                    call.close(status, new Metadata());
+                } catch (IllegalStateException e) {
+                    // already closed by the handler before it failed
+                }
+            }
+        }
+
+        private void release() {
+            if (permits != null && released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.radishframework.grpc.server;
+
+import com.google.protobuf.MessageLite;
+import com.radishframework.grpc.common.RpcMetrics;
+import io.grpc.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records the latency, status code, message counts and sizes and in-flight count of the calls
+ * per method in {@link RpcMetrics}
+ */
+public class MetricsServerInterceptor implements ServerInterceptor {
+    private final RpcMetrics rpcMetrics;
+
+    public MetricsServerInterceptor() {
+        this(RpcMetrics.getDefault());
+    }
+
+    public MetricsServerInterceptor(RpcMetrics rpcMetrics) {
+        this.rpcMetrics = rpcMetrics;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+            ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        final RpcMetrics.MethodMetrics metrics = rpcMetrics.server(call.getMethodDescriptor().getFullMethodName());
+        final MetricsServerCall<ReqT, RespT> metricsCall = new MetricsServerCall<>(call, metrics);
+        final ServerCall.Listener<ReqT> listener;
+        try {
+            listener = next.startCall(metricsCall, headers);
+        } catch (RuntimeException | Error e) {
+            metricsCall.closed(Status.fromThrowable(e).getCode());
+            throw e;
+        }
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT>(listener) {
+            @Override
+            public void onMessage(ReqT message) {
+                metrics.request(sizeOf(message));
+                super.onMessage(message);
+            }
+
+            @Override
+            public void onCancel() {
+                try {
+                    super.onCancel();
+                } finally {
+                    metricsCall.closed(Status.Code.CANCELLED);
+                }
+            }
+        };
+    }
+
+    static int sizeOf(Object message) {
+        return message instanceof MessageLite ? ((MessageLite) message).getSerializedSize() : -1;
+    }
+
+    private static final class MetricsServerCall<ReqT, RespT>
+            extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+        private final RpcMetrics.MethodMetrics metrics;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        MetricsServerCall(ServerCall<ReqT, RespT> delegate, RpcMetrics.MethodMetrics metrics) {
+            super(delegate);
+            this.metrics = metrics;
+            metrics.started();
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+            metrics.response(sizeOf(message));
+            super.sendMessage(message);
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            closed(status.getCode());
+            super.close(status, trailers);
+        }
+
+        void closed(Status.Code code) {
+            if (closed.compareAndSet(false, true)) {
+                metrics.closed(code, System.nanoTime() - startNanos);
+            }
+        }
+    }
+}
@@ -1,68 +1,226 @@
 package com.radishframework.grpc.server;
 
 import com.radishframework.grpc.common.OpenTelemetryHolder;
+import com.radishframework.grpc.common.RadishSampler;
 import io.grpc.*;
+import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.context.Scope;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.context.propagation.TextMapPropagator;
 
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Traces the calls from their start until they are closed or cancelled, the span is current in
+ * the listener callbacks of the call
+ */
 public class OpenTelemetryServerInterceptor implements ServerInterceptor {
+    private static final AttributeKey<String> COMPONENT = AttributeKey.stringKey("component");
+    private static final AttributeKey<String> NET_PEER_IP = AttributeKey.stringKey("net.peer.ip");
+    private static final AttributeKey<Long> NET_PEER_PORT = AttributeKey.longKey("net.peer.port");
+    private static final AttributeKey<Long> GRPC_STATUS_CODE = AttributeKey.longKey("rpc.grpc.status_code");
+    private static final AttributeKey<Long> SENT_MESSAGES = AttributeKey.longKey("rpc.grpc.sent_messages");
+    private static final AttributeKey<Long> RECEIVED_MESSAGES = AttributeKey.longKey("rpc.grpc.received_messages");
+
     private final Tracer tracer;
 
     private final TextMapPropagator textFormat =
             OpenTelemetryHolder.getOpenTelemetry().getPropagators().getTextMapPropagator();
 
+    // Metadata keys of the propagated fields, built once
+    private final List<String> fields = List.copyOf(textFormat.fields());
+    private final Map<String, Metadata.Key<String>> fieldKeys = new HashMap<>();
+
+    // span name, service and method by method, built once per method
+    private final ConcurrentHashMap<MethodDescriptor<?, ?>, MethodNames> methodNames = new ConcurrentHashMap<>();
+
     // Extract the Distributed Context from the gRPC metadata
     private final TextMapPropagator.Getter<Metadata> getter =
             new TextMapPropagator.Getter<Metadata>() {
                 @Override
                 public Iterable<String> keys(Metadata carrier) {
-                    return carrier.keys();
+                    return fields;
                 }
 
                 @Override
                 public String get(Metadata carrier, String key) {
-                    Metadata.Key<String> k = Metadata.Key.of(key, Metadata.ASCII_STRING_MARSHALLER);
-                    if (carrier != null && carrier.containsKey(k)) {
-                        return carrier.get(k);
+                    Metadata.Key<String> k = fieldKeys.get(key);
+                    if (k == null) {
+                        k = Metadata.Key.of(key, Metadata.ASCII_STRING_MARSHALLER);
                     }
-                    return "";
+                    return carrier == null ? null : carrier.get(k);
                 }
             };
 
     public OpenTelemetryServerInterceptor(final String applicationName) {
         this.tracer = OpenTelemetryHolder.getOpenTelemetry().getTracer(applicationName);
+        for (String field : fields) {
+            fieldKeys.put(field, Metadata.Key.of(field, Metadata.ASCII_STRING_MARSHALLER));
+        }
     }
 
     @Override
     public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
             ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
         // Extract the Span Context from the metadata of the gRPC request
-        Context extractedContext = textFormat.extract(Context.current(), headers, getter);
-        InetSocketAddress clientInfo =
-                (InetSocketAddress) call.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR);
-        final String serviceName = call.getMethodDescriptor().getServiceName();
-        final String spanName = serviceName + "/" + call.getMethodDescriptor().getFullMethodName();
+        final Context extractedContext = textFormat.extract(Context.current(), headers, getter);
+        final MethodNames names = methodNames.computeIfAbsent(call.getMethodDescriptor(), MethodNames::new);
         // Build a span based on the received context
         final Span span =
                 tracer
-                        .spanBuilder(spanName)
+                        .spanBuilder(names.spanName)
                         .setParent(extractedContext)
                         .setSpanKind(Span.Kind.SERVER)
+                        // read by the sampler
+                        .setAttribute(RadishSampler.RPC_SERVICE, names.serviceName)
+                        .setAttribute(RadishSampler.RPC_METHOD, names.methodName)
                         .startSpan();
-        try (Scope innerScope = span.makeCurrent()) {
-            span.setAttribute("component", "grpc");
-            span.setAttribute("rpc.service", serviceName);
-            span.setAttribute("net.peer.ip", clientInfo.getHostString());
-            span.setAttribute("net.peer.port", clientInfo.getPort());
+        final Context spanContext = extractedContext.with(span);
+
+        if (!span.isRecording()) {
+            // nothing to record, the context is still propagated to the outgoing calls
+            try (Scope ignored = spanContext.makeCurrent()) {
+                return new TracingListener<>(next.startCall(call, headers), spanContext, null);
+            }
+        }
+
+        span.setAttribute(COMPONENT, "grpc");
+        final SocketAddress remoteAddress = call.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR);
+        if (remoteAddress instanceof InetSocketAddress) {
+            final InetSocketAddress clientInfo = (InetSocketAddress) remoteAddress;
+            span.setAttribute(NET_PEER_IP, clientInfo.getHostString());
+            span.setAttribute(NET_PEER_PORT, (long) clientInfo.getPort());
+        }
+
+        final TracingServerCall<ReqT, RespT> tracingCall = new TracingServerCall<>(call, span);
+        try (Scope ignored = spanContext.makeCurrent()) {
             // Process the gRPC call normally
-            return Contexts.interceptCall(io.grpc.Context.current(), call, headers, next);
-        } finally {
+            return new TracingListener<>(next.startCall(tracingCall, headers), spanContext, tracingCall);
+        } catch (RuntimeException | Error e) {
+            tracingCall.end(Status.fromThrowable(e));
+            throw e;
+        }
+    }
+
+    private static final class MethodNames {
+        private final String spanName;
+        private final String serviceName;
+        private final String methodName;
+
+        MethodNames(MethodDescriptor<?, ?> method) {
+            this.spanName = method.getFullMethodName();
+            this.serviceName = method.getServiceName();
+            this.methodName = method.getBareMethodName();
+        }
+    }
+
+    /**
+     * Ends the span when the call is closed, with the status and the message counts
+     */
+    private static final class TracingServerCall<ReqT, RespT>
+            extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+        private final Span span;
+        private final AtomicBoolean ended = new AtomicBoolean();
+        // the messages are sent and received serially
+        private volatile long sentMessages;
+        private volatile long receivedMessages;
+
+        TracingServerCall(ServerCall<ReqT, RespT> delegate, Span span) {
+            super(delegate);
+            this.span = span;
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+            super.sendMessage(message);
+            sentMessages++;
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            end(status);
+            super.close(status, trailers);
+        }
+
+        void end(Status status) {
+            if (!ended.compareAndSet(false, true)) {
+                return;
+            }
+            span.setAttribute(GRPC_STATUS_CODE, (long) status.getCode().value());
+            span.setAttribute(SENT_MESSAGES, sentMessages);
+            span.setAttribute(RECEIVED_MESSAGES, receivedMessages);
+            if (!status.isOk()) {
+                final String description = status.getDescription();
+                span.setStatus(StatusCode.ERROR, description == null
+                        ? status.getCode().name() : status.getCode().name() + ": " + description);
+            }
             span.end();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Makes the span current in the callbacks, and ends it if the call is cancelled
+     */
+    private static final class TracingListener<ReqT>
+            extends ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT> {
+        private final Context context;
+        private final TracingServerCall<ReqT, ?> call;
+
+        TracingListener(ServerCall.Listener<ReqT> delegate, Context context, TracingServerCall<ReqT, ?> call) {
+            super(delegate);
+            this.context = context;
+            this.call = call;
+        }
+
+        @Override
+        public void onMessage(ReqT message) {
+            if (call != null) {
+                call.receivedMessages++;
+            }
+            try (Scope ignored = context.makeCurrent()) {
+                super.onMessage(message);
+            }
+        }
+
+        @Override
+        public void onHalfClose() {
+            try (Scope ignored = context.makeCurrent()) {
+                super.onHalfClose();
+            }
+        }
+
+        @Override
+        public void onCancel() {
+            try (Scope ignored = context.makeCurrent()) {
+                super.onCancel();
+            } finally {
+                if (call != null) {
+                    call.end(Status.CANCELLED);
+                }
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            try (Scope ignored = context.makeCurrent()) {
+                super.onComplete();
+            }
+        }
+
+        @Override
+        public void onReady() {
+            try (Scope ignored = context.makeCurrent()) {
+                super.onReady();
+            }
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.radishframework.grpc.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Minimal non-blocking HTTP/1.1 server of the operation endpoints.
+ * <p>
+ * One selector thread accepts the connections, reads the GET requests, runs the handlers and
+ * writes the responses, every connection is closed after its response. The handlers added by
+ * {@link #addHandler} run on the selector thread and are meant to be quick, e.g. the probes. The
+ * ones added by {@link #addBlockingHandler}, e.g. the snapshots, run on a couple of worker threads
+ * so that they never hold the probes up.
+ */
+public final class OperationsServer {
+    private static final Logger log = LoggerFactory.getLogger(OperationsServer.class);
+
+    private static final int MAX_REQUEST_SIZE = 8192;
+    private static final int WORKER_THREADS = 2;
+    private static final int MAX_QUEUED_REQUESTS = 16;
+
+    private final InetSocketAddress address;
+    private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+    private final Set<String> blockingPaths = ConcurrentHashMap.newKeySet();
+    // responses of the worker threads, written by the selector thread
+    private final Queue<Map.Entry<SelectionKey, Response>> completed = new ConcurrentLinkedQueue<>();
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    public OperationsServer(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    /**
+     * @param path exact path, without the query string
+     */
+    public OperationsServer addHandler(String path, Handler handler) {
+        handlers.put(path, handler);
+        blockingPaths.remove(path);
+        return this;
+    }
+
+    /**
+     * @param path exact path, without the query string, of a handler run off the selector thread
+     */
+    public OperationsServer addBlockingHandler(String path, Handler handler) {
+        handlers.put(path, handler);
+        blockingPaths.add(path);
+        return this;
+    }
+
+    public synchronized OperationsServer start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address, 64);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        workers = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_REQUESTS),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("radish-operations-worker-%d").build());
+        running = true;
+        thread = new Thread(this::run, "radish-operations");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        workers.shutdownNow();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                writeCompleted();
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else if (key.isReadable()) {
+                            read(key);
+                        } else if (key.isWritable()) {
+                            write(key);
+                        }
+                    } catch (IOException e) {
+                        log.debug("Operations connection failed", e);
+                        close(key);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Operations server failed", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                close(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.debug("Unable to close the operations selector", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel channel = serverChannel.accept();
+        if (channel != null) {
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, ByteBuffer.allocate(MAX_REQUEST_SIZE));
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        final SocketChannel channel = (SocketChannel) key.channel();
+        final ByteBuffer in = (ByteBuffer) key.attachment();
+        if (channel.read(in) < 0) {
+            close(key);
+            return;
+        }
+        final int end = headersEnd(in);
+        if (end >= 0) {
+            dispatch(key, new String(in.array(), 0, end, StandardCharsets.ISO_8859_1));
+        } else if (!in.hasRemaining()) {
+            respond(key, Response.text(431, "Request too large\n"));
+        }
+    }
+
+    private void respond(SelectionKey key, Response response) throws IOException {
+        key.attach(response.encode());
+        key.interestOps(SelectionKey.OP_WRITE);
+        write(key);
+    }
+
+    private void writeCompleted() {
+        Map.Entry<SelectionKey, Response> entry;
+        while ((entry = completed.poll()) != null) {
+            final SelectionKey key = entry.getKey();
+            if (!key.isValid()) {
+                continue;
+            }
+            try {
+                respond(key, entry.getValue());
+            } catch (IOException e) {
+                log.debug("Operations connection failed", e);
+                close(key);
+            }
+        }
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        final ByteBuffer out = (ByteBuffer) key.attachment();
+        ((SocketChannel) key.channel()).write(out);
+        if (!out.hasRemaining()) {
+            close(key);
+        }
+    }
+
+    private static int headersEnd(ByteBuffer in) {
+        final byte[] bytes = in.array();
+        for (int i = 3; i < in.position(); i++) {
+            if (bytes[i] == '\n' && bytes[i - 1] == '\r' && bytes[i - 2] == '\n' && bytes[i - 3] == '\r') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private void dispatch(SelectionKey key, String head) throws IOException {
+        final int lineEnd = head.indexOf("\r\n");
+        final String[] requestLine = head.substring(0, lineEnd).split(" ");
+        if (requestLine.length != 3) {
+            respond(key, Response.text(400, "Bad request\n"));
+            return;
+        }
+        if (!"GET".equals(requestLine[0])) {
+            respond(key, Response.text(405, "Method not allowed\n"));
+            return;
+        }
+
+        final String target = requestLine[1];
+        final int queryStart = target.indexOf('?');
+        final String path = queryStart < 0 ? target : target.substring(0, queryStart);
+        final Handler handler = handlers.get(path);
+        if (handler == null) {
+            respond(key, Response.text(404, "Not found\n"));
+            return;
+        }
+        final Request request = new Request(path, queryStart < 0 ? Collections.emptyMap()
+                : parseQuery(target.substring(queryStart + 1)));
+        if (!blockingPaths.contains(path)) {
+            respond(key, handle(handler, request));
+            return;
+        }
+        // nothing to read or write until the worker is done
+        key.interestOps(0);
+        try {
+            workers.execute(() -> {
+                completed.add(Map.entry(key, handle(handler, request)));
+                selector.wakeup();
+            });
+        } catch (RejectedExecutionException e) {
+            respond(key, Response.text(503, "Too many requests\n"));
+        }
+    }
+
+    private static Response handle(Handler handler, Request request) {
+        try {
+            return handler.handle(request);
+        } catch (Exception e) {
+            log.warn("Operations handler of {} failed", request.getPath(), e);
+            return Response.text(500, "Internal error\n");
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        final Map<String, String> parameters = new HashMap<>();
+        for (String parameter : query.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            final int eq = parameter.indexOf('=');
+            final String name = eq < 0 ? parameter : parameter.substring(0, eq);
+            final String value = eq < 0 ? "" : parameter.substring(eq + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            log.debug("Unable to close operations connection", e);
+        }
+    }
+
+    public interface Handler {
+        Response handle(Request request) throws Exception;
+    }
+
+    public static final class Request {
+        private final String path;
+        private final Map<String, String> parameters;
+
+        Request(String path, Map<String, String> parameters) {
+            this.path = path;
+            this.parameters = parameters;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getParameter(String name) {
+            return parameters.get(name);
+        }
+    }
+
+    public static final class Response {
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+
+        public Response(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        public static Response text(int status, String body) {
+            return new Response(status, "text/plain; charset=utf-8", body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public static Response text(String body) {
+            return text(200, body);
+        }
+
+        ByteBuffer encode() {
+            final byte[] head = ("HTTP/1.1 " + status + " " + reason(status) + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Length: " + body.length + "\r\n"
+                    + "Connection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+            final ByteBuffer buffer = ByteBuffer.allocate(head.length + body.length);
+            buffer.put(head).put(body).flip();
+            return buffer;
+        }
+
+        private static String reason(int status) {
+            switch (status) {
+                case 200:
+                    return "OK";
+                case 400:
+                    return "Bad Request";
+                case 404:
+                    return "Not Found";
+                case 405:
+                    return "Method Not Allowed";
+                case 431:
+                    return "Request Header Fields Too Large";
+                case 503:
+                    return "Service Unavailable";
+                default:
+                    return status >= 500 ? "Internal Server Error" : "Unknown";
+            }
+        }
+    }
+}
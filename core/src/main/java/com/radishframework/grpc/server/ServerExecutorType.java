@@ -0,0 +1,29 @@
+package com.radishframework.grpc.server;
+
+/**
+ * Executor running the calls of a service
+ */
+public enum ServerExecutorType {
+    /**
+     * Not chosen, the configured default applies
+     */
+    DEFAULT,
+    /**
+     * The grpc default cached thread pool
+     */
+    CACHED,
+    /**
+     * On the executor of the server without a hop, the transport thread if the server runs on the
+     * direct executor, only for handlers that never block
+     */
+    DIRECT,
+    /**
+     * A work-stealing pool with a limit on the calls it accepts, the calls over the limit are
+     * rejected with RESOURCE_EXHAUSTED
+     */
+    BOUNDED,
+    /**
+     * A virtual thread per call, on JDK 21+ only, CACHED on older runtimes
+     */
+    VIRTUAL
+}
@@ -0,0 +1,137 @@
+package com.radishframework.grpc.server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.grpc.ServerBuilder;
+import io.grpc.ServerInterceptor;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.SharedResourceHolder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The executors the services of a server can run on.
+ * <p>
+ * The server itself runs on the grpc cached thread pool, where the requests are parsed and
+ * decompressed, and the services choosing another executor hop to it through the interceptor
+ * returned by {@link #interceptor(ServerExecutorType)}. The executors are created on first use.
+ * <p>
+ * The server can run on the direct executor instead: a call is delivered without a thread hop,
+ * but its messages are parsed and decompressed on the netty event loop, stalling the other
+ * connections of that loop for large or compressed messages. The services which don't run
+ * DIRECT hop once, the CACHED ones included.
+ */
+public final class ServerExecutors {
+    private static final Logger log = LoggerFactory.getLogger(ServerExecutors.class);
+
+    private final int boundedParallelism;
+    private final int boundedMaxCalls;
+    private final boolean directServer;
+
+    private Executor cachedExecutor;
+    private ForkJoinPool boundedPool;
+    private ExecutorService virtualExecutor;
+    private ServerInterceptor cachedInterceptor;
+    private ServerInterceptor boundedInterceptor;
+    private ServerInterceptor virtualInterceptor;
+
+    /**
+     * @param boundedParallelism threads of the bounded pool, 0 for the number of cores
+     * @param boundedMaxCalls    calls running or queued on the bounded pool
+     * @param directServer       whether the server runs on the direct executor
+     */
+    public ServerExecutors(int boundedParallelism, int boundedMaxCalls, boolean directServer) {
+        checkArgument(boundedParallelism >= 0, "boundedParallelism must not be negative");
+        checkArgument(boundedMaxCalls > 0, "boundedMaxCalls must be positive");
+        this.boundedParallelism = boundedParallelism == 0
+                ? Runtime.getRuntime().availableProcessors() : boundedParallelism;
+        this.boundedMaxCalls = boundedMaxCalls;
+        this.directServer = directServer;
+    }
+
+    /**
+     * Sets the executor of the server
+     */
+    public synchronized void configure(ServerBuilder<?> serverBuilder) {
+        if (directServer) {
+            serverBuilder.directExecutor();
+        } else {
+            serverBuilder.executor(cachedExecutor());
+        }
+    }
+
+    /**
+     * @return null if the calls stay on the executor of the server
+     */
+    @Nullable
+    public synchronized ServerInterceptor interceptor(ServerExecutorType type) {
+        switch (type) {
+            case DIRECT:
+                return null;
+            case BOUNDED:
+                if (boundedInterceptor == null) {
+                    boundedPool = new ForkJoinPool(boundedParallelism,
+                            ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+                    boundedInterceptor = new ExecutorServerInterceptor(boundedPool, boundedMaxCalls);
+                }
+                return boundedInterceptor;
+            case VIRTUAL:
+                if (virtualInterceptor == null) {
+                    virtualExecutor = newVirtualThreadPerTaskExecutor();
+                    virtualInterceptor = virtualExecutor == null
+                            ? interceptor(ServerExecutorType.CACHED)
+                            : new ExecutorServerInterceptor(virtualExecutor, 0);
+                }
+                return virtualInterceptor;
+            default:
+                if (!directServer) {
+                    return null;
+                }
+                if (cachedInterceptor == null) {
+                    cachedInterceptor = new ExecutorServerInterceptor(cachedExecutor(), 0);
+                }
+                return cachedInterceptor;
+        }
+    }
+
+    private Executor cachedExecutor() {
+        if (cachedExecutor == null) {
+            cachedExecutor = SharedResourceHolder.get(GrpcUtil.SHARED_CHANNEL_EXECUTOR);
+        }
+        return cachedExecutor;
+    }
+
+    public synchronized void shutdown() {
+        if (cachedExecutor != null) {
+            cachedExecutor = SharedResourceHolder.release(GrpcUtil.SHARED_CHANNEL_EXECUTOR, cachedExecutor);
+        }
+        if (boundedPool != null) {
+            boundedPool.shutdown();
+        }
+        if (virtualExecutor != null) {
+            virtualExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor through reflection, the code is compiled for JDK 11
+     */
+    @Nullable
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            final Method method = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads need JDK 21+, running the services on the cached executor");
+            return null;
+        }
+    }
+}
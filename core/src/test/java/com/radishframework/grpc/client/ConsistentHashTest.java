@@ -0,0 +1,119 @@
+package com.radishframework.grpc.client;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.Int64Value;
+import com.google.protobuf.StringValue;
+
+import io.grpc.CallOptions;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashTest {
+
+    @Test
+    void readsTheKeyFromTheFieldOfTheRequest() {
+        assertEquals("user-1", HashKeyClientInterceptor.keyOf(StringValue.of("user-1"), "value"));
+        assertEquals("42", HashKeyClientInterceptor.keyOf(Int64Value.of(42), "value"));
+    }
+
+    @Test
+    void hasNoKeyForAnEmptyOrUnknownField() {
+        assertNull(HashKeyClientInterceptor.keyOf(StringValue.of(""), "value"));
+        assertNull(HashKeyClientInterceptor.keyOf(StringValue.of("user-1"), "userId"));
+        assertNull(HashKeyClientInterceptor.keyOf("user-1", "value"));
+    }
+
+    @Test
+    void readsBackItsLoadBalancingConfig() {
+        final ConsistentHash config = ConsistentHash.newBuilder()
+                .setHashHeader("x-user-id")
+                .setLoadFactor(1.5)
+                .setPointsPerBackend(20)
+                .build();
+
+        final ConsistentHash parsed = ConsistentHash.fromConfig(config.toConfig());
+
+        assertEquals("x-user-id", parsed.getHashHeader());
+        assertEquals(1.5, parsed.getLoadFactor());
+        assertEquals(20, parsed.getPointsPerBackend());
+        assertEquals(ConsistentHash.DEFAULT.getPointsPerBackend(),
+                ConsistentHash.fromConfig(Map.of()).getPointsPerBackend());
+    }
+
+    @Test
+    void rejectsAnInvalidConfig() {
+        assertThrows(IllegalArgumentException.class, () -> ConsistentHash.newBuilder().setLoadFactor(0.5));
+        assertThrows(IllegalArgumentException.class, () -> ConsistentHash.newBuilder().setPointsPerBackend(0));
+        assertThrows(IllegalArgumentException.class, () -> ConsistentHash.newBuilder().setHashHeader("x-key-bin"));
+        assertTrue(new ConsistentHashLoadBalancerProvider()
+                .parseLoadBalancingPolicyConfig(Map.of("loadFactor", 0.5)).getError() != null);
+    }
+
+    @Test
+    void picksTheSameBackendForAKey() {
+        final FakeHelper helper = new FakeHelper();
+        final LoadBalancer balancer = new ConsistentHashLoadBalancer(helper);
+        balancer.handleResolvedAddresses(resolved(5));
+        helper.readyAll();
+
+        for (int i = 0; i < 100; i++) {
+            final String key = "user-" + i;
+            assertSame(pick(helper, key), pick(helper, key));
+        }
+    }
+
+    @Test
+    void movesAboutItsShareOfTheKeysToANewBackend() {
+        final FakeHelper helper = new FakeHelper();
+        final LoadBalancer balancer = new ConsistentHashLoadBalancer(helper);
+        balancer.handleResolvedAddresses(resolved(4));
+        helper.readyAll();
+        final Map<String, LoadBalancer.Subchannel> before = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            before.put("user-" + i, pick(helper, "user-" + i));
+        }
+
+        balancer.handleResolvedAddresses(resolved(5));
+        helper.readyAll();
+
+        int moved = 0;
+        for (Map.Entry<String, LoadBalancer.Subchannel> entry : before.entrySet()) {
+            final LoadBalancer.Subchannel picked = pick(helper, entry.getKey());
+            if (picked != entry.getValue()) {
+                moved++;
+                // a key only moves to the new backend
+                assertSame(helper.subchannels.get(4), picked);
+            }
+        }
+        // 1/5 of the keys, give or take the spread of the points
+        assertTrue(moved > 100 && moved < 300, "moved " + moved);
+    }
+
+    private static LoadBalancer.ResolvedAddresses resolved(int backends) {
+        final List<EquivalentAddressGroup> addresses = new ArrayList<>();
+        for (int i = 0; i < backends; i++) {
+            addresses.add(new EquivalentAddressGroup(new InetSocketAddress("10.0.0." + (i + 1), 8086)));
+        }
+        return LoadBalancer.ResolvedAddresses.newBuilder()
+                .setAddresses(addresses)
+                .setLoadBalancingPolicyConfig(ConsistentHash.newBuilder().setLoadFactor(0).build())
+                .build();
+    }
+
+    private static LoadBalancer.Subchannel pick(FakeHelper helper, String key) {
+        return helper.pick(CallOptions.DEFAULT.withOption(ConsistentHash.KEY, key)).getSubchannel();
+    }
+}
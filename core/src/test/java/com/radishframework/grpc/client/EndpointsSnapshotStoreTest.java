@@ -0,0 +1,90 @@
+package com.radishframework.grpc.client;
+
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.grpc.EquivalentAddressGroup;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class EndpointsSnapshotStoreTest {
+    @TempDir
+    Path tmp;
+    private Path directory;
+    private EndpointsSnapshotStore store;
+
+    @BeforeEach
+    void createStore() {
+        directory = tmp.resolve("endpoints");
+        store = new EndpointsSnapshotStore(directory);
+    }
+
+    @Test
+    void readsTheLastWrittenAddresses() throws Exception {
+        write(List.of(server("10.0.0.1"), server("10.0.0.2")));
+        write(List.of(server("10.0.0.3"), server("fd00::1")));
+
+        assertEquals(List.of(server("10.0.0.3"), server("fd00::1")), store.read("default", "hello", 8086));
+        assertNull(store.read("default", "hello", 8087));
+        assertNull(store.read("other", "hello", 8086));
+    }
+
+    @Test
+    void createsAPrivateDirectory() throws Exception {
+        assumeTrue(tmp.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        write(List.of(server("10.0.0.1")));
+
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(directory)));
+    }
+
+    @Test
+    void ignoresTheSnapshotsWritableByOthers() throws Exception {
+        assumeTrue(tmp.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        write(List.of(server("10.0.0.1")));
+
+        Files.setPosixFilePermissions(file(), PosixFilePermissions.fromString("rw-rw-rw-"));
+
+        assertNull(store.read("default", "hello", 8086));
+    }
+
+    @Test
+    void ignoresTruncatedSnapshots() throws Exception {
+        write(List.of(server("10.0.0.1"), server("10.0.0.2")));
+        final byte[] content = Files.readAllBytes(file());
+
+        Files.write(file(), Arrays.copyOf(content, content.length - 2));
+        assertNull(store.read("default", "hello", 8086));
+
+        Files.write(file(), new byte[] { 1, 2, 3 });
+        assertNull(store.read("default", "hello", 8086));
+    }
+
+    private void write(List<EquivalentAddressGroup> servers) throws Exception {
+        store.write("default", "hello", 8086, servers);
+        // the writes are serialized on the store's thread, a read after the last one sees it
+        for (int i = 0; i < 500; i++) {
+            if (servers.equals(Files.exists(file()) ? store.read("default", "hello", 8086) : null)) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private Path file() {
+        return directory.resolve("default.hello.8086.endpoints");
+    }
+
+    private static EquivalentAddressGroup server(String ip) {
+        return new EquivalentAddressGroup(new InetSocketAddress(ip, 8086));
+    }
+}
@@ -0,0 +1,183 @@
+package com.radishframework.grpc.client;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ChannelLogger;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.NameResolver;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+
+/**
+ * Helper of the load balancers under test, its subchannels connect when told to
+ */
+final class FakeHelper extends LoadBalancer.Helper {
+    final List<FakeSubchannel> subchannels = new ArrayList<>();
+    final ScheduledExecutorService scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final SynchronizationContext syncContext = new SynchronizationContext((thread, e) -> {
+        throw new AssertionError(e);
+    });
+    ConnectivityState state;
+    LoadBalancer.SubchannelPicker picker;
+
+    @Override
+    public LoadBalancer.Subchannel createSubchannel(LoadBalancer.CreateSubchannelArgs args) {
+        final FakeSubchannel subchannel = new FakeSubchannel(args.getAddresses(), args.getAttributes());
+        subchannels.add(subchannel);
+        return subchannel;
+    }
+
+    @Override
+    public void updateBalancingState(ConnectivityState newState, LoadBalancer.SubchannelPicker newPicker) {
+        state = newState;
+        picker = newPicker;
+    }
+
+    @Override
+    public ManagedChannel createOobChannel(EquivalentAddressGroup eag, String authority) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NameResolver.Factory getNameResolverFactory() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getAuthority() {
+        return "hello";
+    }
+
+    @Override
+    public void refreshNameResolution() {
+    }
+
+    @Override
+    public SynchronizationContext getSynchronizationContext() {
+        return syncContext;
+    }
+
+    @Override
+    public ScheduledExecutorService getScheduledExecutorService() {
+        return scheduledExecutor;
+    }
+
+    /**
+     * Moves the subchannels not started yet or still connecting to READY
+     */
+    void readyAll() {
+        for (FakeSubchannel subchannel : subchannels) {
+            if (subchannel.state != ConnectivityState.READY && subchannel.state != ConnectivityState.SHUTDOWN) {
+                subchannel.setState(ConnectivityStateInfo.forNonError(ConnectivityState.READY));
+            }
+        }
+    }
+
+    LoadBalancer.PickResult pick(CallOptions callOptions) {
+        return picker.pickSubchannel(new LoadBalancer.PickSubchannelArgs() {
+            @Override
+            public CallOptions getCallOptions() {
+                return callOptions;
+            }
+
+            @Override
+            public Metadata getHeaders() {
+                return new Metadata();
+            }
+
+            @Override
+            public MethodDescriptor<?, ?> getMethodDescriptor() {
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Picks until the subchannel of the address comes up, and closes its call right away with the status
+     */
+    void callOn(SocketAddress address, Status status) {
+        for (int i = 0; i < 1000; i++) {
+            final LoadBalancer.PickResult result = pick(CallOptions.DEFAULT);
+            if (result.getSubchannel() != null
+                    && result.getSubchannel().getAddresses().getAddresses().contains(address)) {
+                result.getStreamTracerFactory()
+                        .newClientStreamTracer(ClientStreamTracer.StreamInfo.newBuilder().build(), new Metadata())
+                        .streamClosed(status);
+                return;
+            }
+        }
+        throw new AssertionError(address + " is never picked");
+    }
+
+    static final class FakeSubchannel extends LoadBalancer.Subchannel {
+        private final Attributes attributes;
+        private List<EquivalentAddressGroup> addresses;
+        private LoadBalancer.SubchannelStateListener listener;
+        ConnectivityState state = ConnectivityState.IDLE;
+
+        FakeSubchannel(List<EquivalentAddressGroup> addresses, Attributes attributes) {
+            this.addresses = addresses;
+            this.attributes = attributes;
+        }
+
+        void setState(ConnectivityStateInfo stateInfo) {
+            state = stateInfo.getState();
+            listener.onSubchannelState(stateInfo);
+        }
+
+        @Override
+        public void start(LoadBalancer.SubchannelStateListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void shutdown() {
+            state = ConnectivityState.SHUTDOWN;
+        }
+
+        @Override
+        public void requestConnection() {
+        }
+
+        @Override
+        public List<EquivalentAddressGroup> getAllAddresses() {
+            return addresses;
+        }
+
+        @Override
+        public void updateAddresses(List<EquivalentAddressGroup> addrs) {
+            this.addresses = addrs;
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public ChannelLogger getChannelLogger() {
+            return new ChannelLogger() {
+                @Override
+                public void log(ChannelLogLevel level, String message) {
+                }
+
+                @Override
+                public void log(ChannelLogLevel level, String messageFormat, Object... args) {
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.radishframework.grpc.client;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.grpc.CallOptions;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.Status;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutlierDetectionLoadBalancerTest {
+    private static final long BASE = TimeUnit.SECONDS.toNanos(30);
+    private static final long MAX = TimeUnit.MINUTES.toNanos(5);
+    private static final SocketAddress FAILING = address(1);
+
+    private final FakeHelper helper = new FakeHelper();
+    private final LoadBalancer balancer = new OutlierDetectionLoadBalancer(helper);
+
+    @AfterEach
+    void stop() {
+        helper.getSynchronizationContext().execute(balancer::shutdown);
+        helper.scheduledExecutor.shutdownNow();
+    }
+
+    @Test
+    void ejectsABackendAfterConsecutiveFailures() {
+        resolve(4);
+        helper.callOn(FAILING, Status.UNAVAILABLE);
+        helper.callOn(FAILING, Status.UNAVAILABLE);
+        helper.callOn(FAILING, Status.OK);
+        helper.callOn(FAILING, Status.UNAVAILABLE);
+        helper.callOn(FAILING, Status.UNAVAILABLE);
+        assertTrue(picked().contains(FAILING));
+
+        helper.callOn(FAILING, Status.UNAVAILABLE);
+
+        assertFalse(picked().contains(FAILING));
+    }
+
+    @Test
+    void ejectsABackendOnceTheMaxEjectionPercentAllowsIt() {
+        // 30% of 2 backends is none of them
+        resolve(2);
+        for (int i = 0; i < 3; i++) {
+            helper.callOn(FAILING, Status.UNAVAILABLE);
+        }
+        assertTrue(picked().contains(FAILING));
+
+        // 30% of 4 backends is one of them, the failures keep counting past the threshold
+        resolve(4);
+        helper.callOn(FAILING, Status.UNAVAILABLE);
+
+        assertFalse(picked().contains(FAILING));
+    }
+
+    @Test
+    void doublesTheEjectionTimeUpToTheMax() {
+        assertEquals(BASE, OutlierDetectionLoadBalancer.ejectionNanos(1, BASE, MAX));
+        assertEquals(2 * BASE, OutlierDetectionLoadBalancer.ejectionNanos(2, BASE, MAX));
+        assertEquals(8 * BASE, OutlierDetectionLoadBalancer.ejectionNanos(4, BASE, MAX));
+        assertEquals(MAX, OutlierDetectionLoadBalancer.ejectionNanos(5, BASE, MAX));
+        assertEquals(MAX, OutlierDetectionLoadBalancer.ejectionNanos(100, BASE, MAX));
+    }
+
+    @Test
+    void saturatesBeforeTheShiftOverflows() {
+        // 30s is a 35 bits number of nanos, shifting it by 28 or more reaches the sign bit
+        for (int ejections = 1; ejections <= 70; ejections++) {
+            final long nanos = OutlierDetectionLoadBalancer.ejectionNanos(ejections, BASE, Long.MAX_VALUE);
+            assertEquals(ejections < 29 ? BASE << (ejections - 1) : Long.MAX_VALUE, nanos, "ejections " + ejections);
+        }
+        assertEquals(Long.MAX_VALUE, OutlierDetectionLoadBalancer.ejectionNanos(2, Long.MAX_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    void neverEjectsForLessThanTheBaseTime() {
+        assertEquals(BASE, OutlierDetectionLoadBalancer.ejectionNanos(1, BASE, BASE / 2));
+        assertEquals(BASE, OutlierDetectionLoadBalancer.ejectionNanos(10, BASE, BASE / 2));
+        assertEquals(0, OutlierDetectionLoadBalancer.ejectionNanos(10, 0, MAX));
+    }
+
+    private void resolve(int backends) {
+        final List<EquivalentAddressGroup> addresses = new ArrayList<>();
+        for (int i = 1; i <= backends; i++) {
+            addresses.add(new EquivalentAddressGroup(address(i)));
+        }
+        final OutlierDetection detection = OutlierDetection.newBuilder()
+                .setConsecutiveFailures(3)
+                .setMaxEjectionPercent(30)
+                .build();
+        // as the channel does, round_robin checks it
+        helper.getSynchronizationContext().execute(() -> {
+            balancer.handleResolvedAddresses(LoadBalancer.ResolvedAddresses.newBuilder()
+                    .setAddresses(addresses)
+                    .setLoadBalancingPolicyConfig(new OutlierDetectionLoadBalancer.Config("round_robin", null,
+                            detection))
+                    .build());
+            helper.readyAll();
+        });
+    }
+
+    private Set<SocketAddress> picked() {
+        final Set<SocketAddress> picked = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            picked.addAll(helper.pick(CallOptions.DEFAULT).getSubchannel().getAddresses().getAddresses());
+        }
+        return picked;
+    }
+
+    private static SocketAddress address(int backend) {
+        return new InetSocketAddress("10.0.0." + backend, 8086);
+    }
+}
@@ -0,0 +1,89 @@
+package com.radishframework.grpc.client;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ClientStreamTracer;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.Metadata;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PowerOfTwoChoicesLoadBalancerTest {
+
+    @Test
+    void keepsTheCallsInTheLocalZone() {
+        final FakeHelper helper = new FakeHelper();
+        final LoadBalancer balancer = new PowerOfTwoChoicesLoadBalancer(helper, false);
+        balancer.handleResolvedAddresses(resolved("zone-a", "zone-a", "zone-b", "zone-b"));
+        helper.readyAll();
+
+        final Set<LoadBalancer.Subchannel> picked = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            picked.add(helper.pick(CallOptions.DEFAULT).getSubchannel());
+        }
+
+        assertEquals(Set.of(helper.subchannels.get(0), helper.subchannels.get(1)), picked);
+    }
+
+    @Test
+    void sharesTheCallsOfALocalZoneBelowItsShare() {
+        final FakeHelper helper = new FakeHelper();
+        final LoadBalancer balancer = new PowerOfTwoChoicesLoadBalancer(helper, false);
+        final List<String> zones = new ArrayList<>();
+        zones.add("zone-a");
+        for (int i = 0; i < 20; i++) {
+            zones.add("zone-b");
+        }
+        balancer.handleResolvedAddresses(resolved(zones.toArray(new String[0])));
+        helper.readyAll();
+
+        int local = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (helper.pick(CallOptions.DEFAULT).getSubchannel() == helper.subchannels.get(0)) {
+                local++;
+            }
+        }
+
+        assertTrue(local < 200, "local " + local);
+    }
+
+    @Test
+    void spillsOverFromALoadedLocalZone() {
+        final FakeHelper helper = new FakeHelper();
+        final LoadBalancer balancer = new PowerOfTwoChoicesLoadBalancer(helper, false);
+        balancer.handleResolvedAddresses(resolved("zone-a", "zone-a", "zone-b", "zone-b"));
+        helper.readyAll();
+        // outstanding calls on the local backends only
+        for (int i = 0; i < 10; i++) {
+            final LoadBalancer.PickResult result = helper.pick(CallOptions.DEFAULT);
+            result.getStreamTracerFactory()
+                    .newClientStreamTracer(ClientStreamTracer.StreamInfo.newBuilder().build(), new Metadata());
+        }
+
+        final LoadBalancer.Subchannel picked = helper.pick(CallOptions.DEFAULT).getSubchannel();
+
+        assertTrue(picked == helper.subchannels.get(2) || picked == helper.subchannels.get(3));
+    }
+
+    private static LoadBalancer.ResolvedAddresses resolved(String... zones) {
+        final List<EquivalentAddressGroup> addresses = new ArrayList<>();
+        for (int i = 0; i < zones.length; i++) {
+            addresses.add(new EquivalentAddressGroup(new InetSocketAddress("10.0.0." + (i + 1), 8086),
+                    Attributes.newBuilder().set(KubernetesAttributes.ZONE, zones[i]).build()));
+        }
+        return LoadBalancer.ResolvedAddresses.newBuilder()
+                .setAddresses(addresses)
+                .setAttributes(Attributes.newBuilder().set(KubernetesAttributes.LOCAL_ZONE, "zone-a").build())
+                .build();
+    }
+}
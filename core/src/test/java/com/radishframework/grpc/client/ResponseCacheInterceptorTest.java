@@ -0,0 +1,111 @@
+package com.radishframework.grpc.client;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.protobuf.StringValue;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ResponseCacheInterceptorTest {
+    private static final MethodDescriptor<StringValue, StringValue> LOOKUP =
+            MethodDescriptor.<StringValue, StringValue>newBuilder()
+                    .setType(MethodDescriptor.MethodType.UNARY)
+                    .setFullMethodName("test.Cache/Lookup")
+                    .setRequestMarshaller(ProtoUtils.marshaller(StringValue.getDefaultInstance()))
+                    .setResponseMarshaller(ProtoUtils.marshaller(StringValue.getDefaultInstance()))
+                    .build();
+
+    private final AtomicInteger served = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private Server server;
+    private ManagedChannel managedChannel;
+    private Channel channel;
+
+    @BeforeEach
+    void start() throws Exception {
+        final String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .addService(ServerServiceDefinition.builder("test.Cache")
+                        .addMethod(LOOKUP, ServerCalls.asyncUnaryCall((request, responseObserver) -> {
+                            served.incrementAndGet();
+                            try {
+                                release.await(5, TimeUnit.SECONDS);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            responseObserver.onNext(StringValue.of("value of " + request.getValue()));
+                            responseObserver.onCompleted();
+                        }))
+                        .build())
+                .build()
+                .start();
+        managedChannel = InProcessChannelBuilder.forName(name).build();
+        channel = ClientInterceptors.intercept(managedChannel,
+                new ResponseCacheInterceptor("test", Map.of("test.Cache", Duration.ofMinutes(1)), 1 << 20));
+    }
+
+    @AfterEach
+    void stop() {
+        release.countDown();
+        managedChannel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    void sendsOneCallForTheCallersOfAKeyAndCachesItsResponse() throws Exception {
+        final ListenableFuture<StringValue> first = lookup("a", CallOptions.DEFAULT);
+        final ListenableFuture<StringValue> second = lookup("a", CallOptions.DEFAULT);
+        release.countDown();
+
+        assertEquals("value of a", first.get(5, TimeUnit.SECONDS).getValue());
+        assertEquals("value of a", second.get(5, TimeUnit.SECONDS).getValue());
+        assertEquals("value of a", lookup("a", CallOptions.DEFAULT).get(5, TimeUnit.SECONDS).getValue());
+        assertEquals(1, served.get());
+    }
+
+    @Test
+    void expiresEveryCallerOnItsOwnDeadline() throws Exception {
+        final ListenableFuture<StringValue> patient = lookup("a", CallOptions.DEFAULT);
+        final ListenableFuture<StringValue> hasty = lookup("a", CallOptions.DEFAULT.withDeadlineAfter(100,
+                TimeUnit.MILLISECONDS));
+
+        final ExecutionException expired = assertThrows(ExecutionException.class,
+                () -> hasty.get(5, TimeUnit.SECONDS));
+        assertEquals(Status.Code.DEADLINE_EXCEEDED, Status.fromThrowable(expired).getCode());
+        assertFalse(patient.isDone());
+
+        release.countDown();
+        assertEquals("value of a", patient.get(5, TimeUnit.SECONDS).getValue());
+        assertEquals(1, served.get());
+    }
+
+    private ListenableFuture<StringValue> lookup(String key, CallOptions callOptions) {
+        return ClientCalls.futureUnaryCall(channel.newCall(LOOKUP, callOptions), StringValue.of(key));
+    }
+}
@@ -0,0 +1,164 @@
+package com.radishframework.grpc.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+import io.kubernetes.client.proto.Meta.ObjectMeta;
+import io.kubernetes.client.proto.Meta.Status;
+import io.kubernetes.client.proto.Meta.WatchEvent;
+import io.kubernetes.client.proto.Runtime.RawExtension;
+import io.kubernetes.client.proto.Runtime.Unknown;
+import io.kubernetes.client.proto.V1.Endpoints;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WatchEventSubscriberTest {
+    private final List<String> events = new ArrayList<>();
+    private final List<Throwable> closes = new ArrayList<>();
+    private final FakeSubscription subscription = new FakeSubscription();
+    private int gone;
+    private WatchEventSubscriber<Endpoints> subscriber;
+
+    @BeforeEach
+    void subscribe() {
+        subscriber = new WatchEventSubscriber<>(Endpoints.parser(), new KubernetesClient.Watcher<>() {
+            @Override
+            public void onEvent(String type, Endpoints object) {
+                events.add(type + " " + object.getMetadata().getName());
+            }
+
+            @Override
+            public void onGone() {
+                gone++;
+            }
+
+            @Override
+            public void onClose(Throwable cause) {
+                closes.add(cause);
+            }
+        });
+        subscriber.onSubscribe(subscription);
+    }
+
+    @Test
+    void parsesTheFramesOfOneBuffer() {
+        final byte[] stream = concat(frame("ADDED", "a"), frame("MODIFIED", "b"));
+
+        subscriber.onNext(List.of(ByteBuffer.wrap(stream)));
+
+        assertEquals(List.of("ADDED a", "MODIFIED b"), events);
+        assertEquals(2, subscription.requested);
+    }
+
+    @Test
+    void assemblesTheFramesSpanningBuffers() {
+        final byte[] stream = concat(frame("ADDED", "a"), frame("DELETED", "b"), frame("BOOKMARK", ""));
+
+        // one byte per buffer: the length prefixes and the frames are split everywhere
+        for (byte b : stream) {
+            subscriber.onNext(List.of(ByteBuffer.wrap(new byte[] { b })));
+        }
+
+        assertEquals(List.of("ADDED a", "DELETED b", "BOOKMARK "), events);
+        assertTrue(closes.isEmpty());
+    }
+
+    @Test
+    void assemblesAFrameSplitInTheMiddleOfItsLengthPrefix() {
+        final byte[] stream = concat(frame("ADDED", "a"), frame("MODIFIED", "b"));
+        final int split = frame("ADDED", "a").length + 2;
+
+        subscriber.onNext(List.of(ByteBuffer.wrap(stream, 0, split).slice(),
+                ByteBuffer.wrap(stream, split, stream.length - split).slice()));
+
+        assertEquals(List.of("ADDED a", "MODIFIED b"), events);
+    }
+
+    @Test
+    void reportsAnExpiredResourceVersionAsGone() {
+        final Status status = Status.newBuilder().setCode(KubernetesClient.HTTP_GONE).setReason("Expired").build();
+
+        subscriber.onNext(List.of(ByteBuffer.wrap(concat(frame("ADDED", "a"), frame(KubernetesClient.EVENT_ERROR,
+                status.toByteString()), frame("MODIFIED", "b")))));
+
+        assertEquals(List.of("ADDED a"), events);
+        assertEquals(1, gone);
+        assertTrue(subscription.cancelled);
+        assertTrue(closes.isEmpty());
+    }
+
+    @Test
+    void closesOnAnInvalidFrameSize() {
+        subscriber.onNext(List.of(ByteBuffer.allocate(4).putInt(0, -1)));
+
+        assertEquals(1, closes.size());
+        assertTrue(closes.get(0) instanceof IOException);
+        assertTrue(subscription.cancelled);
+        assertEquals(1, subscription.requested);
+    }
+
+    @Test
+    void closesNormallyWhenTheStreamCompletes() {
+        subscriber.onNext(List.of(ByteBuffer.wrap(frame("ADDED", "a"))));
+        subscriber.onComplete();
+
+        assertEquals(List.of("ADDED a"), events);
+        assertEquals(1, closes.size());
+        assertNull(closes.get(0));
+        assertFalse(subscription.cancelled);
+    }
+
+    private static byte[] frame(String type, String name) {
+        return frame(type, Endpoints.newBuilder().setMetadata(ObjectMeta.newBuilder().setName(name)).build()
+                .toByteString());
+    }
+
+    private static byte[] frame(String type, ByteString object) {
+        final ByteString raw = ByteString.copyFrom(new byte[] { 0x6b, 0x38, 0x73, 0x00 })
+                .concat(Unknown.newBuilder().setRaw(object).build().toByteString());
+        final byte[] event = WatchEvent.newBuilder()
+                .setType(type)
+                .setObject(RawExtension.newBuilder().setRaw(raw))
+                .build()
+                .toByteArray();
+        return ByteBuffer.allocate(4 + event.length).putInt(event.length).put(event).array();
+    }
+
+    private static byte[] concat(byte[]... frames) {
+        int length = 0;
+        for (byte[] frame : frames) {
+            length += frame.length;
+        }
+        final ByteBuffer stream = ByteBuffer.allocate(length);
+        for (byte[] frame : frames) {
+            stream.put(frame);
+        }
+        return stream.array();
+    }
+
+    private static final class FakeSubscription implements Flow.Subscription {
+        private long requested;
+        private boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
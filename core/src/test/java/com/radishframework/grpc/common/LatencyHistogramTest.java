@@ -0,0 +1,83 @@
+package com.radishframework.grpc.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void keepsTheSmallValuesExact() {
+        for (int micros = 0; micros < 16; micros++) {
+            assertEquals(micros, LatencyHistogram.valueOf(LatencyHistogram.bucketOf(micros)));
+        }
+    }
+
+    @Test
+    void bucketsTheValuesWithinTheirPrecision() {
+        int previous = 0;
+        for (long micros = 16; micros < TimeUnit.HOURS.toMicros(19); micros += Math.max(1, micros / 7)) {
+            final int bucket = LatencyHistogram.bucketOf(micros);
+            assertTrue(bucket >= previous, "buckets grow with the values");
+            previous = bucket;
+            final double error = Math.abs(LatencyHistogram.valueOf(bucket) - micros) / micros;
+            assertTrue(error <= 1 / 16d, micros + "us off by " + error);
+        }
+    }
+
+    @Test
+    void clampsTheOutOfRangeValues() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(-5);
+        histogram.recordNanos(Long.MAX_VALUE);
+
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0, snapshot.getValueAtQuantile(0));
+        assertTrue(snapshot.getValueAtQuantile(1) > TimeUnit.HOURS.toMicros(19));
+    }
+
+    @Test
+    void answersTheQuantiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().getValueAtQuantile(0.99));
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.recordNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500_500_000, snapshot.getSumMicros());
+        assertEquals(500_000, snapshot.getValueAtQuantile(0.5), 500_000 / 16d);
+        assertEquals(990_000, snapshot.getValueAtQuantile(0.99), 990_000 / 16d);
+        assertEquals(1_000, snapshot.getValueAtQuantile(0), 1_000 / 16d);
+        assertEquals(1_000_000, snapshot.getValueAtQuantile(1), 1_000_000 / 16d);
+    }
+
+    @Test
+    void countsTheConcurrentRecordings() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.recordNanos(i * 1000L);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(40_000, snapshot.getCount());
+        assertEquals(4 * (9_999L * 10_000 / 2), snapshot.getSumMicros());
+    }
+}
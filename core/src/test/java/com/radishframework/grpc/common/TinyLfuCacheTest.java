@@ -0,0 +1,90 @@
+package com.radishframework.grpc.common;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TinyLfuCacheTest {
+    private static final long TTL = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    void replacesTheValueAndTheWeightOfAKey() {
+        final TinyLfuCache<String, String> cache = new TinyLfuCache<>(1000, 10);
+        cache.put("a", "1", 10, TTL);
+        cache.put("a", "2", 30, TTL);
+
+        assertEquals("2", cache.get("a"));
+        assertEquals(1, cache.size());
+        assertEquals(30, cache.weightedSize());
+
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    void dropsTheExpiredEntries() {
+        final TinyLfuCache<String, String> cache = new TinyLfuCache<>(1000, 10);
+        cache.put("a", "1", 10, 0);
+        cache.put("b", "2", 10, TTL);
+
+        assertNull(cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        assertEquals(1, cache.size());
+        assertEquals(10, cache.weightedSize());
+    }
+
+    @Test
+    void skipsTheValuesHeavierThanTheCache() {
+        final TinyLfuCache<String, String> cache = new TinyLfuCache<>(1000, 10);
+        cache.put("a", "1", 1000, TTL);
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    void staysWithinItsWeight() {
+        final TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(1000, 100);
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(i, i, 1 + i % 20, TTL);
+            assertTrue(cache.weightedSize() <= 1000, "weighted size " + cache.weightedSize());
+        }
+        assertTrue(cache.evictionCount() > 0);
+        assertEquals(cache.size(), countCached(cache, 10_000));
+    }
+
+    @Test
+    void keepsTheHotKeysThroughABurstOfOneOffKeys() {
+        final TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(100, 100);
+        for (int round = 0; round < 10; round++) {
+            for (int hot = 0; hot < 50; hot++) {
+                if (cache.get(hot) == null) {
+                    cache.put(hot, hot, 1, TTL);
+                }
+            }
+        }
+
+        for (int oneOff = 1_000; oneOff < 11_000; oneOff++) {
+            if (cache.get(oneOff) == null) {
+                cache.put(oneOff, oneOff, 1, TTL);
+            }
+        }
+
+        assertTrue(countCached(cache, 50) >= 45, countCached(cache, 50) + " hot keys left");
+    }
+
+    private static int countCached(TinyLfuCache<Integer, Integer> cache, int keys) {
+        int cached = 0;
+        for (int i = 0; i < keys; i++) {
+            if (cache.get(i) != null) {
+                cached++;
+            }
+        }
+        return cached;
+    }
+}
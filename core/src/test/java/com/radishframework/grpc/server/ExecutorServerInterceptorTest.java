@@ -0,0 +1,101 @@
+package com.radishframework.grpc.server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.StringValue;
+
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ExecutorServerInterceptorTest {
+    private static final MethodDescriptor<StringValue, StringValue> ECHO =
+            MethodDescriptor.<StringValue, StringValue>newBuilder()
+                    .setType(MethodDescriptor.MethodType.UNARY)
+                    .setFullMethodName("test.Echo/Echo")
+                    .setRequestMarshaller(ProtoUtils.marshaller(StringValue.getDefaultInstance()))
+                    .setResponseMarshaller(ProtoUtils.marshaller(StringValue.getDefaultInstance()))
+                    .build();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private Server server;
+    private ManagedChannel channel;
+
+    @AfterEach
+    void stop() {
+        if (channel != null) {
+            channel.shutdownNow();
+        }
+        if (server != null) {
+            server.shutdownNow();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    void closesTheCallsOfAFailingHandlerAndGivesTheirPermitsBack() throws Exception {
+        start(ServerCalls.asyncUnaryCall((request, responseObserver) -> {
+            if (request.getValue().equals("fail")) {
+                throw new IllegalStateException("failed");
+            }
+            responseObserver.onNext(request);
+            responseObserver.onCompleted();
+        }));
+
+        // a single permit, a leaked one would reject the next calls
+        for (int i = 0; i < 3; i++) {
+            final StatusRuntimeException e = assertThrows(StatusRuntimeException.class, () -> echo("fail"));
+            assertEquals(Status.Code.UNKNOWN, e.getStatus().getCode());
+        }
+        assertEquals("hello", echo("hello").getValue());
+    }
+
+    @Test
+    void closesTheCallsRejectedByTheExecutor() throws Exception {
+        start(ServerCalls.asyncUnaryCall((request, responseObserver) -> {
+            responseObserver.onNext(request);
+            responseObserver.onCompleted();
+        }));
+        executor.shutdown();
+
+        final StatusRuntimeException e = assertThrows(StatusRuntimeException.class, () -> echo("hello"));
+
+        assertEquals(Status.Code.UNAVAILABLE, e.getStatus().getCode());
+    }
+
+    private void start(ServerCallHandler<StringValue, StringValue> handler) throws Exception {
+        final String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(ServerInterceptors.intercept(ServerServiceDefinition.builder("test.Echo")
+                        .addMethod(ECHO, handler)
+                        .build(), new ExecutorServerInterceptor(executor, 1)))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+    }
+
+    private StringValue echo(String value) {
+        return ClientCalls.blockingUnaryCall(channel, ECHO, CallOptions.DEFAULT.withDeadlineAfter(5, TimeUnit.SECONDS),
+                StringValue.of(value));
+    }
+}
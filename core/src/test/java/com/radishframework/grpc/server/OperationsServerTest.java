@@ -0,0 +1,75 @@
+package com.radishframework.grpc.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class OperationsServerTest {
+    private final CountDownLatch release = new CountDownLatch(1);
+    private OperationsServer server;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new OperationsServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                .addHandler("/health", request -> OperationsServer.Response.text("SERVING\n"))
+                .addHandler("/fail", request -> {
+                    throw new IllegalStateException("failed");
+                })
+                .addBlockingHandler("/slow", request -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return OperationsServer.Response.text("done " + request.getParameter("id") + "\n");
+                })
+                .start();
+    }
+
+    @AfterEach
+    void stop() {
+        release.countDown();
+        server.stop();
+    }
+
+    @Test
+    void answersTheQuickHandlersWhileABlockingOneRuns() throws Exception {
+        final CompletableFuture<String> slow = CompletableFuture.supplyAsync(() -> get("/slow?id=1"));
+
+        assertEquals("200 SERVING\n", get("/health"));
+        assertFalse(slow.isDone());
+
+        release.countDown();
+        assertEquals("200 done 1\n", slow.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void answersTheFailuresOfTheHandlers() {
+        assertEquals("404 Not found\n", get("/missing"));
+        assertEquals("500 Internal error\n", get("/fail"));
+    }
+
+    private String get(String target) {
+        try {
+            final HttpURLConnection connection = (HttpURLConnection)
+                    new URL("http://127.0.0.1:" + server.getPort() + target).openConnection();
+            connection.setReadTimeout(5000);
+            final int status = connection.getResponseCode();
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                return status + " " + new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
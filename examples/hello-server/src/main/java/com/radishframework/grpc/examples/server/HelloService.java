@@ -14,4 +14,26 @@ public class HelloService extends HelloGrpc.HelloImplBase {
                 .build());
         responseObserver.onCompleted();
     }
+
+    @Override
+    public StreamObserver<GreeterRequest> greeterStream(StreamObserver<GreeterResponse> responseObserver) {
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(GreeterRequest request) {
+                responseObserver.onNext(GreeterResponse.newBuilder()
+                        .setResult("Hello " + request.getName())
+                        .build());
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                responseObserver.onError(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                responseObserver.onCompleted();
+            }
+        };
+    }
 }
@@ -0,0 +1,221 @@
+package com.radishframework.grpc.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Pod churn applied to a {@link HelloCluster} while the load runs, one step per line:
+ * <pre>
+ * # at [every period [until end]] action [count] [duration]
+ * 0s add 3
+ * 10s kill 1
+ * 20s every 5s until 60s replace 1
+ * 30s flap 2 500ms
+ * 40s disconnect
+ * 50s compact
+ * </pre>
+ * The times are relative to the start of the load, a repeated step without {@code until} repeats
+ * until the end of the run. The actions:
+ * <ul>
+ * <li>{@code add n}: start n pods</li>
+ * <li>{@code remove n}: remove the n oldest pods from the endpoints, they drain and stop later</li>
+ * <li>{@code kill n}: stop the n oldest pods at once, they leave the endpoints later</li>
+ * <li>{@code replace n}: remove the n oldest pods and start n new ones</li>
+ * <li>{@code flap n duration}: mark the n oldest pods not ready for the duration</li>
+ * <li>{@code disconnect}: end the watches of the api server, the clients resume them</li>
+ * <li>{@code compact}: end the watches and drop the api server history, the clients list again</li>
+ * </ul>
+ */
+public final class ChurnScript {
+    private static final Logger log = LoggerFactory.getLogger(ChurnScript.class);
+
+    private final List<Step> steps;
+
+    private ChurnScript(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    public static ChurnScript read(Path path) throws IOException {
+        return parse(Files.readAllLines(path));
+    }
+
+    public static ChurnScript parse(List<String> lines) {
+        final List<Step> steps = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            final int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                steps.add(Step.parse(line.split("\\s+")));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid churn step at line " + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        return new ChurnScript(steps);
+    }
+
+    /**
+     * Schedule the steps from now on, the returned handles cancel the steps not run yet
+     */
+    public List<ScheduledFuture<?>> start(HelloCluster cluster, ScheduledExecutorService scheduler) {
+        final long startNanos = System.nanoTime();
+        final List<ScheduledFuture<?>> scheduled = new ArrayList<>(steps.size());
+        for (Step step : steps) {
+            final Runnable task = () -> step.run(cluster, System.nanoTime() - startNanos);
+            if (step.every == null) {
+                scheduled.add(scheduler.schedule(task, step.at.toNanos(), TimeUnit.NANOSECONDS));
+                continue;
+            }
+            final ScheduledFuture<?> repeated = scheduler.scheduleAtFixedRate(task, step.at.toNanos(),
+                    step.every.toNanos(), TimeUnit.NANOSECONDS);
+            scheduled.add(repeated);
+            if (step.until != null) {
+                // a step due at the end time still runs
+                scheduled.add(scheduler.schedule(() -> repeated.cancel(false), step.until.toNanos() + 1,
+                        TimeUnit.NANOSECONDS));
+            }
+        }
+        return scheduled;
+    }
+
+    /**
+     * Parse a duration like 250ms, 10s or 2m
+     */
+    static Duration parseDuration(String value) {
+        final String lower = value.toLowerCase(Locale.ROOT);
+        try {
+            if (lower.endsWith("ms")) {
+                return Duration.ofMillis(Long.parseLong(lower.substring(0, lower.length() - 2)));
+            } else if (lower.endsWith("s")) {
+                return Duration.ofSeconds(Long.parseLong(lower.substring(0, lower.length() - 1)));
+            } else if (lower.endsWith("m")) {
+                return Duration.ofMinutes(Long.parseLong(lower.substring(0, lower.length() - 1)));
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid duration " + value + ", expected e.g. 250ms, 10s or 2m");
+    }
+
+    private static final class Step {
+        final Duration at;
+        @Nullable
+        final Duration every;
+        @Nullable
+        final Duration until;
+        final String action;
+        final int count;
+        @Nullable
+        final Duration duration;
+
+        private Step(Duration at, @Nullable Duration every, @Nullable Duration until, String action, int count,
+                @Nullable Duration duration) {
+            this.at = at;
+            this.every = every;
+            this.until = until;
+            this.action = action;
+            this.count = count;
+            this.duration = duration;
+        }
+
+        static Step parse(String[] tokens) {
+            int next = 0;
+            final Duration at = parseDuration(tokens[next++]);
+            Duration every = null;
+            Duration until = null;
+            if (next < tokens.length && "every".equals(tokens[next])) {
+                checkArgument(next + 1 < tokens.length, "missing period");
+                every = parseDuration(tokens[next + 1]);
+                checkArgument(!every.isZero() && !every.isNegative(), "the period must be positive");
+                next += 2;
+                if (next < tokens.length && "until".equals(tokens[next])) {
+                    checkArgument(next + 1 < tokens.length, "missing end");
+                    until = parseDuration(tokens[next + 1]);
+                    next += 2;
+                }
+            }
+            checkArgument(next < tokens.length, "missing action");
+            final String action = tokens[next++];
+            int count = 0;
+            Duration duration = null;
+            switch (action) {
+                case "add":
+                case "remove":
+                case "kill":
+                case "replace":
+                    checkArgument(next < tokens.length, "missing pod count");
+                    count = Integer.parseInt(tokens[next++]);
+                    break;
+                case "flap":
+                    checkArgument(next + 1 < tokens.length, "missing pod count or duration");
+                    count = Integer.parseInt(tokens[next++]);
+                    duration = parseDuration(tokens[next++]);
+                    break;
+                case "disconnect":
+                case "compact":
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown action " + action);
+            }
+            checkArgument(next == tokens.length, "unexpected %s", tokens.length > next ? tokens[next] : "");
+            checkArgument(count >= 0, "the pod count must not be negative");
+            return new Step(at, every, until, action, count, duration);
+        }
+
+        void run(HelloCluster cluster, long elapsedNanos) {
+            try {
+                switch (action) {
+                    case "add":
+                        cluster.add(count);
+                        break;
+                    case "remove":
+                        cluster.remove(count);
+                        break;
+                    case "kill":
+                        cluster.kill(count);
+                        break;
+                    case "replace":
+                        cluster.replace(count);
+                        break;
+                    case "flap":
+                        cluster.flap(count, duration);
+                        break;
+                    case "disconnect":
+                        cluster.getApiServer().disconnectWatches();
+                        break;
+                    case "compact":
+                        cluster.getApiServer().compact();
+                        break;
+                    default:
+                        throw new AssertionError(action);
+                }
+                log.info("{}s {} {}, {} pods", String.format(Locale.ROOT, "%.1f", elapsedNanos / 1e9), action,
+                        count, cluster.size());
+            } catch (IOException | RuntimeException e) {
+                // a failed step must not cancel the next runs of a repeated one
+                log.warn("Churn step {} {} failed", action, count, e);
+            }
+        }
+    }
+}
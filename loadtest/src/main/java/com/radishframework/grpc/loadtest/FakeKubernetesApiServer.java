@@ -0,0 +1,363 @@
+package com.radishframework.grpc.loadtest;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.MessageLite;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.kubernetes.client.proto.Meta.ListMeta;
+import io.kubernetes.client.proto.Meta.Status;
+import io.kubernetes.client.proto.Meta.WatchEvent;
+import io.kubernetes.client.proto.Runtime.RawExtension;
+import io.kubernetes.client.proto.Runtime.TypeMeta;
+import io.kubernetes.client.proto.Runtime.Unknown;
+import io.kubernetes.client.proto.V1.Endpoints;
+import io.kubernetes.client.proto.V1.EndpointsList;
+
+/**
+ * In-process stand-in of the kubernetes api server for the core/v1 endpoints list and watch
+ * requests of {@link com.radishframework.grpc.client.KubernetesClient}, protobuf encoded like the
+ * real one.
+ * <p>
+ * Every change bumps the resourceVersion and is kept in a bounded history: a watch resumed from a
+ * version still in the history replays the later changes, an older one gets a 410 Gone error event
+ * and the client has to list again. The watches are HTTP/1.1 chunked responses, one thread each.
+ */
+public final class FakeKubernetesApiServer implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(FakeKubernetesApiServer.class);
+
+    public static final int DEFAULT_HISTORY_SIZE = 1000;
+
+    private static final String PROTOBUF_MEDIA_TYPE = "application/vnd.kubernetes.protobuf";
+    private static final byte[] PROTOBUF_MAGIC = new byte[] { 0x6b, 0x38, 0x73, 0x00 };
+    private static final Pattern ENDPOINTS_PATH = Pattern.compile("/api/v1/namespaces/([^/]+)/endpoints");
+    private static final String NAME_SELECTOR = "metadata.name=";
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_NOT_FOUND = 404;
+    private static final int HTTP_GONE = 410;
+    private static final long DEFAULT_WATCH_TIMEOUT_SECONDS = 1800;
+    // ends the watch streams on close and disconnect
+    private static final Change END_OF_STREAM = new Change(0, "", "", null);
+
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+    private final int historySize;
+
+    // all guarded by this
+    private final Map<String, Map<String, Endpoints>> namespaces = new HashMap<>();
+    private final ArrayDeque<Change> history = new ArrayDeque<>();
+    private final Set<WatchStream> watches = new HashSet<>();
+    private long resourceVersion = 1;
+    // the changes after this version are in the history
+    private long compactedVersion = 1;
+    private boolean closed;
+
+    public FakeKubernetesApiServer() throws IOException {
+        this(0, DEFAULT_HISTORY_SIZE);
+    }
+
+    /**
+     * @param port        port on the loopback interface, 0 for any free port
+     * @param historySize number of changes a watch can be resumed across
+     */
+    public FakeKubernetesApiServer(int port, int historySize) throws IOException {
+        this.historySize = historySize;
+        this.executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("fake-kube-api-%d")
+                .setDaemon(true)
+                .build());
+        this.httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.httpServer.setExecutor(executor);
+        this.httpServer.createContext("/", this::handle);
+        this.httpServer.start();
+    }
+
+    /**
+     * Base uri to hand to {@link com.radishframework.grpc.client.KubernetesClient}
+     */
+    public String getUri() {
+        return "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Create or replace the endpoints object of the same name, the namespace, name and
+     * resourceVersion of its metadata are set by the server
+     */
+    public synchronized void put(String namespace, Endpoints endpoints) {
+        final String name = endpoints.getMetadata().getName();
+        final Map<String, Endpoints> objects = namespaces.computeIfAbsent(namespace, key -> new TreeMap<>());
+        final String type = objects.containsKey(name) ? "MODIFIED" : "ADDED";
+        final Endpoints stored = stamp(namespace, endpoints);
+        objects.put(name, stored);
+        publish(new Change(resourceVersion, type, namespace, stored));
+    }
+
+    /**
+     * Delete the endpoints object, nothing happens if it does not exist
+     */
+    public synchronized void delete(String namespace, String name) {
+        final Map<String, Endpoints> objects = namespaces.get(namespace);
+        final Endpoints removed = objects == null ? null : objects.remove(name);
+        if (removed != null) {
+            final Endpoints stored = stamp(namespace, removed);
+            publish(new Change(resourceVersion, "DELETED", namespace, stored));
+        }
+    }
+
+    /**
+     * End every watch like an api server restart, the clients resume them from their last version
+     */
+    public synchronized void disconnectWatches() {
+        log.info("Disconnecting {} watches", watches.size());
+        for (WatchStream watch : watches) {
+            watch.queue.add(END_OF_STREAM);
+        }
+        watches.clear();
+    }
+
+    /**
+     * Drop the history like an etcd compaction and end every watch, the clients resume them from a
+     * compacted version, get 410 Gone and have to list again
+     */
+    public synchronized void compact() {
+        // versions move on with the other objects of a real cluster, the last one seen is gone too
+        resourceVersion++;
+        compactedVersion = resourceVersion;
+        history.clear();
+        disconnectWatches();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            disconnectWatches();
+        }
+        httpServer.stop(0);
+        executor.shutdownNow();
+    }
+
+    private Endpoints stamp(String namespace, Endpoints endpoints) {
+        resourceVersion++;
+        return endpoints.toBuilder()
+                .setMetadata(endpoints.getMetadata().toBuilder()
+                        .setNamespace(namespace)
+                        .setResourceVersion(Long.toString(resourceVersion)))
+                .build();
+    }
+
+    private void publish(Change change) {
+        history.addLast(change);
+        while (history.size() > historySize) {
+            compactedVersion = history.removeFirst().version;
+        }
+        for (WatchStream watch : watches) {
+            if (watch.accepts(change)) {
+                watch.queue.add(change);
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            final Matcher matcher = ENDPOINTS_PATH.matcher(exchange.getRequestURI().getPath());
+            if (!"GET".equals(exchange.getRequestMethod()) || !matcher.matches()) {
+                exchange.sendResponseHeaders(HTTP_NOT_FOUND, -1);
+                return;
+            }
+            final String namespace = matcher.group(1);
+            final Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            final String selector = query.get("fieldSelector");
+            final String name = selector != null && selector.startsWith(NAME_SELECTOR)
+                    ? selector.substring(NAME_SELECTOR.length())
+                    : null;
+
+            exchange.getResponseHeaders().set("Content-Type", PROTOBUF_MEDIA_TYPE);
+            if ("true".equals(query.get("watch"))) {
+                final String timeout = query.get("timeoutSeconds");
+                watch(exchange, new WatchStream(namespace, name), query.get("resourceVersion"),
+                        timeout == null ? DEFAULT_WATCH_TIMEOUT_SECONDS : Long.parseLong(timeout));
+            } else {
+                list(exchange, namespace, name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // the client went away, e.g. the watch was cancelled
+            log.debug("Request {} failed", exchange.getRequestURI(), e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void list(HttpExchange exchange, String namespace, @Nullable String name) throws IOException {
+        final EndpointsList.Builder list = EndpointsList.newBuilder();
+        synchronized (this) {
+            for (Endpoints endpoints : namespaces.getOrDefault(namespace, Map.of()).values()) {
+                if (name == null || name.equals(endpoints.getMetadata().getName())) {
+                    list.addItems(endpoints);
+                }
+            }
+            list.setMetadata(ListMeta.newBuilder().setResourceVersion(Long.toString(resourceVersion)));
+        }
+        final byte[] body = wrap("EndpointsList", list.build()).toByteArray();
+        exchange.sendResponseHeaders(HTTP_OK, PROTOBUF_MAGIC.length + body.length);
+        exchange.getResponseBody().write(PROTOBUF_MAGIC);
+        exchange.getResponseBody().write(body);
+    }
+
+    private void watch(HttpExchange exchange, WatchStream watch, @Nullable String fromVersion, long timeoutSeconds)
+            throws IOException, InterruptedException {
+        synchronized (this) {
+            if (closed) {
+                exchange.sendResponseHeaders(HTTP_GONE, -1);
+                return;
+            }
+            if (fromVersion == null || fromVersion.isEmpty()) {
+                // no version, start with the current state
+                for (Map.Entry<String, Endpoints> entry : namespaces.getOrDefault(watch.namespace, Map.of())
+                        .entrySet()) {
+                    final Change change = new Change(resourceVersion, "ADDED", watch.namespace, entry.getValue());
+                    if (watch.accepts(change)) {
+                        watch.queue.add(change);
+                    }
+                }
+            } else {
+                final long version = Long.parseLong(fromVersion);
+                if (version < compactedVersion) {
+                    watch.queue.add(new Change(resourceVersion, "ERROR", watch.namespace, null));
+                    watch.queue.add(END_OF_STREAM);
+                } else {
+                    for (Change change : history) {
+                        if (change.version > version && watch.accepts(change)) {
+                            watch.queue.add(change);
+                        }
+                    }
+                }
+            }
+            watches.add(watch);
+        }
+
+        exchange.sendResponseHeaders(HTTP_OK, 0);
+        final DataOutputStream out = new DataOutputStream(exchange.getResponseBody());
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        try {
+            while (true) {
+                final Change change = watch.queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (change == null || change == END_OF_STREAM) {
+                    return;
+                }
+                final byte[] frame = frameOf(change).toByteArray();
+                out.writeInt(frame.length);
+                out.write(frame);
+                out.flush();
+            }
+        } finally {
+            synchronized (this) {
+                watches.remove(watch);
+            }
+        }
+    }
+
+    private static WatchEvent frameOf(Change change) {
+        final Unknown object = change.endpoints == null
+                ? wrap("Status", Status.newBuilder()
+                        .setStatus("Failure")
+                        .setReason("Expired")
+                        .setMessage("too old resource version")
+                        .setCode(HTTP_GONE)
+                        .build())
+                : wrap("Endpoints", change.endpoints);
+        return WatchEvent.newBuilder()
+                .setType(change.type)
+                .setObject(RawExtension.newBuilder()
+                        .setRaw(ByteString.copyFrom(PROTOBUF_MAGIC).concat(object.toByteString())))
+                .build();
+    }
+
+    /**
+     * The runtime.Unknown envelope, prefixed by the magic in the list responses and in the raw
+     * objects of the watch events
+     */
+    private static Unknown wrap(String kind, MessageLite object) {
+        return Unknown.newBuilder()
+                .setTypeMeta(TypeMeta.newBuilder().setApiVersion("v1").setKind(kind))
+                .setRaw(object.toByteString())
+                .setContentType(PROTOBUF_MEDIA_TYPE)
+                .build();
+    }
+
+    private static Map<String, String> parseQuery(@Nullable String rawQuery) {
+        final Map<String, String> query = new HashMap<>();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                final int eq = parameter.indexOf('=');
+                if (eq > 0) {
+                    query.put(URLDecoder.decode(parameter.substring(0, eq), Charsets.UTF_8),
+                            URLDecoder.decode(parameter.substring(eq + 1), Charsets.UTF_8));
+                }
+            }
+        }
+        return query;
+    }
+
+    private static final class Change {
+        final long version;
+        final String type;
+        final String namespace;
+        // null for the error event
+        @Nullable
+        final Endpoints endpoints;
+
+        Change(long version, String type, String namespace, @Nullable Endpoints endpoints) {
+            this.version = version;
+            this.type = type;
+            this.namespace = namespace;
+            this.endpoints = endpoints;
+        }
+    }
+
+    private static final class WatchStream {
+        final String namespace;
+        @Nullable
+        final String name;
+        final BlockingQueue<Change> queue = new LinkedBlockingQueue<>();
+
+        WatchStream(String namespace, @Nullable String name) {
+            this.namespace = namespace;
+            this.name = name;
+        }
+
+        boolean accepts(Change change) {
+            return namespace.equals(change.namespace)
+                    && (name == null || name.equals(change.endpoints.getMetadata().getName()));
+        }
+    }
+}
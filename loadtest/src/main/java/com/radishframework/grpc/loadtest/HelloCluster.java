@@ -0,0 +1,289 @@
+package com.radishframework.grpc.loadtest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.radishframework.grpc.examples.hello.GreeterRequest;
+import com.radishframework.grpc.examples.hello.GreeterResponse;
+import com.radishframework.grpc.examples.hello.HelloGrpc;
+
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.kubernetes.client.proto.Meta.ObjectMeta;
+import io.kubernetes.client.proto.V1.EndpointAddress;
+import io.kubernetes.client.proto.V1.EndpointPort;
+import io.kubernetes.client.proto.V1.EndpointSubset;
+import io.kubernetes.client.proto.V1.Endpoints;
+
+/**
+ * Replicas of the hello service published as the endpoints of one kubernetes service on the fake
+ * api server, every replica is a netty server on its own loopback address (127.0.0.2 and up, the
+ * whole 127/8 block is routed to the loopback interface on linux) and the service port.
+ * <p>
+ * The changes follow the order of a real cluster: a removed pod leaves the endpoints before it
+ * shuts down, a killed pod stops at once and leaves the endpoints later.
+ */
+public final class HelloCluster implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(HelloCluster.class);
+
+    private static final int FIRST_HOST = 2;
+    private static final int LAST_HOST = 254;
+    private static final int NODES = 3;
+
+    private final FakeKubernetesApiServer apiServer;
+    private final String namespace;
+    private final String name;
+    private final int port;
+    private final Duration propagationDelay;
+    private final Duration serviceTime;
+    private final ScheduledExecutorService scheduler;
+
+    // all guarded by this
+    private final Map<String, Pod> pods = new LinkedHashMap<>();
+    // the addresses still bound by a stopping pod
+    private final Set<String> stopping = new HashSet<>();
+    private final Map<String, LongAdder> callsByPod = new LinkedHashMap<>();
+    private int nextHost = FIRST_HOST;
+
+    /**
+     * @param propagationDelay time between a pod change and its counterpart: the shutdown of a
+     *                         removed pod, the endpoints update of a killed one
+     * @param serviceTime      time the replicas take to answer
+     * @param scheduler        runs the delayed changes and the delayed answers
+     */
+    public HelloCluster(FakeKubernetesApiServer apiServer, String namespace, String name, int port,
+            Duration propagationDelay, Duration serviceTime, ScheduledExecutorService scheduler) {
+        this.apiServer = apiServer;
+        this.namespace = namespace;
+        this.name = name;
+        this.port = port;
+        this.propagationDelay = propagationDelay;
+        this.serviceTime = serviceTime;
+        this.scheduler = scheduler;
+    }
+
+    public FakeKubernetesApiServer getApiServer() {
+        return apiServer;
+    }
+
+    /**
+     * Name of the service for {@link com.radishframework.grpc.client.ManagedChannelFactory#create(String)}
+     */
+    public String getServiceName() {
+        return "/" + namespace + "/" + name + "/" + port;
+    }
+
+    /**
+     * Start new pods and add them to the endpoints once they listen
+     */
+    public synchronized void add(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            final String ip = nextIp();
+            final LongAdder calls = callsByPod.computeIfAbsent(ip, key -> new LongAdder());
+            final Server server = NettyServerBuilder.forAddress(new InetSocketAddress(ip, port))
+                    .addService(new HelloService(calls))
+                    .build()
+                    .start();
+            pods.put(ip, new Pod(ip, server, "node-" + pods.size() % NODES));
+        }
+        publish();
+    }
+
+    /**
+     * Remove the oldest pods from the endpoints, they shut down gracefully after the propagation
+     * delay
+     */
+    public synchronized void remove(int count) {
+        for (Pod pod : oldest(count)) {
+            pods.remove(pod.ip);
+            stopping.add(pod.ip);
+            scheduler.schedule(() -> stop(pod, false), propagationDelay.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        publish();
+    }
+
+    /**
+     * Stop the oldest pods at once, they leave the endpoints after the propagation delay
+     */
+    public synchronized void kill(int count) {
+        for (Pod pod : oldest(count)) {
+            pods.remove(pod.ip);
+            stopping.add(pod.ip);
+            stop(pod, true);
+        }
+        scheduler.schedule(this::publish, propagationDelay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Remove the oldest pods and start as many new ones, like a rolling restart step
+     */
+    public synchronized void replace(int count) throws IOException {
+        final int replaced = Math.min(count, pods.size());
+        remove(replaced);
+        add(replaced);
+    }
+
+    /**
+     * Mark the oldest ready pods not ready for {@code duration}, they keep serving meanwhile
+     */
+    public synchronized void flap(int count, Duration duration) {
+        final List<Pod> flapped = new ArrayList<>(count);
+        for (Pod pod : pods.values()) {
+            if (flapped.size() == count) {
+                break;
+            }
+            if (pod.ready) {
+                pod.ready = false;
+                flapped.add(pod);
+            }
+        }
+        publish();
+        scheduler.schedule(() -> {
+            synchronized (this) {
+                flapped.forEach(pod -> pod.ready = true);
+                publish();
+            }
+        }, duration.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized int size() {
+        return pods.size();
+    }
+
+    /**
+     * Calls answered by every pod that ever ran, by address
+     */
+    public synchronized Map<String, Long> getCallsByPod() {
+        final Map<String, Long> calls = new LinkedHashMap<>();
+        callsByPod.forEach((ip, adder) -> calls.put(ip, adder.sum()));
+        return calls;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Pod pod : pods.values()) {
+            stop(pod, true);
+        }
+        pods.clear();
+        apiServer.delete(namespace, name);
+    }
+
+    private List<Pod> oldest(int count) {
+        final List<Pod> oldest = new ArrayList<>(count);
+        for (Pod pod : pods.values()) {
+            if (oldest.size() == count) {
+                break;
+            }
+            oldest.add(pod);
+        }
+        return oldest;
+    }
+
+    private String nextIp() {
+        for (int i = FIRST_HOST; i <= LAST_HOST; i++) {
+            final String ip = "127.0.0." + nextHost;
+            nextHost = nextHost == LAST_HOST ? FIRST_HOST : nextHost + 1;
+            if (!pods.containsKey(ip) && !stopping.contains(ip)) {
+                return ip;
+            }
+        }
+        throw new IllegalStateException("No free loopback address left for a pod");
+    }
+
+    /**
+     * A draining pod is forced to stop after the propagation delay, its address is free once it
+     * terminated
+     */
+    private void stop(Pod pod, boolean now) {
+        if (now) {
+            pod.server.shutdownNow();
+        } else {
+            pod.server.shutdown();
+        }
+        scheduler.schedule(() -> {
+            try {
+                pod.server.shutdownNow().awaitTermination();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                stopping.remove(pod.ip);
+            }
+        }, now ? 0 : propagationDelay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized void publish() {
+        final EndpointSubset.Builder subset = EndpointSubset.newBuilder()
+                .addPorts(EndpointPort.newBuilder().setName("grpc").setPort(port).setProtocol("TCP"));
+        for (Pod pod : pods.values()) {
+            final EndpointAddress address = EndpointAddress.newBuilder()
+                    .setIp(pod.ip)
+                    .setNodeName(pod.nodeName)
+                    .build();
+            if (pod.ready) {
+                subset.addAddresses(address);
+            } else {
+                subset.addNotReadyAddresses(address);
+            }
+        }
+        apiServer.put(namespace, Endpoints.newBuilder()
+                .setMetadata(ObjectMeta.newBuilder().setName(name))
+                .addSubsets(subset)
+                .build());
+        log.debug("Published {} pods of {}/{}", pods.size(), namespace, name);
+    }
+
+    private static final class Pod {
+        final String ip;
+        final Server server;
+        final String nodeName;
+        // guarded by the cluster
+        boolean ready = true;
+
+        Pod(String ip, Server server, String nodeName) {
+            this.ip = ip;
+            this.server = server;
+            this.nodeName = nodeName;
+        }
+    }
+
+    private final class HelloService extends HelloGrpc.HelloImplBase {
+        private final LongAdder calls;
+
+        HelloService(LongAdder calls) {
+            this.calls = calls;
+        }
+
+        @Override
+        public void greeter(GreeterRequest request, StreamObserver<GreeterResponse> responseObserver) {
+            calls.increment();
+            final GreeterResponse response = GreeterResponse.newBuilder()
+                    .setResult("Hello " + request.getName())
+                    .build();
+            if (serviceTime.isZero()) {
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+                return;
+            }
+            scheduler.schedule(() -> {
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+            }, serviceTime.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.radishframework.grpc.loadtest;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.radishframework.grpc.client.KubernetesNameResolverProvider;
+import com.radishframework.grpc.client.ManagedChannelFactory;
+import com.radishframework.grpc.common.LatencyHistogram;
+
+import io.grpc.ManagedChannel;
+
+/**
+ * Drives the hello service replicas of a {@link HelloCluster} through a channel of
+ * {@link ManagedChannelFactory}, resolved from the {@link FakeKubernetesApiServer}, at a fixed rate
+ * while a {@link ChurnScript} changes the pods:
+ * <pre>
+ * java -jar loadtest/target/loadtest.jar --rate 2000 --duration 60s --script rolling-restart.churn
+ * </pre>
+ * Every option has a default, see {@link #usage()}. The exit code is 1 if the error rate or the
+ * corrected p99 exceed {@code --max-error-rate} or {@code --max-p99}, to gate a build on it.
+ */
+public final class LoadTest {
+    private static final String NAMESPACE = "loadtest";
+    private static final String SERVICE = "hello";
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = parseOptions(args);
+        if (options.containsKey("help")) {
+            System.out.println(usage());
+            return;
+        }
+        final double rate = Double.parseDouble(options.getOrDefault("rate", "1000"));
+        final Duration duration = ChurnScript.parseDuration(options.getOrDefault("duration", "30s"));
+        final Duration warmUp = ChurnScript.parseDuration(options.getOrDefault("warmup", "5s"));
+        final int replicas = Integer.parseInt(options.getOrDefault("replicas", "3"));
+        final int port = Integer.parseInt(options.getOrDefault("port", "50051"));
+        final String policy = options.getOrDefault("policy", "round_robin");
+        final Duration deadline = ChurnScript.parseDuration(options.getOrDefault("deadline", "1s"));
+        final Duration serviceTime = ChurnScript.parseDuration(options.getOrDefault("service-time", "0ms"));
+        final Duration propagationDelay = ChurnScript.parseDuration(options.getOrDefault("propagation-delay", "1s"));
+        final Duration reportInterval = ChurnScript.parseDuration(options.getOrDefault("report-interval", "5s"));
+        final ChurnScript script = options.containsKey("script")
+                ? ChurnScript.read(Paths.get(options.get("script")))
+                : ChurnScript.parse(List.of());
+        final double maxErrorRate = Double.parseDouble(options.getOrDefault("max-error-rate", "1"));
+        final Duration maxP99 = options.containsKey("max-p99")
+                ? ChurnScript.parseDuration(options.get("max-p99"))
+                : null;
+
+        final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4, new ThreadFactoryBuilder()
+                .setNameFormat("loadtest-%d")
+                .setDaemon(true)
+                .build());
+        boolean failed = false;
+        try (FakeKubernetesApiServer apiServer = new FakeKubernetesApiServer();
+             HelloCluster cluster = new HelloCluster(apiServer, NAMESPACE, SERVICE, port, propagationDelay,
+                     serviceTime, scheduler)) {
+            // read by the resolver provider loaded by the first channel, no snapshots of the fake endpoints
+            System.setProperty(KubernetesNameResolverProvider.KUBE_API_URI_PROPERTY, apiServer.getUri());
+            System.setProperty(KubernetesNameResolverProvider.SNAPSHOT_DIR_PROPERTY, "");
+            cluster.add(replicas);
+
+            final ManagedChannelFactory channelFactory = new ManagedChannelFactory("loadtest", policy);
+            final ManagedChannel channel = channelFactory.create(cluster.getServiceName());
+            // connect to the first pods before the clock starts
+            channel.getState(true);
+
+            System.out.printf(Locale.ROOT, "%.0f calls/s for %ds on %d pods of %s, %s%n", rate,
+                    duration.toSeconds(), replicas, cluster.getServiceName(), policy);
+            final OpenLoopLoadGenerator generator = new OpenLoopLoadGenerator(channel, rate, deadline);
+            // before the churn, which is timed from the start of the measured run
+            generator.warmUp(warmUp);
+            final List<ScheduledFuture<?>> churn = script.start(cluster, scheduler);
+            final OpenLoopLoadGenerator.Recording recording = generator.run(duration, reportInterval, scheduler,
+                    System.out);
+            churn.forEach(step -> step.cancel(false));
+            channelFactory.releaseChannel(cluster.getServiceName(), channel);
+
+            recording.print(System.out);
+            System.out.println();
+            System.out.println("calls by pod " + cluster.getCallsByPod());
+
+            final long calls = recording.getCalls();
+            final long errors = recording.getErrors().values().stream().mapToLong(Long::longValue).sum();
+            final LatencyHistogram.Snapshot latency = recording.getLatency();
+            if (calls > 0 && (double) errors / calls > maxErrorRate) {
+                System.out.printf(Locale.ROOT, "FAILED: error rate %.4f above %.4f%n", (double) errors / calls,
+                        maxErrorRate);
+                failed = true;
+            }
+            if (maxP99 != null && latency.getValueAtQuantile(0.99) > maxP99.toNanos() / 1000d) {
+                System.out.printf(Locale.ROOT, "FAILED: p99 %.3fms above %dms%n",
+                        latency.getValueAtQuantile(0.99) / 1000, maxP99.toMillis());
+                failed = true;
+            }
+        } finally {
+            scheduler.shutdown();
+            scheduler.awaitTermination(propagationDelay.toNanos() + TimeUnit.SECONDS.toNanos(5),
+                    TimeUnit.NANOSECONDS);
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        final Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + args[i] + "\n" + usage());
+            }
+            final String option = args[i].substring(2);
+            final int eq = option.indexOf('=');
+            if (eq > 0) {
+                options.put(option.substring(0, eq), option.substring(eq + 1));
+            } else if ("help".equals(option)) {
+                options.put(option, "");
+            } else if (i + 1 < args.length) {
+                options.put(option, args[++i]);
+            } else {
+                throw new IllegalArgumentException("Missing value of --" + option + "\n" + usage());
+            }
+        }
+        return options;
+    }
+
+    private static String usage() {
+        return "Options:\n"
+                + "  --rate              calls per second, 1000\n"
+                + "  --duration          length of the run, 30s\n"
+                + "  --warmup            unmeasured load before the run, 5s\n"
+                + "  --replicas          pods at the start, 3\n"
+                + "  --script            churn script, none\n"
+                + "  --policy            load balancing policy of the channel, round_robin\n"
+                + "  --deadline          deadline of the calls, 1s\n"
+                + "  --service-time      time the pods take to answer, 0ms\n"
+                + "  --propagation-delay time between the endpoints change and the stop of a pod, 1s\n"
+                + "  --report-interval   period of the report lines, 5s\n"
+                + "  --port              port of the pods, 50051\n"
+                + "  --max-error-rate    fail above this fraction of errors, 1\n"
+                + "  --max-p99           fail above this corrected p99, none";
+    }
+}
@@ -0,0 +1,219 @@
+package com.radishframework.grpc.loadtest;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.radishframework.grpc.common.LatencyHistogram;
+import com.radishframework.grpc.examples.hello.GreeterRequest;
+import com.radishframework.grpc.examples.hello.GreeterResponse;
+import com.radishframework.grpc.examples.hello.HelloGrpc;
+
+import io.grpc.Channel;
+import io.grpc.Status;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Sends unary hello calls at a fixed rate whatever the latency of the answers, i.e. an open loop
+ * like independent users, unlike a closed loop of callers waiting for their previous answer.
+ * <p>
+ * The latency of every call is measured from the time it was due, not from the time it was sent:
+ * when the sender falls behind, e.g. paused by the GC, the calls it sends late are charged the
+ * delay like the users who would have waited meanwhile. This corrects the coordinated omission of
+ * the closed loop benchmarks, which stop measuring exactly when the system stalls. The latency
+ * from the actual send time is recorded too, the gap between both shows the stalls of the load
+ * generator itself.
+ */
+public final class OpenLoopLoadGenerator {
+    private static final GreeterRequest REQUEST = GreeterRequest.newBuilder().setName("loadtest").build();
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999, 0.9999, 1 };
+    // waiting for less than this is spinning, parking would overshoot
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final HelloGrpc.HelloFutureStub stub;
+    private final long intervalNanos;
+    private final Duration deadline;
+
+    private volatile Recording total = new Recording();
+    private final AtomicReference<Recording> current = new AtomicReference<>(new Recording());
+    private final AtomicLong outstanding = new AtomicLong();
+
+    /**
+     * @param rate     calls per second
+     * @param deadline deadline of every call
+     */
+    public OpenLoopLoadGenerator(Channel channel, double rate, Duration deadline) {
+        checkArgument(rate > 0, "the rate must be positive");
+        this.stub = HelloGrpc.newFutureStub(channel);
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+        this.deadline = deadline;
+    }
+
+    /**
+     * Send the calls for {@code duration} without recording them, until the JIT compiled the hot
+     * paths of the client and the pods
+     */
+    public void warmUp(Duration duration) throws InterruptedException {
+        sendFor(System.nanoTime(), duration);
+        drain();
+        total = new Recording();
+        current.set(new Recording());
+    }
+
+    /**
+     * Send the calls for {@code duration} on the calling thread and wait for the last answers
+     *
+     * @param reportInterval period of the report lines written to {@code out}
+     * @return the recording of the whole run
+     */
+    public Recording run(Duration duration, Duration reportInterval, ScheduledExecutorService scheduler,
+            PrintStream out) throws InterruptedException {
+        out.println("   time      calls    p50 ms    p99 ms  p99.9 ms    max ms  errors");
+        final long startNanos = System.nanoTime();
+        final ScheduledFuture<?> reporter = scheduler.scheduleAtFixedRate(
+                () -> report(out, System.nanoTime() - startNanos, current.getAndSet(new Recording())),
+                reportInterval.toNanos(), reportInterval.toNanos(), TimeUnit.NANOSECONDS);
+        sendFor(startNanos, duration);
+        drain();
+        reporter.cancel(false);
+        final Recording last = current.getAndSet(new Recording());
+        if (last.getCalls() > 0) {
+            report(out, System.nanoTime() - startNanos, last);
+        }
+        return total;
+    }
+
+    private void sendFor(long startNanos, Duration duration) {
+        final long endNanos = startNanos + duration.toNanos();
+        for (long dueNanos = startNanos; dueNanos < endNanos; dueNanos += intervalNanos) {
+            long wait;
+            while ((wait = dueNanos - System.nanoTime()) > 0) {
+                if (wait > SPIN_NANOS) {
+                    LockSupport.parkNanos(wait - SPIN_NANOS);
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+            send(dueNanos);
+        }
+    }
+
+    /**
+     * Wait for the answers of the calls sent, they end by their deadline at the latest
+     */
+    private void drain() throws InterruptedException {
+        final long drainDeadline = System.nanoTime() + deadline.toNanos() + TimeUnit.SECONDS.toNanos(1);
+        while (outstanding.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void send(long dueNanos) {
+        final long sentNanos = System.nanoTime();
+        outstanding.incrementAndGet();
+        Futures.addCallback(stub.withDeadlineAfter(deadline.toNanos(), TimeUnit.NANOSECONDS).greeter(REQUEST),
+                new FutureCallback<GreeterResponse>() {
+                    @Override
+                    public void onSuccess(GreeterResponse response) {
+                        record(dueNanos, sentNanos, Status.Code.OK);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        record(dueNanos, sentNanos, Status.fromThrowable(t).getCode());
+                    }
+                }, MoreExecutors.directExecutor());
+    }
+
+    private void record(long dueNanos, long sentNanos, Status.Code code) {
+        final long now = System.nanoTime();
+        total.record(now - dueNanos, now - sentNanos, code);
+        current.get().record(now - dueNanos, now - sentNanos, code);
+        outstanding.decrementAndGet();
+    }
+
+    private static void report(PrintStream out, long elapsedNanos, Recording recording) {
+        final LatencyHistogram.Snapshot snapshot = recording.latency.snapshot();
+        out.printf(Locale.ROOT, "%6.1fs %10d %9.3f %9.3f %9.3f %9.3f  %s%n", elapsedNanos / 1e9,
+                snapshot.getCount(), millis(snapshot, 0.5), millis(snapshot, 0.99), millis(snapshot, 0.999),
+                millis(snapshot, 1), recording.getErrors());
+    }
+
+    private static double millis(LatencyHistogram.Snapshot snapshot, double quantile) {
+        return snapshot.getValueAtQuantile(quantile) / 1000;
+    }
+
+    /**
+     * Latencies and status codes of the calls answered during a period
+     */
+    public static final class Recording {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram sentLatency = new LatencyHistogram();
+        private final ConcurrentHashMap<Status.Code, LongAdder> codes = new ConcurrentHashMap<>();
+
+        private void record(long latencyNanos, long sentLatencyNanos, Status.Code code) {
+            latency.recordNanos(latencyNanos);
+            sentLatency.recordNanos(sentLatencyNanos);
+            codes.computeIfAbsent(code, key -> new LongAdder()).increment();
+        }
+
+        /**
+         * Latency from the time the calls were due, corrected for coordinated omission
+         */
+        public LatencyHistogram.Snapshot getLatency() {
+            return latency.snapshot();
+        }
+
+        /**
+         * Latency from the time the calls were actually sent
+         */
+        public LatencyHistogram.Snapshot getSentLatency() {
+            return sentLatency.snapshot();
+        }
+
+        public long getCalls() {
+            return codes.values().stream().mapToLong(LongAdder::sum).sum();
+        }
+
+        /**
+         * Count of the failed calls by status code
+         */
+        public Map<Status.Code, Long> getErrors() {
+            final Map<Status.Code, Long> errors = new TreeMap<>();
+            codes.forEach((code, count) -> {
+                if (code != Status.Code.OK) {
+                    errors.put(code, count.sum());
+                }
+            });
+            return errors;
+        }
+
+        public void print(PrintStream out) {
+            final LatencyHistogram.Snapshot corrected = getLatency();
+            final LatencyHistogram.Snapshot uncorrected = getSentLatency();
+            out.printf(Locale.ROOT, "%n%10s %12s %12s%n", "quantile", "latency ms", "from send ms");
+            for (double quantile : QUANTILES) {
+                out.printf(Locale.ROOT, "%10s %12.3f %12.3f%n", quantile == 1 ? "max" : Double.toString(quantile),
+                        millis(corrected, quantile), millis(uncorrected, quantile));
+            }
+            final long calls = getCalls();
+            final long errors = getErrors().values().stream().mapToLong(Long::longValue).sum();
+            out.printf(Locale.ROOT, "%ncalls %d, errors %d (%.4f%%) %s%n", calls, errors,
+                    calls == 0 ? 0d : errors * 100d / calls, getErrors());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.radishframework.grpc.server.index;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Writes the binary names of the classes annotated with {@code @GrpcService} to
+ * {@value #INDEX_LOCATION}, one per line. The spring boot starter registers the service beans of
+ * these classes instead of looking for the annotation on every service bean.
+ * <p>
+ * On an incremental compilation the classes of the previous index which are still annotated are
+ * kept, the other ones are dropped.
+ */
+@SupportedAnnotationTypes(GrpcServiceIndexProcessor.GRPC_SERVICE_ANNOTATION)
+public class GrpcServiceIndexProcessor extends AbstractProcessor {
+
+    public static final String INDEX_LOCATION = "META-INF/radish.grpc-services";
+
+    static final String GRPC_SERVICE_ANNOTATION = "com.radishframework.grpc.server.annotations.GrpcService";
+
+    private final Set<String> services = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    services.add(processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString());
+                }
+            }
+        }
+        if (roundEnv.processingOver()) {
+            try {
+                readPreviousIndex();
+                writeIndex();
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Unable to write " + INDEX_LOCATION + ": " + e);
+            }
+        }
+        // other processors may handle the annotation too
+        return false;
+    }
+
+    private void readPreviousIndex() throws IOException {
+        final FileObject previous = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "",
+                INDEX_LOCATION);
+        try (Reader reader = new InputStreamReader(previous.openInputStream(), StandardCharsets.UTF_8)) {
+            final BufferedReader lines = new BufferedReader(reader);
+            String line;
+            while ((line = lines.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !services.contains(line) && isStillAnnotated(line)) {
+                    services.add(line);
+                }
+            }
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            // first compilation
+        }
+    }
+
+    private boolean isStillAnnotated(String binaryName) {
+        final TypeElement type = processingEnv.getElementUtils().getTypeElement(binaryName.replace('$', '.'));
+        if (type == null) {
+            return false;
+        }
+        for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+            if (GRPC_SERVICE_ANNOTATION.equals(annotation.getAnnotationType().toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeIndex() throws IOException {
+        if (services.isEmpty()) {
+            return;
+        }
+        final FileObject index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                INDEX_LOCATION);
+        try (Writer writer = new OutputStreamWriter(index.openOutputStream(), StandardCharsets.UTF_8)) {
+            for (String service : services) {
+                writer.write(service);
+                writer.write('\n');
+            }
+        }
+    }
+}
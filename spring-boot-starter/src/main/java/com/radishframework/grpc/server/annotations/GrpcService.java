@@ -1,5 +1,6 @@
 package com.radishframework.grpc.server.annotations;
 
+import com.radishframework.grpc.server.ServerExecutorType;
 import org.springframework.stereotype.Service;
 
 import java.lang.annotation.*;
@@ -9,4 +10,9 @@ import java.lang.annotation.*;
 @Documented
 @Service
 public @interface GrpcService {
+
+    /**
+     * Executor of the calls, radish.server.executors.{service} overrides it
+     */
+    ServerExecutorType executor() default ServerExecutorType.DEFAULT;
 }
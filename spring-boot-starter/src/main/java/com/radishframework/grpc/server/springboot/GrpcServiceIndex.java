@@ -0,0 +1,48 @@
+package com.radishframework.grpc.server.springboot;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The @GrpcService classes listed in the META-INF/radish.grpc-services resources written by the
+ * radish-service-indexer annotation processor, one file per indexed module of the class path
+ */
+final class GrpcServiceIndex {
+
+    static final String INDEX_LOCATION = "META-INF/radish.grpc-services";
+
+    private GrpcServiceIndex() {
+    }
+
+    /**
+     * @return the binary names of the classes, null if no module of the class path is indexed
+     */
+    @Nullable
+    static Set<String> load(ClassLoader classLoader) throws IOException {
+        final Enumeration<URL> resources = classLoader.getResources(INDEX_LOCATION);
+        if (!resources.hasMoreElements()) {
+            return null;
+        }
+        final Set<String> services = new HashSet<>();
+        while (resources.hasMoreElements()) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(resources.nextElement().openStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty()) {
+                        services.add(line);
+                    }
+                }
+            }
+        }
+        return services;
+    }
+}
@@ -1,18 +1,241 @@
 package com.radishframework.grpc.server.springboot;
 
+import com.radishframework.grpc.client.ChannelOptions;
+import com.radishframework.grpc.client.ConsistentHash;
 import com.radishframework.grpc.client.ManagedChannelFactory;
+import com.radishframework.grpc.client.MethodPolicy;
+import com.radishframework.grpc.client.OutlierDetection;
+import com.radishframework.grpc.common.Compression;
+import com.radishframework.grpc.common.CompressionPolicy;
+import com.radishframework.grpc.common.FileSpanExporter;
+import com.radishframework.grpc.common.NettyTransport;
+import com.radishframework.grpc.common.OpenTelemetryHolder;
+import com.radishframework.grpc.common.RadishSampler;
+import com.radishframework.grpc.common.RingBufferSpanProcessor;
+import com.radishframework.grpc.common.SamplingPolicy;
 
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.exporter.otlp.OtlpGrpcSpanExporter;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Configuration
 @EnableConfigurationProperties(RadishProperties.class)
 public class RadishConfiguration {
 
+    /**
+     * Initializes the {@link OpenTelemetryHolder}, the beans creating tracers depend on it
+     */
+    @Bean(destroyMethod = "shutdown")
+    SpanProcessor spanProcessor(RadishProperties radishProperties) {
+        final RadishProperties.RadishTracingProperties tracing = radishProperties.getTracing();
+        final SpanExporter exporter;
+        switch (tracing.getExporter()) {
+            case OTLP:
+                exporter = OtlpGrpcSpanExporter.builder().setEndpoint(tracing.getOtlpEndpoint()).build();
+                break;
+            case FILE:
+                exporter = new FileSpanExporter(Paths.get(tracing.getFile()));
+                break;
+            case LOGGING:
+                exporter = new LoggingSpanExporter();
+                break;
+            default:
+                exporter = null;
+        }
+        final SpanProcessor spanProcessor = exporter == null
+                ? SpanProcessor.composite()
+                : RingBufferSpanProcessor.newBuilder(exporter)
+                        .setMaxQueueSize(tracing.getMaxQueueSize())
+                        .setMaxExportBatchSize(tracing.getMaxExportBatchSize())
+                        .setScheduleDelay(tracing.getScheduleDelay())
+                        .setExportTimeout(tracing.getExportTimeout())
+                        .build();
+        final Sampler sampler;
+        if (exporter == null) {
+            sampler = Sampler.alwaysOff();
+        } else {
+            final Map<String, SamplingPolicy> policies = new LinkedHashMap<>();
+            tracing.getServices().forEach((name, sampling) -> policies.put(name, samplingPolicy(sampling)));
+            sampler = new RadishSampler(samplingPolicy(tracing.getSampling()), policies);
+        }
+        OpenTelemetryHolder.initialize(spanProcessor, sampler);
+        return spanProcessor;
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty("radish.transport.shared")
+    NettyTransport nettyTransport(RadishProperties radishProperties) {
+        final RadishProperties.RadishTransportProperties transport = radishProperties.getTransport();
+        return new NettyTransport(transport.isNativeTransport(), transport.getBossThreads(),
+                transport.getWorkerThreads());
+    }
+
     @Bean
-    ManagedChannelFactory managedChannelFactory(@Value("${spring.application.name}") String appName) {
-        return new ManagedChannelFactory(appName);
+    Compression compression(RadishProperties radishProperties) throws IOException {
+        final RadishProperties.RadishCompressionProperties compression = radishProperties.getCompression();
+        final Map<String, byte[]> dictionaries = new LinkedHashMap<>();
+        for (Map.Entry<String, Resource> dictionary : compression.getZstdDictionaries().entrySet()) {
+            try (InputStream in = dictionary.getValue().getInputStream()) {
+                dictionaries.put(dictionary.getKey(), in.readAllBytes());
+            }
+        }
+        return new Compression(compression.getZstdLevel(), dictionaries);
+    }
+
+    @Bean
+    ManagedChannelFactory managedChannelFactory(@Value("${spring.application.name}") String appName,
+                                                RadishProperties radishProperties,
+                                                ObjectProvider<NettyTransport> nettyTransport,
+                                                Compression compression,
+                                                SpanProcessor spanProcessor) {
+        final RadishProperties.RadishClientProperties client = radishProperties.getClient();
+        final ChannelOptions defaultOptions = channelOptions(client.getChannel(), client.getLoadBalancingPolicy());
+        final Map<String, ChannelOptions> serviceOptions = new LinkedHashMap<>();
+        client.getServices().forEach((name, channel) -> serviceOptions.put(name, channelOptions(channel, null)));
+        return new ManagedChannelFactory(appName, defaultOptions, serviceOptions, nettyTransport.getIfAvailable(),
+                compression);
+    }
+
+    private static ChannelOptions channelOptions(RadishProperties.RadishChannelProperties channel,
+                                                 String defaultLoadBalancingPolicy) {
+        return ChannelOptions.newBuilder()
+                .setLoadBalancingPolicy(channel.getLoadBalancingPolicy() != null
+                        ? channel.getLoadBalancingPolicy() : defaultLoadBalancingPolicy)
+                .setKeepAliveTime(channel.getKeepAliveTime())
+                .setKeepAliveTimeout(channel.getKeepAliveTimeout())
+                .setKeepAliveWithoutCalls(channel.getKeepAliveWithoutCalls())
+                .setIdleTimeout(channel.getIdleTimeout())
+                .setFlowControlWindow(toBytes(channel.getFlowControlWindow()))
+                .setMaxInboundMessageSize(toBytes(channel.getMaxInboundMessageSize()))
+                .setPoolSize(channel.getPoolSize())
+                .setMethodPolicies(methodPolicies(channel.getMethods()))
+                .setRetryBudgetMaxTokens(channel.getRetryBudget().getMaxTokens())
+                .setRetryBudgetTokenRatio(channel.getRetryBudget().getTokenRatio())
+                .setDeadlineMargin(channel.getDeadlineMargin())
+                .setOutlierDetection(outlierDetection(channel.getOutlierDetection()))
+                .setConsistentHash(consistentHash(channel.getConsistentHash()))
+                .setHealthCheckServiceName(channel.getHealthCheckServiceName())
+                .setCacheTtls(channel.getCacheTtls().isEmpty() ? null : channel.getCacheTtls())
+                .setCacheMaxBytes(channel.getCacheMaxSize() == null ? null : channel.getCacheMaxSize().toBytes())
+                .setZeroCopyThreshold(toBytes(channel.getZeroCopyThreshold()))
+                .setCompressionPolicies(channel.getCompression().isEmpty() ? null
+                        : compressionPolicies(channel.getCompression()))
+                .build();
+    }
+
+    private static OutlierDetection outlierDetection(RadishProperties.RadishOutlierDetectionProperties properties) {
+        if (properties.getEnabled() == null) {
+            return null;
+        }
+        if (!properties.getEnabled()) {
+            return OutlierDetection.OFF;
+        }
+        final OutlierDetection.Builder builder = OutlierDetection.newBuilder();
+        if (properties.getInterval() != null) {
+            builder.setInterval(properties.getInterval());
+        }
+        if (properties.getBaseEjectionTime() != null) {
+            builder.setBaseEjectionTime(properties.getBaseEjectionTime());
+        }
+        if (properties.getMaxEjectionTime() != null) {
+            builder.setMaxEjectionTime(properties.getMaxEjectionTime());
+        }
+        if (properties.getMaxEjectionPercent() != null) {
+            builder.setMaxEjectionPercent(properties.getMaxEjectionPercent());
+        }
+        if (properties.getConsecutiveFailures() != null) {
+            builder.setConsecutiveFailures(properties.getConsecutiveFailures());
+        }
+        if (properties.getSuccessRateStdevFactor() != null) {
+            builder.setSuccessRateStdevFactor(properties.getSuccessRateStdevFactor());
+        }
+        if (properties.getLatencyFactor() != null) {
+            builder.setLatencyFactor(properties.getLatencyFactor());
+        }
+        if (properties.getMinimumHosts() != null) {
+            builder.setMinimumHosts(properties.getMinimumHosts());
+        }
+        if (properties.getRequestVolume() != null) {
+            builder.setRequestVolume(properties.getRequestVolume());
+        }
+        return builder.build();
+    }
+
+    private static ConsistentHash consistentHash(RadishProperties.RadishConsistentHashProperties properties) {
+        if (properties.getHashHeader() == null && properties.getKeyFields().isEmpty()
+                && properties.getLoadFactor() == null && properties.getPointsPerBackend() == null) {
+            return null;
+        }
+        final ConsistentHash.Builder builder = ConsistentHash.newBuilder();
+        if (properties.getHashHeader() != null) {
+            builder.setHashHeader(properties.getHashHeader());
+        }
+        builder.setKeyFields(properties.getKeyFields());
+        if (properties.getLoadFactor() != null) {
+            builder.setLoadFactor(properties.getLoadFactor());
+        }
+        if (properties.getPointsPerBackend() != null) {
+            builder.setPointsPerBackend(properties.getPointsPerBackend());
+        }
+        return builder.build();
+    }
+
+    private static Map<String, MethodPolicy> methodPolicies(
+            Map<String, RadishProperties.RadishMethodProperties> methods) {
+        if (methods.isEmpty()) {
+            return null;
+        }
+        final Map<String, MethodPolicy> policies = new LinkedHashMap<>();
+        methods.forEach((name, method) -> policies.put(name, MethodPolicy.newBuilder()
+                .setTimeout(method.getTimeout())
+                .setMaxAttempts(method.getMaxAttempts())
+                .setInitialBackoff(method.getInitialBackoff())
+                .setMaxBackoff(method.getMaxBackoff())
+                .setBackoffMultiplier(method.getBackoffMultiplier())
+                .setRetryableStatusCodes(method.getRetryableStatusCodes() == null
+                        ? null : EnumSet.copyOf(method.getRetryableStatusCodes()))
+                .setHedgingDelay(method.getHedgingDelay())
+                .build()));
+        return policies;
+    }
+
+    private static SamplingPolicy samplingPolicy(RadishProperties.RadishSamplingProperties sampling) {
+        return SamplingPolicy.newBuilder()
+                .setRatio(sampling.getRatio())
+                .setRatePerSecond(sampling.getRatePerSecond())
+                .setTail(sampling.getTail())
+                .setSlowThreshold(sampling.getSlowThreshold())
+                .build();
+    }
+
+    static Map<String, CompressionPolicy> compressionPolicies(
+            Map<String, RadishProperties.RadishCompressionPolicyProperties> properties) {
+        final Map<String, CompressionPolicy> policies = new LinkedHashMap<>();
+        properties.forEach((name, policy) -> policies.put(name, "none".equals(policy.getCodec())
+                ? CompressionPolicy.NONE
+                : CompressionPolicy.of(policy.getCodec(), Math.toIntExact(policy.getMinSize().toBytes()))));
+        return policies;
+    }
+
+    private static Integer toBytes(DataSize size) {
+        return size == null ? null : Math.toIntExact(size.toBytes());
     }
 }
@@ -1,17 +1,87 @@
 package com.radishframework.grpc.server.springboot;
 
+import com.radishframework.grpc.client.ManagedChannelResource;
+import com.radishframework.grpc.server.ServerExecutorType;
+import io.grpc.Status;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.Resource;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @ConfigurationProperties("radish")
 public class RadishProperties {
 
   private RadishServerProperties server = new RadishServerProperties();
+  private RadishClientProperties client = new RadishClientProperties();
+  private RadishTransportProperties transport = new RadishTransportProperties();
+  private RadishTracingProperties tracing = new RadishTracingProperties();
+  private RadishCompressionProperties compression = new RadishCompressionProperties();
 
   public static class RadishServerProperties {
     private String address;
     private int port = 8086;
     private int operationPort = 18180;
     private boolean disableRegistry;
+    /**
+     * Executor of the services which don't choose one
+     */
+    private ServerExecutorType executor = ServerExecutorType.CACHED;
+    /**
+     * Executor by full grpc service name, overrides the one of the @GrpcService annotation
+     */
+    private Map<String, ServerExecutorType> executors = new LinkedHashMap<>();
+    /**
+     * Threads of the bounded executor, 0 for the number of cores
+     */
+    private int boundedExecutorThreads;
+    /**
+     * Calls running or queued on the bounded executor, the others are rejected
+     */
+    private int boundedExecutorMaxCalls = 1024;
+    /**
+     * Runs the server on the netty event loop: saves a thread hop per call, but parses and
+     * decompresses the requests on the event loop, only for small messages
+     */
+    private boolean directExecutor;
+    private RadishConcurrencyLimitProperties concurrencyLimit = new RadishConcurrencyLimitProperties();
+    /**
+     * Size from which the requests are parsed without copying their bytes fields, unset keeps the
+     * marshallers of the generated stubs
+     */
+    private DataSize zeroCopyThreshold;
+    /**
+     * Compression of the responses by method, keyed by "[package.Service/Method]", "[package.Service]"
+     * or "[*]" for all the methods
+     */
+    private Map<String, RadishCompressionPolicyProperties> compression = new LinkedHashMap<>();
+    /**
+     * Age after which a connection is sent a GOAWAY, the clients reconnect and spread over the pods
+     * added since, unset keeps the connections forever
+     */
+    private Duration maxConnectionAge;
+    /**
+     * Time the calls of an aged connection have to finish before it is closed
+     */
+    private Duration maxConnectionAgeGrace;
+    private Duration maxConnectionIdle;
+    private Duration keepAliveTime;
+    private Duration keepAliveTimeout;
+    /**
+     * Shortest keepalive ping interval accepted from the clients, the connections pinging more
+     * often are closed with ENHANCE_YOUR_CALM
+     */
+    private Duration permitKeepAliveTime;
+    private Boolean permitKeepAliveWithoutCalls;
+    private RadishShutdownProperties shutdown = new RadishShutdownProperties();
+    /**
+     * Register the services listed by the radish-service-indexer annotation processor, when the
+     * class path has an index, instead of looking for @GrpcService on every service bean
+     */
+    private boolean serviceIndex = true;
 
     public String getAddress() {
       return address;
@@ -45,6 +115,1021 @@ public class RadishProperties {
       this.disableRegistry = disableRegistry;
     }
 
+    public ServerExecutorType getExecutor() {
+      return executor;
+    }
+
+    public void setExecutor(ServerExecutorType executor) {
+      this.executor = executor;
+    }
+
+    public Map<String, ServerExecutorType> getExecutors() {
+      return executors;
+    }
+
+    public void setExecutors(Map<String, ServerExecutorType> executors) {
+      this.executors = executors;
+    }
+
+    public int getBoundedExecutorThreads() {
+      return boundedExecutorThreads;
+    }
+
+    public void setBoundedExecutorThreads(int boundedExecutorThreads) {
+      this.boundedExecutorThreads = boundedExecutorThreads;
+    }
+
+    public int getBoundedExecutorMaxCalls() {
+      return boundedExecutorMaxCalls;
+    }
+
+    public void setBoundedExecutorMaxCalls(int boundedExecutorMaxCalls) {
+      this.boundedExecutorMaxCalls = boundedExecutorMaxCalls;
+    }
+
+    public boolean isDirectExecutor() {
+      return directExecutor;
+    }
+
+    public void setDirectExecutor(boolean directExecutor) {
+      this.directExecutor = directExecutor;
+    }
+
+    public RadishConcurrencyLimitProperties getConcurrencyLimit() {
+      return concurrencyLimit;
+    }
+
+    public void setConcurrencyLimit(RadishConcurrencyLimitProperties concurrencyLimit) {
+      this.concurrencyLimit = concurrencyLimit;
+    }
+
+    public DataSize getZeroCopyThreshold() {
+      return zeroCopyThreshold;
+    }
+
+    public void setZeroCopyThreshold(DataSize zeroCopyThreshold) {
+      this.zeroCopyThreshold = zeroCopyThreshold;
+    }
+
+    public boolean isServiceIndex() {
+      return serviceIndex;
+    }
+
+    public void setServiceIndex(boolean serviceIndex) {
+      this.serviceIndex = serviceIndex;
+    }
+
+    public Map<String, RadishCompressionPolicyProperties> getCompression() {
+      return compression;
+    }
+
+    public void setCompression(Map<String, RadishCompressionPolicyProperties> compression) {
+      this.compression = compression;
+    }
+
+    public Duration getMaxConnectionAge() {
+      return maxConnectionAge;
+    }
+
+    public void setMaxConnectionAge(Duration maxConnectionAge) {
+      this.maxConnectionAge = maxConnectionAge;
+    }
+
+    public Duration getMaxConnectionAgeGrace() {
+      return maxConnectionAgeGrace;
+    }
+
+    public void setMaxConnectionAgeGrace(Duration maxConnectionAgeGrace) {
+      this.maxConnectionAgeGrace = maxConnectionAgeGrace;
+    }
+
+    public Duration getMaxConnectionIdle() {
+      return maxConnectionIdle;
+    }
+
+    public void setMaxConnectionIdle(Duration maxConnectionIdle) {
+      this.maxConnectionIdle = maxConnectionIdle;
+    }
+
+    public Duration getKeepAliveTime() {
+      return keepAliveTime;
+    }
+
+    public void setKeepAliveTime(Duration keepAliveTime) {
+      this.keepAliveTime = keepAliveTime;
+    }
+
+    public Duration getKeepAliveTimeout() {
+      return keepAliveTimeout;
+    }
+
+    public void setKeepAliveTimeout(Duration keepAliveTimeout) {
+      this.keepAliveTimeout = keepAliveTimeout;
+    }
+
+    public Duration getPermitKeepAliveTime() {
+      return permitKeepAliveTime;
+    }
+
+    public void setPermitKeepAliveTime(Duration permitKeepAliveTime) {
+      this.permitKeepAliveTime = permitKeepAliveTime;
+    }
+
+    public Boolean getPermitKeepAliveWithoutCalls() {
+      return permitKeepAliveWithoutCalls;
+    }
+
+    public void setPermitKeepAliveWithoutCalls(Boolean permitKeepAliveWithoutCalls) {
+      this.permitKeepAliveWithoutCalls = permitKeepAliveWithoutCalls;
+    }
+
+    public RadishShutdownProperties getShutdown() {
+      return shutdown;
+    }
+
+    public void setShutdown(RadishShutdownProperties shutdown) {
+      this.shutdown = shutdown;
+    }
+
+  }
+
+  /**
+   * Shutdown sequence of the server: not serving, then no new calls, then the calls left are
+   * cancelled. Together they should stay below the termination grace period of the pod
+   */
+  public static class RadishShutdownProperties {
+    /**
+     * Time between the health checks turning NOT_SERVING and the GOAWAY, for the endpoints change
+     * to reach the clients
+     */
+    private Duration propagationDelay = Duration.ofSeconds(5);
+    /**
+     * Time the calls in flight have to finish after the GOAWAY before they are cancelled
+     */
+    private Duration drainTimeout = Duration.ofSeconds(20);
+
+    public Duration getPropagationDelay() {
+      return propagationDelay;
+    }
+
+    public void setPropagationDelay(Duration propagationDelay) {
+      this.propagationDelay = propagationDelay;
+    }
+
+    public Duration getDrainTimeout() {
+      return drainTimeout;
+    }
+
+    public void setDrainTimeout(Duration drainTimeout) {
+      this.drainTimeout = drainTimeout;
+    }
+
+  }
+
+  /**
+   * Adaptive limit of the concurrent calls of every service, off by default
+   */
+  public static class RadishConcurrencyLimitProperties {
+    private boolean enabled;
+    /**
+     * One limit per method instead of per service
+     */
+    private boolean perMethod;
+    private int initialLimit = 20;
+    private int minLimit = 4;
+    private int maxLimit = 1000;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public boolean isPerMethod() {
+      return perMethod;
+    }
+
+    public void setPerMethod(boolean perMethod) {
+      this.perMethod = perMethod;
+    }
+
+    public int getInitialLimit() {
+      return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+      this.initialLimit = initialLimit;
+    }
+
+    public int getMinLimit() {
+      return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+      this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+      return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+      this.maxLimit = maxLimit;
+    }
+
+  }
+
+  public static class RadishClientProperties {
+    /**
+     * round_robin, pick_first, radish_least_request or radish_peak_ewma
+     */
+    private String loadBalancingPolicy = ManagedChannelResource.DEFAULT_LOAD_BALANCING_POLICY;
+    /**
+     * Defaults of the channels of all the services
+     */
+    private RadishChannelProperties channel = new RadishChannelProperties();
+    /**
+     * Channel settings by service, keyed by {namespace}/{service}/{port} or by the bare service name
+     */
+    private Map<String, RadishChannelProperties> services = new LinkedHashMap<>();
+
+    public String getLoadBalancingPolicy() {
+      return loadBalancingPolicy;
+    }
+
+    public void setLoadBalancingPolicy(String loadBalancingPolicy) {
+      this.loadBalancingPolicy = loadBalancingPolicy;
+    }
+
+    public RadishChannelProperties getChannel() {
+      return channel;
+    }
+
+    public void setChannel(RadishChannelProperties channel) {
+      this.channel = channel;
+    }
+
+    public Map<String, RadishChannelProperties> getServices() {
+      return services;
+    }
+
+    public void setServices(Map<String, RadishChannelProperties> services) {
+      this.services = services;
+    }
+
+  }
+
+  /**
+   * Unset values fall back to the client channel defaults and then to the grpc defaults
+   */
+  public static class RadishChannelProperties {
+    private String loadBalancingPolicy;
+    private Duration keepAliveTime;
+    private Duration keepAliveTimeout;
+    private Boolean keepAliveWithoutCalls;
+    private Duration idleTimeout;
+    private DataSize flowControlWindow;
+    private DataSize maxInboundMessageSize;
+    /**
+     * Number of connections opened to every backend
+     */
+    private Integer poolSize;
+    /**
+     * Deadline and retry or hedging by method, keyed by "[package.Service/Method]", "[package.Service]"
+     * or "[*]" for all the methods, merged with the ones of the client channel defaults
+     */
+    private Map<String, RadishMethodProperties> methods = new LinkedHashMap<>();
+    private RadishRetryBudgetProperties retryBudget = new RadishRetryBudgetProperties();
+    /**
+     * Time taken off the deadline of the incoming call before it is given to the outgoing calls
+     */
+    private Duration deadlineMargin;
+    private RadishOutlierDetectionProperties outlierDetection = new RadishOutlierDetectionProperties();
+    private RadishConsistentHashProperties consistentHash = new RadishConsistentHashProperties();
+    /**
+     * Service whose health the backends must report as serving to be picked, "" for the whole
+     * server, no health checking by default
+     */
+    private String healthCheckServiceName;
+    /**
+     * Time to live of the cached unary responses, keyed by "[package.Service/Method]" or
+     * "[package.Service]", merged with the ones of the client channel defaults. Only for
+     * idempotent lookups whose response doesn't depend on the caller
+     */
+    private Map<String, Duration> cacheTtls = new LinkedHashMap<>();
+    /**
+     * Size of the response cache of the channel, 32MB by default
+     */
+    private DataSize cacheMaxSize;
+    /**
+     * Size from which the responses are parsed without copying their bytes fields, unset keeps the
+     * marshallers of the generated stubs
+     */
+    private DataSize zeroCopyThreshold;
+    /**
+     * Compression of the requests by method, keyed by "[package.Service/Method]", "[package.Service]"
+     * or "[*]" for all the methods, merged with the ones of the client channel defaults
+     */
+    private Map<String, RadishCompressionPolicyProperties> compression = new LinkedHashMap<>();
+
+    public String getLoadBalancingPolicy() {
+      return loadBalancingPolicy;
+    }
+
+    public void setLoadBalancingPolicy(String loadBalancingPolicy) {
+      this.loadBalancingPolicy = loadBalancingPolicy;
+    }
+
+    public Duration getKeepAliveTime() {
+      return keepAliveTime;
+    }
+
+    public void setKeepAliveTime(Duration keepAliveTime) {
+      this.keepAliveTime = keepAliveTime;
+    }
+
+    public Duration getKeepAliveTimeout() {
+      return keepAliveTimeout;
+    }
+
+    public void setKeepAliveTimeout(Duration keepAliveTimeout) {
+      this.keepAliveTimeout = keepAliveTimeout;
+    }
+
+    public Boolean getKeepAliveWithoutCalls() {
+      return keepAliveWithoutCalls;
+    }
+
+    public void setKeepAliveWithoutCalls(Boolean keepAliveWithoutCalls) {
+      this.keepAliveWithoutCalls = keepAliveWithoutCalls;
+    }
+
+    public Duration getIdleTimeout() {
+      return idleTimeout;
+    }
+
+    public void setIdleTimeout(Duration idleTimeout) {
+      this.idleTimeout = idleTimeout;
+    }
+
+    public DataSize getFlowControlWindow() {
+      return flowControlWindow;
+    }
+
+    public void setFlowControlWindow(DataSize flowControlWindow) {
+      this.flowControlWindow = flowControlWindow;
+    }
+
+    public DataSize getMaxInboundMessageSize() {
+      return maxInboundMessageSize;
+    }
+
+    public void setMaxInboundMessageSize(DataSize maxInboundMessageSize) {
+      this.maxInboundMessageSize = maxInboundMessageSize;
+    }
+
+    public Integer getPoolSize() {
+      return poolSize;
+    }
+
+    public void setPoolSize(Integer poolSize) {
+      this.poolSize = poolSize;
+    }
+
+    public Map<String, RadishMethodProperties> getMethods() {
+      return methods;
+    }
+
+    public void setMethods(Map<String, RadishMethodProperties> methods) {
+      this.methods = methods;
+    }
+
+    public RadishRetryBudgetProperties getRetryBudget() {
+      return retryBudget;
+    }
+
+    public void setRetryBudget(RadishRetryBudgetProperties retryBudget) {
+      this.retryBudget = retryBudget;
+    }
+
+    public Duration getDeadlineMargin() {
+      return deadlineMargin;
+    }
+
+    public void setDeadlineMargin(Duration deadlineMargin) {
+      this.deadlineMargin = deadlineMargin;
+    }
+
+    public RadishOutlierDetectionProperties getOutlierDetection() {
+      return outlierDetection;
+    }
+
+    public void setOutlierDetection(RadishOutlierDetectionProperties outlierDetection) {
+      this.outlierDetection = outlierDetection;
+    }
+
+    public RadishConsistentHashProperties getConsistentHash() {
+      return consistentHash;
+    }
+
+    public void setConsistentHash(RadishConsistentHashProperties consistentHash) {
+      this.consistentHash = consistentHash;
+    }
+
+    public String getHealthCheckServiceName() {
+      return healthCheckServiceName;
+    }
+
+    public void setHealthCheckServiceName(String healthCheckServiceName) {
+      this.healthCheckServiceName = healthCheckServiceName;
+    }
+
+    public Map<String, Duration> getCacheTtls() {
+      return cacheTtls;
+    }
+
+    public void setCacheTtls(Map<String, Duration> cacheTtls) {
+      this.cacheTtls = cacheTtls;
+    }
+
+    public DataSize getCacheMaxSize() {
+      return cacheMaxSize;
+    }
+
+    public void setCacheMaxSize(DataSize cacheMaxSize) {
+      this.cacheMaxSize = cacheMaxSize;
+    }
+
+    public DataSize getZeroCopyThreshold() {
+      return zeroCopyThreshold;
+    }
+
+    public void setZeroCopyThreshold(DataSize zeroCopyThreshold) {
+      this.zeroCopyThreshold = zeroCopyThreshold;
+    }
+
+    public Map<String, RadishCompressionPolicyProperties> getCompression() {
+      return compression;
+    }
+
+    public void setCompression(Map<String, RadishCompressionPolicyProperties> compression) {
+      this.compression = compression;
+    }
+
+  }
+
+  /**
+   * Hash key of the radish_consistent_hash load balancing policy, the unset values are the
+   * consistent hash defaults
+   */
+  public static class RadishConsistentHashProperties {
+    /**
+     * Metadata header holding the hash key, radish-hash-key by default
+     */
+    private String hashHeader;
+    /**
+     * Request field holding the hash key, keyed by "[package.Service/Method]" or "[package.Service]"
+     */
+    private Map<String, String> keyFields = new LinkedHashMap<>();
+    /**
+     * Times the average outstanding calls a backend takes before its keys spill over to the next
+     * backends, 0 to never spill over, 1.25 by default
+     */
+    private Double loadFactor;
+    /**
+     * Points of every backend on the hash ring, 100 by default
+     */
+    private Integer pointsPerBackend;
+
+    public String getHashHeader() {
+      return hashHeader;
+    }
+
+    public void setHashHeader(String hashHeader) {
+      this.hashHeader = hashHeader;
+    }
+
+    public Map<String, String> getKeyFields() {
+      return keyFields;
+    }
+
+    public void setKeyFields(Map<String, String> keyFields) {
+      this.keyFields = keyFields;
+    }
+
+    public Double getLoadFactor() {
+      return loadFactor;
+    }
+
+    public void setLoadFactor(Double loadFactor) {
+      this.loadFactor = loadFactor;
+    }
+
+    public Integer getPointsPerBackend() {
+      return pointsPerBackend;
+    }
+
+    public void setPointsPerBackend(Integer pointsPerBackend) {
+      this.pointsPerBackend = pointsPerBackend;
+    }
+  }
+
+  /**
+   * Temporary ejection of the failing or slow backends, the unset values are the outlier detection defaults
+   */
+  public static class RadishOutlierDetectionProperties {
+    /**
+     * Unset to follow the client channel defaults, off there
+     */
+    private Boolean enabled;
+    private Duration interval;
+    /**
+     * Doubled at every new ejection of a backend, up to max-ejection-time
+     */
+    private Duration baseEjectionTime;
+    private Duration maxEjectionTime;
+    private Integer maxEjectionPercent;
+    /**
+     * Failed calls in a row ejecting a backend, 0 to disable
+     */
+    private Integer consecutiveFailures;
+    /**
+     * Success rate standard deviations below the mean ejecting a backend, 0 to disable
+     */
+    private Double successRateStdevFactor;
+    /**
+     * Times the median latency ejecting a backend, 0 to disable
+     */
+    private Double latencyFactor;
+    private Integer minimumHosts;
+    private Integer requestVolume;
+
+    public Boolean getEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public Duration getInterval() {
+      return interval;
+    }
+
+    public void setInterval(Duration interval) {
+      this.interval = interval;
+    }
+
+    public Duration getBaseEjectionTime() {
+      return baseEjectionTime;
+    }
+
+    public void setBaseEjectionTime(Duration baseEjectionTime) {
+      this.baseEjectionTime = baseEjectionTime;
+    }
+
+    public Duration getMaxEjectionTime() {
+      return maxEjectionTime;
+    }
+
+    public void setMaxEjectionTime(Duration maxEjectionTime) {
+      this.maxEjectionTime = maxEjectionTime;
+    }
+
+    public Integer getMaxEjectionPercent() {
+      return maxEjectionPercent;
+    }
+
+    public void setMaxEjectionPercent(Integer maxEjectionPercent) {
+      this.maxEjectionPercent = maxEjectionPercent;
+    }
+
+    public Integer getConsecutiveFailures() {
+      return consecutiveFailures;
+    }
+
+    public void setConsecutiveFailures(Integer consecutiveFailures) {
+      this.consecutiveFailures = consecutiveFailures;
+    }
+
+    public Double getSuccessRateStdevFactor() {
+      return successRateStdevFactor;
+    }
+
+    public void setSuccessRateStdevFactor(Double successRateStdevFactor) {
+      this.successRateStdevFactor = successRateStdevFactor;
+    }
+
+    public Double getLatencyFactor() {
+      return latencyFactor;
+    }
+
+    public void setLatencyFactor(Double latencyFactor) {
+      this.latencyFactor = latencyFactor;
+    }
+
+    public Integer getMinimumHosts() {
+      return minimumHosts;
+    }
+
+    public void setMinimumHosts(Integer minimumHosts) {
+      this.minimumHosts = minimumHosts;
+    }
+
+    public Integer getRequestVolume() {
+      return requestVolume;
+    }
+
+    public void setRequestVolume(Integer requestVolume) {
+      this.requestVolume = requestVolume;
+    }
+
+  }
+
+  public static class RadishMethodProperties {
+    /**
+     * Deadline of the calls made without one
+     */
+    private Duration timeout;
+    /**
+     * Attempts including the first one, 1 by default for neither retries nor hedging
+     */
+    private Integer maxAttempts;
+    private Duration initialBackoff;
+    private Duration maxBackoff;
+    private Double backoffMultiplier;
+    /**
+     * UNAVAILABLE by default
+     */
+    private List<Status.Code> retryableStatusCodes;
+    /**
+     * Hedge the attempts with this delay instead of retrying them, for idempotent methods only
+     */
+    private Duration hedgingDelay;
+
+    public Duration getTimeout() {
+      return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+      this.timeout = timeout;
+    }
+
+    public Integer getMaxAttempts() {
+      return maxAttempts;
+    }
+
+    public void setMaxAttempts(Integer maxAttempts) {
+      this.maxAttempts = maxAttempts;
+    }
+
+    public Duration getInitialBackoff() {
+      return initialBackoff;
+    }
+
+    public void setInitialBackoff(Duration initialBackoff) {
+      this.initialBackoff = initialBackoff;
+    }
+
+    public Duration getMaxBackoff() {
+      return maxBackoff;
+    }
+
+    public void setMaxBackoff(Duration maxBackoff) {
+      this.maxBackoff = maxBackoff;
+    }
+
+    public Double getBackoffMultiplier() {
+      return backoffMultiplier;
+    }
+
+    public void setBackoffMultiplier(Double backoffMultiplier) {
+      this.backoffMultiplier = backoffMultiplier;
+    }
+
+    public List<Status.Code> getRetryableStatusCodes() {
+      return retryableStatusCodes;
+    }
+
+    public void setRetryableStatusCodes(List<Status.Code> retryableStatusCodes) {
+      this.retryableStatusCodes = retryableStatusCodes;
+    }
+
+    public Duration getHedgingDelay() {
+      return hedgingDelay;
+    }
+
+    public void setHedgingDelay(Duration hedgingDelay) {
+      this.hedgingDelay = hedgingDelay;
+    }
+
+  }
+
+  /**
+   * Token bucket shared by the retries and hedged attempts of a channel, off unless max-tokens is set
+   */
+  public static class RadishRetryBudgetProperties {
+    /**
+     * Taken by every failed attempt, retries stop below half of them
+     */
+    private Double maxTokens;
+    /**
+     * Given back by every successful attempt, 0.1 by default
+     */
+    private Double tokenRatio;
+
+    public Double getMaxTokens() {
+      return maxTokens;
+    }
+
+    public void setMaxTokens(Double maxTokens) {
+      this.maxTokens = maxTokens;
+    }
+
+    public Double getTokenRatio() {
+      return tokenRatio;
+    }
+
+    public void setTokenRatio(Double tokenRatio) {
+      this.tokenRatio = tokenRatio;
+    }
+
+  }
+
+  /**
+   * Event loops shared by the server and all the client channels, off by default
+   */
+  public static class RadishTransportProperties {
+    private boolean shared;
+    /**
+     * Use the native epoll transport when available
+     */
+    private boolean nativeTransport = true;
+    private int bossThreads = 1;
+    /**
+     * 0 for twice the number of cores
+     */
+    private int workerThreads;
+
+    public boolean isShared() {
+      return shared;
+    }
+
+    public void setShared(boolean shared) {
+      this.shared = shared;
+    }
+
+    public boolean isNativeTransport() {
+      return nativeTransport;
+    }
+
+    public void setNativeTransport(boolean nativeTransport) {
+      this.nativeTransport = nativeTransport;
+    }
+
+    public int getBossThreads() {
+      return bossThreads;
+    }
+
+    public void setBossThreads(int bossThreads) {
+      this.bossThreads = bossThreads;
+    }
+
+    public int getWorkerThreads() {
+      return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+      this.workerThreads = workerThreads;
+    }
+
+  }
+
+  /**
+   * Compression of the messages of a method
+   */
+  public static class RadishCompressionPolicyProperties {
+    /**
+     * none, gzip, zstd or the name of a zstd dictionary. The peer needs the same codec: the clients
+     * fall back to gzip until the servers advertise it, the servers answer with it only if the
+     * client advertised it
+     */
+    private String codec = "none";
+    /**
+     * Messages smaller than this are sent uncompressed
+     */
+    private DataSize minSize = DataSize.ofBytes(0);
+
+    public String getCodec() {
+      return codec;
+    }
+
+    public void setCodec(String codec) {
+      this.codec = codec;
+    }
+
+    public DataSize getMinSize() {
+      return minSize;
+    }
+
+    public void setMinSize(DataSize minSize) {
+      this.minSize = minSize;
+    }
+
+  }
+
+  /**
+   * Message encodings of the server and of the client channels, gzip and, when zstd-jni is on the
+   * class path, zstd
+   */
+  public static class RadishCompressionProperties {
+    /**
+     * 1 (fastest) to 22 (smallest)
+     */
+    private int zstdLevel = 3;
+    /**
+     * zstd dictionaries by message encoding name, e.g. "[zstd-events]": classpath:events.zdict, the
+     * peers must register the same ones
+     */
+    private Map<String, Resource> zstdDictionaries = new LinkedHashMap<>();
+
+    public int getZstdLevel() {
+      return zstdLevel;
+    }
+
+    public void setZstdLevel(int zstdLevel) {
+      this.zstdLevel = zstdLevel;
+    }
+
+    public Map<String, Resource> getZstdDictionaries() {
+      return zstdDictionaries;
+    }
+
+    public void setZstdDictionaries(Map<String, Resource> zstdDictionaries) {
+      this.zstdDictionaries = zstdDictionaries;
+    }
+
+  }
+
+  public static class RadishTracingProperties {
+    private SpanExporterType exporter = SpanExporterType.LOGGING;
+    /**
+     * host:port of the OTLP collector
+     */
+    private String otlpEndpoint = "localhost:4317";
+    /**
+     * Spans file of the file exporter
+     */
+    private String file = "spans.json";
+    /**
+     * Spans waiting for export, the spans over it are dropped
+     */
+    private int maxQueueSize = 2048;
+    private int maxExportBatchSize = 512;
+    private Duration scheduleDelay = Duration.ofSeconds(1);
+    private Duration exportTimeout = Duration.ofSeconds(30);
+    /**
+     * Default sampling of the root calls
+     */
+    private RadishSamplingProperties sampling = new RadishSamplingProperties();
+    /**
+     * Sampling by service or method, keyed by "[package.Service]" or "[package.Service/Method]"
+     */
+    private Map<String, RadishSamplingProperties> services = new LinkedHashMap<>();
+
+    public SpanExporterType getExporter() {
+      return exporter;
+    }
+
+    public void setExporter(SpanExporterType exporter) {
+      this.exporter = exporter;
+    }
+
+    public String getOtlpEndpoint() {
+      return otlpEndpoint;
+    }
+
+    public void setOtlpEndpoint(String otlpEndpoint) {
+      this.otlpEndpoint = otlpEndpoint;
+    }
+
+    public String getFile() {
+      return file;
+    }
+
+    public void setFile(String file) {
+      this.file = file;
+    }
+
+    public int getMaxQueueSize() {
+      return maxQueueSize;
+    }
+
+    public void setMaxQueueSize(int maxQueueSize) {
+      this.maxQueueSize = maxQueueSize;
+    }
+
+    public int getMaxExportBatchSize() {
+      return maxExportBatchSize;
+    }
+
+    public void setMaxExportBatchSize(int maxExportBatchSize) {
+      this.maxExportBatchSize = maxExportBatchSize;
+    }
+
+    public Duration getScheduleDelay() {
+      return scheduleDelay;
+    }
+
+    public void setScheduleDelay(Duration scheduleDelay) {
+      this.scheduleDelay = scheduleDelay;
+    }
+
+    public Duration getExportTimeout() {
+      return exportTimeout;
+    }
+
+    public void setExportTimeout(Duration exportTimeout) {
+      this.exportTimeout = exportTimeout;
+    }
+
+    public RadishSamplingProperties getSampling() {
+      return sampling;
+    }
+
+    public void setSampling(RadishSamplingProperties sampling) {
+      this.sampling = sampling;
+    }
+
+    public Map<String, RadishSamplingProperties> getServices() {
+      return services;
+    }
+
+    public void setServices(Map<String, RadishSamplingProperties> services) {
+      this.services = services;
+    }
+
+  }
+
+  /**
+   * Unset values fall back to the default sampling
+   */
+  public static class RadishSamplingProperties {
+    /**
+     * Share of the root calls sampled up front, 1 by default
+     */
+    private Double ratio;
+    /**
+     * Root calls sampled up front per second at most, unlimited by default
+     */
+    private Double ratePerSecond;
+    /**
+     * Keep the slow or failed calls which aren't sampled up front
+     */
+    private Boolean tail;
+    /**
+     * Calls slower than it are kept by tail sampling, 500ms by default
+     */
+    private Duration slowThreshold;
+
+    public Double getRatio() {
+      return ratio;
+    }
+
+    public void setRatio(Double ratio) {
+      this.ratio = ratio;
+    }
+
+    public Double getRatePerSecond() {
+      return ratePerSecond;
+    }
+
+    public void setRatePerSecond(Double ratePerSecond) {
+      this.ratePerSecond = ratePerSecond;
+    }
+
+    public Boolean getTail() {
+      return tail;
+    }
+
+    public void setTail(Boolean tail) {
+      this.tail = tail;
+    }
+
+    public Duration getSlowThreshold() {
+      return slowThreshold;
+    }
+
+    public void setSlowThreshold(Duration slowThreshold) {
+      this.slowThreshold = slowThreshold;
+    }
+
+  }
+
+  public enum SpanExporterType {
+    NONE, LOGGING, OTLP, FILE
   }
 
   public RadishServerProperties getServer() {
@@ -54,4 +1139,36 @@ public class RadishProperties {
   public void setServer(RadishServerProperties server) {
     this.server = server;
   }
+
+  public RadishClientProperties getClient() {
+    return client;
+  }
+
+  public void setClient(RadishClientProperties client) {
+    this.client = client;
+  }
+
+  public RadishTransportProperties getTransport() {
+    return transport;
+  }
+
+  public void setTransport(RadishTransportProperties transport) {
+    this.transport = transport;
+  }
+
+  public RadishTracingProperties getTracing() {
+    return tracing;
+  }
+
+  public void setTracing(RadishTracingProperties tracing) {
+    this.tracing = tracing;
+  }
+
+  public RadishCompressionProperties getCompression() {
+    return compression;
+  }
+
+  public void setCompression(RadishCompressionProperties compression) {
+    this.compression = compression;
+  }
 }
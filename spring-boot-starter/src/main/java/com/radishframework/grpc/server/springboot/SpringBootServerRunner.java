@@ -1,26 +1,55 @@
 package com.radishframework.grpc.server.springboot;
 
 import com.radishframework.grpc.client.KubernetesNameResolverProvider;
+import com.radishframework.grpc.common.Compression;
+import com.radishframework.grpc.common.CompressionPolicy;
+import com.radishframework.grpc.common.NettyTransport;
+import com.radishframework.grpc.client.ManagedChannelFactory;
+import com.radishframework.grpc.common.RpcMetrics;
+import com.radishframework.grpc.common.RuntimeSnapshots;
+import com.radishframework.grpc.common.ZeroCopyMarshaller;
+import com.radishframework.grpc.server.CompressionServerInterceptor;
+import com.radishframework.grpc.server.ConcurrencyLimitServerInterceptor;
+import com.radishframework.grpc.server.MetricsServerInterceptor;
 import com.radishframework.grpc.server.OpenTelemetryServerInterceptor;
+import com.radishframework.grpc.server.OperationsServer;
+import com.radishframework.grpc.server.ServerExecutorType;
+import com.radishframework.grpc.server.ServerExecutors;
 import com.radishframework.grpc.server.springboot.RadishProperties.RadishServerProperties;
 import com.radishframework.grpc.server.annotations.GrpcService;
 import io.grpc.*;
 import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
 import io.grpc.protobuf.services.ProtoReflectionService;
 import io.grpc.services.HealthStatusManager;
+import io.opentelemetry.sdk.trace.SpanProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.core.KotlinReflectionParameterNameDiscoverer;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.annotation.MergedAnnotation;
 import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.unit.DataSize;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Stream;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.collect.Lists.newArrayList;
 
@@ -29,7 +58,7 @@ import static com.google.common.collect.Lists.newArrayList;
  * <p>
  * 启动gRPC服务器端和管理http服务器
  */
-public class SpringBootServerRunner implements CommandLineRunner {
+public class SpringBootServerRunner implements CommandLineRunner, SmartLifecycle {
 
     private static final Logger log = LoggerFactory.getLogger(SpringBootServerRunner.class);
 
@@ -37,57 +66,337 @@ public class SpringBootServerRunner implements CommandLineRunner {
     private ConfigurableApplicationContext applicationContext;
     @Autowired
     private RadishProperties radishProperties;
+    @Autowired(required = false)
+    private NettyTransport nettyTransport;
+    @Autowired
+    private Compression compression;
+    // tracing is initialized before the server interceptor gets its tracer
+    @Autowired
+    private SpanProcessor spanProcessor;
     @Value("${spring.application.name}")
     private String applicationName;
+    @Autowired(required = false)
+    private ManagedChannelFactory managedChannelFactory;
     private HealthStatusManager healthStatusManager = new HealthStatusManager();
+    // statuses set on the healthStatusManager, served by the operations server
+    private final Map<String, HealthCheckResponse.ServingStatus> servingStatuses = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+    // set once started, drained when the application context closes
+    private volatile Server server;
+    private ConcurrencyLimitServerInterceptor concurrencyLimitInterceptor;
 
     @Override
     public void run(String... args) throws Exception {
+        final long startNanos = System.nanoTime();
         final RadishServerProperties serverProperties = radishProperties.getServer();
-        final ServerBuilder<?> serverBuilder =
-                ServerBuilder.forPort(serverProperties.getPort());
+        final NettyServerBuilder serverBuilder =
+                NettyServerBuilder.forPort(serverProperties.getPort());
+        if (nettyTransport != null) {
+            nettyTransport.configure(serverBuilder);
+        }
+        compression.configure(serverBuilder);
+        configureConnections(serverBuilder, serverProperties);
+        // the services not running on the executor of the server hop to their own
+        final ServerExecutors serverExecutors = new ServerExecutors(serverProperties.getBoundedExecutorThreads(),
+                serverProperties.getBoundedExecutorMaxCalls(), serverProperties.isDirectExecutor());
+        serverExecutors.configure(serverBuilder);
+        final RadishProperties.RadishConcurrencyLimitProperties limitProperties = serverProperties.getConcurrencyLimit();
+        if (limitProperties.isEnabled()) {
+            concurrencyLimitInterceptor = new ConcurrencyLimitServerInterceptor(limitProperties.getInitialLimit(),
+                    limitProperties.getMinLimit(), limitProperties.getMaxLimit(), limitProperties.isPerMethod());
+        }
 
-        addServices(serverBuilder, healthStatusManager, new OpenTelemetryServerInterceptor(applicationName));
-        serverBuilder.addService(ProtoReflectionService.newInstance());
-        serverBuilder.addService(healthStatusManager.getHealthService());
+        final List<ServerInterceptor> globalInterceptors = newArrayList(
+                new OpenTelemetryServerInterceptor(applicationName), new MetricsServerInterceptor());
+        if (!serverProperties.getCompression().isEmpty()) {
+            final Map<String, CompressionPolicy> policies =
+                    RadishConfiguration.compressionPolicies(serverProperties.getCompression());
+            policies.values().forEach(compression::checkPolicy);
+            globalInterceptors.add(new CompressionServerInterceptor(policies));
+        }
+        final Set<String> index = serverProperties.isServiceIndex()
+                ? GrpcServiceIndex.load(applicationContext.getClassLoader())
+                : null;
+        final Map<String, GrpcService> serviceBeans = findServiceBeans(index);
+        final long foundNanos = System.nanoTime();
+        for (ServerServiceDefinition serviceDefinition : bindServices(serviceBeans, serverExecutors,
+                globalInterceptors.toArray(new ServerInterceptor[0]))) {
+            serverBuilder.addService(serviceDefinition);
+            setServingStatus(serviceDefinition.getServiceDescriptor().getName(),
+                    HealthCheckResponse.ServingStatus.SERVING);
+        }
+        final long boundNanos = System.nanoTime();
+        serverBuilder.addService(withExecutor(ProtoReflectionService.newInstance().bindService(),
+                serverExecutors, ServerExecutorType.CACHED));
+        serverBuilder.addService(withExecutor(healthStatusManager.getHealthService().bindService(),
+                serverExecutors, ServerExecutorType.CACHED));
 
         final Server server = serverBuilder.build();
         server.start();
+        this.server = server;
+        final long startedNanos = System.nanoTime();
         log.info("Grpc server started at port " + serverProperties.getPort());
 
+        ready = true;
+
+        final OperationsServer operationsServer = startOperationsServer(serverProperties.getOperationPort());
+        final long endNanos = System.nanoTime();
+        log.info("Operations server started at port " + serverProperties.getOperationPort());
+        log.info("Grpc server ready in {}ms, {}ms after the jvm start: configured with {} services in {}ms ({}), "
+                        + "bound in {}ms, server started in {}ms, operations server in {}ms",
+                TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos),
+                ManagementFactory.getRuntimeMXBean().getUptime(), serviceBeans.size(),
+                TimeUnit.NANOSECONDS.toMillis(foundNanos - startNanos), index != null ? "index" : "annotations",
+                TimeUnit.NANOSECONDS.toMillis(boundNanos - foundNanos),
+                TimeUnit.NANOSECONDS.toMillis(startedNanos - boundNanos),
+                TimeUnit.NANOSECONDS.toMillis(endNanos - startedNanos));
+
         // await for application termination
         server.awaitTermination();
-        Runtime.getRuntime().addShutdownHook(new Thread(server::shutdownNow));
+        serverExecutors.shutdown();
+        operationsServer.stop();
     }
 
-    private void addServices(ServerBuilder<?> serverBuilder, HealthStatusManager healthStatusManager, ServerInterceptor... globalInterceptors) {
-        Stream.of(applicationContext.getBeanNamesForType(BindableService.class)).filter(name -> {
-            final BeanDefinition beanDefinition = applicationContext.getBeanFactory().getBeanDefinition(name);
-            final Map<String, Object> beansWithAnnotation = applicationContext.getBeansWithAnnotation(GrpcService.class);
+    private static void configureConnections(NettyServerBuilder serverBuilder, RadishServerProperties properties) {
+        if (properties.getMaxConnectionAge() != null) {
+            serverBuilder.maxConnectionAge(properties.getMaxConnectionAge().toNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (properties.getMaxConnectionAgeGrace() != null) {
+            serverBuilder.maxConnectionAgeGrace(properties.getMaxConnectionAgeGrace().toNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (properties.getMaxConnectionIdle() != null) {
+            serverBuilder.maxConnectionIdle(properties.getMaxConnectionIdle().toNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (properties.getKeepAliveTime() != null) {
+            serverBuilder.keepAliveTime(properties.getKeepAliveTime().toNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (properties.getKeepAliveTimeout() != null) {
+            serverBuilder.keepAliveTimeout(properties.getKeepAliveTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (properties.getPermitKeepAliveTime() != null) {
+            serverBuilder.permitKeepAliveTime(properties.getPermitKeepAliveTime().toNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (properties.getPermitKeepAliveWithoutCalls() != null) {
+            serverBuilder.permitKeepAliveWithoutCalls(properties.getPermitKeepAliveWithoutCalls());
+        }
+    }
 
-            if (beansWithAnnotation.containsKey(name)) {
-                return true;
-            } else if (beanDefinition.getSource() instanceof AnnotatedTypeMetadata) {
-                return ((AnnotatedTypeMetadata) beanDefinition.getSource()).isAnnotated(GrpcService.class.getName());
+    /**
+     * The server is started by {@link #run}, once the application context is refreshed
+     */
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public boolean isRunning() {
+        final Server server = this.server;
+        return server != null && !server.isShutdown();
+    }
+
+    /**
+     * Drains the server when the application context closes, before the other lifecycle beans are
+     * stopped and before any bean is destroyed: the calls in flight still have the transport, the
+     * channels and the services they use
+     */
+    @Override
+    public void stop() {
+        final Server server = this.server;
+        if (server != null) {
+            drain(server, radishProperties.getServer().getShutdown());
+        }
+    }
+
+    /**
+     * Stopped first
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * The health checks and the readiness probe fail first, so that the
+     * pod leaves the endpoints while it still serves, then the clients are sent a GOAWAY and the
+     * calls in flight get the drain timeout to finish before they are cancelled
+     */
+    private void drain(Server server, RadishProperties.RadishShutdownProperties shutdownProperties) {
+        if (server.isShutdown()) {
+            return;
+        }
+        ready = false;
+        healthStatusManager.enterTerminalState();
+        servingStatuses.replaceAll((service, status) -> HealthCheckResponse.ServingStatus.NOT_SERVING);
+        try {
+            log.info("Grpc server not serving, shutting down in {}ms",
+                    shutdownProperties.getPropagationDelay().toMillis());
+            Thread.sleep(shutdownProperties.getPropagationDelay().toMillis());
+
+            server.shutdown();
+            if (!server.awaitTermination(shutdownProperties.getDrainTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                log.warn("Grpc server calls still running after {}ms, cancelling them",
+                        shutdownProperties.getDrainTimeout().toMillis());
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            server.shutdownNow();
+        }
+        log.info("Grpc server stopped");
+    }
 
-            return false;
-        }).forEach(name -> {
-            BindableService srv = applicationContext.getBeanFactory().getBean(name, BindableService.class);
-            ServerServiceDefinition serviceDefinition = srv.bindService();
-            GrpcService serviceAnn = applicationContext.findAnnotationOnBean(name, GrpcService.class);
+    private OperationsServer startOperationsServer(int port) throws IOException {
+        return new OperationsServer(new InetSocketAddress(port))
+                .addHandler("/health", request -> {
+                    final StringBuilder out = new StringBuilder();
+                    boolean serving = true;
+                    for (Map.Entry<String, HealthCheckResponse.ServingStatus> entry
+                            : new TreeMap<>(servingStatuses).entrySet()) {
+                        serving &= entry.getValue() == HealthCheckResponse.ServingStatus.SERVING;
+                        out.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+                    }
+                    return OperationsServer.Response.text(serving ? 200 : 503, out.toString());
+                })
+                .addHandler("/ready", request -> ready
+                        ? OperationsServer.Response.text("READY\n")
+                        : OperationsServer.Response.text(503, "NOT_READY\n"))
+                .addHandler("/metrics", request -> {
+                    final StringBuilder metrics = new StringBuilder(8192);
+                    RpcMetrics.getDefault().writePrometheus(metrics);
+                    if (concurrencyLimitInterceptor != null) {
+                        concurrencyLimitInterceptor.writePrometheus(metrics);
+                    }
+                    if (managedChannelFactory != null) {
+                        managedChannelFactory.writePrometheus(metrics);
+                    }
+                    return new OperationsServer.Response(200, "text/plain; version=0.0.4; charset=utf-8",
+                            metrics.toString().getBytes(StandardCharsets.UTF_8));
+                })
+                .addBlockingHandler("/channels", request -> {
+                    final StringBuilder out = new StringBuilder();
+                    if (managedChannelFactory != null) {
+                        managedChannelFactory.writeStatus(out);
+                    }
+                    return OperationsServer.Response.text(out.toString());
+                })
+                .addBlockingHandler("/threads", request -> {
+                    final String depth = request.getParameter("depth");
+                    int maxDepth;
+                    try {
+                        maxDepth = depth == null ? 64 : Integer.parseInt(depth);
+                    } catch (NumberFormatException e) {
+                        maxDepth = -1;
+                    }
+                    if (maxDepth < 0) {
+                        return OperationsServer.Response.text(400, "depth must be a non-negative integer\n");
+                    }
+                    final StringBuilder out = new StringBuilder(65536);
+                    RuntimeSnapshots.writeThreads(out, maxDepth);
+                    return OperationsServer.Response.text(out.toString());
+                })
+                .addBlockingHandler("/allocations", request -> {
+                    final StringBuilder out = new StringBuilder(8192);
+                    RuntimeSnapshots.writeAllocations(out);
+                    return OperationsServer.Response.text(out.toString());
+                })
+                .start();
+    }
+
+    private void setServingStatus(String service, HealthCheckResponse.ServingStatus status) {
+        healthStatusManager.setStatus(service, status);
+        servingStatuses.put(service, status);
+    }
+
+    /**
+     * The @GrpcService beans and their annotation, in one pass over the service beans without
+     * creating them: the annotation of a bean whose class is in the index is read from that class,
+     * the other beans are looked up for the annotation on their type or their factory method
+     */
+    private Map<String, GrpcService> findServiceBeans(@Nullable Set<String> index) {
+        final ConfigurableListableBeanFactory beanFactory = applicationContext.getBeanFactory();
+        final Map<String, GrpcService> services = new LinkedHashMap<>();
+        for (String name : beanFactory.getBeanNamesForType(BindableService.class, true, false)) {
+            GrpcService serviceAnn = null;
+            if (index != null) {
+                final Class<?> type = beanFactory.getType(name, false);
+                if (type != null && index.contains(ClassUtils.getUserClass(type).getName())) {
+                    serviceAnn = AnnotationUtils.findAnnotation(ClassUtils.getUserClass(type), GrpcService.class);
+                }
+            }
             if (serviceAnn == null) {
-                return;
+                serviceAnn = beanFactory.findAnnotationOnBean(name, GrpcService.class);
             }
-
-            // add global interceptors, AKA: context tracing
-            for (ServerInterceptor serverInterceptor : globalInterceptors) {
-                serviceDefinition = ServerInterceptors.intercept(serviceDefinition, serverInterceptor);
+            if (serviceAnn == null) {
+                final Object source = beanFactory.getBeanDefinition(name).getSource();
+                if (source instanceof AnnotatedTypeMetadata) {
+                    final MergedAnnotation<GrpcService> annotation =
+                            ((AnnotatedTypeMetadata) source).getAnnotations().get(GrpcService.class);
+                    serviceAnn = annotation.isPresent() ? annotation.synthesize() : null;
+                }
             }
-            serverBuilder.addService(serviceDefinition);
-            healthStatusManager.setStatus(
-                    serviceDefinition.getServiceDescriptor().getName(),
-                    HealthCheckResponse.ServingStatus.SERVING);
-        });
+            if (serviceAnn != null) {
+                services.put(name, serviceAnn);
+            }
+        }
+        return services;
+    }
+
+    /**
+     * Bind the services one after the other: the binding only builds the descriptors and wraps the
+     * method handlers, the time of the startup goes to the creation of the beans
+     */
+    private List<ServerServiceDefinition> bindServices(Map<String, GrpcService> serviceBeans,
+                                                       ServerExecutors serverExecutors,
+                                                       ServerInterceptor... globalInterceptors) {
+        final List<ServerServiceDefinition> serviceDefinitions = newArrayList();
+        serviceBeans.forEach((name, serviceAnn) -> serviceDefinitions.add(bindService(
+                applicationContext.getBeanFactory().getBean(name, BindableService.class), serviceAnn,
+                serverExecutors, globalInterceptors)));
+        return serviceDefinitions;
+    }
+
+    private ServerServiceDefinition bindService(BindableService srv, GrpcService serviceAnn,
+                                                ServerExecutors serverExecutors,
+                                                ServerInterceptor... globalInterceptors) {
+        ServerServiceDefinition serviceDefinition = srv.bindService();
+        final DataSize zeroCopyThreshold = radishProperties.getServer().getZeroCopyThreshold();
+        if (zeroCopyThreshold != null) {
+            serviceDefinition = ZeroCopyMarshaller.wrap(serviceDefinition,
+                    Math.toIntExact(zeroCopyThreshold.toBytes()));
+        }
+
+        // add global interceptors, AKA: context tracing
+        for (ServerInterceptor serverInterceptor : globalInterceptors) {
+            serviceDefinition = ServerInterceptors.intercept(serviceDefinition, serverInterceptor);
+        }
+        serviceDefinition = withExecutor(serviceDefinition, serverExecutors, executorOf(
+                serviceDefinition.getServiceDescriptor().getName(), serviceAnn));
+        // outside of the executor, the calls over the limit are rejected without queueing
+        if (concurrencyLimitInterceptor != null) {
+            serviceDefinition = ServerInterceptors.intercept(serviceDefinition, concurrencyLimitInterceptor);
+        }
+        return serviceDefinition;
+    }
+
+    private ServerExecutorType executorOf(String serviceName, GrpcService serviceAnn) {
+        final RadishServerProperties serverProperties = radishProperties.getServer();
+        ServerExecutorType type = serverProperties.getExecutors().get(serviceName);
+        if (type == null || type == ServerExecutorType.DEFAULT) {
+            type = serviceAnn.executor();
+        }
+        if (type == ServerExecutorType.DEFAULT) {
+            type = serverProperties.getExecutor();
+        }
+        return type == ServerExecutorType.DEFAULT ? ServerExecutorType.CACHED : type;
+    }
+
+    private static ServerServiceDefinition withExecutor(ServerServiceDefinition serviceDefinition,
+                                                        ServerExecutors serverExecutors, ServerExecutorType type) {
+        final ServerInterceptor executorInterceptor = serverExecutors.interceptor(type);
+        if (executorInterceptor == null) {
+            return serviceDefinition;
+        }
+        // outermost, the other interceptors run on the executor as well
+        return ServerInterceptors.intercept(serviceDefinition, executorInterceptor);
     }
 }